@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.User;
+
+/**
+ * Benchmarks logging in and registering through DatabaseHelper.
+ *
+ * Registration adds a new user on every call, so the users table grows during the
+ * measurement the same way it does in production. The rows are discarded with the
+ * trial's database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountBenchmark {
+
+    // Matches the password DatasetGenerator gives every generated user
+    private static final String PASSWORD = "Password1!";
+
+    @State(Scope.Thread)
+    public static class Accounts {
+        private final Random random = new Random(11);
+        private final String prefix = "reg" + Thread.currentThread().threadId() + "_";
+        private int registered = 0;
+
+        String existingUser(BenchmarkDatabase db) {
+            return db.dataset.userNames.get(random.nextInt(db.dataset.userNames.size()));
+        }
+
+        String newUser() {
+            return prefix + registered++;
+        }
+    }
+
+    @Benchmark
+    public boolean login(BenchmarkDatabase db, Accounts accounts) throws SQLException {
+        return db.databaseHelper.login(new User(accounts.existingUser(db), PASSWORD, "student"));
+    }
+
+    @Benchmark
+    public String register(BenchmarkDatabase db, Accounts accounts) throws SQLException {
+        String userName = accounts.newUser();
+        db.databaseHelper.register(new User(userName, PASSWORD, "student"));
+        return userName;
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import application.DatasetGenerator;
+import application.studentDatabase;
+import databasePart1.DatabaseHelper;
+
+/**
+ * A database filled by DatasetGenerator, shared by every benchmark thread of a trial.
+ *
+ * Each trial runs in its own forked JVM, so the static caches and the search index of
+ * studentDatabase start cold for every combination of storage and size. The file
+ * database lives in a temporary directory that is deleted after the trial.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    /** "mem" for an in-memory H2 database, "file" for a file-backed one */
+    @Param({ "mem", "file" })
+    public String storage;
+
+    /** The number of generated users. Everything else is scaled from it. */
+    @Param({ "100", "1000" })
+    public int users;
+
+    public studentDatabase studentDatabaseHelper;
+    public DatabaseHelper databaseHelper;
+    public DatasetGenerator.Dataset dataset;
+    public int testUserId;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        String url;
+        if (storage.equals("file")) {
+            directory = Files.createTempDirectory("cse360-bench");
+            url = "jdbc:h2:" + directory.resolve("bench").toAbsolutePath();
+        } else {
+            url = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+        }
+
+        studentDatabaseHelper = new studentDatabase();
+        studentDatabaseHelper.connectToDatabase(url);
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase(url);
+
+        dataset = new DatasetGenerator(studentDatabaseHelper, 42L)
+                .generate(DatasetGenerator.Volumes.scaled(users), "bench_");
+        testUserId = studentDatabaseHelper.getUserId("testuser");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        studentDatabaseHelper.getConnectionPool().close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
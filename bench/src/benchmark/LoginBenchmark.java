@@ -0,0 +1,118 @@
+package benchmark;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import application.User;
+import databasePart1.PasswordHasher;
+
+/**
+ * Measures how many logins per second password hashing allows.
+ *
+ * verify checks a password against a stored hash from a single thread, which is what one
+ * core can sustain. login goes through DatabaseHelper.login from one thread per core, so
+ * it includes the query and shows whether the hashing workers keep every core busy.
+ * Running main prints both as logins per second per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoginBenchmark {
+
+    // Matches the password DatasetGenerator gives every generated user
+    private static final String PASSWORD = "Password1!";
+
+    @State(Scope.Benchmark)
+    public static class Hashes {
+        /** The PBKDF2 iteration count, or 0 for the default that logins use */
+        @Param({ "0" })
+        public int iterations;
+
+        PasswordHasher hasher;
+        String stored;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) throws SQLException {
+            hasher = iterations == 0 ? PasswordHasher.getDefault(db.databaseHelper.getConnectionPool())
+                    : new PasswordHasher(iterations, PasswordHasher.DEFAULT_MAX_CONCURRENT,
+                            PasswordHasher.DEFAULT_QUEUE_CAPACITY);
+            stored = hasher.hash(PASSWORD);
+            System.out.println("\nIterations per hash: " + hasher.getIterations());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Logins {
+        private final Random random = new Random(13);
+
+        User nextUser(BenchmarkDatabase db) {
+            int user = random.nextInt(db.dataset.userNames.size());
+            return new User(db.dataset.userNames.get(user), PASSWORD, db.dataset.roleOf(user));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean verify(Hashes hashes) {
+        return hashes.hasher.verify(PASSWORD, hashes.stored);
+    }
+
+    // A rejected login skips the hash, so it fails the run rather than counting as a login
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean login(BenchmarkDatabase db, Logins logins) throws SQLException {
+        User user = logins.nextUser(db);
+        if (!db.databaseHelper.login(user)) {
+            throw new IllegalStateException("Login rejected for " + user.getUserName());
+        }
+        return true;
+    }
+
+    /**
+     * Runs both benchmarks on the small in-memory dataset and prints logins per second
+     * per core. Iterations can be fixed with -Dcse360.hash.iterations, which is passed on
+     * to the forked JVM.
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.include(LoginBenchmark.class.getName() + "\\.")
+                .param("storage", "mem")
+                .param("users", "100");
+        String iterations = System.getProperty("cse360.hash.iterations");
+        if (iterations != null) {
+            builder.jvmArgsAppend("-Dcse360.hash.iterations=" + iterations);
+        }
+        Options options = builder.build();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (RunResult result : new Runner(options).run()) {
+            BenchmarkParams params = result.getParams();
+            double perCore = result.getPrimaryResult().getScore() / Math.min(params.getThreads(), cores);
+            System.out.printf("%s: %.1f logins/s per core (%d threads, %d cores)%n",
+                    params.getBenchmark(), perCore, params.getThreads(), cores);
+        }
+    }
+}
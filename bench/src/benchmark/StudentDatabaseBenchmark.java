@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the studentDatabase reads the home pages call most often.
+ *
+ * IDs are drawn uniformly from the generated dataset by a per-thread random, so the
+ * entity caches see the whole dataset rather than one hot row. The busiest user, who has
+ * the most messages and trusted reviewers, is used for the per-user reads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentDatabaseBenchmark {
+
+    private static final String[] SEARCH_TERMS = { "JavaFX", "JDBC", "exceptions", "streams", "homework" };
+
+    @State(Scope.Thread)
+    public static class Choices {
+        private final Random random = new Random(7);
+
+        int questionId(BenchmarkDatabase db) {
+            List<Integer> ids = db.dataset.questionIds;
+            return ids.get(random.nextInt(ids.size()));
+        }
+
+        String searchTerm() {
+            return SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)];
+        }
+    }
+
+    @Benchmark
+    public Object getQuestions(BenchmarkDatabase db) throws SQLException {
+        return db.studentDatabaseHelper.getQuestions();
+    }
+
+    @Benchmark
+    public Object searchQuestions(BenchmarkDatabase db, Choices choices) throws SQLException {
+        return db.studentDatabaseHelper.searchQuestions(choices.searchTerm());
+    }
+
+    @Benchmark
+    public Object getAnswersForQuestion(BenchmarkDatabase db, Choices choices) throws SQLException {
+        return db.studentDatabaseHelper.getAnswersForQuestion(choices.questionId(db));
+    }
+
+    @Benchmark
+    public Object getReviewsForQuestion(BenchmarkDatabase db, Choices choices) throws SQLException {
+        return db.studentDatabaseHelper.getReviewsForQuestion(choices.questionId(db));
+    }
+
+    @Benchmark
+    public Object getMessagesForUser(BenchmarkDatabase db) throws SQLException {
+        return db.studentDatabaseHelper.getMessagesForUser(db.dataset.userIds.get(0));
+    }
+
+    @Benchmark
+    public Object getTrustedReviews(BenchmarkDatabase db, Choices choices) throws SQLException {
+        return db.studentDatabaseHelper.getTrustedReviews(db.dataset.userIds.get(0), choices.questionId(db));
+    }
+}
@@ -0,0 +1,559 @@
+package application;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import databasePart1.AuditLog;
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.InvitationCodePool;
+import databasePart1.PasswordHasher;
+import databasePart1.UserDirectory;
+import passwordEvaluationTestbed.PasswordEvaluation;
+import passwordEvaluationTestbed.PasswordEvaluator;
+import userNameRecognizerTestbed.UserNameRecognition;
+import userNameRecognizerTestbed.UserNameRecognizer;
+
+/**
+ * AccountImporter creates accounts in bulk from a CSV or JSON lines file, so a whole
+ * cohort can be onboarded at once. The file is read with the BulkFileLoader readers and
+ * needs these fields:
+ *   userName, password
+ *   roles (optional, separated by commas or semicolons, student if empty)
+ *   invitationCode (optional, redeemed when the account is created)
+ *
+ * The file is streamed in chunks. The rows of a chunk are validated in parallel with the
+ * same recognizer and evaluator as the account setup pages, and their passwords hashed,
+ * while the previous chunk is being stored. Hashing dominates the cost of an import, and
+ * the PasswordHasher caps how much of it runs at once. Duplicate user names and spent invitation codes are found with one set
+ * query per chunk, and the remaining rows are inserted with JDBC batches in one
+ * transaction. If that transaction fails, its rows are retried one at a time so only the
+ * offending rows are rejected.
+ *
+ * A row that cannot be imported never stops the import. It is listed in the report with
+ * its line number and the reason. The chunk size and the number of validation threads
+ * can be configured with the system properties {@code cse360.import.chunkSize} and
+ * {@code cse360.import.threads}.
+ */
+public class AccountImporter {
+    public static final int DEFAULT_CHUNK_SIZE =
+            Integer.getInteger("cse360.import.chunkSize", 500);
+    public static final int DEFAULT_THREADS =
+            Integer.getInteger("cse360.import.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * A row that was not imported
+     */
+    public static class RowError {
+        public final int line;
+        /** The user name of the row, or null if the row could not be read */
+        public final String userName;
+        public final String message;
+
+        public RowError(int line, String userName, String message) {
+            this.line = line;
+            this.userName = userName;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + (userName != null ? " (" + userName + ")" : "") + ": " + message;
+        }
+    }
+
+    /**
+     * The outcome of an import. The stage times are busy times, and validation time is
+     * summed over the validation threads, so they can add up to more than the elapsed time.
+     */
+    public static class Report {
+        private final int rowsRead;
+        private final int imported;
+        private final List<RowError> errors;
+        private final long elapsedNanos;
+        private final long validateNanos;
+        private final long checkNanos;
+        private final long insertNanos;
+
+        Report(int rowsRead, int imported, List<RowError> errors, long elapsedNanos,
+               long validateNanos, long checkNanos, long insertNanos) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.errors = Collections.unmodifiableList(errors);
+            this.elapsedNanos = elapsedNanos;
+            this.validateNanos = validateNanos;
+            this.checkNanos = checkNanos;
+            this.insertNanos = insertNanos;
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getImportedCount() {
+            return imported;
+        }
+
+        public int getRejectedCount() {
+            return errors.size();
+        }
+
+        /**
+         * Returns the rejected rows in file order
+         */
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Writes the rejected rows as CSV with the columns line, userName and error
+         */
+        public void writeErrors(Writer writer) throws IOException {
+            writer.write("line,userName,error\n");
+            for (RowError error : errors) {
+                writer.write(error.line + "," + csv(error.userName) + "," + csv(error.message) + "\n");
+            }
+            writer.flush();
+        }
+
+        public void writeErrors(Path file) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeErrors(writer);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d of %d accounts, %d rejected, in %.2f s (%.0f rows/s); "
+                    + "validate and hash %.2f s, check %.2f s, insert %.2f s",
+                    imported, rowsRead, errors.size(), elapsedNanos / 1e9, getRowsPerSecond(),
+                    validateNanos / 1e9, checkNanos / 1e9, insertNanos / 1e9);
+        }
+
+        private static String csv(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    /**
+     * One row on its way through the pipeline. The error is set by whichever stage rejects it.
+     */
+    private static final class Candidate {
+        final int line;
+        final String userName;
+        final String password;
+        final String roleNames;
+        final String invitationCode;
+        EnumSet<Role> roles;
+        String passwordHash;
+        String error;
+
+        Candidate(int line, String userName, String password, String roleNames, String invitationCode) {
+            this.line = line;
+            this.userName = userName;
+            this.password = password;
+            this.roleNames = roleNames;
+            this.invitationCode = invitationCode;
+        }
+
+        static Candidate of(BulkFileLoader.Row row) {
+            String code = row.get("invitationCode", "").trim();
+            try {
+                return new Candidate(row.line, row.require("userName"), row.require("password"),
+                        row.get("roles", row.get("role", "")), code.isEmpty() ? null : code);
+            } catch (IllegalArgumentException e) {
+                return failed(row.line, row.get("userName", null), e.getMessage());
+            }
+        }
+
+        static Candidate failed(int line, String userName, String message) {
+            Candidate candidate = new Candidate(line, userName, null, null, null);
+            // The readers prefix their messages with the line, which the report already has
+            candidate.error = message.replaceFirst("^Line \\d+(: |, )", "");
+            return candidate;
+        }
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final PasswordHasher hasher;
+    private final int chunkSize;
+    private final int threads;
+
+    public AccountImporter(DatabaseHelper databaseHelper) {
+        this(databaseHelper, DEFAULT_CHUNK_SIZE, DEFAULT_THREADS);
+    }
+
+    public AccountImporter(DatabaseHelper databaseHelper, int chunkSize, int threads) {
+        if (chunkSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Chunk size and threads must be at least 1");
+        }
+        this.databaseHelper = databaseHelper;
+        this.hasher = databaseHelper.getPasswordHasher();
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Imports the accounts in a file, choosing the format from its extension
+     * @param file		The CSV or JSON lines file
+     * @param actorName	The user doing the import, for the audit log
+     * @return The report
+     */
+    public Report importAccounts(Path file, String actorName) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importAccounts(reader, BulkFileLoader.Format.forFile(file), actorName);
+        }
+    }
+
+    /**
+     * Imports the accounts read from the reader
+     * @param reader		The rows
+     * @param format		The format of the rows
+     * @param actorName		The user doing the import, for the audit log
+     * @return The report
+     * @throws IOException if the reader fails
+     * @throws SQLException if the database could not be reached. Chunks stored before the
+     * 			failure stay in the database, and the message says how many accounts they hold.
+     */
+    public Report importAccounts(Reader reader, BulkFileLoader.Format format, String actorName)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        BulkFileLoader.RowIterator rows = BulkFileLoader.rowIterator(reader, format);
+        Store store = new Store(actorName);
+        AtomicLong validateNanos = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cse360-account-import");
+            t.setDaemon(true);
+            return t;
+        });
+        int rowsRead = 0;
+        try {
+            // Each chunk is read and validated while the one before it is stored
+            List<Candidate> previous = null;
+            CompletableFuture<Void> previousValidation = null;
+            while (true) {
+                List<Candidate> chunk = readChunk(rows);
+                rowsRead += chunk.size();
+                CompletableFuture<Void> validation = chunk.isEmpty() ? null : validate(chunk, executor, validateNanos);
+                if (previous != null) {
+                    previousValidation.join();
+                    store.store(previous);
+                }
+                if (validation == null) {
+                    break;
+                }
+                previous = chunk;
+                previousValidation = validation;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Validation failed: " + e.getCause(), e.getCause());
+        } catch (SQLException e) {
+            throw new SQLException("Import failed after " + store.imported + " accounts were committed: "
+                    + e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report(rowsRead, store.imported, store.errors, System.nanoTime() - start,
+                validateNanos.get(), store.checkNanos, store.insertNanos);
+    }
+
+    // Reads up to a chunk of rows. Rows that cannot be read are returned already rejected.
+    private List<Candidate> readChunk(BulkFileLoader.RowIterator rows) {
+        List<Candidate> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize) {
+            BulkFileLoader.Row row;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                row = rows.next();
+            } catch (IllegalArgumentException e) {
+                chunk.add(Candidate.failed(rows.lineNumber, null, e.getMessage()));
+                continue;
+            }
+            chunk.add(Candidate.of(row));
+        }
+        return chunk;
+    }
+
+    // Validates the chunk in one slice per thread
+    private CompletableFuture<Void> validate(List<Candidate> chunk, ExecutorService executor, AtomicLong nanos) {
+        int sliceSize = (chunk.size() + threads - 1) / threads;
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<Candidate> slice = chunk.subList(from, Math.min(chunk.size(), from + sliceSize));
+            slices.add(CompletableFuture.runAsync(() -> {
+                long started = System.nanoTime();
+                for (Candidate candidate : slice) {
+                    validate(candidate, hasher);
+                }
+                nanos.addAndGet(System.nanoTime() - started);
+            }, executor));
+        }
+        return CompletableFuture.allOf(slices.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Applies the rules of the account setup pages to one row and hashes its password
+    private static void validate(Candidate candidate, PasswordHasher hasher) {
+        if (candidate.error != null) {
+            return;
+        }
+        List<String> problems = new ArrayList<>(2);
+        UserNameRecognition userName = UserNameRecognizer.SILENT.recognize(candidate.userName);
+        if (!userName.isValid()) {
+            problems.add("UserName: " + clean(userName.getErrorMessage()));
+        }
+        PasswordEvaluation password = PasswordEvaluator.SILENT.evaluate(candidate.password);
+        if (!password.isValid()) {
+            problems.add("Password: " + clean(password.getErrorMessage()));
+        }
+        EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+        for (String name : candidate.roleNames.split("[,;]")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            Role role = Role.fromDbName(name);
+            if (role == null) {
+                problems.add("Unknown role: " + name.trim());
+            } else {
+                roles.add(role);
+            }
+        }
+        candidate.roles = roles.isEmpty() ? EnumSet.of(Role.STUDENT) : roles;
+        if (!problems.isEmpty()) {
+            candidate.error = String.join(" | ", problems);
+            return;
+        }
+        try {
+            candidate.passwordHash = hasher.hash(candidate.password);
+        } catch (RejectedExecutionException e) {
+            candidate.error = "The password could not be hashed: " + e.getMessage();
+        }
+    }
+
+    // Drops the console decoration the validators put around their messages
+    private static String clean(String message) {
+        return message.replace("*** ERROR *** ", "").replace("*** Error *** ", "").trim();
+    }
+
+    /**
+     * The sequential part of the pipeline: duplicate checks and inserts, in file order
+     */
+    private final class Store {
+        private final String actorName;
+        private final ConnectionPool pool = databaseHelper.getConnectionPool();
+        private final UserDirectory userDirectory = databaseHelper.getUserDirectory();
+        private final AuditLog auditLog = databaseHelper.getAuditLog();
+        private final InvitationCodePool codePool = databaseHelper.getInvitationCodePool();
+        // The line each user name and invitation code was first seen on
+        private final Map<String, Integer> seenUserNames = new HashMap<>();
+        private final Map<String, Integer> seenCodes = new HashMap<>();
+        private final List<RowError> errors = new ArrayList<>();
+        private int imported = 0;
+        private long checkNanos = 0;
+        private long insertNanos = 0;
+
+        Store(String actorName) {
+            this.actorName = actorName;
+        }
+
+        void store(List<Candidate> chunk) throws SQLException {
+            long started = System.nanoTime();
+            List<Candidate> accepted = new ArrayList<>(chunk.size());
+            for (Candidate candidate : chunk) {
+                if (candidate.error != null) {
+                    continue;
+                }
+                Integer first = seenUserNames.putIfAbsent(candidate.userName, candidate.line);
+                if (first != null) {
+                    candidate.error = "Duplicate of the user name on line " + first;
+                    continue;
+                }
+                if (candidate.invitationCode != null) {
+                    first = seenCodes.putIfAbsent(candidate.invitationCode, candidate.line);
+                    if (first != null) {
+                        candidate.error = "Invitation code is also used on line " + first;
+                        continue;
+                    }
+                }
+                accepted.add(candidate);
+            }
+
+            try (Connection connection = pool.getConnection()) {
+                if (!accepted.isEmpty()) {
+                    Set<String> userNames = new HashSet<>();
+                    Set<String> codes = new HashSet<>();
+                    for (Candidate candidate : accepted) {
+                        userNames.add(candidate.userName);
+                        if (candidate.invitationCode != null) {
+                            codes.add(candidate.invitationCode);
+                        }
+                    }
+                    Set<String> existing = selectIn(connection,
+                            "SELECT userName FROM cse360users WHERE userName = ANY(?)", userNames);
+                    Set<String> unused = codePool.findRedeemable(connection, codes);
+                    accepted.removeIf(candidate -> {
+                        if (existing.contains(candidate.userName)) {
+                            candidate.error = "User name is already taken";
+                        } else if (candidate.invitationCode != null && !unused.contains(candidate.invitationCode)) {
+                            candidate.error = "Invitation code is not valid or has been used";
+                        }
+                        return candidate.error != null;
+                    });
+                }
+                long checked = System.nanoTime();
+                checkNanos += checked - started;
+
+                if (!accepted.isEmpty()) {
+                    try {
+                        insert(connection, accepted);
+                    } catch (SQLException e) {
+                        // Someone else took a name or code since the check, so find the rows affected
+                        for (Candidate candidate : accepted) {
+                            try {
+                                insert(connection, List.of(candidate));
+                            } catch (SQLException rowFailure) {
+                                candidate.error = "Could not be stored: " + rowFailure.getMessage();
+                            }
+                        }
+                    }
+                }
+                insertNanos += System.nanoTime() - checked;
+            }
+
+            for (Candidate candidate : chunk) {
+                if (candidate.error != null) {
+                    errors.add(new RowError(candidate.line, candidate.userName, candidate.error));
+                }
+            }
+        }
+
+        // Inserts the rows in one transaction and redeems their invitation codes
+        private void insert(Connection connection, List<Candidate> rows) throws SQLException {
+            String insertUser = "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)";
+            String insertRole = "INSERT INTO user_roles (userId, role) VALUES (?, ?)";
+            List<Integer> userIds;
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(insertUser, Statement.RETURN_GENERATED_KEYS)) {
+                    for (Candidate row : rows) {
+                        pstmt.setString(1, row.userName);
+                        pstmt.setString(2, row.passwordHash);
+                        pstmt.setString(3, Role.join(row.roles));
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    userIds = BulkLoader.generatedKeys(pstmt, rows.size());
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(insertRole)) {
+                    for (int i = 0; i < rows.size(); i++) {
+                        for (Role role : rows.get(i).roles) {
+                            pstmt.setInt(1, userIds.get(i));
+                            pstmt.setString(2, role.getDbName());
+                            pstmt.addBatch();
+                        }
+                    }
+                    pstmt.executeBatch();
+                }
+                for (Candidate row : rows) {
+                    if (row.invitationCode != null
+                            && !codePool.redeem(connection, row.invitationCode, row.userName)) {
+                        throw new SQLException("Invitation code " + row.invitationCode + " has been used");
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            imported += rows.size();
+            for (int i = 0; i < rows.size(); i++) {
+                Candidate row = rows.get(i);
+                userDirectory.userAdded(userIds.get(i), row.userName);
+                auditLog.record(actorName, AuditLog.Action.USER_REGISTERED, "user", userIds.get(i),
+                        "roles=" + Role.join(row.roles) + ", imported from line " + row.line);
+            }
+        }
+    }
+
+    // Returns the values the query finds among the given ones, bound as one array
+    private static Set<String> selectIn(Connection connection, String query, Set<String> values)
+            throws SQLException {
+        Set<String> found = new HashSet<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            Array array = connection.createArrayOf("VARCHAR", values.toArray(new String[0]));
+            pstmt.setArray(1, array);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getString(1));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Imports a file from the command line: the file, then optionally the name of the
+     * importing user. Rejected rows are written next to the file as name.errors.csv.
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: AccountImporter <file.csv|file.jsonl> [actorName]");
+            return;
+        }
+        DatabaseHelper databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+        Path file = Path.of(args[0]);
+        Report report = new AccountImporter(databaseHelper).importAccounts(file, args.length > 1 ? args[1] : null);
+        System.out.println(report);
+        if (report.getRejectedCount() > 0) {
+            Path errors = file.resolveSibling(file.getFileName() + ".errors.csv");
+            report.writeErrors(errors);
+            System.out.println("Rejected rows were written to " + errors);
+        }
+        databaseHelper.getAuditLog().flush();
+        databaseHelper.closeConnection();
+    }
+}
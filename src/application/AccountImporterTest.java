@@ -0,0 +1,151 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import databasePart1.DatabaseHelper;
+
+/**
+ * Tests that an account import stores the valid rows with their roles, reports every
+ * rejected row with its line, and behaves the same across chunk boundaries.
+ */
+public class AccountImporterTest {
+
+    private DatabaseHelper databaseHelper;
+    private String prefix;
+    private final List<String> codes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+        prefix = "imp" + System.nanoTime() % 100000;
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        for (String suffix : new String[] {"a", "b", "c", "d", "e", "f", "g", "h"}) {
+            databaseHelper.deleteUser(prefix + suffix);
+        }
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("DELETE FROM InvitationCodes WHERE code = ?")) {
+            for (String code : codes) {
+                pstmt.setString(1, code);
+                pstmt.executeUpdate();
+            }
+        }
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void importsValidRowsAndReportsTheRest() throws Exception {
+        databaseHelper.register(new User(prefix + "h", "Password1!", "student"));
+        String code = databaseHelper.generateInvitationCode();
+        codes.add(code);
+
+        String csv = "userName,password,roles,invitationCode\n"
+                + prefix + "a,Password1!,,\n"                          // line 2
+                + prefix + "b,Password1!,\"student,reviewer\"," + code + "\n"
+                + "1" + prefix + ",Password1!,,\n"                     // bad user name
+                + prefix + "c,password,,\n"                            // weak password
+                + prefix + "d,Password1!,wizard,\n"                    // unknown role
+                + prefix + "a,Password1!,,\n"                          // duplicate in the file
+                + prefix + "e,Password1!,staff\n"                      // too few fields
+                + prefix + "h,Password1!,,\n"                          // already registered
+                + prefix + "f,Password1!,," + code + "\n"              // code used above
+                + prefix + "g,Password1!,instructor;staff,\n";         // line 11
+
+        AccountImporter.Report report = new AccountImporter(databaseHelper, 3, 2)
+                .importAccounts(new StringReader(csv), BulkFileLoader.Format.CSV, "admin");
+
+        assertEquals(10, report.getRowsRead());
+        assertEquals(3, report.getImportedCount());
+        assertEquals(7, report.getRejectedCount());
+        int[] lines = report.getErrors().stream().mapToInt(error -> error.line).toArray();
+        assertArrayEquals(new int[] {4, 5, 6, 7, 8, 9, 10}, lines);
+        assertTrue(report.getErrors().get(0).message.startsWith("UserName: A UserName must start"));
+        assertTrue(report.getErrors().get(1).message.startsWith("Password: Upper case"));
+        assertEquals("Unknown role: wizard", report.getErrors().get(2).message);
+        assertEquals("Duplicate of the user name on line 2", report.getErrors().get(3).message);
+        assertEquals("expected 4 fields but found 3", report.getErrors().get(4).message);
+        assertEquals("User name is already taken", report.getErrors().get(5).message);
+        assertEquals("Invitation code is also used on line 3", report.getErrors().get(6).message);
+
+        assertEquals(EnumSet.of(Role.STUDENT), databaseHelper.getUserRoles(prefix + "a"));
+        assertEquals(EnumSet.of(Role.STUDENT, Role.REVIEWER), databaseHelper.getUserRoles(prefix + "b"));
+        assertEquals(EnumSet.of(Role.INSTRUCTOR, Role.STAFF), databaseHelper.getUserRoles(prefix + "g"));
+        assertTrue(databaseHelper.login(new User(prefix + "g", "Password1!", "instructor,staff")));
+        assertFalse(databaseHelper.doesUserExist(prefix + "c"));
+        assertFalse("The code must be redeemed", databaseHelper.validateInvitationCode(code));
+
+        StringWriter errors = new StringWriter();
+        report.writeErrors(errors);
+        assertTrue(errors.toString().startsWith("line,userName,error\n4,1" + prefix + ","));
+    }
+
+    @Test
+    public void importsJsonLinesAndRejectsSpentCodes() throws Exception {
+        String code = databaseHelper.generateInvitationCode();
+        codes.add(code);
+        assertTrue(databaseHelper.validateInvitationCode(code));
+
+        String jsonLines = "{\"userName\": \"" + prefix + "a\", \"password\": \"Password1!\", \"roles\": \"reviewer\"}\n"
+                + "{\"userName\": \"" + prefix + "b\", \"password\": \"Password1!\", \"invitationCode\": \"" + code + "\"}\n"
+                + "{\"userName\": \"" + prefix + "c\", \"password\": }\n";
+
+        AccountImporter.Report report = new AccountImporter(databaseHelper)
+                .importAccounts(new StringReader(jsonLines), BulkFileLoader.Format.JSON_LINES, null);
+
+        assertEquals(3, report.getRowsRead());
+        assertEquals(1, report.getImportedCount());
+        assertEquals("Invitation code is not valid or has been used", report.getErrors().get(0).message);
+        assertEquals(3, report.getErrors().get(1).line);
+        assertEquals(EnumSet.of(Role.REVIEWER), databaseHelper.getUserRoles(prefix + "a"));
+        assertEquals(databaseHelper.getUserDirectory().getUserId(prefix + "a"), userId(prefix + "a"));
+    }
+
+    @Test
+    public void codesAreMatchedLikeTheSignUpPage() throws Exception {
+        String code = databaseHelper.generateInvitationCode();
+        codes.add(code);
+        String unreserved = "UNRES" + System.nanoTime() % 100000;
+        codes.add(unreserved);
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("INSERT INTO InvitationCodes (code) VALUES (?)")) {
+            pstmt.setString(1, unreserved);
+            pstmt.executeUpdate();
+        }
+
+        String csv = "userName,password,roles,invitationCode\n"
+                + prefix + "a,Password1!,, " + code.toLowerCase() + "\n"
+                + prefix + "b,Password1!,," + unreserved + "\n";
+        AccountImporter.Report report = new AccountImporter(databaseHelper)
+                .importAccounts(new StringReader(csv), BulkFileLoader.Format.CSV, null);
+
+        assertEquals(1, report.getImportedCount());
+        assertEquals(3, report.getErrors().get(0).line);
+        assertEquals("Invitation code is not valid or has been used", report.getErrors().get(0).message);
+        assertFalse("The code must be redeemed", databaseHelper.validateInvitationCode(code));
+    }
+
+    private int userId(String userName) throws SQLException {
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT id FROM cse360users WHERE userName = ?")) {
+            pstmt.setString(1, userName);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+}
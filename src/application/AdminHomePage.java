@@ -1,11 +1,16 @@
 package application;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 import databasePart1.DatabaseHelper;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class AdminHomePage {
@@ -42,11 +47,52 @@ public class AdminHomePage {
 			}
         });
 
-        layout.getChildren().addAll(adminLabel, quitButton, viewUserListButton);
+        // Button to create accounts for a whole cohort from a file
+        Button importUsersButton = new Button("Import Users");
+        importUsersButton.setOnAction(a -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Import Users");
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("CSV or JSON lines", "*.csv", "*.jsonl", "*.ndjson"),
+                    new FileChooser.ExtensionFilter("All files", "*.*"));
+            File file = chooser.showOpenDialog(primaryStage);
+            if (file != null) {
+                importUsersButton.setDisable(true);
+                Thread.ofVirtual().start(() -> importUsers(file.toPath(), importUsersButton));
+            }
+        });
+
+        layout.getChildren().addAll(adminLabel, quitButton, viewUserListButton, importUsersButton);
         Scene adminScene = new Scene(layout, 800, 400);
 
         primaryStage.setScene(adminScene);
         primaryStage.setTitle("Admin Page");
     }
-    
+
+    // Runs off the FX thread and reports back on it
+    private void importUsers(Path file, Button importUsersButton) {
+        Alert.AlertType type = Alert.AlertType.INFORMATION;
+        String message;
+        try {
+            AccountImporter.Report report = new AccountImporter(databaseHelper).importAccounts(file, adminUserName);
+            message = report.toString();
+            if (report.getRejectedCount() > 0) {
+                Path errors = file.resolveSibling(file.getFileName() + ".errors.csv");
+                report.writeErrors(errors);
+                message += "\nRejected rows were written to " + errors;
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            e.printStackTrace();
+            type = Alert.AlertType.ERROR;
+            message = "Import failed: " + e.getMessage();
+        }
+        Alert.AlertType alertType = type;
+        String alertMessage = message;
+        Platform.runLater(() -> {
+            importUsersButton.setDisable(false);
+            Alert alert = new Alert(alertType, alertMessage);
+            alert.setHeaderText("Import Users");
+            alert.showAndWait();
+        });
+    }
 }
@@ -58,7 +58,7 @@ public class AdminSetupPage {
             String password = passwordField.getText();
             
             // check for username validation
-            String usernameValidationMessage = UserNameRecognizer.checkForValidUserName(userName);
+            String usernameValidationMessage = UserNameRecognizer.SILENT.recognize(userName).getErrorMessage();
             if (!usernameValidationMessage.isEmpty()) {
                 usernameErrorLabel.setText("Username Error: " + usernameValidationMessage);
                 usernameSuccessLabel.setText(""); 
@@ -69,7 +69,7 @@ public class AdminSetupPage {
             }
 
             // check for password validation
-            String passwordValidationMessage = PasswordEvaluator.evaluatePassword(password);
+            String passwordValidationMessage = PasswordEvaluator.SILENT.evaluate(password).getErrorMessage();
             if (!passwordValidationMessage.isEmpty()) {
                 passwordErrorLabel.setText("Password Error: " + passwordValidationMessage);
                 passwordSuccessLabel.setText(""); 
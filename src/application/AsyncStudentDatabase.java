@@ -0,0 +1,474 @@
+package application;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+/**
+ * AsyncStudentDatabase runs studentDatabase calls on virtual threads so the JavaFX
+ * Application Thread never waits on the database. Every call returns a CompletableFuture
+ * that is completed on the FX thread, so callbacks chained onto it may update controls
+ * directly.
+ *
+ * Cancelling a returned future discards its result. A call that has not started yet is
+ * skipped, but a query that is already running is left to finish, because interrupting
+ * H2 during file I/O closes the database file.
+ *
+ * The pending count and loading flag are meant for binding progress indicators.
+ */
+public final class AsyncStudentDatabase implements AutoCloseable {
+
+    /**
+     * A database call returning a value
+     */
+    @FunctionalInterface
+    public interface DaoCall<T> {
+        T call(studentDatabase db) throws SQLException;
+    }
+
+    /**
+     * A database call returning nothing
+     */
+    @FunctionalInterface
+    public interface DaoAction {
+        void run(studentDatabase db) throws SQLException;
+    }
+
+    private final studentDatabase studentDatabaseHelper;
+    private final ExecutorService executor;
+    private final Executor callbackExecutor;
+
+    private final ReadOnlyIntegerWrapper pending = new ReadOnlyIntegerWrapper(this, "pending", 0);
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(this, "loading", false);
+
+    // The newest request for each key passed to latest()
+    private final Map<Object, CompletableFuture<?>> latestRequests = new ConcurrentHashMap<>();
+
+    public AsyncStudentDatabase(studentDatabase studentDatabaseHelper) {
+        this(studentDatabaseHelper, Executors.newVirtualThreadPerTaskExecutor(), Platform::runLater);
+    }
+
+    /**
+     * @param studentDatabaseHelper	The database helper the calls run against
+     * @param executor				Runs the database calls
+     * @param callbackExecutor		Completes the futures, normally Platform::runLater
+     */
+    public AsyncStudentDatabase(studentDatabase studentDatabaseHelper, ExecutorService executor, Executor callbackExecutor) {
+        this.studentDatabaseHelper = studentDatabaseHelper;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+        loading.bind(pending.greaterThan(0));
+    }
+
+    public studentDatabase getDatabase() {
+        return studentDatabaseHelper;
+    }
+
+    /**
+     * The number of calls that have been started and not yet completed or cancelled
+     */
+    public ReadOnlyIntegerProperty pendingProperty() {
+        return pending.getReadOnlyProperty();
+    }
+
+    /**
+     * True while any call is pending
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    /**
+     * Runs a database call off the FX thread
+     * @param call The call to run
+     * @return A future completed on the FX thread with the call's result
+     */
+    public <T> CompletableFuture<T> supply(DaoCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                callbackExecutor.execute(() -> pending.set(pending.get() - 1));
+            }
+        };
+
+        callbackExecutor.execute(() -> pending.set(pending.get() + 1));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                finish.run();
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                T value = null;
+                Throwable failure = null;
+                try {
+                    value = call.call(studentDatabaseHelper);
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                T delivered = value;
+                Throwable deliveredError = failure;
+                callbackExecutor.execute(() -> {
+                    if (deliveredError == null) {
+                        result.complete(delivered);
+                    } else {
+                        result.completeExceptionally(deliveredError);
+                    }
+                });
+                finish.run();
+            });
+        } catch (RejectedExecutionException e) {
+            finish.run();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a database call with no result off the FX thread
+     * @param action The call to run
+     * @return A future completed on the FX thread once the call is done
+     */
+    public CompletableFuture<Void> run(DaoAction action) {
+        return supply(db -> {
+            action.run(db);
+            return null;
+        });
+    }
+
+    /**
+     * Starts a request and cancels the previous one started with the same key, for
+     * things like search-as-you-type where only the newest result matters
+     * @param key		Identifies the kind of request, such as "search"
+     * @param request	Starts the request
+     * @return The new request
+     */
+    public <T> CompletableFuture<T> latest(Object key, Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> future = request.get();
+        CompletableFuture<?> previous = latestRequests.put(key, future);
+        if (previous != null && previous != future) {
+            previous.cancel(false);
+        }
+        future.whenComplete((value, error) -> latestRequests.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Cancels the pending request started with latest() under the key, if any
+     */
+    public void cancelLatest(Object key) {
+        CompletableFuture<?> previous = latestRequests.remove(key);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * Builds a whenComplete callback that passes results to onSuccess and real failures
+     * to onError, ignoring cancellations
+     * @param onSuccess	Receives the result
+     * @param onError		Receives the unwrapped failure
+     */
+    public static <T> BiConsumer<T, Throwable> handle(Consumer<? super T> onSuccess, Consumer<Throwable> onError) {
+        return (value, error) -> {
+            if (error == null) {
+                onSuccess.accept(value);
+            } else if (!isCancellation(error)) {
+                Throwable cause = unwrap(error);
+                cause.printStackTrace();
+                onError.accept(cause);
+            }
+        };
+    }
+
+    /**
+     * True if a failure passed to a callback only means the request was cancelled
+     */
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+
+    /**
+     * Strips the CompletionException that dependent futures wrap failures in
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Stops accepting calls. Calls already running are left to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // One method per studentDatabase call
+
+    public CompletableFuture<Void> deleteQuestion(int questionId) {
+        return run(db -> db.deleteQuestion(questionId));
+    }
+
+    public CompletableFuture<Void> updateQuestion(int questionId, String newTitle, String newContent) {
+        return run(db -> db.updateQuestion(questionId, newTitle, newContent));
+    }
+
+    public CompletableFuture<Void> updateAnswer(int answerId, String newContent) {
+        return run(db -> db.updateAnswer(answerId, newContent));
+    }
+
+    public CompletableFuture<Void> deleteAnswer(int answerId) {
+        return run(db -> db.deleteAnswer(answerId));
+    }
+
+    public CompletableFuture<Void> unmarkResolved(int questionId) {
+        return run(db -> db.unmarkResolved(questionId));
+    }
+
+    public CompletableFuture<Void> markAnswerNeedsClarification(int answerId, boolean needsClarification) {
+        return run(db -> db.markAnswerNeedsClarification(answerId, needsClarification));
+    }
+
+    public CompletableFuture<Void> addTrustedReviewer(int userId, int reviewerId) {
+        return run(db -> db.addTrustedReviewer(userId, reviewerId));
+    }
+
+    public CompletableFuture<Void> removeTrustedReviewer(int userId, int reviewerId) {
+        return run(db -> db.removeTrustedReviewer(userId, reviewerId));
+    }
+
+    public CompletableFuture<Boolean> isReviewerTrusted(int userId, int reviewerId) {
+        return supply(db -> db.isReviewerTrusted(userId, reviewerId));
+    }
+
+    public CompletableFuture<List<Integer>> getTrustedReviewerIds(int userId) {
+        return supply(db -> db.getTrustedReviewerIds(userId));
+    }
+
+    public CompletableFuture<List<ReviewerRecord>> getTrustedReviewers(int userId) {
+        return supply(db -> db.getTrustedReviewers(userId));
+    }
+
+    public CompletableFuture<List<ReviewData>> getTrustedReviews(int userId, int questionId) {
+        return supply(db -> db.getTrustedReviews(userId, questionId));
+    }
+
+    public CompletableFuture<Integer> addQuestion(String title, String content, int userId) {
+        return supply(db -> db.addQuestion(title, content, userId));
+    }
+
+    public CompletableFuture<String> getReviewerName(int reviewerId) {
+        return supply(db -> db.getReviewerName(reviewerId));
+    }
+
+    public CompletableFuture<List<ReviewData>> getReviewsForUserAnswers(int userId) {
+        return supply(db -> db.getReviewsForUserAnswers(userId));
+    }
+
+    public CompletableFuture<List<AnswerData>> getAnswersForUser(int userId) {
+        return supply(db -> db.getAnswersForUser(userId));
+    }
+
+    public CompletableFuture<List<QuestionData>> getQuestionsForUser(int userId) {
+        return supply(db -> db.getQuestionsForUser(userId));
+    }
+
+    public CompletableFuture<List<QuestionData>> getQuestions() {
+        return supply(db -> db.getQuestions());
+    }
+
+    public CompletableFuture<List<QuestionData>> getQuestionsPage(QuestionData cursor, int pageSize, boolean older) {
+        return supply(db -> db.getQuestionsPage(cursor, pageSize, older));
+    }
+
+    public CompletableFuture<List<QuestionData>> getQuestionsPage(QuestionData cursor, int pageSize, boolean older, Boolean resolved) {
+        return supply(db -> db.getQuestionsPage(cursor, pageSize, older, resolved));
+    }
+
+    public CompletableFuture<QuestionData> getQuestionById(int questionId) {
+        return supply(db -> db.getQuestionById(questionId));
+    }
+
+    public CompletableFuture<AnswerData> getAnswerById(int answerId) {
+        return supply(db -> db.getAnswerById(answerId));
+    }
+
+    public CompletableFuture<List<QuestionData>> searchQuestions(String searchTerm) {
+        return supply(db -> db.searchQuestions(searchTerm));
+    }
+
+    public CompletableFuture<Integer> addAnswer(String content, int questionId, int userId) {
+        return supply(db -> db.addAnswer(content, questionId, userId));
+    }
+
+    public CompletableFuture<List<AnswerData>> getAnswersForQuestion(int questionId) {
+        return supply(db -> db.getAnswersForQuestion(questionId));
+    }
+
+    public CompletableFuture<Void> markAnswerAsResolved(int questionId, int answerId) {
+        return run(db -> db.markAnswerAsResolved(questionId, answerId));
+    }
+
+    public CompletableFuture<Integer> addReviewer(int userId, double weight) {
+        return supply(db -> db.addReviewer(userId, weight));
+    }
+
+    public CompletableFuture<Boolean> deleteReviewer(int userId) {
+        return supply(db -> db.deleteReviewer(userId));
+    }
+
+    public CompletableFuture<List<ReviewerRecord>> getReviewersForUser(int userId) {
+        return supply(db -> db.getReviewersForUser(userId));
+    }
+
+    public CompletableFuture<Void> updateReviewerWeight(int userId, int reviewerId, double weight) {
+        return run(db -> db.updateReviewerWeight(userId, reviewerId, weight));
+    }
+
+    public CompletableFuture<Integer> addReview(int reviewerId, int questionId, int answerId, String content) {
+        return supply(db -> db.addReview(reviewerId, questionId, answerId, content));
+    }
+
+    public CompletableFuture<Integer> updateReview(int reviewId, int reviewerId, int questionId, int answerId, String content) {
+        return supply(db -> db.updateReview(reviewId, reviewerId, questionId, answerId, content));
+    }
+
+    public CompletableFuture<ReviewData> getReviewById(int reviewId) {
+        return supply(db -> db.getReviewById(reviewId));
+    }
+
+    public CompletableFuture<List<ReviewData>> getReviewsForQuestion(int questionId) {
+        return supply(db -> db.getReviewsForQuestion(questionId));
+    }
+
+    public CompletableFuture<List<ReviewData>> getReviewsForAnswer(int answerId) {
+        return supply(db -> db.getReviewsForAnswer(answerId));
+    }
+
+    public CompletableFuture<List<ReviewData>> getReviewsByReviewer(int reviewerId) {
+        return supply(db -> db.getReviewsByReviewer(reviewerId));
+    }
+
+    public CompletableFuture<Boolean> deleteReview(int reviewId, int reviewerId, int questionId, int answerId) {
+        return supply(db -> db.deleteReview(reviewId, reviewerId, questionId, answerId));
+    }
+
+    public CompletableFuture<Void> submitReviewerRequest(int userId, String justification) {
+        return run(db -> db.submitReviewerRequest(userId, justification));
+    }
+
+    public CompletableFuture<List<ReviewerRequest>> getPendingReviewerRequests() {
+        return supply(db -> db.getPendingReviewerRequests());
+    }
+
+    public CompletableFuture<Void> updateReviewerRequestStatus(int requestId, String status, String comments) {
+        return run(db -> db.updateReviewerRequestStatus(requestId, status, comments));
+    }
+
+    public CompletableFuture<Void> addReviewerRole(int userId) {
+        return run(db -> db.addReviewerRole(userId));
+    }
+
+    public CompletableFuture<Void> addFeedback(int answerId, int userId, String content) {
+        return run(db -> db.addFeedback(answerId, userId, content));
+    }
+
+    public CompletableFuture<List<FeedbackData>> getFeedbackForAnswer(int answerId, int userId) {
+        return supply(db -> db.getFeedbackForAnswer(answerId, userId));
+    }
+
+    public CompletableFuture<Integer> getUserId(String userName) {
+        return supply(db -> db.getUserId(userName));
+    }
+
+    public CompletableFuture<String> getUserName(int userId) {
+        return supply(db -> db.getUserName(userId));
+    }
+
+    public CompletableFuture<Map<Integer, String>> getUserNames(Collection<Integer> userIds) {
+        return supply(db -> db.getUserNames(userIds));
+    }
+
+    public CompletableFuture<Map<Integer, String>> getReviewerNames(Collection<Integer> reviewerIds) {
+        return supply(db -> db.getReviewerNames(reviewerIds));
+    }
+
+    public CompletableFuture<Integer> getReviewerId(int userId) {
+        return supply(db -> db.getReviewerId(userId));
+    }
+
+    public CompletableFuture<Integer> sendMessage(int senderId, int receiverId, int relatedQuestionId, int relatedAnswerId, String content) {
+        return supply(db -> db.sendMessage(senderId, receiverId, relatedQuestionId, relatedAnswerId, content));
+    }
+
+    public CompletableFuture<List<MessageData>> getMessagesForUser(int userId) {
+        return supply(db -> db.getMessagesForUser(userId));
+    }
+
+    public CompletableFuture<List<MessageData>> getUnreadMessagesForUser(int userId) {
+        return supply(db -> db.getUnreadMessagesForUser(userId));
+    }
+
+    public CompletableFuture<Boolean> markMessageAsRead(int messageId, int userId) {
+        return supply(db -> db.markMessageAsRead(messageId, userId));
+    }
+
+    public CompletableFuture<Integer> getUnreadMessageCount(int userId) {
+        return supply(db -> db.getUnreadMessageCount(userId));
+    }
+
+    public CompletableFuture<Integer> replyToThread(int threadId, int senderId, String content) {
+        return supply(db -> db.replyToThread(threadId, senderId, content));
+    }
+
+    public CompletableFuture<List<MessageThreadData>> getThreadsForUser(int userId, MessageThreadData cursor, int pageSize) {
+        return supply(db -> db.getThreadsForUser(userId, cursor, pageSize));
+    }
+
+    public CompletableFuture<List<MessageData>> getThreadMessages(int threadId, MessageData before, int pageSize) {
+        return supply(db -> db.getThreadMessages(threadId, before, pageSize));
+    }
+
+    public CompletableFuture<Integer> markThreadAsRead(int threadId, int userId) {
+        return supply(db -> db.markThreadAsRead(threadId, userId));
+    }
+
+    public CompletableFuture<Integer> getQuestionOwnerId(int questionId) {
+        return supply(db -> db.getQuestionOwnerId(questionId));
+    }
+
+    public CompletableFuture<Integer> getAnswerOwnerId(int answerId) {
+        return supply(db -> db.getAnswerOwnerId(answerId));
+    }
+}
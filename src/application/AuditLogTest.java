@@ -0,0 +1,67 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import databasePart1.AuditLog;
+import databasePart1.DatabaseHelper;
+
+/**
+ * Tests that account actions reach the audit log in the order they were recorded, and
+ * that queries see entries that were still queued when they were made.
+ */
+public class AuditLogTest {
+
+    private static final String AUDITED_USER = "audituser";
+
+    private DatabaseHelper databaseHelper;
+    private AuditLog auditLog;
+
+    @Before
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+        auditLog = databaseHelper.getAuditLog();
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.deleteUser(AUDITED_USER);
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void accountActionsAreRecorded() throws SQLException {
+        databaseHelper.register(new User(AUDITED_USER, "Password1!", "student"));
+        int userId = databaseHelper.getUserDirectory().getUserId(AUDITED_USER);
+        databaseHelper.updateUserRoles(AUDITED_USER, List.of("student", "reviewer"), "admin");
+        databaseHelper.deleteUser(AUDITED_USER, "admin");
+
+        List<AuditLog.Entry> entries = auditLog.getEntriesFor("user", userId, 10);
+        assertEquals(3, entries.size());
+        assertEquals(AuditLog.Action.USER_DELETED, entries.get(0).action);
+        assertEquals(AuditLog.Action.ROLES_CHANGED, entries.get(1).action);
+        assertEquals("admin", entries.get(1).actor);
+        assertEquals(AuditLog.Action.USER_REGISTERED, entries.get(2).action);
+        assertFalse("Passwords must not be logged", entries.get(2).details.contains("Password1!"));
+    }
+
+    @Test
+    public void queuedEntriesAreWrittenInBatches() throws SQLException {
+        String actor = "auditor-" + System.nanoTime();
+        long written = auditLog.getWrittenCount();
+        for (int i = 0; i < 500; i++) {
+            assertTrue(auditLog.record(actor, AuditLog.Action.QUESTION_EDITED, "question", i, null));
+        }
+
+        List<AuditLog.Entry> entries = auditLog.query(actor, null, null, -1, null, 1000);
+        assertEquals(500, entries.size());
+        assertTrue(auditLog.getWrittenCount() - written >= 500);
+        assertEquals(0, auditLog.getFailedCount());
+    }
+}
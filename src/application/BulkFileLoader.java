@@ -0,0 +1,516 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * BulkFileLoader reads questions, answers and reviews from CSV or JSON lines files and
+ * inserts them with a BulkLoader. Files are streamed, so they do not need to fit in memory.
+ *
+ * CSV files need a header row naming the columns. JSON lines files hold one flat object
+ * per line. The recognized fields are:
+ *   questions: title, content, userId or userName, createDate (optional)
+ *   answers:   content, questionId, userId or userName, createDate (optional)
+ *   reviews:   reviewerId, questionId (optional, -1), answerId (optional, -1), content
+ * Dates use the "yyyy-MM-dd HH:mm:ss" format, with or without a 'T' between date and time.
+ */
+public class BulkFileLoader {
+
+    public enum Format {
+        CSV, JSON_LINES;
+
+        /**
+         * Picks the format from the file extension, .jsonl or .ndjson for JSON lines and
+         * anything else for CSV
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSON_LINES : CSV;
+        }
+    }
+
+    private final studentDatabase studentDatabaseHelper;
+    private final BulkLoader loader;
+    private final Map<String, Integer> userIds = new HashMap<>();
+
+    public BulkFileLoader(studentDatabase studentDatabaseHelper) {
+        this(studentDatabaseHelper, new BulkLoader(studentDatabaseHelper));
+    }
+
+    public BulkFileLoader(studentDatabase studentDatabaseHelper, BulkLoader loader) {
+        this.studentDatabaseHelper = studentDatabaseHelper;
+        this.loader = loader;
+    }
+
+    public List<Integer> loadQuestions(Path file) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return loadQuestions(reader, Format.forFile(file));
+        }
+    }
+
+    public List<Integer> loadAnswers(Path file) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return loadAnswers(reader, Format.forFile(file));
+        }
+    }
+
+    public List<Integer> loadReviews(Path file) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return loadReviews(reader, Format.forFile(file));
+        }
+    }
+
+    /**
+     * Loads questions from the reader
+     * @return The generated question IDs, in file order
+     */
+    public List<Integer> loadQuestions(Reader reader, Format format) throws IOException, SQLException {
+        return run(() -> loader.addQuestions(rows(reader, format).map(row -> new BulkLoader.QuestionRecord(
+                row.require("title"),
+                row.get("content", ""),
+                userId(row),
+                row.timestamp("createDate")))));
+    }
+
+    /**
+     * Loads answers from the reader
+     * @return The generated answer IDs, in file order
+     */
+    public List<Integer> loadAnswers(Reader reader, Format format) throws IOException, SQLException {
+        return run(() -> loader.addAnswers(rows(reader, format).map(row -> new BulkLoader.AnswerRecord(
+                row.require("content"),
+                row.integer("questionId", null),
+                userId(row),
+                row.timestamp("createDate")))));
+    }
+
+    /**
+     * Loads reviews from the reader
+     * @return The generated review IDs, in file order
+     */
+    public List<Integer> loadReviews(Reader reader, Format format) throws IOException, SQLException {
+        return run(() -> loader.addReviews(rows(reader, format).map(row -> new BulkLoader.ReviewRecord(
+                row.integer("reviewerId", null),
+                row.integer("questionId", -1),
+                row.integer("answerId", -1),
+                row.require("content")))));
+    }
+
+    @FunctionalInterface
+    private interface Load {
+        List<Integer> run() throws SQLException;
+    }
+
+    // A file that could not be read is reported as an IOException, still saying how many
+    // records were committed
+    private static List<Integer> run(Load load) throws IOException, SQLException {
+        try {
+            return load.run();
+        } catch (SQLException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new IOException(e.getMessage(), cause);
+            }
+            throw e;
+        }
+    }
+
+    // Uses the userId field if the row has one, and otherwise looks the userName up
+    private int userId(Row row) {
+        String id = row.get("userId", "");
+        if (!id.isBlank()) {
+            return row.integer("userId", null);
+        }
+        String userName = row.require("userName");
+        Integer cached = userIds.get(userName);
+        if (cached == null) {
+            try {
+                cached = studentDatabaseHelper.getUserId(userName);
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+            if (cached < 0) {
+                throw new IllegalArgumentException("Line " + row.line + ": unknown user " + userName);
+            }
+            userIds.put(userName, cached);
+        }
+        return cached;
+    }
+
+    private static Stream<Row> rows(Reader reader, Format format) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rowIterator(reader, format),
+                Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Returns the rows of the reader one at a time. A malformed record makes hasNext throw an
+     * IllegalArgumentException naming its line, and calling hasNext again continues after it.
+     * Also used by AccountImporter.
+     */
+    static RowIterator rowIterator(Reader reader, Format format) {
+        BufferedReader buffered = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+        return format == Format.CSV ? new CsvRows(buffered) : new JsonRows(buffered);
+    }
+
+    /**
+     * One record of a file, as field name to text value
+     */
+    static final class Row {
+        final int line;
+        final Map<String, String> values;
+
+        Row(int line, Map<String, String> values) {
+            this.line = line;
+            this.values = values;
+        }
+
+        String get(String field, String defaultValue) {
+            String value = values.get(field);
+            return value == null ? defaultValue : value;
+        }
+
+        String require(String field) {
+            String value = values.get(field);
+            if (value == null) {
+                throw new IllegalArgumentException("Line " + line + ": missing " + field);
+            }
+            return value;
+        }
+
+        int integer(String field, Integer defaultValue) {
+            String value = values.get(field);
+            if (value == null || value.isEmpty()) {
+                if (defaultValue == null) {
+                    throw new IllegalArgumentException("Line " + line + ": missing " + field);
+                }
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + line + ": " + field + " is not a number: " + value);
+            }
+        }
+
+        Timestamp timestamp(String field) {
+            String value = values.get(field);
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            try {
+                return Timestamp.valueOf(value.trim().replace('T', ' '));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + line + ": " + field + " is not a date: " + value);
+            }
+        }
+    }
+
+    /**
+     * Base for the line oriented readers, which read one row ahead
+     */
+    abstract static class RowIterator implements Iterator<Row> {
+        final BufferedReader reader;
+        int lineNumber = 0;
+        private Row next;
+        private boolean done = false;
+
+        RowIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        // Returns the next row, or null at the end of the input
+        abstract Row read() throws IOException;
+
+        String readLine() throws IOException {
+            String line = reader.readLine();
+            if (line != null) {
+                lineNumber++;
+            }
+            return line;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row row = next;
+            next = null;
+            return row;
+        }
+    }
+
+    /**
+     * Reads CSV with a header row. Fields may be quoted with double quotes, in which case
+     * they can contain commas, line breaks and doubled quotes.
+     */
+    private static final class CsvRows extends RowIterator {
+        private List<String> header;
+
+        CsvRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        Row read() throws IOException {
+            if (header == null) {
+                header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                // Drop a byte order mark left by spreadsheet exports
+                if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                    header.set(0, header.get(0).substring(1));
+                }
+            }
+            List<String> fields;
+            do {
+                fields = readRecord();
+            } while (fields != null && fields.size() == 1 && fields.get(0).isEmpty());
+            if (fields == null) {
+                return null;
+            }
+            if (fields.size() != header.size()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + header.size()
+                        + " fields but found " + fields.size());
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                values.put(header.get(i).trim(), fields.get(i));
+            }
+            return new Row(lineNumber, values);
+        }
+
+        private List<String> readRecord() throws IOException {
+            String line = readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    // A quoted field continues on the next line
+                    line = readLine();
+                    if (line == null) {
+                        throw new IllegalArgumentException("Line " + lineNumber + ": unterminated quoted field");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * Reads one flat JSON object per line. Values may be strings, numbers, booleans or
+     * null; nested objects and arrays are rejected.
+     */
+    private static final class JsonRows extends RowIterator {
+        private String text;
+        private int pos;
+
+        JsonRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        Row read() throws IOException {
+            String line;
+            do {
+                line = readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            text = line;
+            pos = 0;
+
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    String key = string();
+                    expect(':');
+                    values.put(key, value());
+                    skipSpace();
+                    char c = advance();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("expected ',' or '}'");
+                    }
+                }
+            }
+            skipSpace();
+            if (pos != text.length()) {
+                throw error("unexpected text after object");
+            }
+            return new Row(lineNumber, values);
+        }
+
+        private String value() {
+            skipSpace();
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) {
+                return literal;
+            }
+            // Point at the start of the value rather than past it
+            pos = start;
+            throw error("unsupported value " + (literal.isEmpty() ? String.valueOf(c) : literal));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = advance();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escape = advance();
+                switch (escape) {
+                    case '"': case '\\': case '/': value.append(escape); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("truncated unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad unicode escape \\u" + text.substring(pos, pos + 4));
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape \\" + escape);
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            skipSpace();
+            if (advance() != expected) {
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("unexpected end of line");
+            }
+            return text.charAt(pos);
+        }
+
+        private char advance() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Line " + lineNumber + ", column " + (pos + 1) + ": " + message);
+        }
+    }
+
+    private static final class UncheckedSQLException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedSQLException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
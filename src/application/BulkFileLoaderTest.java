@@ -0,0 +1,112 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the CSV and JSON lines readers of BulkFileLoader: quoting, fields spanning
+ * lines, escapes, and errors that name the line and let reading continue.
+ */
+public class BulkFileLoaderTest {
+
+    private static BulkFileLoader.RowIterator rows(String text, BulkFileLoader.Format format) {
+        return BulkFileLoader.rowIterator(new StringReader(text), format);
+    }
+
+    @Test
+    public void csvHandlesQuotesAndLineBreaks() {
+        String csv = "\uFEFFtitle,content\n"
+                + "Plain,Text\n"
+                + "\"With, comma\",\"Say \"\"hi\"\"\"\n"
+                + "\n"
+                + "Multi,\"First line\n"
+                + "second line\"\n"
+                + "Empty,\n";
+        BulkFileLoader.RowIterator it = rows(csv, BulkFileLoader.Format.CSV);
+
+        BulkFileLoader.Row row = it.next();
+        assertEquals(2, row.line);
+        assertEquals("Plain", row.get("title", null));
+        row = it.next();
+        assertEquals("With, comma", row.get("title", null));
+        assertEquals("Say \"hi\"", row.get("content", null));
+        row = it.next();
+        assertEquals("A record is numbered by the line it ends on", 6, row.line);
+        assertEquals("First line\nsecond line", row.get("content", null));
+        row = it.next();
+        assertEquals("", row.get("content", null));
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void csvErrorsNameTheLineAndReadingContinues() {
+        String csv = "title,content\n"
+                + "One,Two,Three\n"
+                + "Good,Row\n"
+                + "Open,\"never closed\n";
+        BulkFileLoader.RowIterator it = rows(csv, BulkFileLoader.Format.CSV);
+
+        assertEquals("Line 2: expected 2 fields but found 3", message(it));
+        assertEquals("Good", it.next().get("title", null));
+        assertEquals("Line 4: unterminated quoted field", message(it));
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void jsonLinesDecodesEscapesAndLiterals() {
+        String jsonLines = "{\"title\": \"Tab\\there \\\"quoted\\\" \\u00e9\\\\\", \"userId\": 7, "
+                + "\"ok\": true, \"gone\": null}\n"
+                + "   \n"
+                + "{}\n";
+        BulkFileLoader.RowIterator it = rows(jsonLines, BulkFileLoader.Format.JSON_LINES);
+
+        BulkFileLoader.Row row = it.next();
+        assertEquals("Tab\there \"quoted\" \u00e9\\", row.get("title", null));
+        assertEquals(7, row.integer("userId", null));
+        assertEquals("true", row.get("ok", null));
+        assertNull(row.get("gone", null));
+        row = it.next();
+        assertEquals(3, row.line);
+        assertTrue(row.values.isEmpty());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void jsonLinesErrorsNameTheLineAndColumn() {
+        String jsonLines = "{\"title\": [1]}\n"
+                + "{\"title\": \"\\q\"}\n"
+                + "{\"title\": \"\\u12G4\"}\n"
+                + "{\"title\": \"x\"} trailing\n"
+                + "{\"title\": \"unterminated\n"
+                + "{\"title\": \"last\"}\n";
+        BulkFileLoader.RowIterator it = rows(jsonLines, BulkFileLoader.Format.JSON_LINES);
+
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            errors.add(message(it));
+        }
+        assertEquals(List.of(
+                "Line 1, column 11: unsupported value [1]",
+                "Line 2, column 14: bad escape \\q",
+                "Line 3, column 14: bad unicode escape \\u12G4",
+                "Line 4, column 16: unexpected text after object",
+                "Line 5, column 24: unexpected end of line"), errors);
+        assertEquals("last", it.next().get("title", null));
+        assertFalse(it.hasNext());
+    }
+
+    // Returns the message of the error reading the next row
+    private static String message(BulkFileLoader.RowIterator it) {
+        try {
+            it.hasNext();
+            fail("Expected a malformed record");
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package application;
+
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import databasePart1.ConnectionPool;
+
+/**
+ * BulkLoader inserts large numbers of questions, answers and reviews using JDBC batches.
+ * Records are taken from a stream in chunks, each chunk is sent as one batch inside its
+ * own transaction, and the generated IDs are returned in the same order as the records.
+ *
+ * The answer and review counters on questions, the question search index, the entity
+ * caches and the change feed are kept up to date the same way the single row methods of
+ * studentDatabase keep them.
+ *
+ * If a chunk fails it is rolled back, but chunks committed before it stay in the
+ * database. The same goes for a record that cannot be read, such as a malformed line of
+ * a file. Either way an SQLException is thrown whose message says how many records were
+ * committed and whose cause is the original failure.
+ */
+public class BulkLoader {
+    public static final int DEFAULT_CHUNK_SIZE =
+            Integer.getInteger("cse360.bulk.chunkSize", 1000);
+
+    private final studentDatabase studentDatabaseHelper;
+    private final int chunkSize;
+
+    public BulkLoader(studentDatabase studentDatabaseHelper) {
+        this(studentDatabaseHelper, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkLoader(studentDatabase studentDatabaseHelper, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.studentDatabaseHelper = studentDatabaseHelper;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * A question to insert. A null createDate means the time of insertion.
+     */
+    public static class QuestionRecord {
+        public final String title;
+        public final String content;
+        public final int userId;
+        public final Timestamp createDate;
+
+        public QuestionRecord(String title, String content, int userId, Timestamp createDate) {
+            this.title = title;
+            this.content = content;
+            this.userId = userId;
+            this.createDate = createDate;
+        }
+
+        public QuestionRecord(String title, String content, int userId) {
+            this(title, content, userId, null);
+        }
+    }
+
+    /**
+     * An answer to insert. A null createDate means the time of insertion.
+     */
+    public static class AnswerRecord {
+        public final String content;
+        public final int questionId;
+        public final int userId;
+        public final Timestamp createDate;
+
+        public AnswerRecord(String content, int questionId, int userId, Timestamp createDate) {
+            this.content = content;
+            this.questionId = questionId;
+            this.userId = userId;
+            this.createDate = createDate;
+        }
+
+        public AnswerRecord(String content, int questionId, int userId) {
+            this(content, questionId, userId, null);
+        }
+    }
+
+    /**
+     * A review to insert. Reviews of answers use -1 as the questionId, like addReview.
+     */
+    public static class ReviewRecord {
+        public final int reviewerId;
+        public final int questionId;
+        public final int answerId;
+        public final String content;
+
+        public ReviewRecord(int reviewerId, int questionId, int answerId, String content) {
+            this.reviewerId = reviewerId;
+            this.questionId = questionId;
+            this.answerId = answerId;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Inserts questions in batches
+     * @param records The questions to insert
+     * @return The generated question IDs, in record order
+     * @throws SQLException
+     */
+    public List<Integer> addQuestions(Stream<QuestionRecord> records) throws SQLException {
+        String query = "INSERT INTO questions (title, content, userId, createDate) "
+                + "VALUES (?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+        QuestionSearchIndex searchIndex = studentDatabaseHelper.getSearchIndex();
+
+        return load(records, (connection, chunk) -> {
+            List<Integer> ids;
+            try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (QuestionRecord record : chunk) {
+                    pstmt.setString(1, record.title);
+                    pstmt.setString(2, record.content);
+                    pstmt.setInt(3, record.userId);
+                    setTimestamp(pstmt, 4, record.createDate);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                ids = generatedKeys(pstmt, chunk.size());
+            }
+            return ids;
+        }, (chunk, ids) -> {
+            for (int i = 0; i < chunk.size(); i++) {
+                searchIndex.put(ids.get(i), chunk.get(i).title, chunk.get(i).content);
+            }
+            studentDatabaseHelper.getChangeFeed().publish(ChangeFeed.Change.reload(ChangeFeed.Table.QUESTIONS));
+        });
+    }
+
+    /**
+     * Inserts answers in batches and adds them to the answer counts of their questions
+     * @param records The answers to insert
+     * @return The generated answer IDs, in record order
+     * @throws SQLException
+     */
+    public List<Integer> addAnswers(Stream<AnswerRecord> records) throws SQLException {
+        String query = "INSERT INTO answers (content, questionId, userId, createDate) "
+                + "VALUES (?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+        String incrementCount = "UPDATE questions SET answerCount = answerCount + ? WHERE id = ?";
+
+        return load(records, (connection, chunk) -> {
+            List<Integer> ids;
+            Map<Integer, Integer> perQuestion = new HashMap<>();
+            try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (AnswerRecord record : chunk) {
+                    pstmt.setString(1, record.content);
+                    pstmt.setInt(2, record.questionId);
+                    pstmt.setInt(3, record.userId);
+                    setTimestamp(pstmt, 4, record.createDate);
+                    pstmt.addBatch();
+                    perQuestion.merge(record.questionId, 1, Integer::sum);
+                }
+                pstmt.executeBatch();
+                ids = generatedKeys(pstmt, chunk.size());
+            }
+            addToCounters(connection, incrementCount, perQuestion);
+            return ids;
+        }, this::invalidateQuestions);
+    }
+
+    /**
+     * Inserts reviews in batches and adds them to the review counts of their questions
+     * @param records The reviews to insert
+     * @return The generated review IDs, in record order
+     * @throws SQLException
+     */
+    public List<Integer> addReviews(Stream<ReviewRecord> records) throws SQLException {
+        String query = "INSERT INTO reviews (reviewerId, questionId, answerId, content) VALUES (?, ?, ?, ?)";
+        String incrementCount = "UPDATE questions SET reviewCount = reviewCount + ? WHERE id = ?";
+
+        return load(records, (connection, chunk) -> {
+            List<Integer> ids;
+            Map<Integer, Integer> perQuestion = new HashMap<>();
+            try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (ReviewRecord record : chunk) {
+                    pstmt.setInt(1, record.reviewerId);
+                    pstmt.setInt(2, record.questionId);
+                    pstmt.setInt(3, record.answerId);
+                    pstmt.setString(4, record.content);
+                    pstmt.addBatch();
+                    if (record.questionId > 0) {
+                        perQuestion.merge(record.questionId, 1, Integer::sum);
+                    }
+                }
+                pstmt.executeBatch();
+                ids = generatedKeys(pstmt, chunk.size());
+            }
+            addToCounters(connection, incrementCount, perQuestion);
+            return ids;
+        }, this::invalidateQuestions);
+    }
+
+    // Inserts one chunk on a connection that is already inside a transaction
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+        List<Integer> write(Connection connection, List<T> chunk) throws SQLException;
+    }
+
+    // Runs after a chunk has been committed
+    @FunctionalInterface
+    private interface ChunkCommitted<T> {
+        void committed(List<T> chunk, List<Integer> ids);
+    }
+
+    private <T> List<Integer> load(Stream<T> records, ChunkWriter<T> writer, ChunkCommitted<T> onCommit)
+            throws SQLException {
+        ConnectionPool pool = studentDatabaseHelper.getConnectionPool();
+        List<Integer> ids = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(chunkSize);
+
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            Iterator<T> iterator = records.iterator();
+            boolean more = hasNext(iterator, ids.size());
+            while (more) {
+                chunk.add(next(iterator, ids.size()));
+                more = hasNext(iterator, ids.size());
+                if (chunk.size() == chunkSize || !more) {
+                    List<Integer> chunkIds;
+                    try {
+                        chunkIds = writer.write(connection, chunk);
+                        connection.commit();
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        throw failed(ids.size(), e);
+                    }
+                    if (onCommit != null) {
+                        onCommit.committed(chunk, chunkIds);
+                    }
+                    ids.addAll(chunkIds);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Records are produced lazily, so reading one can fail like a chunk can, for example on
+    // a malformed line of a file. Nothing of the current chunk has been written yet then.
+    private static boolean hasNext(Iterator<?> iterator, int committed) throws SQLException {
+        try {
+            return iterator.hasNext();
+        } catch (RuntimeException e) {
+            throw failed(committed, e);
+        }
+    }
+
+    private static <T> T next(Iterator<T> iterator, int committed) throws SQLException {
+        try {
+            return iterator.next();
+        } catch (RuntimeException e) {
+            throw failed(committed, e);
+        }
+    }
+
+    // Unwraps the checked exceptions that had to be tunnelled through the iterator
+    private static SQLException failed(int committed, Exception e) {
+        Throwable cause = e instanceof UncheckedIOException || e.getCause() instanceof SQLException
+                ? e.getCause() : e;
+        return new SQLException("Bulk load failed after " + committed
+                + " records were committed: " + cause.getMessage(), cause);
+    }
+
+    // The counters of these questions changed, so cached copies are stale, and listeners are told
+    private void invalidateQuestions(List<?> chunk, List<Integer> ids) {
+        List<Integer> questionIds = new ArrayList<>();
+        for (Object record : chunk) {
+            if (record instanceof AnswerRecord answer) {
+                questionIds.add(answer.questionId);
+            } else if (record instanceof ReviewRecord review && review.questionId > 0) {
+                questionIds.add(review.questionId);
+            }
+        }
+        studentDatabaseHelper.getQuestionCache().invalidateAll(questionIds);
+
+        // One change per chunk rather than per record keeps listeners from being flooded
+        ChangeFeed.Table table = chunk.get(0) instanceof AnswerRecord ? ChangeFeed.Table.ANSWERS : ChangeFeed.Table.REVIEWS;
+        studentDatabaseHelper.getChangeFeed().publish(ChangeFeed.Change.reload(table));
+    }
+
+    // Also used by DatasetGenerator for its batch of users
+    static List<Integer> generatedKeys(PreparedStatement pstmt, int expected) throws SQLException {
+        List<Integer> ids = new ArrayList<>(expected);
+        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        if (ids.size() != expected) {
+            throw new SQLException("Expected " + expected + " generated keys but got " + ids.size());
+        }
+        return ids;
+    }
+
+    private static void addToCounters(Connection connection, String query, Map<Integer, Integer> perQuestion)
+            throws SQLException {
+        if (perQuestion.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (Map.Entry<Integer, Integer> entry : perQuestion.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setInt(2, entry.getKey());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement pstmt, int index, Timestamp value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.TIMESTAMP);
+        } else {
+            pstmt.setTimestamp(index, value);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import databasePart1.UserDirectory;
+
+/**
+ * Tests that bulk loads return IDs in record order across chunk boundaries, keep the
+ * question counters current, and say how much was committed when a record fails.
+ */
+public class BulkLoaderTest {
+
+    private studentDatabase dbHelper;
+    private BulkLoader loader;
+    private int testUserId;
+    private int testReviewerId;
+    private final List<Integer> questionIds = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        dbHelper = new studentDatabase();
+        dbHelper.connectToDatabase();
+        testUserId = dbHelper.getUserId("testuser");
+        testReviewerId = dbHelper.addReviewer(testUserId, 1.0);
+        loader = new BulkLoader(dbHelper, 3);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        for (int questionId : questionIds) {
+            dbHelper.deleteQuestion(questionId);
+        }
+        try (Connection connection = dbHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("DELETE FROM reviewers WHERE id = ?")) {
+            pstmt.setInt(1, testReviewerId);
+            pstmt.executeUpdate();
+        }
+        UserDirectory.forPool(dbHelper.getConnectionPool()).invalidate();
+        dbHelper.closeConnection();
+    }
+
+    @Test
+    public void idsFollowRecordOrderAcrossChunks() throws SQLException {
+        List<Integer> ids = loader.addQuestions(IntStream.range(0, 8).mapToObj(i ->
+                new BulkLoader.QuestionRecord("Bulk question " + i, "Bulk content", testUserId)));
+        questionIds.addAll(ids);
+
+        assertEquals(8, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals("Bulk question " + i, dbHelper.getQuestionById(ids.get(i)).title);
+        }
+        assertTrue(loader.addQuestions(Stream.empty()).isEmpty());
+    }
+
+    @Test
+    public void answersAndReviewsUpdateTheCounters() throws SQLException {
+        int first = dbHelper.addQuestion("Bulk counter question 1", "Bulk content", testUserId);
+        int second = dbHelper.addQuestion("Bulk counter question 2", "Bulk content", testUserId);
+        questionIds.add(first);
+        questionIds.add(second);
+        // Warm the cache so a stale counter would show
+        dbHelper.getQuestionById(first);
+
+        List<Integer> answerIds = loader.addAnswers(Stream.of(
+                new BulkLoader.AnswerRecord("Answer 1", first, testUserId),
+                new BulkLoader.AnswerRecord("Answer 2", second, testUserId),
+                new BulkLoader.AnswerRecord("Answer 3", first, testUserId),
+                new BulkLoader.AnswerRecord("Answer 4", first, testUserId)));
+        loader.addReviews(Stream.of(
+                new BulkLoader.ReviewRecord(testReviewerId, first, -1, "Question review"),
+                new BulkLoader.ReviewRecord(testReviewerId, -1, answerIds.get(1), "Answer review")));
+
+        assertEquals(3, dbHelper.getQuestionById(first).answerCount);
+        assertEquals(1, dbHelper.getQuestionById(second).answerCount);
+        assertEquals(1, dbHelper.getQuestionById(first).reviewCount);
+        assertEquals("Answer 4", dbHelper.getAnswerById(answerIds.get(3)).content);
+    }
+
+    @Test
+    public void aBadRecordReportsWhatWasCommitted() throws Exception {
+        String tag = "bulkfile" + System.nanoTime();
+        String csv = "title,content,userName\n"
+                + tag + " 1,One,testuser\n"
+                + tag + " 2,Two,testuser\n"
+                + tag + " 3,Three,testuser\n"
+                + tag + " 4,Four,testuser\n"
+                + tag + " 5,Five\n";
+        try {
+            new BulkFileLoader(dbHelper, loader).loadQuestions(new StringReader(csv), BulkFileLoader.Format.CSV);
+            fail("The short line should fail the load");
+        } catch (SQLException e) {
+            assertEquals("Bulk load failed after 3 records were committed: "
+                    + "Line 6: expected 3 fields but found 2", e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        for (QuestionData question : dbHelper.searchQuestions(tag)) {
+            questionIds.add(question.id);
+        }
+        assertEquals("The first chunk stays committed", 3, questionIds.size());
+    }
+
+    @Test
+    public void aBlankUserIdFallsBackToTheUserName() throws Exception {
+        String csv = "title,content,userId,userName\n"
+                + "Blank id,Content,,testuser\n"
+                + "Given id,Content," + testUserId + ",\n";
+        List<Integer> ids = new BulkFileLoader(dbHelper, loader).loadQuestions(new StringReader(csv), BulkFileLoader.Format.CSV);
+        questionIds.addAll(ids);
+
+        assertEquals(2, ids.size());
+        for (int id : ids) {
+            assertEquals("testuser", dbHelper.getQuestionById(id).userName);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import databasePart1.DatabaseHelper;
+
+/**
+ * Tests that deleting a question or a user removes every row that refers to it and keeps
+ * the counters on other users' questions correct.
+ */
+public class CascadeDeleteTest {
+
+    private static final String DOOMED_USER = "cascadeuser";
+
+    private studentDatabase dbHelper;
+    private DatabaseHelper databaseHelper;
+    private int testUserId;
+    private int testQuestionId;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbHelper = new studentDatabase();
+        dbHelper.connectToDatabase();
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+
+        testUserId = dbHelper.getUserId("testuser");
+        testQuestionId = dbHelper.addQuestion("Cascade question", "Cascade content", testUserId);
+    }
+
+    /**
+     * Removes the extra user, with anything a failed test left behind
+     */
+    @After
+    public void tearDown() {
+        try {
+            databaseHelper.deleteUser(DOOMED_USER);
+            dbHelper.deleteQuestion(testQuestionId);
+            dbHelper.closeConnection();
+            databaseHelper.closeConnection();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void deleteQuestionRemovesDependentRows() throws SQLException {
+        databaseHelper.register(new User(DOOMED_USER, "Password1!", "student"));
+        int reviewerId = dbHelper.addReviewer(dbHelper.getUserId(DOOMED_USER), 1.0);
+        int answerId = dbHelper.addAnswer("Cascade answer", testQuestionId, testUserId);
+        dbHelper.addReview(reviewerId, testQuestionId, -1, "Question review");
+        dbHelper.addReview(reviewerId, -1, answerId, "Answer review");
+        dbHelper.addFeedback(answerId, testUserId, "Cascade feedback");
+        dbHelper.sendMessage(testUserId, testUserId, testQuestionId, answerId, "Cascade message");
+
+        CascadeDeleter.Report report = dbHelper.deleteQuestion(testQuestionId);
+
+        assertEquals(1, report.getCount("questions"));
+        assertEquals(1, report.getCount("answers"));
+        assertEquals(2, report.getCount("reviews"));
+        assertEquals(1, report.getCount("feedback"));
+        assertEquals(1, report.getCount("messages"));
+        assertNull(dbHelper.getQuestionById(testQuestionId));
+        assertNull(dbHelper.getAnswerById(answerId));
+    }
+
+    @Test
+    public void deleteUserRemovesHistoryAndFixesCounters() throws SQLException {
+        databaseHelper.register(new User(DOOMED_USER, "Password1!", "student"));
+        int userId = dbHelper.getUserId(DOOMED_USER);
+        int reviewerId = dbHelper.addReviewer(userId, 1.0);
+
+        int ownQuestionId = dbHelper.addQuestion("Doomed question", "Doomed content", userId);
+        dbHelper.addAnswer("Answer on own question", ownQuestionId, testUserId);
+        dbHelper.addAnswer("Answer on other question", testQuestionId, userId);
+        dbHelper.addReview(reviewerId, testQuestionId, -1, "Review on other question");
+        dbHelper.sendMessage(testUserId, userId, testQuestionId, -1, "Message to doomed user");
+
+        CascadeDeleter.Report report = databaseHelper.deleteUser(DOOMED_USER);
+
+        assertEquals(1, report.getCount("cse360users"));
+        assertEquals(1, report.getCount("questions"));
+        assertEquals(2, report.getCount("answers"));
+        assertEquals(1, report.getCount("reviews"));
+        assertEquals(1, report.getCount("reviewers"));
+        assertEquals(1, report.getCount("messages"));
+        assertEquals(1, report.getCount("user_roles"));
+        assertFalse(databaseHelper.doesUserExist(DOOMED_USER));
+        assertNull(dbHelper.getQuestionById(ownQuestionId));
+
+        QuestionData question = dbHelper.getQuestionById(testQuestionId);
+        assertEquals(0, question.answerCount);
+        assertEquals(0, question.reviewCount);
+    }
+}
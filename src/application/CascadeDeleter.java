@@ -0,0 +1,337 @@
+package application;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import databasePart1.ConnectionPool;
+import databasePart1.UserDirectory;
+
+/**
+ * CascadeDeleter removes a question or a user together with every row that refers to it.
+ * The whole delete runs in one transaction, so either everything goes or nothing does.
+ *
+ * The IDs of dependent rows are collected first and then deleted table by table with
+ * set-based statements over chunks of IDs, so a user with a very long history does not
+ * turn into one statement per row or one statement with an unbounded parameter list.
+ *
+ * After the commit the question search index, the entity caches and the user directory
+ * are updated, and a Report says how many rows were removed from each table.
+ */
+public class CascadeDeleter {
+    public static final int DEFAULT_CHUNK_SIZE =
+            Integer.getInteger("cse360.cascade.chunkSize", 1000);
+
+    private final ConnectionPool pool;
+    private final int chunkSize;
+
+    public CascadeDeleter(ConnectionPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CascadeDeleter(ConnectionPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The number of rows removed from each table, in the order the tables were visited.
+     * Tables with nothing to remove are still listed with a count of 0.
+     */
+    public static class Report {
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+        void add(String table, int rows) {
+            counts.merge(table, rows, Integer::sum);
+        }
+
+        public int getCount(String table) {
+            return counts.getOrDefault(table, 0);
+        }
+
+        public int getTotal() {
+            int total = 0;
+            for (int rows : counts.values()) {
+                total += rows;
+            }
+            return total;
+        }
+
+        public Map<String, Integer> getCounts() {
+            return Collections.unmodifiableMap(counts);
+        }
+
+        @Override
+        public String toString() {
+            return counts.toString();
+        }
+    }
+
+    // What a delete touched besides the rows it removed, applied after the commit
+    private static class Affected {
+        final Set<Integer> deletedQuestions = new LinkedHashSet<>();
+        final Set<Integer> deletedAnswers = new LinkedHashSet<>();
+        final Set<Integer> changedQuestions = new LinkedHashSet<>();
+        boolean reviewsDeleted = false;
+    }
+
+    /**
+     * Deletes a question with its answers and everything that refers to either
+     * @param questionId The question to delete
+     * @return The rows removed per table
+     * @throws SQLException
+     */
+    public Report deleteQuestion(int questionId) throws SQLException {
+        Report report = new Report();
+        Affected affected = new Affected();
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                deleteQuestions(connection, List.of(questionId), report, affected);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        applyToCaches(affected);
+        publishChanges(affected, report);
+        return report;
+    }
+
+    /**
+     * Deletes a user along with their questions, answers, reviewer rows and the reviews
+     * written under them, feedback, messages and their threads, reviewer requests, roles and
+     * one-time password.
+     * Answer and review counters on other users' questions are lowered to match.
+     * @param userName The user to delete
+     * @return The rows removed per table, empty if there is no such user
+     * @throws SQLException
+     */
+    public Report deleteUser(String userName) throws SQLException {
+        Report report = new Report();
+        Affected affected = new Affected();
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                List<Integer> found = selectIds(connection, "SELECT id FROM cse360users WHERE userName = ?", userName);
+                if (found.isEmpty()) {
+                    connection.rollback();
+                    return report;
+                }
+                int userId = found.get(0);
+
+                // The user's own questions go with everything under them
+                deleteQuestions(connection,
+                        selectIds(connection, "SELECT id FROM questions WHERE userId = ?", userId), report, affected);
+
+                // Answers on other users' questions lower those questions' counters
+                List<Integer> answerIds = selectIds(connection, "SELECT id FROM answers WHERE userId = ?", userId);
+                affected.changedQuestions.addAll(selectIdsIn(connection,
+                        "SELECT DISTINCT questionId FROM answers WHERE id = ANY(?)", answerIds));
+                updateIn(connection, "UPDATE questions q SET answerCount = answerCount - "
+                        + "(SELECT COUNT(*) FROM answers a WHERE a.questionId = q.id AND a.id = ANY(?)) "
+                        + "WHERE id IN (SELECT questionId FROM answers WHERE id = ANY(?))", answerIds);
+                updateIn(connection, "UPDATE questions SET resolved = FALSE, resolvedAnswerId = NULL "
+                        + "WHERE resolvedAnswerId = ANY(?)", answerIds);
+                deleteAnswers(connection, answerIds, report, affected);
+
+                // Reviews written as a reviewer, then the reviewer rows themselves
+                List<Integer> reviewerIds = selectIds(connection, "SELECT id FROM reviewers WHERE userId = ?", userId);
+                affected.changedQuestions.addAll(selectIdsIn(connection,
+                        "SELECT DISTINCT questionId FROM reviews WHERE reviewerId = ANY(?) AND questionId > 0", reviewerIds));
+                updateIn(connection, "UPDATE questions q SET reviewCount = reviewCount - "
+                        + "(SELECT COUNT(*) FROM reviews r WHERE r.questionId = q.id AND r.reviewerId = ANY(?)) "
+                        + "WHERE id IN (SELECT questionId FROM reviews WHERE reviewerId = ANY(?))", reviewerIds);
+                deleteReviews(connection, "DELETE FROM reviews WHERE reviewerId = ANY(?)", reviewerIds, report, affected);
+                report.add("trusted_reviewers", updateIn(connection,
+                        "DELETE FROM trusted_reviewers WHERE reviewerId = ANY(?)", reviewerIds));
+                report.add("trusted_reviewers", update(connection,
+                        "DELETE FROM trusted_reviewers WHERE userId = ?", userId));
+                report.add("reviewers", update(connection, "DELETE FROM reviewers WHERE userId = ?", userId));
+
+                report.add("feedback", update(connection, "DELETE FROM feedback WHERE userId = ?", userId));
+                update(connection, "UPDATE unread_counts u SET unreadCount = unreadCount - "
+                        + "(SELECT COUNT(*) FROM messages m WHERE m.receiverId = u.userId AND m.isRead = FALSE AND m.senderId = ?) "
+                        + "WHERE userId IN (SELECT receiverId FROM messages WHERE isRead = FALSE AND senderId = ?)", userId, userId);
+                report.add("messages", update(connection,
+                        "DELETE FROM messages WHERE senderId = ? OR receiverId = ?", userId, userId));
+                report.add("message_threads", update(connection,
+                        "DELETE FROM message_threads WHERE userLow = ? OR userHigh = ?", userId, userId));
+                report.add("unread_counts", update(connection, "DELETE FROM unread_counts WHERE userId = ?", userId));
+                report.add("reviewer_requests", update(connection,
+                        "DELETE FROM reviewer_requests WHERE user_id = ?", userId));
+                report.add("user_roles", update(connection, "DELETE FROM user_roles WHERE userId = ?", userId));
+                report.add("OneTimePasswords", update(connection,
+                        "DELETE FROM OneTimePasswords WHERE userName = ?", userName));
+                report.add("cse360users", update(connection, "DELETE FROM cse360users WHERE id = ?", userId));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        applyToCaches(affected);
+        UserDirectory.forPool(pool).userRemoved(userName);
+        // A user's history can be any size, so listeners reload instead of getting each row
+        ChangeFeed changeFeed = PoolState.forPool(pool).changeFeed;
+        for (ChangeFeed.Table table : ChangeFeed.Table.values()) {
+            changeFeed.publish(ChangeFeed.Change.reload(table));
+        }
+        return report;
+    }
+
+    // Deletes the questions, their answers and every row that refers to either
+    private void deleteQuestions(Connection connection, List<Integer> questionIds, Report report, Affected affected)
+            throws SQLException {
+        List<Integer> answerIds = selectIdsIn(connection, "SELECT id FROM answers WHERE questionId = ANY(?)", questionIds);
+        deleteAnswers(connection, answerIds, report, affected);
+
+        deleteReviews(connection, "DELETE FROM reviews WHERE questionId = ANY(?)", questionIds, report, affected);
+        deleteMessages(connection, "relatedQuestionId = ANY(?)", questionIds, report);
+        report.add("questions", updateIn(connection, "DELETE FROM questions WHERE id = ANY(?)", questionIds));
+        affected.deletedQuestions.addAll(questionIds);
+    }
+
+    // Deletes the answers and every row that refers to them. Counters are left to the caller.
+    private void deleteAnswers(Connection connection, List<Integer> answerIds, Report report, Affected affected)
+            throws SQLException {
+        deleteReviews(connection, "DELETE FROM reviews WHERE answerId = ANY(?)", answerIds, report, affected);
+        report.add("feedback", updateIn(connection, "DELETE FROM feedback WHERE answerId = ANY(?)", answerIds));
+        deleteMessages(connection, "relatedAnswerId = ANY(?)", answerIds, report);
+        report.add("answers", updateIn(connection, "DELETE FROM answers WHERE id = ANY(?)", answerIds));
+        affected.deletedAnswers.addAll(answerIds);
+    }
+
+    private void deleteReviews(Connection connection, String query, List<Integer> ids, Report report, Affected affected)
+            throws SQLException {
+        int rows = updateIn(connection, query, ids);
+        report.add("reviews", rows);
+        affected.reviewsDeleted |= rows > 0;
+    }
+
+    // Deletes the messages matching the condition, lowering their receivers' unread counters first
+    private void deleteMessages(Connection connection, String condition, List<Integer> ids, Report report)
+            throws SQLException {
+        updateIn(connection, "UPDATE unread_counts u SET unreadCount = unreadCount - "
+                + "(SELECT COUNT(*) FROM messages m WHERE m.receiverId = u.userId AND m.isRead = FALSE AND m." + condition + ") "
+                + "WHERE userId IN (SELECT receiverId FROM messages m WHERE m.isRead = FALSE AND m." + condition + ")", ids);
+        report.add("messages", updateIn(connection, "DELETE FROM messages m WHERE m." + condition, ids));
+        // A thread's messages all share its related question and answer, so the thread goes with them
+        report.add("message_threads", updateIn(connection, "DELETE FROM message_threads m WHERE m." + condition, ids));
+    }
+
+    private void publishChanges(Affected affected, Report report) {
+        ChangeFeed changeFeed = PoolState.forPool(pool).changeFeed;
+        for (int questionId : affected.deletedQuestions) {
+            changeFeed.publish(ChangeFeed.Change.question(ChangeFeed.Kind.DELETED, questionId));
+        }
+        for (int answerId : affected.deletedAnswers) {
+            changeFeed.publish(ChangeFeed.Change.answer(ChangeFeed.Kind.DELETED, answerId, -1));
+        }
+        if (report.getCount("reviews") > 0) {
+            changeFeed.publish(ChangeFeed.Change.reload(ChangeFeed.Table.REVIEWS));
+        }
+        if (report.getCount("messages") > 0) {
+            changeFeed.publish(ChangeFeed.Change.reload(ChangeFeed.Table.MESSAGES));
+        }
+    }
+
+    private void applyToCaches(Affected affected) {
+        PoolState state = PoolState.forPool(pool);
+        for (int questionId : affected.deletedQuestions) {
+            state.searchIndex.remove(questionId);
+        }
+        state.questionCache.invalidateAll(affected.deletedQuestions);
+        state.questionCache.invalidateAll(affected.changedQuestions);
+        state.answerCache.invalidateAll(affected.deletedAnswers);
+        if (affected.reviewsDeleted) {
+            // Review IDs are not collected, so drop every cached review
+            state.reviewCache.clear();
+        }
+    }
+
+    private static List<Integer> selectIds(Connection connection, String query, Object parameter) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setObject(1, parameter);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static int update(Connection connection, String query, Object... parameters) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    // Runs a query once per chunk of IDs, binding the chunk to every parameter
+    private List<Integer> selectIdsIn(Connection connection, String query, List<Integer> ids) throws SQLException {
+        List<Integer> result = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (List<Integer> chunk : chunks(ids)) {
+                bindChunk(connection, pstmt, chunk);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    result.add(rs.getInt(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Runs an update once per chunk of IDs, binding the chunk to every parameter
+    private int updateIn(Connection connection, String query, List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int rows = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (List<Integer> chunk : chunks(ids)) {
+                bindChunk(connection, pstmt, chunk);
+                rows += pstmt.executeUpdate();
+            }
+        }
+        return rows;
+    }
+
+    private static void bindChunk(Connection connection, PreparedStatement pstmt, Collection<Integer> chunk)
+            throws SQLException {
+        Array array = connection.createArrayOf("INTEGER", chunk.toArray(new Integer[0]));
+        int parameters = pstmt.getParameterMetaData().getParameterCount();
+        for (int i = 1; i <= parameters; i++) {
+            pstmt.setArray(i, array);
+        }
+    }
+
+    private List<List<Integer>> chunks(List<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += chunkSize) {
+            chunks.add(ids.subList(start, Math.min(start + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+}
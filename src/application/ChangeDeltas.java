@@ -0,0 +1,87 @@
+package application;
+
+import javafx.collections.ObservableList;
+
+/**
+ * ChangeDeltas applies ChangeFeed changes to the answer and review lists the home pages
+ * show for the selected question. Each change costs at most one lookup of the row it
+ * names, and changes to questions that are not selected cost nothing.
+ * All methods must be called on the FX thread.
+ */
+final class ChangeDeltas {
+
+    private ChangeDeltas() {
+    }
+
+    /**
+     * Applies an answer change to the answers shown for the selected question
+     */
+    static void applyToAnswers(AsyncStudentDatabase asyncDatabase, ObservableList<AnswerData> answers,
+            QuestionData selectedQuestion, ChangeFeed.Change change) {
+        if (selectedQuestion == null || change.table != ChangeFeed.Table.ANSWERS) {
+            return;
+        }
+        int questionId = selectedQuestion.id;
+        switch (change.kind) {
+            case INSERTED -> {
+                if (change.questionId == questionId) {
+                    asyncDatabase.getAnswerById(change.id).whenComplete(AsyncStudentDatabase.handle(answer -> {
+                        if (answer != null && indexOf(answers, change.id) < 0) {
+                            answers.add(answer);
+                        }
+                    }, error -> error.printStackTrace()));
+                }
+            }
+            case UPDATED -> {
+                if (indexOf(answers, change.id) >= 0) {
+                    asyncDatabase.getAnswerById(change.id).whenComplete(AsyncStudentDatabase.handle(answer -> {
+                        int index = indexOf(answers, change.id);
+                        if (index >= 0 && answer != null) {
+                            answers.set(index, answer);
+                        }
+                    }, error -> error.printStackTrace()));
+                }
+            }
+            case DELETED -> answers.removeIf(answer -> answer.id == change.id);
+            case RELOAD -> asyncDatabase.latest("answers", () -> asyncDatabase.getAnswersForQuestion(questionId))
+                    .whenComplete(AsyncStudentDatabase.handle(answers::setAll, error -> error.printStackTrace()));
+        }
+    }
+
+    /**
+     * Returns true if a review change may alter the reviews shown for the selection. When
+     * an answer is selected its reviews are shown, otherwise those of the question.
+     */
+    static boolean affectsReviews(ChangeFeed.Change change, QuestionData selectedQuestion, AnswerData selectedAnswer) {
+        if (change.table != ChangeFeed.Table.REVIEWS || selectedQuestion == null) {
+            return false;
+        }
+        if (change.kind == ChangeFeed.Kind.RELOAD) {
+            return true;
+        }
+        if (selectedAnswer != null) {
+            return change.answerId == selectedAnswer.id;
+        }
+        return change.questionId == selectedQuestion.id;
+    }
+
+    /**
+     * Reloads the reviews for the selection after affectsReviews returned true
+     */
+    static void reloadReviews(AsyncStudentDatabase asyncDatabase, ObservableList<ReviewData> reviews,
+            QuestionData selectedQuestion, AnswerData selectedAnswer) {
+        asyncDatabase.latest("reviews", () -> selectedAnswer != null
+                    ? asyncDatabase.getReviewsForAnswer(selectedAnswer.id)
+                    : asyncDatabase.getReviewsForQuestion(selectedQuestion.id))
+            .whenComplete(AsyncStudentDatabase.handle(reviews::setAll, error -> error.printStackTrace()));
+    }
+
+    private static int indexOf(ObservableList<AnswerData> answers, int answerId) {
+        for (int i = 0; i < answers.size(); i++) {
+            if (answers.get(i).id == answerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
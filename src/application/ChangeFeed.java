@@ -0,0 +1,208 @@
+package application;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+/**
+ * ChangeFeed tells interested parts of the application that questions, answers, reviews
+ * or messages were written, so pages can apply the change to the lists they show instead
+ * of reloading them or waiting for the user to click Refresh.
+ *
+ * Changes are published by the DAO methods of studentDatabase, BulkLoader and
+ * CascadeDeleter once their transaction has committed, so a listener never sees a row
+ * that could still be rolled back. Only writes made through this process are seen,
+ * and there is one feed per database, kept with the rest of its PoolState.
+ */
+public class ChangeFeed {
+
+    public enum Table { QUESTIONS, ANSWERS, REVIEWS, MESSAGES }
+
+    public enum Kind {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        /** Many rows changed at once and their IDs are not listed, reload anything shown from the table */
+        RELOAD
+    }
+
+    /**
+     * One committed change. Fields that do not apply to the table are -1.
+     */
+    public static class Change {
+        public final Table table;
+        public final Kind kind;
+        /** The ID of the changed row, -1 for RELOAD */
+        public final int id;
+        /** The question the row belongs to */
+        public final int questionId;
+        /** The answer the row belongs to, for reviews and messages */
+        public final int answerId;
+        /** The author of the row, or the sender of a message */
+        public final int userId;
+        /** The receiver of a message */
+        public final int receiverId;
+
+        public Change(Table table, Kind kind, int id, int questionId, int answerId, int userId, int receiverId) {
+            this.table = table;
+            this.kind = kind;
+            this.id = id;
+            this.questionId = questionId;
+            this.answerId = answerId;
+            this.userId = userId;
+            this.receiverId = receiverId;
+        }
+
+        public static Change question(Kind kind, int questionId) {
+            return new Change(Table.QUESTIONS, kind, questionId, questionId, -1, -1, -1);
+        }
+
+        public static Change answer(Kind kind, int answerId, int questionId) {
+            return new Change(Table.ANSWERS, kind, answerId, questionId, -1, -1, -1);
+        }
+
+        public static Change review(Kind kind, int reviewId, int questionId, int answerId) {
+            return new Change(Table.REVIEWS, kind, reviewId, questionId, answerId, -1, -1);
+        }
+
+        public static Change message(Kind kind, int messageId, int senderId, int receiverId) {
+            return new Change(Table.MESSAGES, kind, messageId, -1, -1, senderId, receiverId);
+        }
+
+        public static Change reload(Table table) {
+            return new Change(table, Kind.RELOAD, -1, -1, -1, -1, -1);
+        }
+
+        /**
+         * Returns true if the change may concern the user, either as sender or receiver.
+         * A RELOAD concerns everyone.
+         */
+        public boolean involvesUser(int user) {
+            return kind == Kind.RELOAD || userId == user || receiverId == user;
+        }
+
+        @Override
+        public String toString() {
+            return table + " " + kind + " " + id;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void changed(Change change);
+    }
+
+    /**
+     * Stops delivery to a listener. Closing twice is harmless.
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Entry {
+        final Set<Table> tables;
+        final Executor executor;
+        final Listener listener;
+
+        Entry(Set<Table> tables, Executor executor, Listener listener) {
+            this.tables = tables;
+            this.executor = executor;
+            this.listener = listener;
+        }
+    }
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private long published = 0;
+
+    /**
+     * Calls the listener on the publishing thread for changes to the given tables
+     */
+    public Subscription subscribe(Set<Table> tables, Listener listener) {
+        return subscribe(tables, Runnable::run, listener);
+    }
+
+    /**
+     * Calls the listener through the executor for changes to the given tables
+     * @param tables	The tables to hear about
+     * @param executor	Runs each delivery, such as Platform::runLater
+     * @param listener	Receives the changes
+     * @return Closes the subscription
+     */
+    public Subscription subscribe(Set<Table> tables, Executor executor, Listener listener) {
+        Entry entry = new Entry(Collections.unmodifiableSet(EnumSet.copyOf(tables)), executor, listener);
+        entries.add(entry);
+        return () -> entries.remove(entry);
+    }
+
+    /**
+     * Delivers changes on the FX thread while the stage shows the scene, and unsubscribes
+     * once the stage moves on to another scene, so a page that is left stops listening
+     */
+    public Subscription subscribeWhileShowing(Stage stage, Scene scene, Set<Table> tables, Listener listener) {
+        Subscription subscription = subscribe(tables, Platform::runLater, change -> {
+            if (stage.getScene() == scene) {
+                listener.changed(change);
+            }
+        });
+        ChangeListener<Scene> sceneWatcher = new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Scene> obs, Scene oldScene, Scene newScene) {
+                if (newScene != scene) {
+                    subscription.close();
+                    stage.sceneProperty().removeListener(this);
+                }
+            }
+        };
+        stage.sceneProperty().addListener(sceneWatcher);
+        return () -> {
+            subscription.close();
+            stage.sceneProperty().removeListener(sceneWatcher);
+        };
+    }
+
+    /**
+     * Sends a committed change to every listener of its table. A failing listener is
+     * reported and skipped so it can never fail the write that published the change.
+     */
+    void publish(Change change) {
+        synchronized (this) {
+            published++;
+        }
+        for (Entry entry : entries) {
+            if (!entry.tables.contains(change.table)) {
+                continue;
+            }
+            try {
+                entry.executor.execute(() -> {
+                    try {
+                        entry.listener.changed(change);
+                    } catch (RuntimeException e) {
+                        System.err.println("Change listener failed on " + change + ": " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // For example Platform::runLater when the FX toolkit is not running
+                System.err.println("Could not deliver " + change + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return entries.size();
+    }
+
+    public synchronized long getPublishedCount() {
+        return published;
+    }
+}
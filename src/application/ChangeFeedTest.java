@@ -0,0 +1,84 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Tests that committed writes are published on the change feed and that listeners can
+ * neither fail a write nor keep receiving changes after unsubscribing.
+ */
+public class ChangeFeedTest {
+
+    private studentDatabase dbHelper;
+    private int testUserId;
+    private int testQuestionId;
+    private final List<ChangeFeed.Change> received = new ArrayList<>();
+    private ChangeFeed.Subscription subscription;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbHelper = new studentDatabase();
+        dbHelper.connectToDatabase();
+        testUserId = dbHelper.getUserId("testuser");
+
+        subscription = dbHelper.getChangeFeed().subscribe(
+            EnumSet.of(ChangeFeed.Table.QUESTIONS, ChangeFeed.Table.ANSWERS), received::add);
+        testQuestionId = dbHelper.addQuestion("Change feed question", "Change feed content", testUserId);
+    }
+
+    @After
+    public void tearDown() {
+        subscription.close();
+        try {
+            dbHelper.deleteQuestion(testQuestionId);
+            dbHelper.closeConnection();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void writesArePublishedAfterCommit() throws SQLException {
+        int answerId = dbHelper.addAnswer("Change feed answer", testQuestionId, testUserId);
+        dbHelper.deleteAnswer(answerId);
+
+        assertEquals(3, received.size());
+        assertEquals(ChangeFeed.Table.QUESTIONS, received.get(0).table);
+        assertEquals(ChangeFeed.Kind.INSERTED, received.get(0).kind);
+        assertEquals(testQuestionId, received.get(0).id);
+
+        ChangeFeed.Change inserted = received.get(1);
+        assertEquals(ChangeFeed.Kind.INSERTED, inserted.kind);
+        assertEquals(answerId, inserted.id);
+        assertEquals(testQuestionId, inserted.questionId);
+        assertEquals(ChangeFeed.Kind.DELETED, received.get(2).kind);
+    }
+
+    @Test
+    public void failingListenerDoesNotFailTheWrite() throws SQLException {
+        ChangeFeed.Subscription failing = dbHelper.getChangeFeed().subscribe(
+                EnumSet.of(ChangeFeed.Table.QUESTIONS), change -> { throw new IllegalStateException("boom"); });
+        try {
+            dbHelper.updateQuestion(testQuestionId, "Edited", "Edited content");
+        } finally {
+            failing.close();
+        }
+        assertEquals("Edited", dbHelper.getQuestionById(testQuestionId).title);
+        assertEquals(ChangeFeed.Kind.UPDATED, received.get(received.size() - 1).kind);
+    }
+
+    @Test
+    public void closedSubscriptionStopsDelivery() throws SQLException {
+        subscription.close();
+        received.clear();
+        dbHelper.updateQuestion(testQuestionId, "Unheard", "Unheard content");
+        assertTrue(received.isEmpty());
+    }
+}
@@ -0,0 +1,421 @@
+package application;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.PasswordHasher;
+import databasePart1.UserDirectory;
+
+/**
+ * DatasetGenerator fills the database with synthetic users, questions, answers, reviewers,
+ * reviews, trusted reviewers and messages so performance can be measured at realistic
+ * volumes instead of against the handful of rows the tests create.
+ *
+ * Activity is skewed the way it is on a real course forum. Authors, popular questions,
+ * reviewers and message senders are drawn from Zipf distributions, so a few users write
+ * most of the content and a few questions collect most of the answers. Dates are spread
+ * over the configured number of days. The same seed always produces the same dataset.
+ *
+ * Questions, answers and reviews are inserted through BulkLoader and messages through
+ * studentDatabase.sendMessage, so counters, threads, caches and the search index stay
+ * consistent. Generated user names start with a per-run prefix, and
+ * {@link Dataset#remove(DatabaseHelper)} deletes everything a run created.
+ */
+public class DatasetGenerator {
+
+    /**
+     * How much to generate. Counts are totals except where noted.
+     */
+    public static class Volumes {
+        public final int users;
+        /** The share of users who are also reviewers, 0 to 1 */
+        public final double reviewerShare;
+        public final int questions;
+        /** The average number of answers per question */
+        public final double answersPerQuestion;
+        /** The average number of reviews per answer */
+        public final double reviewsPerAnswer;
+        /** The largest number of reviewers a user trusts */
+        public final int maxTrustedPerUser;
+        public final int messages;
+        /** The Zipf exponent used for every skewed choice, 0 means uniform */
+        public final double skew;
+        /** The number of days the creation dates are spread over */
+        public final int days;
+
+        public Volumes(int users, double reviewerShare, int questions, double answersPerQuestion,
+                       double reviewsPerAnswer, int maxTrustedPerUser, int messages, double skew, int days) {
+            if (users < 2) {
+                throw new IllegalArgumentException("At least two users are needed");
+            }
+            this.users = users;
+            this.reviewerShare = reviewerShare;
+            this.questions = questions;
+            this.answersPerQuestion = answersPerQuestion;
+            this.reviewsPerAnswer = reviewsPerAnswer;
+            this.maxTrustedPerUser = maxTrustedPerUser;
+            this.messages = messages;
+            this.skew = skew;
+            this.days = days;
+        }
+
+        /**
+         * Volumes proportional to the number of users, roughly one course section per 200 users
+         */
+        public static Volumes scaled(int users) {
+            return new Volumes(users, 0.05, users * 5, 3.0, 0.5, 3, users * 2, 1.1, 120);
+        }
+
+        /**
+         * Reads the cse360.gen.* system properties, using scaled(cse360.gen.users) for any not set
+         */
+        public static Volumes fromSystemProperties() {
+            Volumes d = scaled(Integer.getInteger("cse360.gen.users", 1000));
+            return new Volumes(
+                d.users,
+                doubleProperty("cse360.gen.reviewerShare", d.reviewerShare),
+                Integer.getInteger("cse360.gen.questions", d.questions),
+                doubleProperty("cse360.gen.answersPerQuestion", d.answersPerQuestion),
+                doubleProperty("cse360.gen.reviewsPerAnswer", d.reviewsPerAnswer),
+                Integer.getInteger("cse360.gen.maxTrustedPerUser", d.maxTrustedPerUser),
+                Integer.getInteger("cse360.gen.messages", d.messages),
+                doubleProperty("cse360.gen.skew", d.skew),
+                Integer.getInteger("cse360.gen.days", d.days));
+        }
+
+        private static double doubleProperty(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        }
+
+        @Override
+        public String toString() {
+            return users + " users (" + Math.round(users * reviewerShare) + " reviewers), " + questions + " questions, "
+                    + answersPerQuestion + " answers/question, " + reviewsPerAnswer + " reviews/answer, "
+                    + messages + " messages, skew " + skew;
+        }
+    }
+
+    /**
+     * The rows one run created, for driving load against them and for removing them
+     */
+    public static class Dataset {
+        public final String prefix;
+        public final List<String> userNames;
+        public final List<Integer> userIds;
+        public final List<Integer> reviewerIds;
+        public final List<Integer> questionIds;
+        public final List<Integer> answerIds;
+        /** The question of each answer, in the same order as answerIds */
+        public final List<Integer> answerQuestionIds;
+        public final int reviewCount;
+        public final int trustedCount;
+        public final int messageCount;
+
+        Dataset(String prefix, List<String> userNames, List<Integer> userIds, List<Integer> reviewerIds,
+                List<Integer> questionIds, List<Integer> answerIds, List<Integer> answerQuestionIds,
+                int reviewCount, int trustedCount, int messageCount) {
+            this.prefix = prefix;
+            this.userNames = Collections.unmodifiableList(userNames);
+            this.userIds = Collections.unmodifiableList(userIds);
+            this.reviewerIds = Collections.unmodifiableList(reviewerIds);
+            this.questionIds = Collections.unmodifiableList(questionIds);
+            this.answerIds = Collections.unmodifiableList(answerIds);
+            this.answerQuestionIds = Collections.unmodifiableList(answerQuestionIds);
+            this.reviewCount = reviewCount;
+            this.trustedCount = trustedCount;
+            this.messageCount = messageCount;
+        }
+
+        /**
+         * Returns the role string the user at an index was created with. The first users
+         * are the reviewers.
+         */
+        public String roleOf(int user) {
+            return user < reviewerIds.size() ? REVIEWER_ROLES : STUDENT_ROLES;
+        }
+
+        /**
+         * Deletes every generated user, which cascades to everything they wrote
+         * @return The number of users deleted
+         */
+        public int remove(DatabaseHelper databaseHelper) {
+            int removed = 0;
+            for (String userName : userNames) {
+                CascadeDeleter.Report report = databaseHelper.deleteUser(userName);
+                if (report != null && report.getCount("cse360users") > 0) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public String toString() {
+            return userIds.size() + " users, " + reviewerIds.size() + " reviewers, " + questionIds.size()
+                    + " questions, " + answerIds.size() + " answers, " + reviewCount + " reviews, "
+                    + trustedCount + " trusted reviewers, " + messageCount + " messages";
+        }
+    }
+
+    /**
+     * Draws ranks 0 to n-1 with probability proportional to 1 / (rank + 1)^s
+     */
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double s) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += 1.0 / Math.pow(i + 1, s);
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        int next(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+
+    private static final String[] TOPICS = {
+        "JavaFX", "H2", "JDBC", "JUnit", "Eclipse", "Git", "inheritance", "interfaces", "generics",
+        "exceptions", "threads", "streams", "lambdas", "records", "the scene graph", "prepared statements",
+        "transactions", "indexes", "the homework", "the team project", "UML diagrams", "user stories"
+    };
+    private static final String[] PROBLEMS = {
+        "How do I use", "Why does my code fail with", "What is the difference between", "Can someone explain",
+        "Best practice for", "Getting a NullPointerException with", "Confused about", "Tests fail when using"
+    };
+    // Every generated user has this password
+    private static final String PASSWORD = "Password1!";
+    // The role strings of generated students and reviewers
+    private static final String STUDENT_ROLES = "student";
+    private static final String REVIEWER_ROLES = "student,reviewer";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final studentDatabase studentDatabaseHelper;
+    private final BulkLoader bulkLoader;
+    private final Random random;
+
+    public DatasetGenerator(studentDatabase studentDatabaseHelper, long seed) {
+        this.studentDatabaseHelper = studentDatabaseHelper;
+        this.bulkLoader = new BulkLoader(studentDatabaseHelper);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a dataset of the given volumes
+     * @param volumes	How much to generate
+     * @param prefix	Starts every generated user name, so runs do not collide
+     * @return The rows that were created
+     * @throws SQLException
+     */
+    public Dataset generate(Volumes volumes, String prefix) throws SQLException {
+        long now = System.currentTimeMillis();
+        long start = now - volumes.days * DAY_MILLIS;
+
+        // Users, with the most active authors first so Zipf rank 0 is the busiest user
+        List<String> userNames = new ArrayList<>();
+        for (int i = 0; i < volumes.users; i++) {
+            userNames.add(prefix + i);
+        }
+        int reviewers = Math.max(1, (int) Math.round(volumes.users * volumes.reviewerShare));
+        List<Integer> userIds = insertUsers(userNames, reviewers);
+        List<Integer> reviewerIds = insertReviewers(userIds.subList(0, reviewers));
+
+        // Questions by skewed authors, spread over the period
+        Zipf authors = new Zipf(userIds.size(), volumes.skew);
+        List<Timestamp> questionDates = new ArrayList<>();
+        List<BulkLoader.QuestionRecord> questions = new ArrayList<>();
+        for (int i = 0; i < volumes.questions; i++) {
+            String topic = TOPICS[random.nextInt(TOPICS.length)];
+            String title = PROBLEMS[random.nextInt(PROBLEMS.length)] + " " + topic + "? (" + i + ")";
+            Timestamp date = new Timestamp(start + (long) (random.nextDouble() * (now - start)));
+            questionDates.add(date);
+            questions.add(new BulkLoader.QuestionRecord(title, sentence(topic, 3 + random.nextInt(6)),
+                    userIds.get(authors.next(random)), date));
+        }
+        List<Integer> questionIds = bulkLoader.addQuestions(questions.stream());
+
+        // Answers concentrate on popular questions
+        Zipf popularQuestions = new Zipf(Math.max(1, questionIds.size()), volumes.skew);
+        List<BulkLoader.AnswerRecord> answers = new ArrayList<>();
+        List<Integer> answerQuestionIds = new ArrayList<>();
+        int answerCount = questionIds.isEmpty() ? 0 : (int) Math.round(volumes.questions * volumes.answersPerQuestion);
+        for (int i = 0; i < answerCount; i++) {
+            int question = popularQuestions.next(random);
+            Timestamp asked = questionDates.get(question);
+            Timestamp date = new Timestamp(asked.getTime() + (long) (random.nextDouble() * Math.max(1, now - asked.getTime())));
+            answers.add(new BulkLoader.AnswerRecord(sentence(TOPICS[random.nextInt(TOPICS.length)], 2 + random.nextInt(8)),
+                    questionIds.get(question), userIds.get(authors.next(random)), date));
+            answerQuestionIds.add(questionIds.get(question));
+        }
+        List<Integer> answerIds = bulkLoader.addAnswers(answers.stream());
+
+        // Reviews by skewed reviewers, mostly on answers and some on questions
+        Zipf activeReviewers = new Zipf(reviewerIds.size(), volumes.skew);
+        List<BulkLoader.ReviewRecord> reviews = new ArrayList<>();
+        int reviewCount = answerIds.isEmpty() ? 0 : (int) Math.round(answerIds.size() * volumes.reviewsPerAnswer);
+        for (int i = 0; i < reviewCount; i++) {
+            int reviewerId = reviewerIds.get(activeReviewers.next(random));
+            String content = sentence(TOPICS[random.nextInt(TOPICS.length)], 1 + random.nextInt(4));
+            if (random.nextInt(5) == 0) {
+                reviews.add(new BulkLoader.ReviewRecord(reviewerId, questionIds.get(popularQuestions.next(random)), -1, content));
+            } else {
+                reviews.add(new BulkLoader.ReviewRecord(reviewerId, -1, answerIds.get(random.nextInt(answerIds.size())), content));
+            }
+        }
+        bulkLoader.addReviews(reviews.stream());
+
+        int trustedCount = insertTrustedReviewers(userIds, reviewerIds, activeReviewers, volumes.maxTrustedPerUser);
+
+        // Messages mostly go from students to the busiest reviewers about popular questions
+        for (int i = 0; i < volumes.messages; i++) {
+            int sender = userIds.get(authors.next(random));
+            int receiver = userIds.get(activeReviewers.next(random));
+            if (sender == receiver) {
+                receiver = userIds.get(random.nextInt(userIds.size()));
+            }
+            int questionId = questionIds.isEmpty() ? -1 : questionIds.get(popularQuestions.next(random));
+            studentDatabaseHelper.sendMessage(sender, receiver, questionId, -1,
+                    sentence(TOPICS[random.nextInt(TOPICS.length)], 1 + random.nextInt(3)));
+        }
+
+        return new Dataset(prefix, userNames, userIds, reviewerIds, questionIds, answerIds,
+                answerQuestionIds, reviewCount, trustedCount, volumes.messages);
+    }
+
+    // Inserts the users in one batch. The first reviewerCount users also get the reviewer role.
+    private List<Integer> insertUsers(List<String> userNames, int reviewerCount) throws SQLException {
+        String insertUser = "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)";
+        String insertRole = "INSERT INTO user_roles (userId, role) VALUES (?, ?)";
+        ConnectionPool pool = studentDatabaseHelper.getConnectionPool();
+        // One hash shared by all the users keeps generation fast. A shared salt is fine for
+        // synthetic accounts, and logins still pay the full cost of checking it.
+        String passwordHash = PasswordHasher.getDefault(pool).hash(PASSWORD);
+        List<Integer> userIds = new ArrayList<>();
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(insertUser, Statement.RETURN_GENERATED_KEYS)) {
+                    for (int i = 0; i < userNames.size(); i++) {
+                        pstmt.setString(1, userNames.get(i));
+                        pstmt.setString(2, passwordHash);
+                        pstmt.setString(3, i < reviewerCount ? REVIEWER_ROLES : STUDENT_ROLES);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    userIds.addAll(BulkLoader.generatedKeys(pstmt, userNames.size()));
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(insertRole)) {
+                    for (int i = 0; i < userIds.size(); i++) {
+                        addRole(pstmt, userIds.get(i), Role.STUDENT);
+                        if (i < reviewerCount) {
+                            addRole(pstmt, userIds.get(i), Role.REVIEWER);
+                        }
+                    }
+                    pstmt.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        UserDirectory userDirectory = UserDirectory.forPool(pool);
+        for (int i = 0; i < userIds.size(); i++) {
+            userDirectory.userAdded(userIds.get(i), userNames.get(i));
+        }
+        return userIds;
+    }
+
+    private static void addRole(PreparedStatement pstmt, int userId, Role role) throws SQLException {
+        pstmt.setInt(1, userId);
+        pstmt.setString(2, role.getDbName());
+        pstmt.addBatch();
+    }
+
+    private List<Integer> insertReviewers(List<Integer> userIds) throws SQLException {
+        List<Integer> reviewerIds = new ArrayList<>();
+        for (int userId : userIds) {
+            reviewerIds.add(studentDatabaseHelper.addReviewer(userId, 0.5 + random.nextInt(16) / 10.0));
+        }
+        return reviewerIds;
+    }
+
+    // Each user trusts up to maxPerUser reviewers, favouring the busiest ones
+    private int insertTrustedReviewers(List<Integer> userIds, List<Integer> reviewerIds, Zipf activeReviewers,
+            int maxPerUser) throws SQLException {
+        String query = "INSERT INTO trusted_reviewers (userId, reviewerId) VALUES (?, ?)";
+        int count = 0;
+        try (Connection connection = studentDatabaseHelper.getConnectionPool().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+                for (int userId : userIds) {
+                    Set<Integer> trusted = new HashSet<>();
+                    int wanted = Math.min(random.nextInt(maxPerUser + 1), reviewerIds.size());
+                    for (int attempt = 0; trusted.size() < wanted && attempt < wanted * 4; attempt++) {
+                        trusted.add(reviewerIds.get(activeReviewers.next(random)));
+                    }
+                    for (int reviewerId : trusted) {
+                        pstmt.setInt(1, userId);
+                        pstmt.setInt(2, reviewerId);
+                        pstmt.addBatch();
+                        count++;
+                    }
+                }
+                pstmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        return count;
+    }
+
+    private String sentence(String topic, int clauses) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < clauses; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(PROBLEMS[random.nextInt(PROBLEMS.length)]).append(' ')
+                .append(i == 0 ? topic : TOPICS[random.nextInt(TOPICS.length)]).append('.');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates a dataset sized by the cse360.gen.* system properties and prints what was created
+     */
+    public static void main(String[] args) throws SQLException {
+        studentDatabase db = new studentDatabase();
+        db.connectToDatabase();
+        Volumes volumes = Volumes.fromSystemProperties();
+        long seed = Long.getLong("cse360.gen.seed", 42L);
+        String prefix = System.getProperty("cse360.gen.prefix", "gen" + System.currentTimeMillis() % 100000 + "_");
+
+        System.out.println("Generating " + volumes);
+        long started = System.nanoTime();
+        Dataset dataset = new DatasetGenerator(db, seed).generate(volumes, prefix);
+        System.out.printf("Created %s in %.1f s%n", dataset, (System.nanoTime() - started) / 1e9);
+    }
+}
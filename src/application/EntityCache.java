@@ -0,0 +1,147 @@
+package application;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * EntityCache is a bounded read-through cache of rows keyed by ID. Lookups that miss call
+ * a loader and keep the result, and the least recently used entries are dropped once
+ * the cache is full. studentDatabase invalidates entries whenever it writes the rows
+ * behind them.
+ *
+ * A value loaded while an invalidation was happening is returned but not kept, so a
+ * slow read can never put a row back into the cache after the write that replaced it.
+ */
+public class EntityCache<K, V> {
+
+    /**
+     * Loads the value for a key that is not cached, returning null if it does not exist
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final String name;
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+
+    // Bumped by every invalidation, so loads that overlap one are not cached
+    private long invalidations = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param name		Used in toString
+     * @param capacity	The most entries kept, 0 to disable caching
+     */
+    public EntityCache(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= EntityCache.this.capacity) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss
+     * @param key		The ID to look up
+     * @param loader	Reads the value from the database
+     * @return The value, or null if the loader found nothing
+     * @throws SQLException
+     */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        long stamp;
+        synchronized (this) {
+            V value = entries.get(key);
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+            stamp = invalidations;
+        }
+
+        // Load outside the lock so a slow query does not block other lookups
+        V value = loader.load(key);
+        if (value != null && capacity > 0) {
+            synchronized (this) {
+                if (invalidations == stamp) {
+                    entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll(Iterable<K> keys) {
+        invalidations++;
+        for (K key : keys) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns hits divided by lookups, or 0 before the first lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("EntityCache[%s size=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%]",
+                name, entries.size(), capacity, hits, misses, evictions, getHitRate() * 100);
+    }
+}
@@ -0,0 +1,138 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import databasePart1.DatabaseHelper;
+import databasePart1.InvitationCodePool;
+
+/**
+ * Tests that reserved codes are never handed out twice, even by concurrent reservations,
+ * and that a code can be redeemed only once.
+ */
+public class InvitationCodePoolTest {
+
+    private DatabaseHelper databaseHelper;
+    private InvitationCodePool codePool;
+    private String holder;
+
+    @Before
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+        codePool = databaseHelper.getInvitationCodePool();
+        holder = "instructor" + System.nanoTime() % 100000;
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("DELETE FROM InvitationCodes WHERE reservedBy LIKE ?")) {
+            pstmt.setString(1, holder + "%");
+            pstmt.executeUpdate();
+        }
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void reservedCodesAreWideAndRedeemOnce() throws SQLException {
+        List<String> codes = codePool.reserve(holder, 25);
+        assertEquals(25, codes.size());
+        assertEquals(25, new HashSet<>(codes).size());
+        for (String code : codes) {
+            assertTrue(code, code.matches("[0-9A-HJKMNP-TV-Z]{10}"));
+        }
+
+        InvitationCodePool.Stats stats = codePool.getStats(holder);
+        assertEquals(25, stats.total);
+        assertEquals(25, stats.reserved);
+        assertEquals(0, stats.used);
+
+        assertTrue(databaseHelper.validateInvitationCode(" " + codes.get(0).toLowerCase() + " ", "newstudent"));
+        assertFalse("A code is redeemed only once", databaseHelper.validateInvitationCode(codes.get(0)));
+        assertFalse(databaseHelper.validateInvitationCode("NOSUCHCODE"));
+
+        stats = codePool.getStats(holder);
+        assertEquals(1, stats.used);
+        assertEquals(24, stats.reserved);
+        assertEquals(0.04, stats.getUsedFraction(), 1e-9);
+        assertTrue(codePool.getStats().total >= 25);
+    }
+
+    @Test
+    public void concurrentReservationsNeverShareCodes() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String reservedBy = holder + "-" + t;
+                results.add(executor.submit(() -> {
+                    List<String> codes = new ArrayList<>();
+                    for (int i = 0; i < 5; i++) {
+                        codes.addAll(codePool.reserve(reservedBy, 20));
+                    }
+                    return codes;
+                }));
+            }
+            Set<String> all = new HashSet<>();
+            for (Future<List<String>> result : results) {
+                all.addAll(result.get());
+            }
+            assertEquals(400, all.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentRedeemsSucceedOnce() throws Exception {
+        String code = databaseHelper.generateInvitationCode(holder);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> codePool.redeem(code, null)));
+            }
+            int redeemed = 0;
+            for (Future<Boolean> result : results) {
+                redeemed += result.get() ? 1 : 0;
+            }
+            assertEquals(1, redeemed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void onlyReservedCodesCanBeRedeemed() throws SQLException {
+        String unreserved = "UNRES" + System.nanoTime() % 100000;
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection()) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO InvitationCodes (code, reservedBy) VALUES (?, ?)")) {
+                pstmt.setString(1, unreserved);
+                pstmt.setString(2, holder);
+                pstmt.executeUpdate();
+            }
+            String reserved = codePool.reserve(holder, 1).get(0);
+            String entered = " " + reserved.toLowerCase() + " ";
+
+            assertEquals(Set.of(entered), codePool.findRedeemable(connection, List.of(unreserved, entered)));
+            assertFalse("A free code has not been handed out", codePool.redeem(unreserved, null));
+            assertTrue(codePool.redeem(connection, entered, null));
+            assertTrue(codePool.findRedeemable(connection, List.of(reserved)).isEmpty());
+        }
+    }
+}
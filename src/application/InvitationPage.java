@@ -1,16 +1,23 @@
 package application;
 
 
+import java.sql.SQLException;
+import java.util.List;
+
 import databasePart1.*;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 /**
  * InvitePage class represents the page where an admin can generate an invitation code.
- * The invitation code is displayed upon clicking a button.
+ * The invitation code is displayed upon clicking a button. A batch of codes can also be
+ * reserved for an instructor to hand out, and the usage of the code pool is shown.
  */
 
 public class InvitationPage {
@@ -22,7 +29,18 @@ public class InvitationPage {
      * @param primaryStage   The primary stage where the scene will be displayed.
      */
     public void show(DatabaseHelper databaseHelper,Stage primaryStage) {
-    	VBox layout = new VBox();
+    	show(databaseHelper, primaryStage, null);
+    }
+
+	/**
+     * Displays the Invite Page in the provided primary stage.
+     * 
+     * @param databaseHelper An instance of DatabaseHelper to handle database operations.
+     * @param primaryStage   The primary stage where the scene will be displayed.
+     * @param userName       The user handing out the codes, or null if not known.
+     */
+    public void show(DatabaseHelper databaseHelper,Stage primaryStage, String userName) {
+    	VBox layout = new VBox(10);
 	    layout.setStyle("-fx-alignment: center; -fx-padding: 20;");
 	    
 	    // Label to display the title of the page
@@ -36,14 +54,65 @@ public class InvitationPage {
 	    Label inviteCodeLabel = new Label(""); ;
         inviteCodeLabel.setStyle("-fx-font-size: 14px; -fx-font-style: italic;");
         
+        // Label to display how much of the code pool is used
+        Label poolLabel = new Label();
+        InvitationCodePool codePool = databaseHelper.getInvitationCodePool();
+        Runnable refreshPool = () -> {
+        	try {
+        		poolLabel.setText("Invitation codes: " + codePool.getStats());
+        	} catch (SQLException e) {
+        		poolLabel.setText("Invitation codes: unavailable");
+        	}
+        };
+        refreshPool.run();
+
         showCodeButton.setOnAction(a -> {
         	// Generate the invitation code using the databaseHelper and set it to the label
-            String invitationCode = databaseHelper.generateInvitationCode();
+            String invitationCode = databaseHelper.generateInvitationCode(userName);
             inviteCodeLabel.setText(invitationCode);
+            refreshPool.run();
         });
-	    
 
-        layout.getChildren().addAll(userLabel, showCodeButton, inviteCodeLabel);
+        // Fields to reserve a batch of codes for an instructor
+        TextField reserveForField = new TextField(userName == null ? "" : userName);
+        reserveForField.setPromptText("Reserve for (userName)");
+        TextField countField = new TextField("10");
+        countField.setPromptText("Number of codes");
+        countField.setPrefColumnCount(5);
+        Button reserveButton = new Button("Reserve Codes");
+        TextArea reservedCodesArea = new TextArea();
+        reservedCodesArea.setEditable(false);
+        reservedCodesArea.setPrefRowCount(6);
+        Label reserveErrorLabel = new Label();
+        reserveErrorLabel.setStyle("-fx-text-fill: red;");
+
+        reserveButton.setOnAction(a -> {
+        	reserveErrorLabel.setText("");
+        	String reserveFor = reserveForField.getText().trim();
+        	int count;
+        	try {
+        		count = Integer.parseInt(countField.getText().trim());
+        	} catch (NumberFormatException e) {
+        		count = 0;
+        	}
+        	if (count < 1 || count > 1000) {
+        		reserveErrorLabel.setText("Enter a number of codes from 1 to 1000");
+        		return;
+        	}
+        	try {
+        		List<String> codes = codePool.reserve(reserveFor.isEmpty() ? null : reserveFor, count);
+        		reservedCodesArea.setText(String.join("\n", codes));
+        	} catch (SQLException e) {
+        		e.printStackTrace();
+        		reserveErrorLabel.setText("Could not reserve codes: " + e.getMessage());
+        	}
+        	refreshPool.run();
+        });
+        HBox reserveBox = new HBox(10, reserveForField, countField, reserveButton);
+        reserveBox.setStyle("-fx-alignment: center;");
+
+        layout.getChildren().addAll(userLabel, showCodeButton, inviteCodeLabel, reserveBox,
+        		reserveErrorLabel, reservedCodesArea, poolLabel);
 	    Scene inviteScene = new Scene(layout, 800, 400);
 
 	    // Set the scene to primary stage
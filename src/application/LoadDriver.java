@@ -0,0 +1,400 @@
+package application;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import databasePart1.DatabaseHelper;
+
+/**
+ * LoadDriver replays a weighted mix of reads and writes against studentDatabase and
+ * DatabaseHelper from several threads and reports the throughput and latency percentiles
+ * of each operation.
+ *
+ * Operations target the rows of a generated dataset. Hot questions, busy users and busy
+ * reviewers are chosen with the same Zipf skew the generator used, so caches and indexes
+ * see a realistic access pattern. Rows written during the run belong to generated users
+ * and are removed along with the dataset.
+ *
+ * Each thread records its own latencies and the recordings are merged at the end, so the
+ * measurement does not add contention of its own. Operations finished during the warmup
+ * are not recorded.
+ */
+public class LoadDriver {
+
+    public enum Operation {
+        QUESTION_PAGE,
+        QUESTION_BY_ID,
+        ANSWERS_FOR_QUESTION,
+        REVIEWS_FOR_ANSWER,
+        SEARCH,
+        TRUSTED_REVIEWS,
+        THREADS,
+        UNREAD_COUNT,
+        LOGIN,
+        USER_ROLES,
+        ADD_ANSWER,
+        ADD_REVIEW,
+        SEND_MESSAGE
+    }
+
+    /**
+     * A read-heavy mix, with about one operation in fourteen being a write
+     */
+    public static Map<Operation, Integer> defaultMix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        mix.put(Operation.QUESTION_PAGE, 20);
+        mix.put(Operation.QUESTION_BY_ID, 15);
+        mix.put(Operation.ANSWERS_FOR_QUESTION, 15);
+        mix.put(Operation.REVIEWS_FOR_ANSWER, 10);
+        mix.put(Operation.SEARCH, 8);
+        mix.put(Operation.TRUSTED_REVIEWS, 5);
+        mix.put(Operation.THREADS, 5);
+        mix.put(Operation.UNREAD_COUNT, 7);
+        mix.put(Operation.LOGIN, 5);
+        mix.put(Operation.USER_ROLES, 3);
+        mix.put(Operation.ADD_ANSWER, 3);
+        mix.put(Operation.ADD_REVIEW, 2);
+        mix.put(Operation.SEND_MESSAGE, 2);
+        return mix;
+    }
+
+    /**
+     * The measurements of one operation. Latencies are in microseconds.
+     */
+    public static class Stats {
+        public final Operation operation;
+        public final long count;
+        public final long errors;
+        public final double perSecond;
+        public final double mean;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+        public final long p999;
+        public final long max;
+
+        Stats(Operation operation, long[] micros, long errors, double seconds) {
+            Arrays.sort(micros);
+            this.operation = operation;
+            this.count = micros.length;
+            this.errors = errors;
+            this.perSecond = seconds > 0 ? micros.length / seconds : 0;
+            this.mean = micros.length > 0 ? Arrays.stream(micros).average().orElse(0) : 0;
+            this.p50 = percentile(micros, 50);
+            this.p90 = percentile(micros, 90);
+            this.p99 = percentile(micros, 99);
+            this.p999 = percentile(micros, 99.9);
+            this.max = micros.length > 0 ? micros[micros.length - 1] : 0;
+        }
+
+        // Nearest-rank percentile of sorted values
+        private static long percentile(long[] sorted, double percent) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+        }
+    }
+
+    /**
+     * The result of a run
+     */
+    public static class Report {
+        public final int threads;
+        public final double seconds;
+        public final long operations;
+        public final long errors;
+        private final Map<Operation, Stats> stats;
+        private final List<String> errorSamples;
+
+        Report(int threads, double seconds, Map<Operation, Stats> stats, List<String> errorSamples) {
+            this.threads = threads;
+            this.seconds = seconds;
+            this.stats = stats;
+            this.errorSamples = errorSamples;
+            this.operations = stats.values().stream().mapToLong(s -> s.count).sum();
+            this.errors = stats.values().stream().mapToLong(s -> s.errors).sum();
+        }
+
+        public double getThroughput() {
+            return seconds > 0 ? operations / seconds : 0;
+        }
+
+        /**
+         * Returns the measurements of an operation, or null if it was not in the mix
+         */
+        public Stats getStats(Operation operation) {
+            return stats.get(operation);
+        }
+
+        /**
+         * Returns up to ten error messages seen during the run
+         */
+        public List<String> getErrorSamples() {
+            return errorSamples;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d threads, %.1f s, %d operations, %.1f ops/s, %d errors%n",
+                    threads, seconds, operations, getThroughput(), errors));
+            text.append(String.format("%-22s%9s%7s%10s%9s%9s%9s%9s%9s%9s%n",
+                    "operation", "count", "errors", "ops/s", "mean us", "p50", "p90", "p99", "p99.9", "max"));
+            for (Stats s : stats.values()) {
+                text.append(String.format("%-22s%9d%7d%10.1f%9.0f%9d%9d%9d%9d%9d%n", s.operation, s.count, s.errors,
+                        s.perSecond, s.mean, s.p50, s.p90, s.p99, s.p999, s.max));
+            }
+            for (String sample : errorSamples) {
+                text.append("error: ").append(sample).append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+
+    // The latencies and errors one thread recorded
+    private static class Recorder {
+        final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        final Map<Operation, Integer> sizes = new EnumMap<>(Operation.class);
+        final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+        final List<String> errorSamples = new ArrayList<>();
+
+        void record(Operation operation, long micros) {
+            long[] values = latencies.computeIfAbsent(operation, o -> new long[1024]);
+            int size = sizes.getOrDefault(operation, 0);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                latencies.put(operation, values);
+            }
+            values[size] = micros;
+            sizes.put(operation, size + 1);
+        }
+
+        void error(Operation operation, Exception e) {
+            errors.merge(operation, 1L, Long::sum);
+            if (errorSamples.size() < 10) {
+                errorSamples.add(operation + ": " + e);
+            }
+        }
+
+        long[] values(Operation operation) {
+            long[] values = latencies.get(operation);
+            return values == null ? new long[0] : Arrays.copyOf(values, sizes.get(operation));
+        }
+    }
+
+    private static final String PASSWORD = "Password1!";
+    private static final String[] SEARCH_TERMS = { "JavaFX", "JDBC", "exceptions", "streams", "homework", "indexes" };
+
+    private final studentDatabase studentDatabaseHelper;
+    private final DatabaseHelper databaseHelper;
+    private final DatasetGenerator.Dataset dataset;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final DatasetGenerator.Zipf hotQuestions;
+    private final DatasetGenerator.Zipf busyUsers;
+    private final DatasetGenerator.Zipf busyReviewers;
+
+    public LoadDriver(studentDatabase studentDatabaseHelper, DatabaseHelper databaseHelper,
+                      DatasetGenerator.Dataset dataset, Map<Operation, Integer> mix, double skew) {
+        if (dataset.questionIds.isEmpty() || dataset.answerIds.isEmpty()) {
+            throw new IllegalArgumentException("The dataset needs questions and answers");
+        }
+        this.studentDatabaseHelper = studentDatabaseHelper;
+        this.databaseHelper = databaseHelper;
+        this.dataset = dataset;
+
+        List<Operation> ops = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                ops.add(entry.getKey());
+                weights.add(total);
+            }
+        }
+        if (ops.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        this.operations = ops.toArray(new Operation[0]);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+
+        this.hotQuestions = new DatasetGenerator.Zipf(dataset.questionIds.size(), skew);
+        this.busyUsers = new DatasetGenerator.Zipf(dataset.userIds.size(), skew);
+        this.busyReviewers = new DatasetGenerator.Zipf(dataset.reviewerIds.size(), skew);
+    }
+
+    /**
+     * Runs the mix until the duration has passed or every thread has done its operations
+     * @param threads				The number of threads issuing operations
+     * @param warmupMillis			How long to run before recording
+     * @param durationMillis		How long to record for
+     * @param operationsPerThread	The most operations a thread records, or 0 for no limit
+     * @param seed					Seeds the choices, one stream per thread
+     * @return The measurements
+     * @throws SQLException if a thread failed outside an operation
+     */
+    public Report run(int threads, long warmupMillis, long durationMillis, long operationsPerThread, long seed)
+            throws SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cse360-load-driver");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        long recordFrom = start + warmupMillis * 1_000_000;
+        long end = recordFrom + durationMillis * 1_000_000;
+
+        List<Future<Recorder>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Random random = new Random(seed + i);
+            futures.add(executor.submit(() -> drive(random, recordFrom, end, operationsPerThread)));
+        }
+
+        List<Recorder> recorders = new ArrayList<>();
+        try {
+            for (Future<Recorder> future : futures) {
+                recorders.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Load run was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Load thread failed: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (Math.min(System.nanoTime(), end) - recordFrom) / 1e9;
+
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        List<String> errorSamples = new ArrayList<>();
+        for (Operation operation : operations) {
+            long errors = 0;
+            long[] merged = new long[0];
+            for (Recorder recorder : recorders) {
+                long[] values = recorder.values(operation);
+                int offset = merged.length;
+                merged = Arrays.copyOf(merged, offset + values.length);
+                System.arraycopy(values, 0, merged, offset, values.length);
+                errors += recorder.errors.getOrDefault(operation, 0L);
+            }
+            stats.put(operation, new Stats(operation, merged, errors, seconds));
+        }
+        for (Recorder recorder : recorders) {
+            for (String sample : recorder.errorSamples) {
+                if (errorSamples.size() < 10) {
+                    errorSamples.add(sample);
+                }
+            }
+        }
+        return new Report(threads, seconds, stats, errorSamples);
+    }
+
+    // One thread's loop
+    private Recorder drive(Random random, long recordFrom, long end, long operationsPerThread) {
+        Recorder recorder = new Recorder();
+        long recorded = 0;
+        while (System.nanoTime() < end && (operationsPerThread <= 0 || recorded < operationsPerThread)) {
+            Operation operation = pick(random);
+            long started = System.nanoTime();
+            try {
+                execute(operation, random);
+            } catch (SQLException | RuntimeException e) {
+                if (started >= recordFrom) {
+                    recorder.error(operation, e);
+                }
+                continue;
+            }
+            if (started >= recordFrom) {
+                recorder.record(operation, (System.nanoTime() - started) / 1000);
+                recorded++;
+            }
+        }
+        return recorder;
+    }
+
+    private Operation pick(Random random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void execute(Operation operation, Random random) throws SQLException {
+        int user = busyUsers.next(random);
+        int userId = dataset.userIds.get(user);
+        int questionId = dataset.questionIds.get(hotQuestions.next(random));
+        switch (operation) {
+            case QUESTION_PAGE -> studentDatabaseHelper.getQuestionsPage(null, QuestionPager.DEFAULT_PAGE_SIZE, true);
+            case QUESTION_BY_ID -> studentDatabaseHelper.getQuestionById(questionId);
+            case ANSWERS_FOR_QUESTION -> studentDatabaseHelper.getAnswersForQuestion(questionId);
+            case REVIEWS_FOR_ANSWER -> studentDatabaseHelper.getReviewsForAnswer(randomAnswer(random));
+            case SEARCH -> studentDatabaseHelper.searchQuestions(SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)]);
+            case TRUSTED_REVIEWS -> studentDatabaseHelper.getTrustedReviews(userId, questionId);
+            case THREADS -> studentDatabaseHelper.getThreadsForUser(userId, null, 50);
+            case UNREAD_COUNT -> studentDatabaseHelper.getUnreadMessageCount(userId);
+            case LOGIN -> {
+                // A rejected login would be much cheaper than a real one, so it counts as an error
+                if (!databaseHelper.login(new User(dataset.userNames.get(user), PASSWORD, dataset.roleOf(user)))) {
+                    throw new IllegalStateException("Login rejected for " + dataset.userNames.get(user));
+                }
+            }
+            case USER_ROLES -> databaseHelper.getUserRoles(dataset.userNames.get(user));
+            case ADD_ANSWER -> studentDatabaseHelper.addAnswer("Load driver answer", questionId, userId);
+            case ADD_REVIEW -> studentDatabaseHelper.addReview(
+                    dataset.reviewerIds.get(busyReviewers.next(random)), -1, randomAnswer(random), "Load driver review");
+            case SEND_MESSAGE -> studentDatabaseHelper.sendMessage(userId,
+                    dataset.userIds.get(busyReviewers.next(random)), questionId, -1, "Load driver message");
+        }
+    }
+
+    private int randomAnswer(Random random) {
+        return dataset.answerIds.get(random.nextInt(dataset.answerIds.size()));
+    }
+
+    /**
+     * Generates a dataset, drives the default mix against it, prints the report and removes
+     * the dataset again. Sized by the cse360.gen.* and cse360.load.* system properties.
+     */
+    public static void main(String[] args) throws SQLException {
+        studentDatabase db = new studentDatabase();
+        db.connectToDatabase();
+        DatabaseHelper databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+
+        DatasetGenerator.Volumes volumes = DatasetGenerator.Volumes.fromSystemProperties();
+        long seed = Long.getLong("cse360.gen.seed", 42L);
+        System.out.println("Generating " + volumes);
+        DatasetGenerator.Dataset dataset = new DatasetGenerator(db, seed)
+                .generate(volumes, "load" + System.currentTimeMillis() % 100000 + "_");
+        System.out.println("Created " + dataset);
+
+        try {
+            LoadDriver driver = new LoadDriver(db, databaseHelper, dataset, defaultMix(), volumes.skew);
+            Report report = driver.run(
+                    Integer.getInteger("cse360.load.threads", 4),
+                    Long.getLong("cse360.load.warmupSeconds", 5L) * 1000,
+                    Long.getLong("cse360.load.seconds", 30L) * 1000,
+                    0, seed);
+            System.out.println(report);
+        } finally {
+            if (!Boolean.getBoolean("cse360.load.keepData")) {
+                System.out.println("Removed " + dataset.remove(databaseHelper) + " generated users");
+            }
+        }
+    }
+}
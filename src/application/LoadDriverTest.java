@@ -0,0 +1,77 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import databasePart1.DatabaseHelper;
+
+/**
+ * Tests that a small generated dataset is consistent, that the load driver runs its mix
+ * against it without errors, and that the dataset can be removed again.
+ */
+public class LoadDriverTest {
+
+    private studentDatabase dbHelper;
+    private DatabaseHelper databaseHelper;
+    private DatasetGenerator.Dataset dataset;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbHelper = new studentDatabase();
+        dbHelper.connectToDatabase();
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+
+        DatasetGenerator.Volumes volumes = new DatasetGenerator.Volumes(20, 0.2, 40, 2.0, 1.0, 2, 30, 1.1, 30);
+        dataset = new DatasetGenerator(dbHelper, 7L).generate(volumes, "loadtest" + System.nanoTime() % 100000 + "_");
+    }
+
+    @After
+    public void tearDown() {
+        if (dataset != null) {
+            dataset.remove(databaseHelper);
+        }
+        dbHelper.closeConnection();
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void generatedDatasetIsConsistent() throws SQLException {
+        assertEquals(20, dataset.userIds.size());
+        assertEquals(4, dataset.reviewerIds.size());
+        assertEquals(40, dataset.questionIds.size());
+        assertEquals(80, dataset.answerIds.size());
+
+        // The counters BulkLoader maintains add up to the answers generated
+        int answers = 0;
+        for (int questionId : dataset.questionIds) {
+            answers += dbHelper.getQuestionById(questionId).answerCount;
+        }
+        assertEquals(80, answers);
+        assertTrue(databaseHelper.getUserRoles(dataset.userNames.get(0)).contains(Role.REVIEWER));
+    }
+
+    @Test
+    public void driverRunsTheMixWithoutErrors() throws SQLException {
+        LoadDriver driver = new LoadDriver(dbHelper, databaseHelper, dataset, LoadDriver.defaultMix(), 1.1);
+        LoadDriver.Report report = driver.run(2, 0, 60_000, 100, 1L);
+
+        assertEquals(report.getErrorSamples().toString(), 0, report.errors);
+        assertEquals(200, report.operations);
+        LoadDriver.Stats pages = report.getStats(LoadDriver.Operation.QUESTION_PAGE);
+        assertTrue(pages.count > 0);
+        assertTrue(pages.p50 <= pages.p99 && pages.p99 <= pages.max);
+    }
+
+    @Test
+    public void removeDeletesEveryGeneratedUser() throws SQLException {
+        assertEquals(20, dataset.remove(databaseHelper));
+        assertNull(dbHelper.getQuestionById(dataset.questionIds.get(0)));
+        assertFalse(databaseHelper.doesUserExist(dataset.userNames.get(0)));
+        dataset = null;
+    }
+}
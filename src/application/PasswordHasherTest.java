@@ -0,0 +1,140 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.PasswordHasher;
+
+/**
+ * Tests that passwords are stored hashed, that older hashes and plaintext passwords are
+ * replaced at login, that the calibrated cost is kept between starts, and that the hasher
+ * refuses work beyond its queue.
+ */
+public class PasswordHasherTest {
+
+    private static final String HASHED_USER = "hasheduser";
+
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        databaseHelper.connectToDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.deleteUser(HASHED_USER);
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void hashesVerifyOnlyTheirPassword() {
+        PasswordHasher hasher = new PasswordHasher(1000, 2, 10);
+        String first = hasher.hash("Password1!");
+        String second = hasher.hash("Password1!");
+        assertTrue(first.startsWith("pbkdf2-sha256$1000$"));
+        assertNotEquals("Every hash has its own salt", first, second);
+        assertTrue(hasher.verify("Password1!", first));
+        assertFalse(hasher.verify("Password2!", first));
+        assertFalse(hasher.verify("Password1!", "pbkdf2-sha256$1000$broken"));
+
+        assertFalse(hasher.needsRehash(first));
+        assertTrue(new PasswordHasher(2000, 1, 1).needsRehash(first));
+        assertTrue(hasher.needsRehash("Password1!"));
+        assertTrue("Plaintext from before hashing still logs in", hasher.verify("Password1!", "Password1!"));
+    }
+
+    @Test
+    public void loginReplacesPlaintextAndOutdatedHashes() throws SQLException {
+        databaseHelper.register(new User(HASHED_USER, "Password1!", "student"));
+        String registered = storedPassword();
+        assertTrue(registered.startsWith("pbkdf2-sha256$"));
+        assertFalse(databaseHelper.getPasswordHasher().needsRehash(registered));
+        assertFalse(databaseHelper.login(new User(HASHED_USER, "Password2!", "student")));
+
+        setStoredPassword("Password1!");
+        assertTrue(databaseHelper.login(new User(HASHED_USER, "Password1!", "student")));
+        String upgraded = storedPassword();
+        assertTrue(upgraded.startsWith("pbkdf2-sha256$"));
+
+        setStoredPassword(new PasswordHasher(1000, 1, 1).hash("Password1!"));
+        assertTrue(databaseHelper.login(new User(HASHED_USER, "Password1!", "student")));
+        assertFalse(databaseHelper.getPasswordHasher().needsRehash(storedPassword()));
+
+        String current = storedPassword();
+        assertTrue(databaseHelper.login(new User(HASHED_USER, "Password1!", "student")));
+        assertEquals("A current hash is left alone", current, storedPassword());
+
+        databaseHelper.updatePassword(HASHED_USER, "Password3!");
+        assertFalse(databaseHelper.login(new User(HASHED_USER, "Password1!", "student")));
+        assertTrue(databaseHelper.login(new User(HASHED_USER, "Password3!", "student")));
+    }
+
+    @Test
+    public void workBeyondTheQueueIsRefused() {
+        PasswordHasher hasher = new PasswordHasher(300_000, 1, 1);
+        CompletableFuture<String> running = hasher.hashAsync("Password1!");
+        CompletableFuture<String> queued = hasher.hashAsync("Password1!");
+        assertThrows(RejectedExecutionException.class, () -> hasher.hashAsync("Password1!"));
+        assertEquals(1, hasher.getRejectedCount());
+        String hash = running.join();
+        assertNotNull(queued.join());
+        assertTrue("The queue has room again", hasher.verify("Password1!", hash));
+    }
+
+    @Test
+    public void calibratedCostIsStoredAndReused() throws SQLException {
+        ConnectionPool pool = databaseHelper.getConnectionPool();
+        // The application's own cost is already stored by connectToDatabase
+        int stored = PasswordHasher.calibratedIterations(pool, false);
+        assertEquals(databaseHelper.getPasswordHasher().getIterations(), stored);
+        try {
+            setSetting("12345");
+            assertEquals("A stored cost is used without calibrating", 12345, PasswordHasher.calibratedIterations(pool, false));
+
+            int recalibrated = PasswordHasher.calibratedIterations(pool, true);
+            assertTrue(recalibrated >= PasswordHasher.MIN_CALIBRATED_ITERATIONS);
+            assertEquals(recalibrated, PasswordHasher.calibratedIterations(pool, false));
+        } finally {
+            setSetting(Integer.toString(stored));
+        }
+    }
+
+    private void setSetting(String value) throws SQLException {
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("UPDATE settings SET settingValue = ? WHERE name = 'hash.iterations'")) {
+            pstmt.setString(1, value);
+            assertEquals(1, pstmt.executeUpdate());
+        }
+    }
+
+    private String storedPassword() throws SQLException {
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT password FROM cse360users WHERE userName = ?")) {
+            pstmt.setString(1, HASHED_USER);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private void setStoredPassword(String password) throws SQLException {
+        try (Connection connection = databaseHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("UPDATE cse360users SET password = ? WHERE userName = ?")) {
+            pstmt.setString(1, password);
+            pstmt.setString(2, HASHED_USER);
+            pstmt.executeUpdate();
+        }
+    }
+}
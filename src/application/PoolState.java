@@ -0,0 +1,35 @@
+package application;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import databasePart1.ConnectionPool;
+
+/**
+ * PoolState is what studentDatabase keeps in memory about one database: the question
+ * search index, the row caches and the change feed. There is one per connection pool, so
+ * every helper connected to the same database shares it, and a helper connected to
+ * another database, such as an in-memory one for benchmarks, never sees its rows.
+ */
+final class PoolState {
+    // The most rows each cache keeps. Set -Dcse360.cache.size=0 to disable the caches.
+    private static final int CACHE_SIZE = Integer.getInteger("cse360.cache.size", 1000);
+
+    private static final Map<ConnectionPool, PoolState> STATES = new IdentityHashMap<>();
+
+    final QuestionSearchIndex searchIndex = new QuestionSearchIndex();
+    final EntityCache<Integer, QuestionData> questionCache = new EntityCache<>("questions", CACHE_SIZE);
+    final EntityCache<Integer, AnswerData> answerCache = new EntityCache<>("answers", CACHE_SIZE);
+    final EntityCache<Integer, ReviewData> reviewCache = new EntityCache<>("reviews", CACHE_SIZE);
+    final ChangeFeed changeFeed = new ChangeFeed();
+
+    private PoolState() {
+    }
+
+    /**
+     * Returns the state for the database behind the pool, creating it on first use
+     */
+    static synchronized PoolState forPool(ConnectionPool pool) {
+        return STATES.computeIfAbsent(pool, p -> new PoolState());
+    }
+}
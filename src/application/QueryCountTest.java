@@ -0,0 +1,219 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import databasePart1.UserDirectory;
+
+/**
+ * Regression tests that count the statements a DAO call executes, so loops that run
+ * one query per row do not creep back into studentDatabase.
+ */
+public class QueryCountTest {
+
+    private static final int ANSWER_COUNT = 5;
+
+    private studentDatabase dbHelper;
+    private int testUserId;
+    private int testReviewerId;
+    private int testQuestionId;
+    private List<Integer> answerIds = new ArrayList<>();
+    private List<Integer> reviewIds = new ArrayList<>();
+
+    /**
+     * Creates a question with several answers, each reviewed once
+     */
+    @Before
+    public void setUp() throws SQLException {
+        dbHelper = new studentDatabase();
+        dbHelper.connectToDatabase();
+
+        testUserId = dbHelper.getUserId("testuser");
+        testReviewerId = dbHelper.addReviewer(testUserId, 1.0);
+        testQuestionId = dbHelper.addQuestion("Query count question", "Query count content", testUserId);
+
+        for (int i = 0; i < ANSWER_COUNT; i++) {
+            int answerId = dbHelper.addAnswer("Query count answer " + i, testQuestionId, testUserId);
+            answerIds.add(answerId);
+            reviewIds.add(dbHelper.addReview(testReviewerId, -1, answerId, "Query count review " + i));
+        }
+    }
+
+    /**
+     * Removes the reviews, answers, question and reviewer created in setUp
+     */
+    @After
+    public void tearDown() {
+        try {
+            dbHelper.removeTrustedReviewer(testUserId, testReviewerId);
+            for (int i = 0; i < reviewIds.size(); i++) {
+                dbHelper.deleteReview(reviewIds.get(i), testReviewerId, -1, answerIds.get(i));
+            }
+            for (int answerId : answerIds) {
+                dbHelper.deleteAnswer(answerId);
+            }
+            dbHelper.deleteQuestion(testQuestionId);
+            // Only the reviewer created above, testuser may have others in a shared database
+            try (Connection connection = dbHelper.getConnectionPool().getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement("DELETE FROM reviewers WHERE id = ?")) {
+                pstmt.setInt(1, testReviewerId);
+                pstmt.executeUpdate();
+            }
+            UserDirectory.forPool(dbHelper.getConnectionPool()).invalidate();
+            dbHelper.closeConnection();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long statementsExecuted() {
+        return dbHelper.getConnectionPool().getStatementsExecuted();
+    }
+
+    /**
+     * Reviews on a user's answers must be loaded with one statement, however many answers there are
+     */
+    @Test
+    public void reviewsForUserAnswersUseOneStatement() throws SQLException {
+        long before = statementsExecuted();
+        List<ReviewData> reviews = dbHelper.getReviewsForUserAnswers(testUserId);
+        long executed = statementsExecuted() - before;
+
+        assertEquals("getReviewsForUserAnswers should run a single statement", 1, executed);
+        for (int reviewId : reviewIds) {
+            assertTrue("Should contain review " + reviewId,
+                reviews.stream().anyMatch(r -> r.id == reviewId));
+        }
+    }
+
+    /**
+     * Trusting a reviewer, new or existing, must be a single statement
+     */
+    @Test
+    public void addTrustedReviewerUsesOneStatement() throws SQLException {
+        long before = statementsExecuted();
+        dbHelper.addTrustedReviewer(testUserId, testReviewerId);
+        dbHelper.addTrustedReviewer(testUserId, testReviewerId);
+        long executed = statementsExecuted() - before;
+
+        assertEquals("Each addTrustedReviewer call should run a single statement", 2, executed);
+        assertTrue(dbHelper.isReviewerTrusted(testUserId, testReviewerId));
+    }
+
+    /**
+     * The maintained answer counter must follow inserts and deletes without a repair
+     */
+    @Test
+    public void answerCountIsMaintained() throws SQLException {
+        assertEquals(ANSWER_COUNT, dbHelper.getQuestionById(testQuestionId).answerCount);
+
+        int extraAnswerId = dbHelper.addAnswer("Extra answer", testQuestionId, testUserId);
+        assertEquals(ANSWER_COUNT + 1, dbHelper.getQuestionById(testQuestionId).answerCount);
+
+        dbHelper.deleteAnswer(extraAnswerId);
+        assertEquals(ANSWER_COUNT, dbHelper.getQuestionById(testQuestionId).answerCount);
+        assertEquals("The counter should match the answers", ANSWER_COUNT, countAnswers(testQuestionId));
+    }
+
+    // Counts the answers of a question directly, bypassing the maintained counter
+    private int countAnswers(int questionId) throws SQLException {
+        try (Connection connection = dbHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT COUNT(*) FROM answers WHERE questionId = ?")) {
+            pstmt.setInt(1, questionId);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Repeated lookups of the same question come from the cache until the question is written
+     */
+    @Test
+    public void questionLookupsAreCachedUntilUpdated() throws SQLException {
+        dbHelper.getQuestionById(testQuestionId);
+        long before = statementsExecuted();
+        for (int i = 0; i < 10; i++) {
+            dbHelper.getQuestionById(testQuestionId);
+        }
+        assertEquals("Cached lookups should not run statements", 0, statementsExecuted() - before);
+
+        dbHelper.updateQuestion(testQuestionId, "Edited title", "Edited content");
+        assertEquals("Edited title", dbHelper.getQuestionById(testQuestionId).title);
+    }
+
+    /**
+     * Once the user directory is warm, name and ID lookups must not touch the database
+     */
+    @Test
+    public void userLookupsUseNoStatementsAfterWarmUp() throws SQLException {
+        dbHelper.getUserId("testuser");
+        long before = statementsExecuted();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(testUserId, dbHelper.getUserId("testuser"));
+            assertEquals("testuser", dbHelper.getUserName(testUserId));
+            assertTrue(dbHelper.getReviewerId(testUserId) != -1);
+            assertEquals("testuser", dbHelper.getReviewerName(testReviewerId));
+        }
+        assertEquals("Warm lookups should not run statements", 0, statementsExecuted() - before);
+    }
+
+    /**
+     * The unread badge count is one lookup and follows sends and reads
+     */
+    @Test
+    public void unreadCountIsMaintained() throws SQLException {
+        int unread = dbHelper.getUnreadMessageCount(testUserId);
+        int messageId = dbHelper.sendMessage(testUserId, testUserId, testQuestionId, -1, "Unread count message");
+        assertEquals(unread + 1, dbHelper.getUnreadMessageCount(testUserId));
+
+        assertTrue(dbHelper.markMessageAsRead(messageId, testUserId));
+        assertTrue("Marking twice still succeeds", dbHelper.markMessageAsRead(messageId, testUserId));
+
+        long before = statementsExecuted();
+        assertEquals(unread, dbHelper.getUnreadMessageCount(testUserId));
+        assertEquals("getUnreadMessageCount should run a single statement", 1, statementsExecuted() - before);
+    }
+
+    @Test
+    public void threadsGroupMessagesAndPage() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            dbHelper.sendMessage(testUserId, testUserId, testQuestionId, -1, "Thread message " + i);
+        }
+
+        dbHelper.getThreadsForUser(testUserId, null, 1);
+        long before = statementsExecuted();
+        List<MessageThreadData> threads = dbHelper.getThreadsForUser(testUserId, null, 1);
+        assertEquals("getThreadsForUser should run a single statement", 1, statementsExecuted() - before);
+
+        MessageThreadData thread = threads.get(0);
+        assertEquals(testQuestionId, thread.relatedQuestionId);
+        assertEquals(3, thread.messageCount);
+        assertEquals(3, thread.unreadCount);
+        assertEquals("Thread message 2", thread.lastSnippet);
+
+        List<MessageData> newest = dbHelper.getThreadMessages(thread.id, null, 2);
+        List<MessageData> older = dbHelper.getThreadMessages(thread.id, newest.get(1), 2);
+        assertEquals("Thread message 2", newest.get(0).content);
+        assertEquals(1, older.size());
+        assertEquals("Thread message 0", older.get(0).content);
+
+        int reply = dbHelper.replyToThread(thread.id, testUserId, "Thread reply");
+        assertEquals(thread.id, dbHelper.getThreadMessages(thread.id, null, 1).get(0).threadId);
+        assertNotEquals(-1, reply);
+
+        int unread = dbHelper.getUnreadMessageCount(testUserId);
+        assertEquals(4, dbHelper.markThreadAsRead(thread.id, testUserId));
+        assertEquals(unread - 4, dbHelper.getUnreadMessageCount(testUserId));
+        assertEquals(0, dbHelper.getThreadsForUser(testUserId, null, 1).get(0).unreadCount);
+    }
+}
@@ -0,0 +1,200 @@
+package application;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * QuestionPager fills a question list one page at a time using the keyset-paginated
+ * studentDatabase.getQuestionsPage, and loads the next page when the user scrolls near
+ * the bottom of the list view showing it. Opening a question list therefore costs one
+ * page instead of the whole questions table.
+ *
+ * Pages are fetched through AsyncStudentDatabase, so scrolling never blocks the FX thread.
+ * Changes from the ChangeFeed are applied to the loaded pages one question at a time.
+ */
+public class QuestionPager {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    // Load the next page once the scroll bar passes this fraction of its range
+    private static final double LOAD_THRESHOLD = 0.9;
+
+    private final AsyncStudentDatabase asyncDatabase;
+    private final ObservableList<QuestionData> questions;
+    private final int pageSize;
+
+    private Boolean resolvedFilter = null;
+    private boolean active = false;
+    private boolean exhausted = false;
+    private CompletableFuture<List<QuestionData>> inFlight = null;
+
+    public QuestionPager(AsyncStudentDatabase asyncDatabase, ObservableList<QuestionData> questions) {
+        this(asyncDatabase, questions, DEFAULT_PAGE_SIZE);
+    }
+
+    public QuestionPager(AsyncStudentDatabase asyncDatabase, ObservableList<QuestionData> questions, int pageSize) {
+        this.asyncDatabase = asyncDatabase;
+        this.questions = questions;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Starts loading more questions whenever the list view is scrolled near its end
+     * @param listView The list view displaying the paged questions
+     */
+    public void attach(ListView<QuestionData> listView) {
+        // The scroll bar only exists once the list view has a skin
+        listView.skinProperty().addListener((obs, oldSkin, newSkin) ->
+            Platform.runLater(() -> hookScrollBar(listView)));
+        if (listView.getSkin() != null) {
+            hookScrollBar(listView);
+        }
+    }
+
+    private void hookScrollBar(ListView<QuestionData> listView) {
+        for (Node node : listView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL
+                    && !bar.getProperties().containsKey(QuestionPager.class)) {
+                bar.getProperties().put(QuestionPager.class, this);
+                bar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= bar.getMax() * LOAD_THRESHOLD) {
+                        loadNextPage();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Replaces the list with the newest page of questions and resumes paging
+     * @param resolved TRUE or FALSE to page only resolved or unresolved questions, null for all
+     * @return Completes once the first page is in the list
+     */
+    public CompletableFuture<List<QuestionData>> reset(Boolean resolved) {
+        stop();
+        resolvedFilter = resolved;
+        active = true;
+        exhausted = false;
+        return fetch(null, true);
+    }
+
+    /**
+     * Stops paging, for when the list is about to be filled with something else such as
+     * search results
+     */
+    public void stop() {
+        active = false;
+        if (inFlight != null) {
+            inFlight.cancel(false);
+            inFlight = null;
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Appends the next page of older questions, if paging is active and there are more
+     */
+    public void loadNextPage() {
+        // Scrolling fires many events, only one page is fetched at a time
+        if (!active || exhausted || inFlight != null) {
+            return;
+        }
+        QuestionData cursor = questions.isEmpty() ? null : questions.get(questions.size() - 1);
+        fetch(cursor, false);
+    }
+
+    /**
+     * Applies a committed change to the loaded questions, fetching only the question it
+     * concerns. Does nothing while paging is stopped, since the list then shows something
+     * else. Must be called on the FX thread.
+     */
+    public void applyChange(ChangeFeed.Change change) {
+        if (!active) {
+            return;
+        }
+        if (change.kind == ChangeFeed.Kind.RELOAD) {
+            // Bulk changes can touch any question, including their counters
+            reset(resolvedFilter);
+            return;
+        }
+        switch (change.table) {
+            case QUESTIONS -> {
+                if (change.kind == ChangeFeed.Kind.DELETED) {
+                    questions.removeIf(question -> question.id == change.id);
+                } else {
+                    refresh(change.id, change.kind == ChangeFeed.Kind.INSERTED);
+                }
+            }
+            // New or removed answers and reviews change the counters shown on their question
+            case ANSWERS, REVIEWS -> {
+                if (change.kind != ChangeFeed.Kind.UPDATED && change.questionId > 0) {
+                    refresh(change.questionId, false);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    // Replaces a loaded question with its current row, or puts a new one at the top
+    private void refresh(int questionId, boolean inserted) {
+        if (!inserted && indexOf(questionId) < 0) {
+            return;
+        }
+        asyncDatabase.getQuestionById(questionId).whenComplete(AsyncStudentDatabase.handle(question -> {
+            int index = indexOf(questionId);
+            boolean matches = question != null
+                    && (resolvedFilter == null || resolvedFilter == question.resolved);
+            if (index >= 0) {
+                if (matches) {
+                    questions.set(index, question);
+                } else {
+                    questions.remove(index);
+                }
+            } else if (inserted && matches && active) {
+                questions.add(0, question);
+            }
+        }, error -> error.printStackTrace()));
+    }
+
+    private int indexOf(int questionId) {
+        for (int i = 0; i < questions.size(); i++) {
+            if (questions.get(i).id == questionId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private CompletableFuture<List<QuestionData>> fetch(QuestionData cursor, boolean replace) {
+        CompletableFuture<List<QuestionData>> request =
+                asyncDatabase.getQuestionsPage(cursor, pageSize, true, resolvedFilter);
+        inFlight = request;
+        return request.whenComplete((page, error) -> {
+            if (inFlight != request) {
+                return;
+            }
+            inFlight = null;
+            if (error != null) {
+                if (!AsyncStudentDatabase.isCancellation(error)) {
+                    AsyncStudentDatabase.unwrap(error).printStackTrace();
+                }
+                return;
+            }
+            exhausted = page.size() < pageSize;
+            if (replace) {
+                questions.setAll(page);
+            } else {
+                questions.addAll(page);
+            }
+        });
+    }
+}
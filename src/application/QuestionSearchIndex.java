@@ -0,0 +1,306 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * QuestionSearchIndex is an in-memory inverted index over question titles and content.
+ * Every token maps to a postings list of question IDs with a score, where title tokens
+ * count more than content tokens. Searches match every query token of at least
+ * MIN_PREFIX_LENGTH characters as a prefix, so partially typed words still find results,
+ * and shorter tokens as whole words only, since a one or two letter prefix matches most
+ * of the index. Only the best results up to a limit are ranked, with a bounded heap.
+ *
+ * The index is filled once from the database and then kept up to date by studentDatabase
+ * as questions are added, edited and deleted. Writes made while the index is loading are
+ * recorded and replayed over the loaded rows, so a question written after the loading
+ * query read the table is not lost or left stale.
+ */
+public class QuestionSearchIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CONTENT_WEIGHT = 1;
+    public static final int MIN_PREFIX_LENGTH = 3;
+
+    // Best first: higher score, then newer (higher) ID
+    private static final Comparator<long[]> RANKING = (a, b) -> a[1] != b[1]
+            ? Long.compare(b[1], a[1])
+            : Long.compare(b[0], a[0]);
+
+    // token -> (question ID -> score)
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    // question ID -> tokens it appears under, so updates and deletes can remove old postings
+    private final Map<Integer, Set<String>> tokensByQuestion = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+    // Writes made during a load, in order, or null when no load is running
+    private List<PendingWrite> pending = null;
+
+    // A put, or a remove when there are no scores
+    private static final class PendingWrite {
+        final int questionId;
+        final Map<String, Integer> scores;
+
+        PendingWrite(int questionId, Map<String, Integer> scores) {
+            this.questionId = questionId;
+            this.scores = scores;
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Starts a load. Must be called before the loading query runs, so every write the
+     * query may have missed is recorded from here on.
+     */
+    public void startLoading() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            tokensByQuestion.clear();
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a question read by the loading query
+     */
+    public void putLoaded(int questionId, String title, String content) {
+        Map<String, Integer> scores = score(title, content);
+        lock.writeLock().lock();
+        try {
+            putLocked(questionId, scores);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replays the writes recorded during the load and makes the index searchable
+     */
+    public void finishLoading() {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                for (PendingWrite write : pending) {
+                    if (write.scores == null) {
+                        removeLocked(write.questionId);
+                    } else {
+                        putLocked(write.questionId, write.scores);
+                    }
+                }
+            }
+            pending = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops everything so the index is reloaded on the next search. Also ends a load
+     * that failed.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            tokensByQuestion.clear();
+            pending = null;
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tokensByQuestion.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a question, replacing anything indexed for it before. Called after the write
+     * has committed. Ignored while the index is neither loaded nor loading, since the
+     * next load reads the question from the table.
+     */
+    public void put(int questionId, String title, String content) {
+        Map<String, Integer> scores = score(title, content);
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(new PendingWrite(questionId, scores));
+            } else if (loaded) {
+                putLocked(questionId, scores);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, Integer> score(String title, String content) {
+        Map<String, Integer> scores = new HashMap<>();
+        for (String token : tokenize(title)) {
+            scores.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(content)) {
+            scores.merge(token, CONTENT_WEIGHT, Integer::sum);
+        }
+        return scores;
+    }
+
+    private void putLocked(int questionId, Map<String, Integer> scores) {
+        removeLocked(questionId);
+        for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(questionId, entry.getValue());
+        }
+        tokensByQuestion.put(questionId, scores.keySet());
+    }
+
+    public void remove(int questionId) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(new PendingWrite(questionId, null));
+            } else {
+                removeLocked(questionId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(int questionId) {
+        Set<String> tokens = tokensByQuestion.remove(questionId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Map<Integer, Integer> list = postings.get(token);
+            if (list != null) {
+                list.remove(questionId);
+                if (list.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds questions containing every token of the search text. Tokens of at least
+     * MIN_PREFIX_LENGTH characters are matched as a prefix of an indexed word, shorter
+     * ones as a whole word.
+     * @param searchText The text typed by the user
+     * @param limit The most IDs to return
+     * @return Question IDs, best match first and newest first among equal scores
+     */
+    public List<Integer> search(String searchText, int limit) {
+        List<String> tokens = tokenize(searchText);
+        if (tokens.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Integer, Integer>> matches = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Map<Integer, Integer> tokenMatches = token.length() < MIN_PREFIX_LENGTH
+                        ? postings.getOrDefault(token, Collections.emptyMap())
+                        : prefixMatches(token);
+                if (tokenMatches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                matches.add(tokenMatches);
+            }
+            // Walk the rarest token's matches and look the others up
+            matches.sort(Comparator.comparingInt(Map::size));
+
+            // The worst of the best results so far is at the head
+            PriorityQueue<long[]> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, RANKING.reversed());
+            candidates:
+            for (Map.Entry<Integer, Integer> entry : matches.get(0).entrySet()) {
+                long score = entry.getValue();
+                for (int i = 1; i < matches.size(); i++) {
+                    Integer other = matches.get(i).get(entry.getKey());
+                    if (other == null) {
+                        continue candidates;
+                    }
+                    score += other;
+                }
+                long[] candidate = { entry.getKey(), score };
+                if (best.size() < limit) {
+                    best.add(candidate);
+                } else if (RANKING.compare(candidate, best.peek()) < 0) {
+                    best.poll();
+                    best.add(candidate);
+                }
+            }
+
+            Integer[] ids = new Integer[best.size()];
+            for (int i = ids.length - 1; i >= 0; i--) {
+                ids[i] = (int) best.poll()[0];
+            }
+            return List.of(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Sums the scores of every indexed word starting with the token
+    private Map<Integer, Integer> prefixMatches(String token) {
+        NavigableMap<String, Map<Integer, Integer>> range =
+                postings.subMap(token, true, token + Character.MAX_VALUE, false);
+        if (range.size() == 1) {
+            return range.firstEntry().getValue();
+        }
+        Map<Integer, Integer> matches = new HashMap<>();
+        for (Map<Integer, Integer> list : range.values()) {
+            for (Map.Entry<Integer, Integer> entry : list.entrySet()) {
+                matches.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Splits text into lower case words made of letters and digits
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Set<String> seen = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase();
+                if (seen.add(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
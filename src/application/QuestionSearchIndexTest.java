@@ -0,0 +1,70 @@
+package application;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests the ranking, result limit and short token handling of the search index, and that
+ * writes made while it loads are not lost.
+ */
+public class QuestionSearchIndexTest {
+
+    private QuestionSearchIndex loadedIndex() {
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        index.startLoading();
+        index.finishLoading();
+        return index;
+    }
+
+    @Test
+    public void ranksByScoreThenNewestAndStopsAtTheLimit() {
+        QuestionSearchIndex index = loadedIndex();
+        for (int id = 1; id <= 50; id++) {
+            index.put(id, "Question " + id, "about javafx");
+        }
+        index.put(51, "JavaFX layouts", "javafx");
+
+        assertEquals(List.of(51, 50, 49), index.search("javafx", 3));
+        assertEquals(51, index.search("java", 100).size());
+        assertEquals(List.of(51), index.search("jav lay", 10));
+        assertTrue(index.search("javafx", 0).isEmpty());
+    }
+
+    @Test
+    public void shortTokensMatchWholeWordsOnly() {
+        QuestionSearchIndex index = loadedIndex();
+        index.put(1, "Thread pools", "the executor");
+        index.put(2, "Threads", "th and j");
+
+        assertEquals(List.of(2), index.search("th", 10));
+        assertEquals(List.of(2), index.search("j", 10));
+        assertEquals(List.of(2, 1), index.search("thr", 10));
+    }
+
+    @Test
+    public void writesDuringALoadAreReplayed() {
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        index.put(9, "Ignored", "before any load");
+        assertTrue(index.search("ignored", 10).isEmpty());
+
+        index.startLoading();
+        // Rows as the loading query read them
+        index.putLoaded(1, "Old title", "content");
+        index.putLoaded(2, "Deleted soon", "content");
+        // Writes committed after the query read the table
+        index.put(1, "New title", "content");
+        index.remove(2);
+        index.put(3, "Added meanwhile", "content");
+        assertFalse(index.isLoaded());
+        index.finishLoading();
+
+        assertTrue(index.isLoaded());
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(List.of(1), index.search("new", 10));
+        assertTrue(index.search("deleted", 10).isEmpty());
+        assertEquals(List.of(3), index.search("added", 10));
+        assertEquals(2, index.size());
+    }
+}
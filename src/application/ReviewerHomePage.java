@@ -2,10 +2,10 @@ package application;
 
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
 import java.util.List;
 
 import databasePart1.DatabaseHelper;
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -21,6 +21,7 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
@@ -59,12 +60,19 @@ public class ReviewerHomePage {
     private AnswerData selectedAnswer = null;
     private ReviewData selectedReview = null;
     private ObservableList<QuestionData> questions = FXCollections.observableArrayList();
+    private AsyncStudentDatabase asyncDatabase; // Runs database calls off the FX thread
+    private QuestionPager questionPager; // Loads the question list one page at a time
     private ObservableList<AnswerData> answers = FXCollections.observableArrayList();
     private ObservableList<ReviewData> reviews = FXCollections.observableArrayList();
+    private ThreadView threadView; // The conversations of the Messages tab
 
     public ReviewerHomePage(studentDatabase studentDatabaseHelper, User user) {
         this.studentDatabaseHelper = studentDatabaseHelper;
         this.user = user;
+        this.asyncDatabase = new AsyncStudentDatabase(studentDatabaseHelper);
+        this.questionPager = new QuestionPager(asyncDatabase, questions);
+        this.threadView = new ThreadView(asyncDatabase, user.getUserName(), this::showError,
+                this::checkForUnreadMessages);
     }
 
     public void show(Stage primaryStage) {
@@ -95,6 +103,10 @@ public class ReviewerHomePage {
         primaryStage.setScene(scene);
         primaryStage.show();
         
+        // Keep the lists current with changes made anywhere in the application
+        studentDatabaseHelper.getChangeFeed().subscribeWhileShowing(primaryStage, scene,
+            EnumSet.allOf(ChangeFeed.Table.class), this::applyChange);
+        
         // Load initial data
         loadAllQuestions();
         
@@ -102,6 +114,29 @@ public class ReviewerHomePage {
         checkForUnreadMessages();
     }
     
+    /**
+     * Applies a committed change to the question, answer, review and message lists
+     * @param change The change published by the ChangeFeed
+     */
+    private void applyChange(ChangeFeed.Change change) {
+        questionPager.applyChange(change);
+        ChangeDeltas.applyToAnswers(asyncDatabase, answers, selectedQuestion, change);
+        if (ChangeDeltas.affectsReviews(change, selectedQuestion, selectedAnswer)) {
+            ChangeDeltas.reloadReviews(asyncDatabase, reviews, selectedQuestion, selectedAnswer);
+        }
+        if (change.table == ChangeFeed.Table.MESSAGES) {
+            try {
+                // Only changes to this user's messages can alter the list or the unread count
+                if (change.involvesUser(studentDatabaseHelper.getUserId(user.getUserName()))) {
+                    threadView.refresh();
+                    checkForUnreadMessages();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
     /**
      * Creates the content for the Questions & Answers tab
      * @return The VBox containing the Q&A tab content
@@ -157,15 +192,15 @@ public class ReviewerHomePage {
         searchField.setId("searchField");
         HBox.setHgrow(searchField, Priority.ALWAYS);
         searchField.textProperty().addListener((obs, oldText, newText) -> {
-            try {
-                if (newText != null && !newText.trim().isEmpty()) {
-                    questions.setAll(studentDatabaseHelper.searchQuestions(newText.trim()));
-                } else {
-                    loadAllQuestions();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                showError("Error searching questions: " + e.getMessage());
+            if (newText != null && !newText.trim().isEmpty()) {
+                // Only the results for the newest text are shown
+                questionPager.stop();
+                asyncDatabase.latest("search", () -> asyncDatabase.searchQuestions(newText.trim()))
+                    .whenComplete(AsyncStudentDatabase.handle(questions::setAll,
+                        e -> showError("Error searching questions: " + e.getMessage())));
+            } else {
+                asyncDatabase.cancelLatest("search");
+                loadAllQuestions();
             }
         });
         
@@ -178,7 +213,13 @@ public class ReviewerHomePage {
         filterComboBox.setValue("All Questions");
         filterComboBox.setOnAction(e -> applyFilter(filterComboBox.getValue()));
         
-        searchFilterBox.getChildren().addAll(searchField, filterLabel, filterComboBox);
+        // Spinner shown while any database call is running
+        ProgressIndicator loadingIndicator = new ProgressIndicator();
+        loadingIndicator.setPrefSize(20, 20);
+        loadingIndicator.visibleProperty().bind(asyncDatabase.loadingProperty());
+        loadingIndicator.managedProperty().bind(asyncDatabase.loadingProperty());
+        
+        searchFilterBox.getChildren().addAll(searchField, loadingIndicator, filterLabel, filterComboBox);
         
         return searchFilterBox;
     }
@@ -198,6 +239,7 @@ public class ReviewerHomePage {
         // Question list view
         questionListView = new ListView<>(questions);
         questionListView.setId("questionListView");
+        questionPager.attach(questionListView);
         VBox.setVgrow(questionListView, Priority.ALWAYS);
         
         // Custom cell factory for question items
@@ -211,14 +253,15 @@ public class ReviewerHomePage {
             (obs, oldSelection, newSelection) -> {
                 selectedQuestion = newSelection;
                 if (newSelection != null) {
-                    try {
-                        answers.setAll(studentDatabaseHelper.getAnswersForQuestion(newSelection.id));
-                        reviews.setAll(studentDatabaseHelper.getReviewsForQuestion(newSelection.id));
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                        showError("Error loading answers or reviews: " + e.getMessage());
-                    }
+                    asyncDatabase.latest("answers", () -> asyncDatabase.getAnswersForQuestion(newSelection.id))
+                        .whenComplete(AsyncStudentDatabase.handle(answers::setAll,
+                            e -> showError("Error loading answers or reviews: " + e.getMessage())));
+                    asyncDatabase.latest("reviews", () -> asyncDatabase.getReviewsForQuestion(newSelection.id))
+                        .whenComplete(AsyncStudentDatabase.handle(reviews::setAll,
+                            e -> showError("Error loading answers or reviews: " + e.getMessage())));
                 } else {
+                    asyncDatabase.cancelLatest("answers");
+                    asyncDatabase.cancelLatest("reviews");
                     answers.clear();
                     reviews.clear();
                 }
@@ -903,12 +946,9 @@ public class ReviewerHomePage {
      * Loads all questions from the database
      */
     private void loadAllQuestions() {
-        try {
-            questions.setAll(studentDatabaseHelper.getQuestions());
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading questions: " + e.getMessage());
-        }
+        asyncDatabase.cancelLatest("search");
+        questionPager.reset(null).whenComplete(AsyncStudentDatabase.handle(page -> { },
+            e -> showError("Error loading questions: " + e.getMessage())));
     }
     
     /**
@@ -1165,127 +1205,48 @@ public class ReviewerHomePage {
     }
     
     /**
-     * Creates the content for the Messages tab
+     * Creates the content for the Messages tab. The left side lists the user's conversations,
+     * the right side shows the selected conversation and a reply box.
      * @return VBox containing the Messages tab content
      */
     private VBox createMessagesTabContent() {
         VBox messagesLayout = new VBox(10);
         messagesLayout.setPadding(new Insets(10));
         
-        // Create a split pane to divide messages list and message content
+        // Create a split pane to divide the conversation list and the conversation
         SplitPane splitPane = new SplitPane();
         
-        // Left side: Messages list
+        // Left side: Conversation list
         VBox messagesListBox = new VBox(10);
         messagesListBox.setPadding(new Insets(5));
         
-        Label messagesLabel = new Label("Messages");
+        Label messagesLabel = new Label("Conversations");
         messagesLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
         
-        // Messages list
-        ListView<MessageData> messagesListView = new ListView<>();
-        VBox.setVgrow(messagesListView, Priority.ALWAYS);
+        ListView<MessageThreadData> threadsListView = threadView.getThreadsView();
+        VBox.setVgrow(threadsListView, Priority.ALWAYS);
         
-        // Custom cell factory for messages
-        messagesListView.setCellFactory(lv -> new ListCell<MessageData>() {
-            private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
-            
-            @Override
-            protected void updateItem(MessageData message, boolean empty) {
-                super.updateItem(message, empty);
-                
-                if (empty || message == null) {
-                    setText(null);
-                    setGraphic(null);
-                } else {
-                    VBox container = new VBox(5);
-                    container.setPadding(new Insets(5));
-                    
-                    // Message header with sender/receiver info
-                    HBox headerBox = new HBox(5);
-                    boolean isIncoming = false;
-					try {
-						isIncoming = message.receiverId == studentDatabaseHelper.getUserId(user.getUserName());
-					} catch (SQLException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}
-                    
-                    Label fromToLabel = new Label(isIncoming ? "From: " + message.senderName : "To: " + message.receiverName);
-                    fromToLabel.setStyle("-fx-font-weight: bold;");
-                    
-                    Label dateLabel = new Label(message.createDate.toLocalDateTime().format(formatter));
-                    dateLabel.setStyle("-fx-font-size: 11px;");
-                    
-                    HBox.setHgrow(dateLabel, Priority.ALWAYS);
-                    dateLabel.setAlignment(javafx.geometry.Pos.CENTER_RIGHT);
-                    
-                    headerBox.getChildren().addAll(fromToLabel, dateLabel);
-                    
-                    // If unread and an incoming message, highlight it
-                    if (!message.isRead && isIncoming) {
-                        Label unreadLabel = new Label("[Unread]");
-                        unreadLabel.setTextFill(Color.RED);
-                        unreadLabel.setStyle("-fx-font-weight: bold;");
-                        headerBox.getChildren().add(unreadLabel);
-                        setStyle("-fx-background-color: #f0f8ff;"); // Light blue background for unread
-                    } else {
-                        setStyle("");
-                    }
-                    
-                    // Message preview (first 50 chars)
-                    String preview = message.content.length() > 50 ? 
-                            message.content.substring(0, 47) + "..." : message.content;
-                    Label previewLabel = new Label(preview);
-                    previewLabel.setWrapText(true);
-                    
-                    // Related content info
-                    String relatedInfo = "";
-                    try {
-                        if (message.relatedQuestionId != -1) {
-                            QuestionData question = studentDatabaseHelper.getQuestionById(message.relatedQuestionId);
-                            if (question != null) {
-                                relatedInfo = "Re: Question \"" + question.title + "\"";
-                            }
-                        } else if (message.relatedAnswerId != -1) {
-                            AnswerData answer = studentDatabaseHelper.getAnswerById(message.relatedAnswerId);
-                            if (answer != null) {
-                                relatedInfo = "Re: Answer to a question";
-                            }
-                        }
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                    
-                    if (!relatedInfo.isEmpty()) {
-                        Label relatedLabel = new Label(relatedInfo);
-                        relatedLabel.setStyle("-fx-font-style: italic; -fx-font-size: 11px;");
-                        container.getChildren().addAll(headerBox, previewLabel, relatedLabel);
-                    } else {
-                        container.getChildren().addAll(headerBox, previewLabel);
-                    }
-                    
-                    setGraphic(container);
-                    setText(null);
-                }
-            }
-        });
+        Button moreThreadsButton = new Button("Load More Conversations");
+        moreThreadsButton.setMaxWidth(Double.MAX_VALUE);
+        moreThreadsButton.setOnAction(e -> threadView.loadMoreThreads());
         
-        messagesListBox.getChildren().addAll(messagesLabel, messagesListView);
+        messagesListBox.getChildren().addAll(messagesLabel, threadsListView, moreThreadsButton);
         
-        // Right side: Message content and reply
+        // Right side: Conversation history and reply
         VBox messageContentBox = new VBox(10);
         messageContentBox.setPadding(new Insets(5));
         
-        Label messageDetailLabel = new Label("Message Details");
+        Label messageDetailLabel = new Label("Conversation");
         messageDetailLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
         
-        // Message content area
-        TextArea messageContentArea = new TextArea();
-        messageContentArea.setEditable(false);
-        messageContentArea.setWrapText(true);
-        messageContentArea.setPrefHeight(200);
-        VBox.setVgrow(messageContentArea, Priority.ALWAYS);
+        Button olderMessagesButton = new Button("Load Older Messages");
+        olderMessagesButton.setMaxWidth(Double.MAX_VALUE);
+        olderMessagesButton.setOnAction(e -> threadView.loadOlderMessages());
+        
+        // Conversation history, oldest message first
+        ListView<MessageData> threadMessagesView = threadView.getMessagesView();
+        threadMessagesView.setPrefHeight(200);
+        VBox.setVgrow(threadMessagesView, Priority.ALWAYS);
         
         // Reply section
         Label replyLabel = new Label("Reply");
@@ -1298,123 +1259,65 @@ public class ReviewerHomePage {
         Button sendReplyButton = new Button("Send Reply");
         sendReplyButton.setMaxWidth(Double.MAX_VALUE);
         
-        messageContentBox.getChildren().addAll(messageDetailLabel, messageContentArea, replyLabel, replyArea, sendReplyButton);
+        messageContentBox.getChildren().addAll(messageDetailLabel, olderMessagesButton, threadMessagesView,
+                replyLabel, replyArea, sendReplyButton);
         
         // Add both sides to the split pane
         splitPane.getItems().addAll(messagesListBox, messageContentBox);
         splitPane.setDividerPositions(0.4);
         VBox.setVgrow(splitPane, Priority.ALWAYS);
         
-        // Handle message selection
-        messagesListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal != null) {
-                messageContentArea.setText(newVal.content);
-                
-                // If this is an incoming message and it's unread, mark it as read
-                try {
-                    int currentUserId = studentDatabaseHelper.getUserId(user.getUserName());
-                    if (newVal.receiverId == currentUserId && !newVal.isRead) {
-                        studentDatabaseHelper.markMessageAsRead(newVal.id, currentUserId);
-                        
-                        // Refresh the list to update the unread status
-                        refreshMessagesList(messagesListView);
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    showError("Error marking message as read: " + e.getMessage());
-                }
-            } else {
-                messageContentArea.clear();
-            }
-        });
-        
         // Handle reply button
         sendReplyButton.setOnAction(e -> {
-            MessageData selectedMessage = messagesListView.getSelectionModel().getSelectedItem();
-            if (selectedMessage != null && !replyArea.getText().trim().isEmpty()) {
-                try {
-                    int currentUserId = studentDatabaseHelper.getUserId(user.getUserName());
-                    int recipientId = (selectedMessage.senderId == currentUserId) ? 
-                            selectedMessage.receiverId : selectedMessage.senderId;
-                    
-                    int messageId = studentDatabaseHelper.sendMessage(
-                            currentUserId, 
-                            recipientId, 
-                            selectedMessage.relatedQuestionId, 
-                            selectedMessage.relatedAnswerId, 
-                            replyArea.getText().trim());
-                    
+            MessageThreadData selectedThread = threadView.getSelectedThread();
+            String replyText = replyArea.getText().trim();
+            if (selectedThread != null && !replyText.isEmpty()) {
+                threadView.reply(selectedThread, replyText).whenComplete(AsyncStudentDatabase.handle(messageId -> {
                     if (messageId != -1) {
                         replyArea.clear();
                         showSuccess("Reply sent successfully!");
                         
-                        // Refresh the messages list
-                        refreshMessagesList(messagesListView);
+                        // Refresh the conversation list and the open conversation
+                        threadView.refresh();
                     } else {
                         showError("Failed to send reply");
                     }
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                    showError("Error sending reply: " + ex.getMessage());
-                }
-            } else if (replyArea.getText().trim().isEmpty()) {
+                }, ex -> showError("Error sending reply: " + ex.getMessage())));
+            } else if (replyText.isEmpty()) {
                 showError("Reply cannot be empty");
             } else {
-                showError("Please select a message to reply to");
+                showError("Please select a conversation to reply to");
             }
         });
         
         // Add a refresh button
         Button refreshButton = new Button("Refresh Messages");
-        refreshButton.setOnAction(e -> refreshMessagesList(messagesListView));
+        refreshButton.setOnAction(e -> threadView.refresh());
         
         messagesLayout.getChildren().addAll(refreshButton, splitPane);
         
-        // Initial loading of messages
-        try {
-            int userId = studentDatabaseHelper.getUserId(user.getUserName());
-            List<MessageData> messages = studentDatabaseHelper.getMessagesForUser(userId);
-            messagesListView.setItems(FXCollections.observableArrayList(messages));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading messages: " + e.getMessage());
-        }
+        // Initial loading of the conversation list
+        threadView.refresh();
         
         return messagesLayout;
     }
     
-    /**
-     * Helper method to refresh the messages list
-     */
-    private void refreshMessagesList(ListView<MessageData> messagesListView) {
-        try {
-            int userId = studentDatabaseHelper.getUserId(user.getUserName());
-            List<MessageData> messages = studentDatabaseHelper.getMessagesForUser(userId);
-            messagesListView.setItems(FXCollections.observableArrayList(messages));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error refreshing messages: " + e.getMessage());
-        }
-    }
-    
     /**
      * Check for unread messages and update UI indicators
      */
     private void checkForUnreadMessages() {
         try {
             int userId = studentDatabaseHelper.getUserId(user.getUserName());
-            List<MessageData> unreadMessages = studentDatabaseHelper.getUnreadMessagesForUser(userId);
+            int unreadCount = studentDatabaseHelper.getUnreadMessageCount(userId);
             
-            if (!unreadMessages.isEmpty()) {
-                // Update the Messages tab to indicate unread messages
-                Tab messagesTab = tabPane.getTabs().stream()
-                        .filter(tab -> tab.getText().startsWith("Messages"))
-                        .findFirst()
-                        .orElse(null);
-                
-                if (messagesTab != null) {
-                    messagesTab.setText("Messages (" + unreadMessages.size() + ")");
-                }
+            // Update the Messages tab to indicate unread messages
+            Tab messagesTab = tabPane.getTabs().stream()
+                    .filter(tab -> tab.getText().startsWith("Messages"))
+                    .findFirst()
+                    .orElse(null);
+            
+            if (messagesTab != null) {
+                messagesTab.setText(unreadCount > 0 ? "Messages (" + unreadCount + ")" : "Messages");
             }
         } catch (SQLException e) {
             e.printStackTrace();
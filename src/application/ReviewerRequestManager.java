@@ -31,7 +31,7 @@ public class ReviewerRequestManager {
     }
     
     public void show(Stage primaryStage) {
-        if (userRole.contains("instructor")) {
+        if (Role.parse(userRole).contains(Role.INSTRUCTOR)) {
             showInstructorInterface(primaryStage);
         } else {
             showStudentInterface(primaryStage);
@@ -271,7 +271,7 @@ public class ReviewerRequestManager {
     
     private void returnToHome(Stage stage) {
         try {
-            if (userRole.contains("instructor")) {
+            if (Role.parse(userRole).contains(Role.INSTRUCTOR)) {
                 new InstructorHomePage(studentDb, currentUser).show(stage);
             } else {
                 new StudentHomePage(studentDb).show(stage);
@@ -0,0 +1,78 @@
+package application;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * The Role enum lists the roles a user can hold. Roles are stored one row per role in
+ * the user_roles table, and the comma-separated cse360users.role column is kept only as
+ * a display copy of the same set.
+ */
+public enum Role {
+    ADMIN("admin"),
+    STUDENT("student"),
+    INSTRUCTOR("instructor"),
+    STAFF("staff"),
+    REVIEWER("reviewer");
+
+    private final String dbName;
+
+    Role(String dbName) {
+        this.dbName = dbName;
+    }
+
+    /**
+     * Returns the name stored in the database, such as "admin"
+     */
+    public String getDbName() {
+        return dbName;
+    }
+
+    /**
+     * Returns the role with the given database name, ignoring case and surrounding
+     * spaces, or null if there is none
+     */
+    public static Role fromDbName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String trimmed = name.trim();
+        for (Role role : values()) {
+            if (role.dbName.equalsIgnoreCase(trimmed)) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a comma-separated role string, skipping names that are not roles
+     */
+    public static EnumSet<Role> parse(String roles) {
+        EnumSet<Role> set = EnumSet.noneOf(Role.class);
+        if (roles == null) {
+            return set;
+        }
+        for (String name : roles.split(",")) {
+            Role role = fromDbName(name);
+            if (role != null) {
+                set.add(role);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Joins roles into the comma-separated form, in declaration order
+     */
+    public static String join(Set<Role> roles) {
+        EnumSet<Role> ordered = EnumSet.noneOf(Role.class);
+        ordered.addAll(roles);
+        StringJoiner joiner = new StringJoiner(",");
+        for (Role role : ordered) {
+            joiner.add(role.dbName);
+        }
+        return joiner.toString();
+    }
+}
@@ -128,7 +128,7 @@ public class SetupAccountPage {
             String code = inviteCodeField.getText();
             
             // check for username validation
-            String usernameValidationMessage = UserNameRecognizer.checkForValidUserName(userName);
+            String usernameValidationMessage = UserNameRecognizer.SILENT.recognize(userName).getErrorMessage();
             if (!usernameValidationMessage.isEmpty()) {
                 usernameErrorLabel.setText("Username Error: " + usernameValidationMessage);
                 usernameSuccessLabel.setText(""); 
@@ -139,7 +139,7 @@ public class SetupAccountPage {
             }
 
             // check for password validation
-            String passwordValidationMessage = PasswordEvaluator.evaluatePassword(password);
+            String passwordValidationMessage = PasswordEvaluator.SILENT.evaluate(password).getErrorMessage();
             if (!passwordValidationMessage.isEmpty()) {
                 passwordErrorLabel.setText("Password Error: " + passwordValidationMessage);
                 passwordSuccessLabel.setText(""); 
@@ -159,7 +159,7 @@ public class SetupAccountPage {
             	if(!databaseHelper.doesUserExist(userName)) {
             		
             		// Validate the invitation code
-            		if(databaseHelper.validateInvitationCode(code)) {
+            		if(databaseHelper.validateInvitationCode(code, userName)) {
             			
             			// Create a new user and register them in the database
 		            	User user=new User(userName, password, buttonVal);
@@ -1,8 +1,9 @@
 package application;
 
+import databasePart1.AuditLog;
 import databasePart1.DatabaseHelper;
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
@@ -16,8 +17,13 @@ import javafx.util.Callback;
 
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * StaffHomePage provides a comprehensive interface for staff members to manage the Q&A system.
@@ -28,7 +34,8 @@ public class StaffHomePage {
     
     private final DatabaseHelper databaseHelper;
     private final studentDatabase studentDatabaseHelper;
-    private User currentUser;
+    private final AuditLog auditLog; // Keeps a trail of the moderation actions taken here
+    private final User currentUser; // The logged-in staff user, recorded as the actor in the audit log
     private Stage primaryStage;
     
     // UI components
@@ -46,22 +53,62 @@ public class StaffHomePage {
     private AnswerData selectedAnswer = null;
     private ReviewData selectedReview = null;
     private ObservableList<QuestionData> questions = FXCollections.observableArrayList();
+    private AsyncStudentDatabase asyncDatabase; // Runs database calls off the FX thread
+    private QuestionPager questionPager; // Loads the question list one page at a time
     private ObservableList<AnswerData> answers = FXCollections.observableArrayList();
     private ObservableList<ReviewData> reviews = FXCollections.observableArrayList();
     private ObservableList<ReviewerRecord> reviewers = FXCollections.observableArrayList();
-    private ObservableList<MessageData> messages = FXCollections.observableArrayList();
+    private ThreadView threadView; // The conversations of the Messages tab
+    private final Map<Integer, String> reviewerNames = new HashMap<>();
+    private final Set<Integer> reviewerNamesLoading = new HashSet<>(); // Reviewer IDs being looked up
 
     /**
      * Constructor initializes the database helpers and the current user
+     * @param databaseHelper The account database
+     * @param currentUser The user who logged in
      */
-    public StaffHomePage(DatabaseHelper databaseHelper) {
+    public StaffHomePage(DatabaseHelper databaseHelper, User currentUser) {
         this.databaseHelper = databaseHelper;
+        this.currentUser = currentUser;
         this.studentDatabaseHelper = new studentDatabase();
         try {
             this.studentDatabaseHelper.connectToDatabase();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        this.asyncDatabase = new AsyncStudentDatabase(studentDatabaseHelper);
+        this.questionPager = new QuestionPager(asyncDatabase, questions);
+        this.threadView = new ThreadView(asyncDatabase, currentUser.getUserName(), this::showError, () -> { });
+        this.auditLog = AuditLog.forPool(studentDatabaseHelper.getConnectionPool());
+        
+        // Resolve reviewer names in bulk whenever the review list changes
+        reviews.addListener((ListChangeListener<ReviewData>) change -> resolveReviewerNames());
+    }
+
+    /**
+     * Resolves the names of reviewers in the review list that are not known yet,
+     * using one query for the whole list instead of one per rendered cell. The query
+     * runs off the FX thread and the cells are redrawn once the names arrive.
+     */
+    private void resolveReviewerNames() {
+        Set<Integer> missing = new HashSet<>();
+        for (ReviewData review : reviews) {
+            if (!reviewerNames.containsKey(review.reviewerId) && !reviewerNamesLoading.contains(review.reviewerId)) {
+                missing.add(review.reviewerId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        reviewerNamesLoading.addAll(missing);
+        asyncDatabase.getReviewerNames(missing)
+            .whenComplete((names, error) -> reviewerNamesLoading.removeAll(missing))
+            .whenComplete(AsyncStudentDatabase.handle(names -> {
+                reviewerNames.putAll(names);
+                if (reviewListView != null) {
+                    reviewListView.refresh();
+                }
+            }, e -> { }));
     }
 
     /**
@@ -71,15 +118,6 @@ public class StaffHomePage {
     public void show(Stage primaryStage) {
         this.primaryStage = primaryStage;
         
-        // Try to get current user info
-        try {
-            int userId = studentDatabaseHelper.getUserId("testuser"); // In a real implementation, use actual username
-            String userName = studentDatabaseHelper.getUserName(userId);
-            this.currentUser = new User(userName, "", "staff");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
         // Create main layout with TabPane
         tabPane = new TabPane();
         
@@ -115,10 +153,36 @@ public class StaffHomePage {
         // Store reference to primary stage
         this.primaryStage = primaryStage;
         
+        // Keep the lists current with changes made anywhere in the application
+        studentDatabaseHelper.getChangeFeed().subscribeWhileShowing(primaryStage, scene,
+            EnumSet.allOf(ChangeFeed.Table.class), this::applyChange);
+        
         // Load initial data
         loadAllQuestions();
         loadAllReviewers();
-        loadAllMessages();
+        threadView.refresh();
+    }
+    
+    /**
+     * Applies a committed change to the question, answer, review and message lists
+     * @param change The change published by the ChangeFeed
+     */
+    private void applyChange(ChangeFeed.Change change) {
+        questionPager.applyChange(change);
+        ChangeDeltas.applyToAnswers(asyncDatabase, answers, selectedQuestion, change);
+        if (ChangeDeltas.affectsReviews(change, selectedQuestion, selectedAnswer)) {
+            ChangeDeltas.reloadReviews(asyncDatabase, reviews, selectedQuestion, selectedAnswer);
+        }
+        if (change.table == ChangeFeed.Table.MESSAGES) {
+            try {
+                // Only changes to this user's messages can alter the list
+                if (change.involvesUser(studentDatabaseHelper.getUserId(currentUser.getUserName()))) {
+                    threadView.refresh();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
     }
     
     /**
@@ -176,15 +240,15 @@ public class StaffHomePage {
         searchField.setId("searchField");
         HBox.setHgrow(searchField, Priority.ALWAYS);
         searchField.textProperty().addListener((obs, oldText, newText) -> {
-            try {
-                if (newText != null && !newText.trim().isEmpty()) {
-                    questions.setAll(studentDatabaseHelper.searchQuestions(newText.trim()));
-                } else {
-                    loadAllQuestions();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                showError("Error searching questions: " + e.getMessage());
+            if (newText != null && !newText.trim().isEmpty()) {
+                // Only the results for the newest text are shown
+                questionPager.stop();
+                asyncDatabase.latest("search", () -> asyncDatabase.searchQuestions(newText.trim()))
+                    .whenComplete(AsyncStudentDatabase.handle(questions::setAll,
+                        e -> showError("Error searching questions: " + e.getMessage())));
+            } else {
+                asyncDatabase.cancelLatest("search");
+                loadAllQuestions();
             }
         });
         
@@ -197,7 +261,13 @@ public class StaffHomePage {
         filterComboBox.setValue("All Questions");
         filterComboBox.setOnAction(e -> applyFilter(filterComboBox.getValue()));
         
-        searchFilterBox.getChildren().addAll(searchField, filterLabel, filterComboBox);
+        // Spinner shown while any database call is running
+        ProgressIndicator loadingIndicator = new ProgressIndicator();
+        loadingIndicator.setPrefSize(20, 20);
+        loadingIndicator.visibleProperty().bind(asyncDatabase.loadingProperty());
+        loadingIndicator.managedProperty().bind(asyncDatabase.loadingProperty());
+        
+        searchFilterBox.getChildren().addAll(searchField, loadingIndicator, filterLabel, filterComboBox);
         
         return searchFilterBox;
     }
@@ -217,6 +287,7 @@ public class StaffHomePage {
         // Question list view
         questionListView = new ListView<>(questions);
         questionListView.setId("questionListView");
+        questionPager.attach(questionListView);
         VBox.setVgrow(questionListView, Priority.ALWAYS);
         
         // Custom cell factory for question items
@@ -230,14 +301,15 @@ public class StaffHomePage {
             (obs, oldSelection, newSelection) -> {
                 selectedQuestion = newSelection;
                 if (newSelection != null) {
-                    try {
-                        answers.setAll(studentDatabaseHelper.getAnswersForQuestion(newSelection.id));
-                        reviews.setAll(studentDatabaseHelper.getReviewsForQuestion(newSelection.id));
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                        showError("Error loading answers or reviews: " + e.getMessage());
-                    }
+                    asyncDatabase.latest("answers", () -> asyncDatabase.getAnswersForQuestion(newSelection.id))
+                        .whenComplete(AsyncStudentDatabase.handle(answers::setAll,
+                            e -> showError("Error loading answers or reviews: " + e.getMessage())));
+                    asyncDatabase.latest("reviews", () -> asyncDatabase.getReviewsForQuestion(newSelection.id))
+                        .whenComplete(AsyncStudentDatabase.handle(reviews::setAll,
+                            e -> showError("Error loading answers or reviews: " + e.getMessage())));
                 } else {
+                    asyncDatabase.cancelLatest("answers");
+                    asyncDatabase.cancelLatest("reviews");
                     answers.clear();
                     reviews.clear();
                 }
@@ -566,121 +638,46 @@ public class StaffHomePage {
         Label headerLabel = new Label("Staff Communication");
         headerLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
         
-        // Split pane for messages list and content
+        // Split pane for the conversation list and the open conversation
         SplitPane splitPane = new SplitPane();
         
-        // Left side: Messages list
+        // Left side: Conversation list
         VBox messagesListBox = new VBox(10);
         messagesListBox.setPadding(new Insets(5));
         
-        Label messagesLabel = new Label("Messages");
+        Label messagesLabel = new Label("Conversations");
         messagesLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold;");
         
-        // Messages list
-        ListView<MessageData> messagesListView = new ListView<>(messages);
-        VBox.setVgrow(messagesListView, Priority.ALWAYS);
-        
-        // Custom cell factory for messages
-        messagesListView.setCellFactory(lv -> new ListCell<MessageData>() {
-            private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
-            
-            @Override
-            protected void updateItem(MessageData message, boolean empty) {
-                super.updateItem(message, empty);
-                
-                if (empty || message == null) {
-                    setText(null);
-                    setGraphic(null);
-                } else {
-                    VBox container = new VBox(5);
-                    container.setPadding(new Insets(5));
-                    
-                    // Message header with sender/receiver info
-                    HBox headerBox = new HBox(5);
-                    String displayName = message.senderName + " → " + message.receiverName;
-                    Label fromToLabel = new Label(displayName);
-                    fromToLabel.setStyle("-fx-font-weight: bold;");
-                    
-                    Label dateLabel = new Label(message.createDate.toLocalDateTime().format(formatter));
-                    dateLabel.setStyle("-fx-font-size: 11px;");
-                    
-                    HBox.setHgrow(dateLabel, Priority.ALWAYS);
-                    dateLabel.setAlignment(javafx.geometry.Pos.CENTER_RIGHT);
-                    
-                    headerBox.getChildren().addAll(fromToLabel, dateLabel);
-                    
-                    // If unread, highlight it
-                    if (!message.isRead) {
-                        Label unreadLabel = new Label("[Unread]");
-                        unreadLabel.setTextFill(Color.RED);
-                        unreadLabel.setStyle("-fx-font-weight: bold;");
-                        headerBox.getChildren().add(unreadLabel);
-                        setStyle("-fx-background-color: #f0f8ff;"); // Light blue background for unread
-                    } else {
-                        setStyle("");
-                    }
-                    
-                    // Message preview (first 50 chars)
-                    String preview = message.content.length() > 50 ? 
-                            message.content.substring(0, 47) + "..." : message.content;
-                    Label previewLabel = new Label(preview);
-                    previewLabel.setWrapText(true);
-                    
-                    container.getChildren().addAll(headerBox, previewLabel);
-                    setGraphic(container);
-                    setText(null);
-                }
-            }
-        });
-        
-        // Filter buttons for messages
-        HBox filterButtonsBox = new HBox(10);
+        ListView<MessageThreadData> threadsListView = threadView.getThreadsView();
+        VBox.setVgrow(threadsListView, Priority.ALWAYS);
         
-        Button allMessagesButton = new Button("All");
-        allMessagesButton.setOnAction(e -> loadAllMessages());
+        HBox listButtonsBox = new HBox(10);
         
-        Button inboxButton = new Button("Inbox");
-        inboxButton.setOnAction(e -> loadInboxMessages());
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setOnAction(e -> threadView.refresh());
         
-        Button sentButton = new Button("Sent");
-        sentButton.setOnAction(e -> loadSentMessages());
+        Button moreThreadsButton = new Button("Load More Conversations");
+        moreThreadsButton.setOnAction(e -> threadView.loadMoreThreads());
         
-        Button unreadButton = new Button("Unread");
-        unreadButton.setOnAction(e -> loadUnreadMessages());
+        listButtonsBox.getChildren().addAll(refreshButton, moreThreadsButton);
         
-        filterButtonsBox.getChildren().addAll(allMessagesButton, inboxButton, sentButton, unreadButton);
+        messagesListBox.getChildren().addAll(messagesLabel, threadsListView, listButtonsBox);
         
-        messagesListBox.getChildren().addAll(messagesLabel, filterButtonsBox, messagesListView);
-        
-        // Right side: Message content and reply
+        // Right side: Conversation history and reply
         VBox messageContentBox = new VBox(10);
         messageContentBox.setPadding(new Insets(5));
         
-        Label messageDetailLabel = new Label("Message Details");
+        Label messageDetailLabel = new Label("Conversation");
         messageDetailLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold;");
         
-        // Message header info
-        HBox messageHeaderBox = new HBox(10);
-        Label fromLabel = new Label("From:");
-        Label fromValueLabel = new Label();
-        messageHeaderBox.getChildren().addAll(fromLabel, fromValueLabel);
-        
-        HBox messageHeaderBox2 = new HBox(10);
-        Label toLabel = new Label("To:");
-        Label toValueLabel = new Label();
-        messageHeaderBox2.getChildren().addAll(toLabel, toValueLabel);
-        
-        HBox messageHeaderBox3 = new HBox(10);
-        Label dateLabel = new Label("Date:");
-        Label dateValueLabel = new Label();
-        messageHeaderBox3.getChildren().addAll(dateLabel, dateValueLabel);
-        
-        // Message content area
-        TextArea messageContentArea = new TextArea();
-        messageContentArea.setEditable(false);
-        messageContentArea.setWrapText(true);
-        messageContentArea.setPrefHeight(200);
-        VBox.setVgrow(messageContentArea, Priority.ALWAYS);
+        Button olderMessagesButton = new Button("Load Older Messages");
+        olderMessagesButton.setMaxWidth(Double.MAX_VALUE);
+        olderMessagesButton.setOnAction(e -> threadView.loadOlderMessages());
+        
+        // Conversation history, oldest message first
+        ListView<MessageData> threadMessagesView = threadView.getMessagesView();
+        threadMessagesView.setPrefHeight(200);
+        VBox.setVgrow(threadMessagesView, Priority.ALWAYS);
         
         // Reply section
         Label replyLabel = new Label("Reply");
@@ -709,20 +706,20 @@ public class StaffHomePage {
         HBox actionButtonsBox = new HBox(10);
         
         Button replyButton = new Button("Send Reply");
-        replyButton.setOnAction(e -> handleSendReply(messageContentArea, replyArea));
+        replyButton.setOnAction(e -> handleSendReply(replyArea));
         
         Button newMessageButton = new Button("Send New Message");
         newMessageButton.setOnAction(e -> handleSendNewMessage(recipientTypeComboBox, recipientField, replyArea));
         
         Button deleteMessageButton = new Button("Delete Message");
-        deleteMessageButton.setOnAction(e -> handleDeleteMessage(messagesListView));
+        deleteMessageButton.setOnAction(e -> handleDeleteMessage(threadMessagesView));
         
         actionButtonsBox.getChildren().addAll(replyButton, newMessageButton, deleteMessageButton);
         
         messageContentBox.getChildren().addAll(
             messageDetailLabel,
-            messageHeaderBox, messageHeaderBox2, messageHeaderBox3,
-            messageContentArea,
+            olderMessagesButton,
+            threadMessagesView,
             newMessageBox,
             replyLabel, replyArea,
             actionButtonsBox
@@ -733,28 +730,6 @@ public class StaffHomePage {
         splitPane.setDividerPositions(0.4);
         VBox.setVgrow(splitPane, Priority.ALWAYS);
         
-        // Handle message selection
-        messagesListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal != null) {
-                messageContentArea.setText(newVal.content);
-                fromValueLabel.setText(newVal.senderName);
-                toValueLabel.setText(newVal.receiverName);
-                dateValueLabel.setText(newVal.createDate.toString());
-                
-                // Mark message as read if it's incoming and unread
-                try {
-                    int currentUserId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-                    if (newVal.receiverId == currentUserId && !newVal.isRead) {
-                        studentDatabaseHelper.markMessageAsRead(newVal.id, currentUserId);
-                        loadAllMessages(); // Refresh the message list
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    showError("Error marking message as read: " + e.getMessage());
-                }
-            }
-        });
-        
         // Add everything to the main layout
         messagesLayout.getChildren().addAll(headerLabel, splitPane);
         
@@ -1015,12 +990,7 @@ public class StaffHomePage {
                     HBox metaBox = new HBox(10);
                     
                     // Try to get reviewer name
-                    String reviewerName = "Unknown Reviewer";
-                    try {
-                        reviewerName = studentDatabaseHelper.getReviewerName(review.reviewerId);
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
+                    String reviewerName = reviewerNames.getOrDefault(review.reviewerId, "Unknown Reviewer");
                     
                     Label reviewerLabel = new Label("By: " + reviewerName);
                     reviewerLabel.setStyle("-fx-font-style: italic;");
@@ -1091,37 +1061,31 @@ public class StaffHomePage {
      * @param filterValue The selected filter value
      */
     private void applyFilter(String filterValue) {
-        try {
-            switch (filterValue) {
-                case "All Questions":
-                    loadAllQuestions();
-                    break;
-                case "Resolved":
-                    List<QuestionData> allQuestions = studentDatabaseHelper.getQuestions();
-                    questions.setAll(allQuestions.stream()
-                        .filter(q -> q.resolved)
-                        .collect(java.util.stream.Collectors.toList()));
-                    break;
-                case "Unresolved":
-                    List<QuestionData> allUnresolvedQuestions = studentDatabaseHelper.getQuestions();
-                    questions.setAll(allUnresolvedQuestions.stream()
-                        .filter(q -> !q.resolved)
-                        .collect(java.util.stream.Collectors.toList()));
-                    break;
-                case "Needs Moderation":
-                    // This would require additional database functionality to flag content for moderation
-                    showInfo("Moderation filtering would be implemented in a full system");
-                    loadAllQuestions();
-                    break;
-                case "Reported Content":
-                    // This would require additional database functionality to track reported content
-                    showInfo("Reported content filtering would be implemented in a full system");
-                    loadAllQuestions();
-                    break;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error applying filter: " + e.getMessage());
+        switch (filterValue) {
+            case "All Questions":
+                loadAllQuestions();
+                break;
+            case "Resolved":
+                // A search still running must not replace the page
+                asyncDatabase.cancelLatest("search");
+                questionPager.reset(true).whenComplete(AsyncStudentDatabase.handle(page -> { },
+                    e -> showError("Error applying filter: " + e.getMessage())));
+                break;
+            case "Unresolved":
+                asyncDatabase.cancelLatest("search");
+                questionPager.reset(false).whenComplete(AsyncStudentDatabase.handle(page -> { },
+                    e -> showError("Error applying filter: " + e.getMessage())));
+                break;
+            case "Needs Moderation":
+                // This would require additional database functionality to flag content for moderation
+                showInfo("Moderation filtering would be implemented in a full system");
+                loadAllQuestions();
+                break;
+            case "Reported Content":
+                // This would require additional database functionality to track reported content
+                showInfo("Reported content filtering would be implemented in a full system");
+                loadAllQuestions();
+                break;
         }
     }
     
@@ -1129,12 +1093,9 @@ public class StaffHomePage {
      * Loads all questions from the database
      */
     private void loadAllQuestions() {
-        try {
-            questions.setAll(studentDatabaseHelper.getQuestions());
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading questions: " + e.getMessage());
-        }
+        asyncDatabase.cancelLatest("search");
+        questionPager.reset(null).whenComplete(AsyncStudentDatabase.handle(page -> { },
+            e -> showError("Error loading questions: " + e.getMessage())));
     }
     
     /**
@@ -1151,66 +1112,6 @@ public class StaffHomePage {
         }
     }
     
-    /**
-     * Loads all messages for the current user
-     */
-    private void loadAllMessages() {
-        try {
-            int userId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-            List<MessageData> allMessages = studentDatabaseHelper.getMessagesForUser(userId);
-            messages.setAll(allMessages);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading messages: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Loads inbox messages (received messages)
-     */
-    private void loadInboxMessages() {
-        try {
-            int userId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-            List<MessageData> inboxMessages = studentDatabaseHelper.getMessagesForUser(userId).stream()
-                .filter(m -> m.receiverId == userId)
-                .collect(java.util.stream.Collectors.toList());
-            messages.setAll(inboxMessages);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading inbox messages: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Loads sent messages
-     */
-    private void loadSentMessages() {
-        try {
-            int userId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-            List<MessageData> sentMessages = studentDatabaseHelper.getMessagesForUser(userId).stream()
-                .filter(m -> m.senderId == userId)
-                .collect(java.util.stream.Collectors.toList());
-            messages.setAll(sentMessages);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading sent messages: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Loads unread messages
-     */
-    private void loadUnreadMessages() {
-        try {
-            int userId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-            List<MessageData> unreadMessages = studentDatabaseHelper.getUnreadMessagesForUser(userId);
-            messages.setAll(unreadMessages);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading unread messages: " + e.getMessage());
-        }
-    }
-    
     /**
      * Loads system statistics
      */
@@ -1237,6 +1138,7 @@ public class StaffHomePage {
         
         try {
             studentDatabaseHelper.updateQuestion(selectedQuestion.id, editedText, editedText);
+            audit(AuditLog.Action.QUESTION_EDITED, "question", selectedQuestion.id, selectedQuestion.title);
             loadAllQuestions();
             moderationTextArea.clear();
             showSuccess("Question updated successfully!");
@@ -1263,7 +1165,9 @@ public class StaffHomePage {
         confirmation.showAndWait().ifPresent(result -> {
             if (result == ButtonType.OK) {
                 try {
-                    studentDatabaseHelper.deleteQuestion(selectedQuestion.id);
+                    CascadeDeleter.Report report = studentDatabaseHelper.deleteQuestion(selectedQuestion.id);
+                    audit(AuditLog.Action.QUESTION_DELETED, "question", selectedQuestion.id,
+                            selectedQuestion.title + " " + report);
                     loadAllQuestions();
                     answers.clear();
                     reviews.clear();
@@ -1290,6 +1194,7 @@ public class StaffHomePage {
         try {
             if (selectedQuestion.resolved) {
                 studentDatabaseHelper.unmarkResolved(selectedQuestion.id);
+                audit(AuditLog.Action.QUESTION_REOPENED, "question", selectedQuestion.id, null);
                 showSuccess("Question is no longer marked as resolved.");
             } else {
                 // If no answer is selected, prompt the user
@@ -1310,6 +1215,8 @@ public class StaffHomePage {
                             try {
                                 // Mark as resolved with the first answer
                                 studentDatabaseHelper.markAnswerAsResolved(selectedQuestion.id, answers.get(0).id);
+                                audit(AuditLog.Action.QUESTION_RESOLVED, "question", selectedQuestion.id,
+                                        "answer=" + answers.get(0).id);
                                 loadAllQuestions();
                                 showSuccess("Question marked as resolved with the first answer!");
                             } catch (SQLException e) {
@@ -1322,6 +1229,8 @@ public class StaffHomePage {
                 }
                 
                 studentDatabaseHelper.markAnswerAsResolved(selectedQuestion.id, selectedAnswer.id);
+                audit(AuditLog.Action.QUESTION_RESOLVED, "question", selectedQuestion.id,
+                        "answer=" + selectedAnswer.id);
                 showSuccess("Question marked as resolved with the selected answer!");
             }
             loadAllQuestions();
@@ -1369,6 +1278,7 @@ public class StaffHomePage {
             if (result != null && !result.trim().isEmpty()) {
                 try {
                     studentDatabaseHelper.updateAnswer(selectedAnswer.id, result.trim());
+                    audit(AuditLog.Action.ANSWER_EDITED, "answer", selectedAnswer.id, null);
                     if (selectedQuestion != null) {
                         answers.setAll(studentDatabaseHelper.getAnswersForQuestion(selectedQuestion.id));
                     }
@@ -1399,6 +1309,8 @@ public class StaffHomePage {
             if (result == ButtonType.OK) {
                 try {
                     studentDatabaseHelper.deleteAnswer(selectedAnswer.id);
+                    audit(AuditLog.Action.ANSWER_DELETED, "answer", selectedAnswer.id,
+                            "author=" + selectedAnswer.userName);
                     if (selectedQuestion != null) {
                         answers.setAll(studentDatabaseHelper.getAnswersForQuestion(selectedQuestion.id));
                     }
@@ -1426,6 +1338,8 @@ public class StaffHomePage {
             // Toggle the needsClarification status
             boolean newStatus = !selectedAnswer.needsClarification;
             studentDatabaseHelper.markAnswerNeedsClarification(selectedAnswer.id, newStatus);
+            audit(AuditLog.Action.ANSWER_CLARIFICATION_CHANGED, "answer", selectedAnswer.id,
+                    "needsClarification=" + newStatus);
             
             // Refresh the answers list
             if (selectedQuestion != null) {
@@ -1457,6 +1371,8 @@ public class StaffHomePage {
         
         try {
             studentDatabaseHelper.markAnswerAsResolved(selectedQuestion.id, selectedAnswer.id);
+            audit(AuditLog.Action.QUESTION_RESOLVED, "question", selectedQuestion.id,
+                    "answer=" + selectedAnswer.id);
             loadAllQuestions();
             showSuccess("Question marked as resolved with the selected answer!");
         } catch (SQLException e) {
@@ -1508,6 +1424,7 @@ public class StaffHomePage {
                         selectedReview.questionId, 
                         selectedReview.answerId,
                         result.trim());
+                    audit(AuditLog.Action.REVIEW_EDITED, "review", selectedReview.id, null);
                     
                     // Refresh reviews
                     if (selectedQuestion != null && selectedReview.questionId != -1) {
@@ -1547,6 +1464,8 @@ public class StaffHomePage {
                         selectedReview.reviewerId, 
                         selectedReview.questionId, 
                         selectedReview.answerId);
+                    audit(AuditLog.Action.REVIEW_DELETED, "review", selectedReview.id,
+                            "reviewer=" + selectedReview.reviewerId);
                     
                     // Refresh reviews
                     if (selectedQuestion != null && selectedReview.questionId != -1) {
@@ -1687,7 +1606,7 @@ public class StaffHomePage {
             dialog.showAndWait().ifPresent(messageText -> {
                 if (!messageText.trim().isEmpty()) {
                     try {
-                        int senderId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
+                        int senderId = studentDatabaseHelper.getUserId(currentUser.getUserName());
                         int messageId = studentDatabaseHelper.sendMessage(
                                 senderId, 
                                 recipientId, 
@@ -1737,36 +1656,19 @@ public class StaffHomePage {
     }
     
     /**
-     * Handles the action of sending a reply to a message
+     * Records a moderation action by the current staff user in the audit log
      */
-    private void handleSendReply(TextArea messageContentArea, TextArea replyArea) {
-        // Find the messages ListView in the Messages tab
-        Tab messagesTab = tabPane.getTabs().stream()
-                .filter(tab -> tab.getText().equals("Messages"))
-                .findFirst()
-                .orElse(null);
-        
-        if (messagesTab == null) {
-            showError("Messages tab not found");
-            return;
-        }
-        
-        // Navigate to the messages ListView inside the tab content hierarchy
-        VBox messagesLayout = (VBox) messagesTab.getContent();
-        SplitPane splitPane = (SplitPane) messagesLayout.getChildren().get(1);
-        VBox messagesListBox = (VBox) splitPane.getItems().get(0);
-        ListView<MessageData> messagesListView = null;
-        
-        // Find the ListView in the messagesListBox children
-        for (javafx.scene.Node node : messagesListBox.getChildren()) {
-            if (node instanceof ListView) {
-                messagesListView = (ListView<MessageData>) node;
-                break;
-            }
-        }
-        
-        if (messagesListView == null || messagesListView.getSelectionModel().getSelectedItem() == null) {
-            showError("Please select a message to reply to");
+    private void audit(AuditLog.Action action, String targetType, int targetId, String details) {
+        auditLog.record(currentUser.getUserName(), action, targetType, targetId, details);
+    }
+    
+    /**
+     * Handles the action of sending a reply to the open conversation
+     */
+    private void handleSendReply(TextArea replyArea) {
+        MessageThreadData selectedThread = threadView.getSelectedThread();
+        if (selectedThread == null) {
+            showError("Please select a conversation to reply to");
             return;
         }
         
@@ -1776,30 +1678,15 @@ public class StaffHomePage {
             return;
         }
         
-        MessageData selectedMessage = messagesListView.getSelectionModel().getSelectedItem();
-        
-        try {
-            int currentUserId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
-            int recipientId = selectedMessage.senderId == currentUserId ? selectedMessage.receiverId : selectedMessage.senderId;
-            
-            int messageId = studentDatabaseHelper.sendMessage(
-                    currentUserId, 
-                    recipientId, 
-                    selectedMessage.relatedQuestionId, 
-                    selectedMessage.relatedAnswerId, 
-                    replyText);
-            
+        threadView.reply(selectedThread, replyText).whenComplete(AsyncStudentDatabase.handle(messageId -> {
             if (messageId != -1) {
                 replyArea.clear();
                 showSuccess("Reply sent successfully!");
-                loadAllMessages();
+                threadView.refresh();
             } else {
                 showError("Failed to send reply");
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error sending reply: " + e.getMessage());
-        }
+        }, e -> showError("Error sending reply: " + e.getMessage())));
     }
     
     /**
@@ -1825,7 +1712,7 @@ public class StaffHomePage {
                 return;
             }
             
-            int senderId = studentDatabaseHelper.getUserId("testuser"); // Change to actual username in real implementation
+            int senderId = studentDatabaseHelper.getUserId(currentUser.getUserName());
             int messageId = studentDatabaseHelper.sendMessage(
                     senderId, 
                     recipientId, 
@@ -1837,7 +1724,7 @@ public class StaffHomePage {
                 replyArea.clear();
                 recipientField.clear();
                 showSuccess("Message sent successfully!");
-                loadAllMessages();
+                threadView.refresh();
             } else {
                 showError("Failed to send message");
             }
@@ -1866,7 +1753,7 @@ public class StaffHomePage {
             if (result == ButtonType.OK) {
                 // Note: Message deletion would need to be implemented in studentDatabase class
                 showInfo("Message deletion would be implemented in a full system");
-                loadAllMessages();
+                threadView.refresh();
             }
         });
     }
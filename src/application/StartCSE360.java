@@ -31,6 +31,14 @@ public class StartCSE360 extends Application {
         	System.out.println(e.getMessage());
         }
     }
+
+	@Override
+	public void stop() {
+		// Write the audit entries that are still queued before the JVM exits
+		if (databaseHelper.getAuditLog() != null) {
+			databaseHelper.getAuditLog().flush();
+		}
+	}
 	
 
 }
@@ -6,6 +6,7 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.paint.Color;
@@ -14,8 +15,13 @@ import javafx.util.Callback;
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import databasePart1.DatabaseHelper;
 
@@ -43,6 +49,8 @@ public class StudentHomePage {
     private QuestionData selectedQuestion = null;
     private AnswerData selectedAnswer = null;
     private ObservableList<QuestionData> questions = FXCollections.observableArrayList();
+    private AsyncStudentDatabase asyncDatabase; // Runs database calls off the FX thread
+    private QuestionPager questionPager; // Loads the question list one page at a time
     private ObservableList<AnswerData> answers = FXCollections.observableArrayList();
     
     private ListView<ReviewData> reviewListView;
@@ -52,6 +60,8 @@ public class StudentHomePage {
     private CheckBox showTrustedOnlyCheckBox; // Checkbox to filter reviews
     private ObservableList<ReviewData> allReviews = FXCollections.observableArrayList(); // All reviews
     private List<Integer> trustedReviewerIds = new ArrayList<>(); // List of trusted reviewer IDs
+    private final Map<Integer, String> reviewerNames = new HashMap<>(); // Reviewer names by reviewer ID
+    private final Set<Integer> reviewerNamesLoading = new HashSet<>(); // Reviewer IDs being looked up
 
     
     /**
@@ -61,6 +71,8 @@ public class StudentHomePage {
  // Update the constructor to initialize the user ID
     public StudentHomePage(studentDatabase studentDatabaseHelper) {
         this.studentDatabaseHelper = studentDatabaseHelper;
+        this.asyncDatabase = new AsyncStudentDatabase(studentDatabaseHelper);
+        this.questionPager = new QuestionPager(asyncDatabase, questions);
         
         // Get the current user ID (using test user)
         try {
@@ -69,6 +81,35 @@ public class StudentHomePage {
             e.printStackTrace();
             this.currentUserId = -1;
         }
+        
+        // Resolve reviewer names in bulk whenever the review list changes
+        reviews.addListener((ListChangeListener<ReviewData>) change -> resolveReviewerNames());
+    }
+
+    /**
+     * Resolves the names of reviewers in the review list that are not known yet,
+     * using one query for the whole list instead of one per rendered cell. The query
+     * runs off the FX thread and the cells are redrawn once the names arrive.
+     */
+    private void resolveReviewerNames() {
+        Set<Integer> missing = new HashSet<>();
+        for (ReviewData review : reviews) {
+            if (!reviewerNames.containsKey(review.reviewerId) && !reviewerNamesLoading.contains(review.reviewerId)) {
+                missing.add(review.reviewerId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        reviewerNamesLoading.addAll(missing);
+        asyncDatabase.getReviewerNames(missing)
+            .whenComplete((names, error) -> reviewerNamesLoading.removeAll(missing))
+            .whenComplete(AsyncStudentDatabase.handle(names -> {
+                reviewerNames.putAll(names);
+                if (reviewListView != null) {
+                    reviewListView.refresh();
+                }
+            }, e -> { }));
     }
 
     
@@ -105,20 +146,42 @@ public class StudentHomePage {
         primaryStage.setScene(scene);
         primaryStage.show();
         
+        // Keep the lists current with changes made anywhere in the application
+        studentDatabaseHelper.getChangeFeed().subscribeWhileShowing(primaryStage, scene,
+            EnumSet.of(ChangeFeed.Table.QUESTIONS, ChangeFeed.Table.ANSWERS, ChangeFeed.Table.REVIEWS),
+            this::applyChange);
+        
         // Load initial data
         loadAllQuestions();
         loadTrustedReviewerIds();
     }
     
-    private void loadTrustedReviewerIds() {
-        try {
-            trustedReviewerIds = studentDatabaseHelper.getTrustedReviewerIds(currentUserId);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading trusted reviewers: " + e.getMessage());
+    /**
+     * Applies a committed change to the question, answer and review lists
+     * @param change The change published by the ChangeFeed
+     */
+    private void applyChange(ChangeFeed.Change change) {
+        questionPager.applyChange(change);
+        ChangeDeltas.applyToAnswers(asyncDatabase, answers, selectedQuestion, change);
+        // Reviews are only shown for the selected answer on this page
+        if (selectedAnswer != null && ChangeDeltas.affectsReviews(change, selectedQuestion, selectedAnswer)) {
+            ChangeDeltas.reloadReviews(asyncDatabase, reviews, selectedQuestion, selectedAnswer);
         }
     }
     
+    private void loadTrustedReviewerIds() {
+        asyncDatabase.getTrustedReviewerIds(currentUserId).whenComplete(AsyncStudentDatabase.handle(ids -> {
+            trustedReviewerIds = new ArrayList<>(ids);
+            // Reviews may already be on screen with the wrong trust state
+            if (showTrustedOnlyCheckBox != null && showTrustedOnlyCheckBox.isSelected()) {
+                applyTrustFilter();
+            }
+            if (reviewListView != null) {
+                reviewListView.refresh();
+            }
+        }, e -> showError("Error loading trusted reviewers: " + e.getMessage())));
+    }
+    
     /**
      * Creates the content for the Questions & Answers tab
      * @return The VBox containing the Q&A tab content
@@ -163,15 +226,14 @@ public class StudentHomePage {
         searchField.setId("searchField");
         HBox.setHgrow(searchField, Priority.ALWAYS);
         searchField.textProperty().addListener((obs, oldText, newText) -> {
-            try {
-                if (newText != null && !newText.trim().isEmpty()) {
-                    questions.setAll(studentDatabaseHelper.searchQuestions(newText.trim()));
-                } else {
-                    loadAllQuestions();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                showError("Error searching questions: " + e.getMessage());
+            if (newText != null && !newText.trim().isEmpty()) {
+                // Only the results for the newest text are shown
+                questionPager.stop();
+                asyncDatabase.latest("search", () -> asyncDatabase.searchQuestions(newText.trim()))
+                    .whenComplete(AsyncStudentDatabase.handle(questions::setAll,
+                        e -> showError("Error searching questions: " + e.getMessage())));
+            } else {
+                loadAllQuestions();
             }
         });
         
@@ -184,7 +246,13 @@ public class StudentHomePage {
         filterComboBox.setValue("All Questions");
         filterComboBox.setOnAction(e -> applyFilter(filterComboBox.getValue()));
         
-        searchFilterBox.getChildren().addAll(searchField, filterLabel, filterComboBox);
+        // Spinner shown while any database call is running
+        ProgressIndicator loadingIndicator = new ProgressIndicator();
+        loadingIndicator.setPrefSize(20, 20);
+        loadingIndicator.visibleProperty().bind(asyncDatabase.loadingProperty());
+        loadingIndicator.managedProperty().bind(asyncDatabase.loadingProperty());
+        
+        searchFilterBox.getChildren().addAll(searchField, loadingIndicator, filterLabel, filterComboBox);
         
         return searchFilterBox;
     }
@@ -204,6 +272,7 @@ public class StudentHomePage {
         // Question list view
         questionListView = new ListView<>(questions);
         questionListView.setId("questionListView");
+        questionPager.attach(questionListView);
         VBox.setVgrow(questionListView, Priority.ALWAYS);
         
         // Custom cell factory for question items
@@ -217,13 +286,11 @@ public class StudentHomePage {
             (obs, oldSelection, newSelection) -> {
                 selectedQuestion = newSelection;
                 if (newSelection != null) {
-                    try {
-                        answers.setAll(studentDatabaseHelper.getAnswersForQuestion(newSelection.id));
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                        showError("Error loading answers: " + e.getMessage());
-                    }
+                    asyncDatabase.latest("answers", () -> asyncDatabase.getAnswersForQuestion(newSelection.id))
+                        .whenComplete(AsyncStudentDatabase.handle(answers::setAll,
+                            e -> showError("Error loading answers: " + e.getMessage())));
                 } else {
+                    asyncDatabase.cancelLatest("answers");
                     answers.clear();
                 }
             });
@@ -385,13 +452,8 @@ public class StudentHomePage {
                     String reviewerName = "Reviewer";
                     boolean isTrusted = false;
                     
-                    try {
-                        reviewerName = studentDatabaseHelper.getReviewerName(review.reviewerId);
-                        isTrusted = trustedReviewerIds.contains(review.reviewerId);
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                        reviewerName = "Reviewer #" + review.reviewerId;
-                    }
+                    reviewerName = reviewerNames.getOrDefault(review.reviewerId, "Reviewer #" + review.reviewerId);
+                    isTrusted = trustedReviewerIds.contains(review.reviewerId);
                     
                     // Metadata line
                     HBox metaBox = new HBox(10);
@@ -954,32 +1016,28 @@ public class StudentHomePage {
      * @param filterValue The selected filter value
      */
     private void applyFilter(String filterValue) {
-        try {
-            switch (filterValue) {
-                case "All Questions":
-                    loadAllQuestions();
-                    break;
-                case "My Questions":
-                    int userId = studentDatabaseHelper.getUserId("testuser");
-                    List<QuestionData> myQuestions = studentDatabaseHelper.getQuestionsForUser(userId);
-                    questions.setAll(myQuestions);
-                    break;
-                case "Resolved":
-                    List<QuestionData> allQuestions = studentDatabaseHelper.getQuestions();
-                    questions.setAll(allQuestions.stream()
-                        .filter(q -> q.resolved)
-                        .collect(java.util.stream.Collectors.toList()));
-                    break;
-                case "Unresolved":
-                    List<QuestionData> allUnresolvedQuestions = studentDatabaseHelper.getQuestions();
-                    questions.setAll(allUnresolvedQuestions.stream()
-                        .filter(q -> !q.resolved)
-                        .collect(java.util.stream.Collectors.toList()));
-                    break;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error applying filter: " + e.getMessage());
+        switch (filterValue) {
+            case "All Questions":
+                loadAllQuestions();
+                break;
+            case "My Questions":
+                questionPager.stop();
+                asyncDatabase.latest("search", () -> asyncDatabase.supply(db ->
+                        db.getQuestionsForUser(db.getUserId("testuser"))))
+                    .whenComplete(AsyncStudentDatabase.handle(questions::setAll,
+                        e -> showError("Error applying filter: " + e.getMessage())));
+                break;
+            case "Resolved":
+                // A search or "My Questions" still running must not replace the page
+                asyncDatabase.cancelLatest("search");
+                questionPager.reset(true).whenComplete(AsyncStudentDatabase.handle(page -> { },
+                    e -> showError("Error applying filter: " + e.getMessage())));
+                break;
+            case "Unresolved":
+                asyncDatabase.cancelLatest("search");
+                questionPager.reset(false).whenComplete(AsyncStudentDatabase.handle(page -> { },
+                    e -> showError("Error applying filter: " + e.getMessage())));
+                break;
         }
     }
     
@@ -987,12 +1045,9 @@ public class StudentHomePage {
      * Loads all questions from the database
      */
     private void loadAllQuestions() {
-        try {
-            questions.setAll(studentDatabaseHelper.getQuestions());
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Error loading questions: " + e.getMessage());
-        }
+        asyncDatabase.cancelLatest("search");
+        questionPager.reset(null).whenComplete(AsyncStudentDatabase.handle(page -> { },
+            e -> showError("Error loading questions: " + e.getMessage())));
     }
     
     /**
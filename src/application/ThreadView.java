@@ -0,0 +1,306 @@
+package application;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+
+/**
+ * ThreadView is the conversation list and open conversation of the Messages tabs. It
+ * lists a user's threads a page at a time, newest activity first, and shows the newest
+ * messages of the selected thread, loading older ones on request. The pages only lay
+ * out its two list views.
+ *
+ * Every database call goes through AsyncStudentDatabase, and a result that arrives after
+ * the user has moved on is dropped. All methods must be called on the FX thread.
+ */
+final class ThreadView {
+    static final int THREAD_PAGE_SIZE = 50;
+    static final int MESSAGE_PAGE_SIZE = 50;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
+
+    private final AsyncStudentDatabase asyncDatabase;
+    private final String userName;
+    private final Consumer<String> onError;
+    private final Runnable onThreadRead;
+
+    private final ListView<MessageThreadData> threadsListView = new ListView<>(); // Newest activity first
+    private final ListView<MessageData> messagesView = new ListView<>(); // Oldest message first
+    // Titles of the questions threads are about, null for questions that are gone
+    private final Map<Integer, String> questionTitles = new HashMap<>();
+    private final Set<Integer> questionTitlesLoading = new HashSet<>();
+    private MessageThreadData shownThread = null; // The conversation whose history is shown
+    private boolean refreshingThreads = false; // Set while the conversation list is replaced
+
+    /**
+     * @param asyncDatabase	Runs the database calls
+     * @param userName		The user whose conversations are shown
+     * @param onError		Shows an error message to the user
+     * @param onThreadRead	Called after a thread with unread messages has been marked read
+     */
+    ThreadView(AsyncStudentDatabase asyncDatabase, String userName, Consumer<String> onError, Runnable onThreadRead) {
+        this.asyncDatabase = asyncDatabase;
+        this.userName = userName;
+        this.onError = onError;
+        this.onThreadRead = onThreadRead;
+
+        threadsListView.setCellFactory(lv -> new ThreadCell());
+        messagesView.setCellFactory(lv -> new ListCell<MessageData>() {
+            @Override
+            protected void updateItem(MessageData message, boolean empty) {
+                super.updateItem(message, empty);
+                if (empty || message == null) {
+                    setText(null);
+                } else {
+                    setWrapText(true);
+                    setText(message.senderName + " (" + message.createDate.toLocalDateTime().format(DATE_FORMAT)
+                            + "):\n" + message.content);
+                }
+            }
+        });
+
+        threadsListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (refreshingThreads) {
+                return;
+            }
+            shownThread = newVal;
+            if (newVal == null) {
+                asyncDatabase.cancelLatest("threadMessages");
+                messagesView.getItems().clear();
+            } else {
+                showThread(newVal);
+            }
+        });
+    }
+
+    ListView<MessageThreadData> getThreadsView() {
+        return threadsListView;
+    }
+
+    ListView<MessageData> getMessagesView() {
+        return messagesView;
+    }
+
+    MessageThreadData getSelectedThread() {
+        return threadsListView.getSelectionModel().getSelectedItem();
+    }
+
+    /**
+     * Reloads the first page of conversations, keeping the open conversation selected
+     */
+    void refresh() {
+        asyncDatabase.cancelLatest("moreThreads");
+        asyncDatabase.latest("threads", () -> asyncDatabase.supply(db ->
+                db.getThreadsForUser(db.getUserId(userName), null, THREAD_PAGE_SIZE)))
+            .whenComplete(AsyncStudentDatabase.handle(this::setThreads,
+                e -> onError.accept("Error loading messages: " + e.getMessage())));
+    }
+
+    /**
+     * Adds the next page of conversations below the ones already listed
+     */
+    void loadMoreThreads() {
+        ObservableList<MessageThreadData> threads = threadsListView.getItems();
+        if (threads.isEmpty()) {
+            return;
+        }
+        MessageThreadData last = threads.get(threads.size() - 1);
+        asyncDatabase.latest("moreThreads", () -> asyncDatabase.supply(db ->
+                db.getThreadsForUser(db.getUserId(userName), last, THREAD_PAGE_SIZE)))
+            .whenComplete(AsyncStudentDatabase.handle(page -> {
+                // Drop the page if the list has been reloaded meanwhile
+                ObservableList<MessageThreadData> current = threadsListView.getItems();
+                if (!current.isEmpty() && current.get(current.size() - 1) == last) {
+                    current.addAll(page);
+                    resolveQuestionTitles(page);
+                }
+            }, e -> onError.accept("Error loading conversations: " + e.getMessage())));
+    }
+
+    /**
+     * Adds the previous page of the open thread above the messages already shown
+     */
+    void loadOlderMessages() {
+        MessageThreadData thread = shownThread;
+        if (thread == null || messagesView.getItems().isEmpty()) {
+            return;
+        }
+        MessageData oldest = messagesView.getItems().get(0);
+        asyncDatabase.latest("olderMessages", () -> asyncDatabase.getThreadMessages(thread.id, oldest, MESSAGE_PAGE_SIZE))
+            .whenComplete(AsyncStudentDatabase.handle(page -> {
+                ObservableList<MessageData> messages = messagesView.getItems();
+                if (shownThread == thread && !messages.isEmpty() && messages.get(0) == oldest) {
+                    Collections.reverse(page);
+                    messages.addAll(0, page);
+                }
+            }, e -> onError.accept("Error loading messages: " + e.getMessage())));
+    }
+
+    /**
+     * Replies to a thread as the user
+     * @return Completes on the FX thread with the new message ID, or -1 if it was not sent
+     */
+    CompletableFuture<Integer> reply(MessageThreadData thread, String content) {
+        return asyncDatabase.supply(db -> db.replyToThread(thread.id, db.getUserId(userName), content));
+    }
+
+    // Shows the newest messages of a thread and marks the thread as read
+    private void showThread(MessageThreadData thread) {
+        asyncDatabase.cancelLatest("olderMessages");
+        asyncDatabase.latest("threadMessages", () -> asyncDatabase.getThreadMessages(thread.id, null, MESSAGE_PAGE_SIZE))
+            .whenComplete(AsyncStudentDatabase.handle(page -> {
+                if (shownThread != thread) {
+                    return;
+                }
+                Collections.reverse(page);
+                messagesView.setItems(FXCollections.observableArrayList(page));
+                messagesView.scrollTo(page.size() - 1);
+
+                if (thread.unreadCount > 0) {
+                    asyncDatabase.supply(db -> db.markThreadAsRead(thread.id, db.getUserId(userName)))
+                        .whenComplete(AsyncStudentDatabase.handle(marked -> {
+                            refresh();
+                            onThreadRead.run();
+                        }, e -> { }));
+                }
+            }, e -> onError.accept("Error loading conversation: " + e.getMessage())));
+    }
+
+    private void setThreads(List<MessageThreadData> threads) {
+        MessageThreadData selected = shownThread;
+        MessageThreadData match = null;
+        refreshingThreads = true;
+        try {
+            threadsListView.setItems(FXCollections.observableArrayList(threads));
+            if (selected != null) {
+                match = threads.stream().filter(thread -> thread.id == selected.id).findFirst().orElse(null);
+                threadsListView.getSelectionModel().select(match);
+            }
+        } finally {
+            refreshingThreads = false;
+        }
+        resolveQuestionTitles(threads);
+
+        // Reload the open conversation only if it has grown or is gone
+        shownThread = match;
+        if (match == null) {
+            asyncDatabase.cancelLatest("threadMessages");
+            messagesView.getItems().clear();
+        } else if (match.lastMessageId != selected.lastMessageId) {
+            showThread(match);
+        }
+    }
+
+    // Looks up the titles of the questions the threads are about in one background call
+    private void resolveQuestionTitles(List<MessageThreadData> threads) {
+        Set<Integer> missing = new HashSet<>();
+        for (MessageThreadData thread : threads) {
+            int questionId = thread.relatedQuestionId;
+            if (questionId != -1 && !questionTitles.containsKey(questionId) && !questionTitlesLoading.contains(questionId)) {
+                missing.add(questionId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        questionTitlesLoading.addAll(missing);
+        asyncDatabase.supply(db -> {
+            Map<Integer, String> titles = new HashMap<>();
+            for (int questionId : missing) {
+                QuestionData question = db.getQuestionById(questionId);
+                titles.put(questionId, question == null ? null : question.title);
+            }
+            return titles;
+        })
+            .whenComplete((titles, error) -> questionTitlesLoading.removeAll(missing))
+            .whenComplete(AsyncStudentDatabase.handle(titles -> {
+                questionTitles.putAll(titles);
+                threadsListView.refresh();
+            }, e -> { }));
+    }
+
+    private final class ThreadCell extends ListCell<MessageThreadData> {
+        @Override
+        protected void updateItem(MessageThreadData thread, boolean empty) {
+            super.updateItem(thread, empty);
+
+            if (empty || thread == null) {
+                setText(null);
+                setGraphic(null);
+                setStyle("");
+                return;
+            }
+            VBox container = new VBox(5);
+            container.setPadding(new Insets(5));
+
+            // Conversation header with the other participant
+            HBox headerBox = new HBox(5);
+            Label withLabel = new Label("With: " + thread.otherUserName);
+            withLabel.setStyle("-fx-font-weight: bold;");
+
+            Label dateLabel = new Label(thread.lastMessageDate == null ? ""
+                    : thread.lastMessageDate.toLocalDateTime().format(DATE_FORMAT));
+            dateLabel.setStyle("-fx-font-size: 11px;");
+
+            HBox.setHgrow(dateLabel, Priority.ALWAYS);
+            dateLabel.setAlignment(Pos.CENTER_RIGHT);
+
+            headerBox.getChildren().addAll(withLabel, dateLabel);
+
+            // If the conversation has unread messages, highlight it
+            if (thread.unreadCount > 0) {
+                Label unreadLabel = new Label("[" + thread.unreadCount + " unread]");
+                unreadLabel.setTextFill(Color.RED);
+                unreadLabel.setStyle("-fx-font-weight: bold;");
+                headerBox.getChildren().add(unreadLabel);
+                setStyle("-fx-background-color: #f0f8ff;"); // Light blue background for unread
+            } else {
+                setStyle("");
+            }
+
+            // Preview of the last message (first 50 chars)
+            String snippet = thread.lastSnippet == null ? "" : thread.lastSnippet;
+            String preview = snippet.length() > 50 ? snippet.substring(0, 47) + "..." : snippet;
+            Label previewLabel = new Label(preview + " (" + thread.messageCount + ")");
+            previewLabel.setWrapText(true);
+            container.getChildren().addAll(headerBox, previewLabel);
+
+            // Related content info, once the question title has been looked up
+            String relatedInfo = "";
+            if (thread.relatedQuestionId != -1) {
+                String title = questionTitles.get(thread.relatedQuestionId);
+                if (title != null) {
+                    relatedInfo = "Re: Question \"" + title + "\"";
+                }
+            } else if (thread.relatedAnswerId != -1) {
+                relatedInfo = "Re: Answer to a question";
+            }
+            if (!relatedInfo.isEmpty()) {
+                Label relatedLabel = new Label(relatedInfo);
+                relatedLabel.setStyle("-fx-font-style: italic; -fx-font-size: 11px;");
+                container.getChildren().add(relatedLabel);
+            }
+
+            setGraphic(container);
+            setText(null);
+        }
+    }
+}
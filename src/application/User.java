@@ -1,5 +1,8 @@
 package application;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * The User class represents a user entity in the system.
  * It contains the user's details such as userName, password, and role.
@@ -8,20 +11,35 @@ public class User {
     private String userName;
     private String password;
     private String role;
+    private EnumSet<Role> roles;
 
     // Constructor to initialize a new User object with userName, password, and role.
+    // The role may be a comma-separated list of roles.
     public User( String userName, String password, String role) {
         this.userName = userName;
         this.password = password;
         this.role = role;
+        this.roles = Role.parse(role);
     }
-    
+
     // Sets the role of the user.
     public void setRole(String role) {
     	this.role=role;
+    	this.roles = Role.parse(role);
+    }
+
+    // Sets the roles of the user, keeping the role string in step.
+    public void setRoles(Set<Role> roles) {
+    	this.roles = roles.isEmpty() ? EnumSet.noneOf(Role.class) : EnumSet.copyOf(roles);
+    	this.role = Role.join(this.roles);
     }
 
     public String getUserName() { return userName; }
     public String getPassword() { return password; }
     public String getRole() { return role; }
+
+    // Returns a copy of the user's roles.
+    public EnumSet<Role> getRoles() { return roles.clone(); }
+
+    public boolean hasRole(Role role) { return roles.contains(role); }
 }
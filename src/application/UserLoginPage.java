@@ -6,6 +6,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
 
 import databasePart1.*;
 
@@ -64,6 +65,8 @@ public class UserLoginPage {
                     errorLabel.setText("user account doesn't exists");
             	}
             	
+            } catch (SQLTransientException e) {
+                errorLabel.setText("The server is busy, please try again");
             } catch (SQLException e) {
                 System.err.println("Database error: " + e.getMessage());
                 e.printStackTrace();
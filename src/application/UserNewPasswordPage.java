@@ -55,7 +55,7 @@ public class UserNewPasswordPage {
             String password = passwordField.getText();
             
             // check for password validation
-            String passwordValidationMessage = PasswordEvaluator.evaluatePassword(password);
+            String passwordValidationMessage = PasswordEvaluator.SILENT.evaluate(password).getErrorMessage();
             if (!passwordValidationMessage.isEmpty()) {
                 passwordErrorLabel.setText("Password Error: " + passwordValidationMessage);
                 passwordSuccessLabel.setText(""); 
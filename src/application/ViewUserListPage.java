@@ -45,7 +45,7 @@ public class ViewUserListPage {
                 if (empty || user == null) {
                     setText(null);
                 } else {
-                    setText(user.getUserName() + " : " + user.getPassword() + " : " + user.getRole());
+                    setText(user.getUserName() + " : " + user.getRole());
                 }
             }
         });
@@ -60,7 +60,7 @@ public class ViewUserListPage {
             User selectedUser = userListView.getSelectionModel().getSelectedItem();
             
             // Prevent deleting other admins
-            if(selectedUser != null && selectedUser.getRole().toLowerCase().contains("admin")) {
+            if(selectedUser != null && selectedUser.hasRole(Role.ADMIN)) {
                 deleteUser.setDisable(true);
                 errorLabel.setText("Can't delete other admins");
                 return;
@@ -94,7 +94,7 @@ public class ViewUserListPage {
             confirmation.setContentText("Put in 'Yes' to do so:");
             confirmation.showAndWait().ifPresent(response -> {
                 if(response.equals("Yes")) {
-                    databaseHelper.deleteUser(selectedUserName);
+                    databaseHelper.deleteUser(selectedUserName, currentUserName);
 					userListView.setItems(FXCollections.observableArrayList(databaseHelper.getUsers()));
 					errorLabel.setStyle("-fx-text-fill: green;");
 					errorLabel.setText("User has been deleted");
@@ -59,7 +59,7 @@ public class WelcomeLoginPage {
                     } catch (SQLException e) {
                         e.printStackTrace();
                     }
-                    new StaffHomePage(databaseHelper).show(primaryStage);
+                    new StaffHomePage(databaseHelper, user).show(primaryStage);
                     break;
                 case "reviewer":
                     try {
@@ -85,10 +85,10 @@ public class WelcomeLoginPage {
             Platform.exit();
         });
         
-        if ("admin".equals(user.getRole())) {
+        if (user.hasRole(Role.ADMIN)) {
             Button inviteButton = new Button("Invite");
             inviteButton.setOnAction(a -> {
-                new InvitationPage().show(databaseHelper, primaryStage);
+                new InvitationPage().show(databaseHelper, primaryStage, user.getUserName());
             });
             layout.getChildren().add(inviteButton);
         }
@@ -2,11 +2,19 @@ package application;
 
 import java.sql.*;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import databasePart1.ConnectionPool;
+import databasePart1.SchemaMigrator;
+import databasePart1.UserDirectory;
 
 public class studentDatabase {
     // JDBC driver name and database URL 
@@ -17,122 +25,216 @@ public class studentDatabase {
     static final String USER = "sa"; 
     static final String PASS = ""; 
 
-    private Connection connection = null;
-    private Statement statement = null;
+    // Connections are borrowed from the pool shared with DatabaseHelper
+    private ConnectionPool pool = null;
+    // Name and ID lookups shared with DatabaseHelper
+    private UserDirectory userDirectory = null;
+
+    // Inverted index over question text, shared by every helper connected to the same pool.
+    // Set -Dcse360.search.useIndex=false to search with LIKE instead.
+    private QuestionSearchIndex searchIndex = null;
+    private static final boolean USE_SEARCH_INDEX =
+            Boolean.parseBoolean(System.getProperty("cse360.search.useIndex", "true"));
+    // The most results a search returns, set with -Dcse360.search.limit
+    public static final int SEARCH_LIMIT = Integer.getInteger("cse360.search.limit", 100);
+
+    // Read-through caches for single row lookups, shared like the search index.
+    // Every method that writes a cached row invalidates it. Set -Dcse360.cache.size=0 to disable.
+    private EntityCache<Integer, QuestionData> questionCache = null;
+    private EntityCache<Integer, AnswerData> answerCache = null;
+    private EntityCache<Integer, ReviewData> reviewCache = null;
+
+    // Told about every committed write to questions, answers, reviews and messages
+    private ChangeFeed changeFeed = null;
 
     public void connectToDatabase() throws SQLException {
+        connectToDatabase(DB_URL);
+    }
+
+    /**
+     * Connects to another database than the application's, such as an in-memory one for
+     * benchmarks. The schema is migrated the same way.
+     */
+    public void connectToDatabase(String url) throws SQLException {
         try {
             Class.forName(JDBC_DRIVER);
             System.out.println("Connecting to database...");
-            connection = DriverManager.getConnection(DB_URL, USER, PASS);
-            statement = connection.createStatement();
-            createTables();
-            updateTables(); // Add this line to update existing tables with new columns
-            createTestUserIfNotExists();
+            pool = ConnectionPool.forUrl(url, USER, PASS);
+            userDirectory = UserDirectory.forPool(pool);
+            PoolState state = PoolState.forPool(pool);
+            searchIndex = state.searchIndex;
+            questionCache = state.questionCache;
+            answerCache = state.answerCache;
+            reviewCache = state.reviewCache;
+            changeFeed = state.changeFeed;
+            try (Connection connection = pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                SchemaMigrator.migrate(connection);
+                createTestUserIfNotExists(statement);
+            }
             System.out.println("Database connection and setup complete");
             //statement.execute("DROP ALL OBJECTS");
         } catch (ClassNotFoundException e) {
             System.err.println("JDBC Driver not found: " + e.getMessage());
         }
     }
-    
-    private void updateTables() {
-        try {
-            // Check if needsClarification column exists in the answers table
-            ResultSet rs = connection.getMetaData().getColumns(null, null, "ANSWERS", "NEEDSCLARIFICATION");
-            if (!rs.next()) {
-                // Column doesn't exist, so add it
-                System.out.println("Adding needsClarification column to answers table...");
-                statement.execute("ALTER TABLE answers ADD COLUMN needsClarification BOOLEAN DEFAULT FALSE");
-                System.out.println("Column added successfully");
-            }
-            rs.close();
-        } catch (SQLException e) {
-            System.err.println("Error updating tables: " + e.getMessage());
-        }
+
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    // Lets BulkLoader keep the search index current for questions it inserts
+    QuestionSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public EntityCache<Integer, QuestionData> getQuestionCache() {
+        return questionCache;
+    }
+
+    public EntityCache<Integer, AnswerData> getAnswerCache() {
+        return answerCache;
+    }
+
+    public EntityCache<Integer, ReviewData> getReviewCache() {
+        return reviewCache;
+    }
+
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
     }
     
     public void createTestUserIfNotExists() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            createTestUserIfNotExists(statement);
+        }
+    }
+
+    private void createTestUserIfNotExists(Statement statement) throws SQLException {
         String checkQuery = "SELECT COUNT(*) FROM cse360users WHERE userName = 'testuser'";
         ResultSet rs = statement.executeQuery(checkQuery);
         rs.next();
-        if (rs.getInt(1) == 0) {
+        int count = rs.getInt(1);
+        rs.close();
+        if (count == 0) {
             System.out.println("Creating test user..."); // Debug log
             String insertQuery = "INSERT INTO cse360users (userName, password, role) VALUES ('testuser', 'test', 'student')";
             statement.execute(insertQuery);
+            statement.execute("MERGE INTO user_roles (userId, role) KEY (userId, role) "
+                    + "SELECT id, 'student' FROM cse360users WHERE userName = 'testuser'");
             System.out.println("Test user created successfully"); // Debug log
         } else {
             System.out.println("Test user already exists"); // Debug log
         }
     }
     
-    public void deleteQuestion(int questionId) throws SQLException {
-        // First delete all answers for this question
-        String deleteAnswers = "DELETE FROM answers WHERE questionId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteAnswers)) {
-            pstmt.setInt(1, questionId);
-            pstmt.executeUpdate();
-        }
-        
-        // Then delete the question
-        String deleteQuestion = "DELETE FROM questions WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteQuestion)) {
-            pstmt.setInt(1, questionId);
-            pstmt.executeUpdate();
-        }
+    /**
+     * Deletes a question together with its answers, reviews, feedback and messages
+     * @param questionId The question to delete
+     * @return The rows removed per table
+     * @throws SQLException
+     */
+    public CascadeDeleter.Report deleteQuestion(int questionId) throws SQLException {
+        return new CascadeDeleter(pool).deleteQuestion(questionId);
     }
     
     public void updateQuestion(int questionId, String newTitle, String newContent) throws SQLException {
         String query = "UPDATE questions SET title = ?, content = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, newTitle);
             pstmt.setString(2, newContent);
             pstmt.setInt(3, questionId);
-            pstmt.executeUpdate();
+            if (pstmt.executeUpdate() > 0) {
+                searchIndex.put(questionId, newTitle, newContent);
+            }
         }
+        questionCache.invalidate(questionId);
+        changeFeed.publish(ChangeFeed.Change.question(ChangeFeed.Kind.UPDATED, questionId));
     }
 
     public void updateAnswer(int answerId, String newContent) throws SQLException {
         String query = "UPDATE answers SET content = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, newContent);
             pstmt.setInt(2, answerId);
             pstmt.executeUpdate();
         }
+        answerCache.invalidate(answerId);
+        changeFeed.publish(ChangeFeed.Change.answer(ChangeFeed.Kind.UPDATED, answerId, -1));
     }
 
     public void deleteAnswer(int answerId) throws SQLException {
-        // First check if this answer is marked as resolved for any question
+        String findQuestion = "SELECT questionId FROM answers WHERE id = ?";
         String updateQuestion = "UPDATE questions SET resolved = FALSE, resolvedAnswerId = NULL WHERE resolvedAnswerId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(updateQuestion)) {
-            pstmt.setInt(1, answerId);
-            pstmt.executeUpdate();
-        }
-        
-        // Then delete the answer
+        String decrementCount = "UPDATE questions SET answerCount = answerCount - 1 WHERE id = ?";
         String deleteAnswer = "DELETE FROM answers WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteAnswer)) {
-            pstmt.setInt(1, answerId);
-            pstmt.executeUpdate();
+        int questionId = -1;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(findQuestion)) {
+                    pstmt.setInt(1, answerId);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next()) {
+                        questionId = rs.getInt(1);
+                    }
+                }
+                
+                // First check if this answer is marked as resolved for any question
+                try (PreparedStatement pstmt = connection.prepareStatement(updateQuestion)) {
+                    pstmt.setInt(1, answerId);
+                    pstmt.executeUpdate();
+                }
+                
+                // Only touches a question if the answer still exists
+                if (questionId != -1) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(decrementCount)) {
+                        pstmt.setInt(1, questionId);
+                        pstmt.executeUpdate();
+                    }
+                }
+                
+                // Then delete the answer
+                try (PreparedStatement pstmt = connection.prepareStatement(deleteAnswer)) {
+                    pstmt.setInt(1, answerId);
+                    pstmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
+        answerCache.invalidate(answerId);
+        questionCache.invalidate(questionId);
+        changeFeed.publish(ChangeFeed.Change.answer(ChangeFeed.Kind.DELETED, answerId, questionId));
     }
 
     public void unmarkResolved(int questionId) throws SQLException {
         String query = "UPDATE questions SET resolved = FALSE, resolvedAnswerId = NULL WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, questionId);
             pstmt.executeUpdate();
         }
+        questionCache.invalidate(questionId);
+        changeFeed.publish(ChangeFeed.Change.question(ChangeFeed.Kind.UPDATED, questionId));
     }
 
     public void markAnswerNeedsClarification(int answerId, boolean needsClarification) throws SQLException {
         try {
             String query = "UPDATE answers SET needsClarification = ? WHERE id = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
                 pstmt.setBoolean(1, needsClarification);
                 pstmt.setInt(2, answerId);
                 pstmt.executeUpdate();
             }
+            answerCache.invalidate(answerId);
+            changeFeed.publish(ChangeFeed.Change.answer(ChangeFeed.Kind.UPDATED, answerId, -1));
         } catch (SQLException e) {
             // If this fails, the column might not exist yet
             System.err.println("Error setting needsClarification: " + e.getMessage());
@@ -140,109 +242,6 @@ public class studentDatabase {
         }
     }
     
-    private void createTrustedReviewersTable() throws SQLException {
-        String trustedReviewersTable = "CREATE TABLE IF NOT EXISTS trusted_reviewers ("
-            + "id INT AUTO_INCREMENT PRIMARY KEY, "
-            + "userId INT, "
-            + "reviewerId INT, "
-            + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-            + "FOREIGN KEY (userId) REFERENCES cse360users(id), "
-            + "FOREIGN KEY (reviewerId) REFERENCES reviewers(id), "
-            + "UNIQUE (userId, reviewerId))";
-        statement.execute(trustedReviewersTable);
-    }
-
-    // Modify the createTables method to call createTrustedReviewersTable
-    private void createTables() throws SQLException {
-        // Original user table
-        String userTable = "CREATE TABLE IF NOT EXISTS cse360users ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "userName VARCHAR(255) UNIQUE, "
-                + "password VARCHAR(255), "
-                + "role VARCHAR(20))";
-        statement.execute(userTable);
-
-        // Questions table remains the same
-        String questionsTable = "CREATE TABLE IF NOT EXISTS questions ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "title VARCHAR(255), "
-                + "content TEXT, "
-                + "userId INT, "
-                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-                + "resolved BOOLEAN DEFAULT FALSE, "
-                + "resolvedAnswerId INT, "
-                + "FOREIGN KEY (userId) REFERENCES cse360users(id))";
-        statement.execute(questionsTable);
-
-        // Answers table - Add needsClarification column
-        String answersTable = "CREATE TABLE IF NOT EXISTS answers ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "content TEXT, "
-                + "questionId INT, "
-                + "userId INT, "
-                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-                + "needsClarification BOOLEAN DEFAULT FALSE, "
-                + "FOREIGN KEY (questionId) REFERENCES questions(id), "
-                + "FOREIGN KEY (userId) REFERENCES cse360users(id))";
-        statement.execute(answersTable);
-
-        // Reviewers table
-        String reviewersTable = "CREATE TABLE IF NOT EXISTS reviewers ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "userId INT, "
-                + "weight DOUBLE DEFAULT 1.0, "
-                + "FOREIGN KEY (userId) REFERENCES cse360users(id))";
-        statement.execute(reviewersTable);
-        
-        // Reviews table
-        String reviewsTable = "CREATE TABLE IF NOT EXISTS reviews ("
-        		+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-        		+ "reviewerId INT, "
-        		+ "questionId INT, "
-        		+ "answerId INT, "
-        		+ "content TEXT, "
-                + "FOREIGN KEY (reviewerId) REFERENCES reviewers(id))";
-        statement.execute(reviewsTable);
-        
-        // Reviewer requests table
-        String reviewerRequestsTable = "CREATE TABLE IF NOT EXISTS reviewer_requests ("
-        	    + "id INT AUTO_INCREMENT PRIMARY KEY, "
-        	    + "user_id INT, "
-        	    + "justification TEXT, "
-        	    + "status VARCHAR(20) DEFAULT 'PENDING', "
-        	    + "instructor_comments TEXT, "
-        	    + "request_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-        	    + "FOREIGN KEY (user_id) REFERENCES cse360users(id))";
-        statement.execute(reviewerRequestsTable);
-
-        // Feedback table
-        String feedbackTable = "CREATE TABLE IF NOT EXISTS feedback ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "answerId INT, "
-                + "userId INT, "
-                + "content TEXT, "
-                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-                + "FOREIGN KEY (answerId) REFERENCES answers(id), "
-                + "FOREIGN KEY (userId) REFERENCES cse360users(id))";
-        statement.execute(feedbackTable);
-        
-        String messagesTable = "CREATE TABLE IF NOT EXISTS messages ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "senderId INT, "
-                + "receiverId INT, "
-                + "relatedQuestionId INT, "
-                + "relatedAnswerId INT, "
-                + "content TEXT, "
-                + "isRead BOOLEAN DEFAULT FALSE, "
-                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-                + "FOREIGN KEY (senderId) REFERENCES cse360users(id), "
-                + "FOREIGN KEY (receiverId) REFERENCES cse360users(id))";
-        statement.execute(messagesTable);
-        
-        // Create trusted reviewers table
-        createTrustedReviewersTable();
-    }
-    
     /**
      * Adds a trusted reviewer for a user
      * @param userId The ID of the user
@@ -250,29 +249,14 @@ public class studentDatabase {
      * @throws SQLException
      */
     public void addTrustedReviewer(int userId, int reviewerId) throws SQLException {
-        // First check if the trust relationship already exists
-        String checkQuery = "SELECT COUNT(*) FROM trusted_reviewers WHERE userId = ? AND reviewerId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(checkQuery)) {
+        // Insert the relationship, or refresh its timestamp if it already exists
+        String query = "MERGE INTO trusted_reviewers (userId, reviewerId, createDate) "
+                     + "KEY (userId, reviewerId) VALUES (?, ?, CURRENT_TIMESTAMP)";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             pstmt.setInt(2, reviewerId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next() && rs.getInt(1) > 0) {
-                // Relationship exists, update the timestamp
-                String updateQuery = "UPDATE trusted_reviewers SET createDate = CURRENT_TIMESTAMP WHERE userId = ? AND reviewerId = ?";
-                try (PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
-                    updateStmt.setInt(1, userId);
-                    updateStmt.setInt(2, reviewerId);
-                    updateStmt.executeUpdate();
-                }
-            } else {
-                // Relationship doesn't exist, insert new record
-                String insertQuery = "INSERT INTO trusted_reviewers (userId, reviewerId) VALUES (?, ?)";
-                try (PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
-                    insertStmt.setInt(1, userId);
-                    insertStmt.setInt(2, reviewerId);
-                    insertStmt.executeUpdate();
-                }
-            }
+            pstmt.executeUpdate();
         }
     }
 
@@ -284,7 +268,8 @@ public class studentDatabase {
      */
     public void removeTrustedReviewer(int userId, int reviewerId) throws SQLException {
         String query = "DELETE FROM trusted_reviewers WHERE userId = ? AND reviewerId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             pstmt.setInt(2, reviewerId);
             pstmt.executeUpdate();
@@ -300,7 +285,8 @@ public class studentDatabase {
      */
     public boolean isReviewerTrusted(int userId, int reviewerId) throws SQLException {
         String query = "SELECT COUNT(*) FROM trusted_reviewers WHERE userId = ? AND reviewerId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             pstmt.setInt(2, reviewerId);
             ResultSet rs = pstmt.executeQuery();
@@ -320,7 +306,8 @@ public class studentDatabase {
     public List<Integer> getTrustedReviewerIds(int userId) throws SQLException {
         List<Integer> reviewerIds = new ArrayList<>();
         String query = "SELECT reviewerId FROM trusted_reviewers WHERE userId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -345,7 +332,8 @@ public class studentDatabase {
                      + "JOIN cse360users u ON r.userId = u.id "
                      + "WHERE tr.userId = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -380,7 +368,8 @@ public class studentDatabase {
         
         query += "ORDER BY r.id DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             if (questionId > 0) {
                 pstmt.setInt(2, questionId);
@@ -406,7 +395,8 @@ public class studentDatabase {
     
     public int addQuestion(String title, String content, int userId) throws SQLException {
         String query = "INSERT INTO questions (title, content, userId) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, title);
             pstmt.setString(2, content);
             pstmt.setInt(3, userId);
@@ -414,7 +404,10 @@ public class studentDatabase {
             
             ResultSet rs = pstmt.getGeneratedKeys();
             if (rs.next()) {
-                return rs.getInt(1);
+                int questionId = rs.getInt(1);
+                searchIndex.put(questionId, title, content);
+                changeFeed.publish(ChangeFeed.Change.question(ChangeFeed.Kind.INSERTED, questionId));
+                return questionId;
             }
         }
         return -1;
@@ -427,15 +420,8 @@ public class studentDatabase {
      * @throws SQLException
      */
     public String getReviewerName(int reviewerId) throws SQLException {
-        String query = "SELECT u.userName FROM reviewers r JOIN cse360users u ON r.userId = u.id WHERE r.id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, reviewerId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("userName");
-            }
-        }
-        return "Unknown Reviewer";
+        String name = userDirectory.getReviewerName(reviewerId);
+        return name != null ? name : "Unknown Reviewer";
     }
     
     /**
@@ -447,32 +433,25 @@ public class studentDatabase {
     public List<ReviewData> getReviewsForUserAnswers(int userId) throws SQLException {
         List<ReviewData> reviews = new ArrayList<>();
         
-        // First get all the user's answers
-        String answerQuery = "SELECT id FROM answers WHERE userId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(answerQuery)) {
+        // One join instead of a reviews query per answer
+        String query = "SELECT r.id, r.reviewerId, r.answerId, r.content FROM answers a "
+                     + "JOIN reviews r ON r.answerId = a.id "
+                     + "WHERE a.userId = ? "
+                     + "ORDER BY a.id, r.id";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
-            ResultSet answerRs = pstmt.executeQuery();
+            ResultSet rs = pstmt.executeQuery();
             
-            // For each answer, get its reviews
-            while (answerRs.next()) {
-                int answerId = answerRs.getInt("id");
-                
-                String reviewQuery = "SELECT * FROM reviews WHERE answerId = ?";
-                try (PreparedStatement reviewPstmt = connection.prepareStatement(reviewQuery)) {
-                    reviewPstmt.setInt(1, answerId);
-                    ResultSet reviewRs = reviewPstmt.executeQuery();
-                    
-                    while (reviewRs.next()) {
-                        ReviewData review = new ReviewData(
-                            reviewRs.getInt("id"),
-                            reviewRs.getInt("reviewerId"),
-                            -1,
-                            answerId,
-                            reviewRs.getString("content")
-                        );
-                        reviews.add(review);
-                    }
-                }
+            while (rs.next()) {
+                ReviewData review = new ReviewData(
+                    rs.getInt("id"),
+                    rs.getInt("reviewerId"),
+                    -1,
+                    rs.getInt("answerId"),
+                    rs.getString("content")
+                );
+                reviews.add(review);
             }
         }
         
@@ -487,12 +466,14 @@ public class studentDatabase {
      */
     public List<AnswerData> getAnswersForUser(int userId) throws SQLException {
         List<AnswerData> answers = new ArrayList<>();
-        String query = "SELECT a.*, q.title as questionTitle FROM answers a " +
+        String query = "SELECT a.*, q.title as questionTitle, u.userName FROM answers a " +
                       "JOIN questions q ON a.questionId = q.id " +
+                      "LEFT JOIN cse360users u ON a.userId = u.id " +
                       "WHERE a.userId = ? " +
                       "ORDER BY a.createDate DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -507,7 +488,7 @@ public class studentDatabase {
                 AnswerData answer = new AnswerData(
                     rs.getInt("id"),
                     rs.getString("content"),
-                    getUserName(rs.getInt("userId")),
+                    rs.getString("userName"),
                     rs.getTimestamp("createDate"),
                     needsClarification
                 );
@@ -525,75 +506,163 @@ public class studentDatabase {
      */
     public List<QuestionData> getQuestionsForUser(int userId) throws SQLException {
         List<QuestionData> questions = new ArrayList<>();
-        String query = "SELECT q.*, " +
-                      "(SELECT COUNT(*) FROM answers WHERE questionId = q.id) as answerCount " +
+        String query = "SELECT q.*, u.userName " +
                       "FROM questions q " +
+                      "LEFT JOIN cse360users u ON q.userId = u.id " +
                       "WHERE q.userId = ? " +
                       "ORDER BY q.createDate DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                QuestionData question = new QuestionData(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("content"),
-                    getUserName(rs.getInt("userId")),
-                    rs.getTimestamp("createDate"),
-                    rs.getBoolean("resolved"),
-                    rs.getInt("answerCount")
-                );
+                QuestionData question = readQuestion(rs);
                 questions.add(question);
             }
         }
         return questions;
     }
 
+    /**
+     * Builds a QuestionData from a row of questions joined with the author's userName
+     */
+    private QuestionData readQuestion(ResultSet rs) throws SQLException {
+        return new QuestionData(
+            rs.getInt("id"),
+            rs.getString("title"),
+            rs.getString("content"),
+            rs.getString("userName"),
+            rs.getTimestamp("createDate"),
+            rs.getBoolean("resolved"),
+            rs.getInt("answerCount"),
+            rs.getInt("reviewCount")
+        );
+    }
+
+    /**
+     * Recomputes the answerCount and reviewCount columns of every question from the answers
+     * and reviews tables, fixing any drift from writes made outside this class
+     * @return The number of questions whose counters were wrong
+     * @throws SQLException
+     */
+    public int repairQuestionCounters() throws SQLException {
+        String query = "UPDATE questions q SET "
+                + "answerCount = (SELECT COUNT(*) FROM answers a WHERE a.questionId = q.id), "
+                + "reviewCount = (SELECT COUNT(*) FROM reviews r WHERE r.questionId = q.id) "
+                + "WHERE answerCount <> (SELECT COUNT(*) FROM answers a WHERE a.questionId = q.id) "
+                + "OR reviewCount <> (SELECT COUNT(*) FROM reviews r WHERE r.questionId = q.id)";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int repaired = pstmt.executeUpdate();
+            if (repaired > 0) {
+                questionCache.clear();
+            }
+            return repaired;
+        }
+    }
+
     public List<QuestionData> getQuestions() throws SQLException {
         List<QuestionData> questions = new ArrayList<>();
-        String query = "SELECT q.*, u.userName, "
-                + "(SELECT COUNT(*) FROM answers WHERE questionId = q.id) as answerCount "
+        String query = "SELECT q.*, u.userName "
                 + "FROM questions q "
                 + "JOIN cse360users u ON q.userId = u.id "
                 + "ORDER BY q.createDate DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                QuestionData question = new QuestionData(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("content"),
-                    rs.getString("userName"),
-                    rs.getTimestamp("createDate"),
-                    rs.getBoolean("resolved"),
-                    rs.getInt("answerCount")
-                );
+                QuestionData question = readQuestion(rs);
                 questions.add(question);
             }
         }
         return questions;
     }
     
+    /**
+     * Gets one page of questions in the same newest-first order as getQuestions, using the
+     * (createDate, id) of a question already on screen as the cursor instead of an offset
+     * @param cursor The last question of the current page when paging older, the first one
+     *               when paging newer, or null for the newest page
+     * @param pageSize The maximum number of questions to return
+     * @param older True to page towards older questions, false towards newer ones
+     * @return The page of questions, newest first
+     * @throws SQLException
+     */
+    public List<QuestionData> getQuestionsPage(QuestionData cursor, int pageSize, boolean older) throws SQLException {
+        return getQuestionsPage(cursor, pageSize, older, null);
+    }
+
+    /**
+     * Gets one page of questions, optionally only resolved or unresolved ones
+     * @param cursor The question to page from, or null for the newest page
+     * @param pageSize The maximum number of questions to return
+     * @param older True to page towards older questions, false towards newer ones
+     * @param resolved TRUE or FALSE to filter on the resolved flag, null for all questions
+     * @return The page of questions, newest first
+     * @throws SQLException
+     */
+    public List<QuestionData> getQuestionsPage(QuestionData cursor, int pageSize, boolean older, Boolean resolved) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT q.*, u.userName "
+                + "FROM questions q "
+                + "JOIN cse360users u ON q.userId = u.id WHERE TRUE ");
+        if (cursor != null) {
+            query.append(older ? "AND (q.createDate, q.id) < (?, ?) " : "AND (q.createDate, q.id) > (?, ?) ");
+        }
+        if (resolved != null) {
+            query.append("AND q.resolved = ? ");
+        }
+        query.append(older ? "ORDER BY q.createDate DESC, q.id DESC " : "ORDER BY q.createDate, q.id ");
+        query.append("LIMIT ?");
+
+        List<QuestionData> questions = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            if (cursor != null) {
+                pstmt.setTimestamp(index++, cursor.createDate);
+                pstmt.setInt(index++, cursor.id);
+            }
+            if (resolved != null) {
+                pstmt.setBoolean(index++, resolved);
+            }
+            pstmt.setInt(index, pageSize);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                questions.add(readQuestion(rs));
+            }
+        }
+        if (!older) {
+            // Fetched oldest first so the LIMIT keeps the rows next to the cursor
+            Collections.reverse(questions);
+        }
+        return questions;
+    }
+    
+    /**
+     * Gets a question by ID, from the cache when it has been read before
+     * @param questionId The ID of the question
+     * @return The question, or null if it does not exist
+     * @throws SQLException
+     */
     public QuestionData getQuestionById(int questionId) throws SQLException {
+    	return questionCache.get(questionId, this::loadQuestionById);
+    }
+    
+    private QuestionData loadQuestionById(int questionId) throws SQLException {
     	QuestionData question;
-    	String query = "SELECT * FROM questions WHERE id = ?";
-    	try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	String query = "SELECT q.*, u.userName FROM questions q "
+    	             + "LEFT JOIN cse360users u ON q.userId = u.id WHERE q.id = ?";
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setInt(1, questionId);
     		
     		ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                question = new QuestionData(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("content"),
-                    getUserName(rs.getInt("userId")),
-                    rs.getTimestamp("createDate"),
-                    rs.getBoolean("resolved"),
-                    0
-                );
+                question = readQuestion(rs);
                 return question;
             }
     	}
@@ -601,10 +670,22 @@ public class studentDatabase {
     	return null;
     }
     
+    /**
+     * Gets an answer by ID, from the cache when it has been read before
+     * @param answerId The ID of the answer
+     * @return The answer, or null if it does not exist
+     * @throws SQLException
+     */
     public AnswerData getAnswerById(int answerId) throws SQLException {
+    	return answerCache.get(answerId, this::loadAnswerById);
+    }
+    
+    private AnswerData loadAnswerById(int answerId) throws SQLException {
     	AnswerData answer;
-    	String query = "SELECT * FROM answers WHERE id = ?";
-    	try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	String query = "SELECT a.*, u.userName FROM answers a "
+    	             + "LEFT JOIN cse360users u ON a.userId = u.id WHERE a.id = ?";
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setInt(1, answerId);
     		
     		ResultSet rs = pstmt.executeQuery();
@@ -619,7 +700,7 @@ public class studentDatabase {
                 answer = new AnswerData(
             		rs.getInt("id"),
                     rs.getString("content"),
-                    getUserName(rs.getInt("userId")),
+                    rs.getString("userName"),
                     rs.getTimestamp("createDate"),
                     needsClarification
                 );
@@ -630,31 +711,105 @@ public class studentDatabase {
     	return null;
     }
 
+    /**
+     * Searches question titles and content. Uses the in-memory inverted index, which
+     * matches every word of the search term as a word prefix and ranks the results, and
+     * falls back to a LIKE scan when the index is disabled or the term has no words.
+     * @param searchTerm The text to search for
+     * @return The best SEARCH_LIMIT matching questions, best match first
+     * @throws SQLException
+     */
     public List<QuestionData> searchQuestions(String searchTerm) throws SQLException {
+        return searchQuestions(searchTerm, SEARCH_LIMIT);
+    }
+
+    /**
+     * Searches question titles and content like searchQuestions(String), returning at
+     * most limit questions. Only those rows are read from the database.
+     */
+    public List<QuestionData> searchQuestions(String searchTerm, int limit) throws SQLException {
+        if (!USE_SEARCH_INDEX || QuestionSearchIndex.tokenize(searchTerm).isEmpty()) {
+            return searchQuestionsLike(searchTerm, limit);
+        }
+        loadSearchIndex();
+        
+        List<Integer> ids = searchIndex.search(searchTerm, limit);
         List<QuestionData> questions = new ArrayList<>();
-        String query = "SELECT q.*, u.userName, "
-                + "(SELECT COUNT(*) FROM answers WHERE questionId = q.id) as answerCount "
+        if (ids.isEmpty()) {
+            return questions;
+        }
+        
+        String query = "SELECT q.*, u.userName "
+                + "FROM questions q "
+                + "JOIN cse360users u ON q.userId = u.id "
+                + "WHERE q.id = ANY(?)";
+        Map<Integer, QuestionData> byId = new HashMap<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setArray(1, connection.createArrayOf("INTEGER", ids.toArray(new Integer[0])));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                QuestionData question = readQuestion(rs);
+                byId.put(question.id, question);
+            }
+        }
+        
+        // Keep the ranking from the index
+        for (int id : ids) {
+            QuestionData question = byId.get(id);
+            if (question != null) {
+                questions.add(question);
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * Fills the search index from the questions table the first time it is needed.
+     * Questions written while the table is read are replayed by the index at the end.
+     */
+    private void loadSearchIndex() throws SQLException {
+        if (searchIndex.isLoaded()) {
+            return;
+        }
+        synchronized (searchIndex) {
+            if (searchIndex.isLoaded()) {
+                return;
+            }
+            searchIndex.startLoading();
+            String query = "SELECT id, title, content FROM questions";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    searchIndex.putLoaded(rs.getInt("id"), rs.getString("title"), rs.getString("content"));
+                }
+            } catch (SQLException | RuntimeException e) {
+                searchIndex.clear();
+                throw e;
+            }
+            searchIndex.finishLoading();
+        }
+    }
+
+    private List<QuestionData> searchQuestionsLike(String searchTerm, int limit) throws SQLException {
+        List<QuestionData> questions = new ArrayList<>();
+        String query = "SELECT q.*, u.userName "
                 + "FROM questions q "
                 + "JOIN cse360users u ON q.userId = u.id "
                 + "WHERE LOWER(q.title) LIKE LOWER(?) OR LOWER(q.content) LIKE LOWER(?) "
-                + "ORDER BY q.createDate DESC";
+                + "ORDER BY q.createDate DESC LIMIT ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             String searchPattern = "%" + searchTerm + "%";
             pstmt.setString(1, searchPattern);
             pstmt.setString(2, searchPattern);
+            pstmt.setInt(3, limit);
             
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                QuestionData question = new QuestionData(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("content"),
-                    rs.getString("userName"),
-                    rs.getTimestamp("createDate"),
-                    rs.getBoolean("resolved"),
-                    rs.getInt("answerCount")
-                );
+                QuestionData question = readQuestion(rs);
                 questions.add(question);
             }
         }
@@ -665,18 +820,35 @@ public class studentDatabase {
     
     public int addAnswer(String content, int questionId, int userId) throws SQLException {
         String query = "INSERT INTO answers (content, questionId, userId) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, content);
-            pstmt.setInt(2, questionId);
-            pstmt.setInt(3, userId);
-            pstmt.executeUpdate();
-            
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
+        String incrementCount = "UPDATE questions SET answerCount = answerCount + 1 WHERE id = ?";
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int answerId = -1;
+                try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, content);
+                    pstmt.setInt(2, questionId);
+                    pstmt.setInt(3, userId);
+                    pstmt.executeUpdate();
+                    
+                    ResultSet rs = pstmt.getGeneratedKeys();
+                    if (rs.next()) {
+                        answerId = rs.getInt(1);
+                    }
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(incrementCount)) {
+                    pstmt.setInt(1, questionId);
+                    pstmt.executeUpdate();
+                }
+                connection.commit();
+                questionCache.invalidate(questionId);
+                changeFeed.publish(ChangeFeed.Change.answer(ChangeFeed.Kind.INSERTED, answerId, questionId));
+                return answerId;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         }
-        return -1;
     }
 
     public List<AnswerData> getAnswersForQuestion(int questionId) throws SQLException {
@@ -686,7 +858,8 @@ public class studentDatabase {
                 + "WHERE a.questionId = ? "
                 + "ORDER BY a.createDate";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, questionId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -714,11 +887,14 @@ public class studentDatabase {
 
     public void markAnswerAsResolved(int questionId, int answerId) throws SQLException {
         String query = "UPDATE questions SET resolved = TRUE, resolvedAnswerId = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, answerId);
             pstmt.setInt(2, questionId);
             pstmt.executeUpdate();
         }
+        questionCache.invalidate(questionId);
+        changeFeed.publish(ChangeFeed.Change.question(ChangeFeed.Kind.UPDATED, questionId));
     }
     
     
@@ -726,14 +902,17 @@ public class studentDatabase {
     // Reviewer Management Methods
     public int addReviewer(int userId, double weight) throws SQLException {
         String query = "INSERT INTO reviewers (userId, weight) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setInt(1, userId);
             pstmt.setDouble(2, weight);
             pstmt.executeUpdate();
             
             ResultSet rs = pstmt.getGeneratedKeys();
             if (rs.next()) {
-                return rs.getInt(1);
+                int reviewerId = rs.getInt(1);
+                userDirectory.reviewerAdded(reviewerId, userId);
+                return reviewerId;
             }
         }
         return -1;
@@ -741,9 +920,12 @@ public class studentDatabase {
     
     public boolean deleteReviewer(int userId) throws SQLException {
     	String query = "DELETE FROM reviewers WHERE userId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setInt(1, userId);
-    		return pstmt.executeUpdate() > 0;
+    		boolean deleted = pstmt.executeUpdate() > 0;
+    		userDirectory.reviewersRemoved(userId);
+    		return deleted;
     	}
     }
 
@@ -753,7 +935,8 @@ public class studentDatabase {
                 + "JOIN cse360users u ON r.reviewerId = u.id "
                 + "WHERE r.userId = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -771,7 +954,8 @@ public class studentDatabase {
 
     public void updateReviewerWeight(int userId, int reviewerId, double weight) throws SQLException {
         String query = "UPDATE reviewers SET weight = ? WHERE userId = ? AND reviewerId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setDouble(1, weight);
             pstmt.setInt(2, userId);
             pstmt.setInt(3, reviewerId);
@@ -783,24 +967,43 @@ public class studentDatabase {
     
     public int addReview(int reviewerId, int questionId, int answerId, String content) throws SQLException {
     	String query = "INSERT INTO reviews (reviewerId, questionId, answerId, content) VALUES (?, ?, ?, ?)";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-    		pstmt.setInt(1, reviewerId);
-    		pstmt.setInt(2, questionId);
-    		pstmt.setInt(3, answerId);
-    		pstmt.setString(4, content);
-    		pstmt.executeUpdate();
-    		
-    		ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        }
-        return -1;
+    	String incrementCount = "UPDATE questions SET reviewCount = reviewCount + 1 WHERE id = ?";
+    	try (Connection connection = pool.getConnection()) {
+    		connection.setAutoCommit(false);
+    		try {
+    			int reviewId = -1;
+    			try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+    				pstmt.setInt(1, reviewerId);
+    				pstmt.setInt(2, questionId);
+    				pstmt.setInt(3, answerId);
+    				pstmt.setString(4, content);
+    				pstmt.executeUpdate();
+    				
+    				ResultSet rs = pstmt.getGeneratedKeys();
+    				if (rs.next()) {
+    					reviewId = rs.getInt(1);
+    				}
+    			}
+    			// Answer reviews are stored with questionId -1 and match no question
+    			try (PreparedStatement pstmt = connection.prepareStatement(incrementCount)) {
+    				pstmt.setInt(1, questionId);
+    				pstmt.executeUpdate();
+    			}
+    			connection.commit();
+    			questionCache.invalidate(questionId);
+    			changeFeed.publish(ChangeFeed.Change.review(ChangeFeed.Kind.INSERTED, reviewId, questionId, answerId));
+    			return reviewId;
+    		} catch (SQLException e) {
+    			connection.rollback();
+    			throw e;
+    		}
+    	}
     }
     
     public int updateReview(int reviewId, int reviewerId, int questionId, int answerId, String content) throws SQLException {
     	String query = "UPDATE reviews SET content = ? WHERE id = ? AND reviewerId = ? AND questionId = ? AND answerId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setString(1, content);
     		pstmt.setInt(2, reviewId);
     		pstmt.setInt(3, reviewerId);
@@ -809,6 +1012,8 @@ public class studentDatabase {
     		
     		int changedRows = pstmt.executeUpdate();
     		if (changedRows > 0) {
+    			reviewCache.invalidate(reviewId);
+    			changeFeed.publish(ChangeFeed.Change.review(ChangeFeed.Kind.UPDATED, reviewId, questionId, answerId));
     			return reviewId;
     		} else {
     			return -1;
@@ -817,10 +1022,42 @@ public class studentDatabase {
     }
     
     // Get Review methods
+    
+    /**
+     * Gets a review by ID, from the cache when it has been read before
+     * @param reviewId The ID of the review
+     * @return The review, or null if it does not exist
+     * @throws SQLException
+     */
+    public ReviewData getReviewById(int reviewId) throws SQLException {
+    	return reviewCache.get(reviewId, this::loadReviewById);
+    }
+    
+    private ReviewData loadReviewById(int reviewId) throws SQLException {
+    	String query = "SELECT * FROM reviews WHERE id = ?";
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
+    		pstmt.setInt(1, reviewId);
+    		
+    		ResultSet rs = pstmt.executeQuery();
+    		if (rs.next()) {
+    			return new ReviewData(
+    				rs.getInt("id"),
+    				rs.getInt("reviewerId"),
+    				rs.getInt("questionId"),
+    				rs.getInt("answerId"),
+    				rs.getString("content")
+    			);
+    		}
+    	}
+    	return null;
+    }
+    
     public List<ReviewData> getReviewsForQuestion(int questionId) throws SQLException {
     	List<ReviewData> reviews = new ArrayList<>();
     	String query = "SELECT * FROM reviews WHERE questionId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setInt(1,  questionId);
     		
     		ResultSet rs = pstmt.executeQuery();
@@ -842,7 +1079,8 @@ public class studentDatabase {
     public List<ReviewData> getReviewsForAnswer(int answerId) throws SQLException {
     	List<ReviewData> reviews = new ArrayList<>();
     	String query = "SELECT * FROM reviews WHERE answerId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    	try (Connection connection = pool.getConnection();
+    	     PreparedStatement pstmt = connection.prepareStatement(query)) {
     		pstmt.setInt(1,  answerId);
     		
     		ResultSet rs = pstmt.executeQuery();
@@ -871,7 +1109,8 @@ public class studentDatabase {
         List<ReviewData> reviews = new ArrayList<>();
         String query = "SELECT * FROM reviews WHERE reviewerId = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, reviewerId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -891,19 +1130,42 @@ public class studentDatabase {
     
     public boolean deleteReview(int reviewId, int reviewerId, int questionId, int answerId) throws SQLException {
     	String query = "DELETE FROM reviews WHERE id = ? AND reviewerId = ? and questionId = ? and answerId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-    		pstmt.setInt(1, reviewId);
-    		pstmt.setInt(2,  reviewerId);
-    		pstmt.setInt(3,  questionId);
-    		pstmt.setInt(4, answerId);
-    		
-    		return pstmt.executeUpdate() > 0;
+    	String decrementCount = "UPDATE questions SET reviewCount = reviewCount - 1 WHERE id = ?";
+    	try (Connection connection = pool.getConnection()) {
+    		connection.setAutoCommit(false);
+    		try {
+    			boolean deleted;
+    			try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    				pstmt.setInt(1, reviewId);
+    				pstmt.setInt(2,  reviewerId);
+    				pstmt.setInt(3,  questionId);
+    				pstmt.setInt(4, answerId);
+    				deleted = pstmt.executeUpdate() > 0;
+    			}
+    			if (deleted) {
+    				try (PreparedStatement pstmt = connection.prepareStatement(decrementCount)) {
+    					pstmt.setInt(1, questionId);
+    					pstmt.executeUpdate();
+    				}
+    			}
+    			connection.commit();
+    			if (deleted) {
+    				reviewCache.invalidate(reviewId);
+    				questionCache.invalidate(questionId);
+    				changeFeed.publish(ChangeFeed.Change.review(ChangeFeed.Kind.DELETED, reviewId, questionId, answerId));
+    			}
+    			return deleted;
+    		} catch (SQLException e) {
+    			connection.rollback();
+    			throw e;
+    		}
     	}
     }
     
     public void submitReviewerRequest(int userId, String justification) throws SQLException {
         String sql = "INSERT INTO reviewer_requests (user_id, justification, status) VALUES (?, ?, 'PENDING')";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, userId);
             pstmt.setString(2, justification);
             pstmt.executeUpdate();
@@ -916,7 +1178,8 @@ public class studentDatabase {
                      "JOIN cse360users u ON r.user_id = u.id " +
                      "WHERE r.status = 'PENDING'";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
                 requests.add(new ReviewerRequest(
@@ -935,7 +1198,8 @@ public class studentDatabase {
 
     public void updateReviewerRequestStatus(int requestId, String status, String comments) throws SQLException {
         String sql = "UPDATE reviewer_requests SET status = ?, instructor_comments = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, status);
             pstmt.setString(2, comments);
             pstmt.setInt(3, requestId);
@@ -944,10 +1208,39 @@ public class studentDatabase {
     }
 
     public void addReviewerRole(int userId) throws SQLException {
-        String sql = "UPDATE cse360users SET role = CONCAT(role, ',reviewer') WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            pstmt.executeUpdate();
+        String addRole = "MERGE INTO user_roles (userId, role) KEY (userId, role) VALUES (?, ?)";
+        String selectRoles = "SELECT role FROM user_roles WHERE userId = ?";
+        String updateDisplay = "UPDATE cse360users SET role = ? WHERE id = ?";
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(addRole)) {
+                    pstmt.setInt(1, userId);
+                    pstmt.setString(2, Role.REVIEWER.getDbName());
+                    pstmt.executeUpdate();
+                }
+                // Rebuild the display copy from the role rows rather than appending to it
+                EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+                try (PreparedStatement pstmt = connection.prepareStatement(selectRoles)) {
+                    pstmt.setInt(1, userId);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        Role role = Role.fromDbName(rs.getString(1));
+                        if (role != null) {
+                            roles.add(role);
+                        }
+                    }
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(updateDisplay)) {
+                    pstmt.setString(1, Role.join(roles));
+                    pstmt.setInt(2, userId);
+                    pstmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
     }
 
@@ -955,7 +1248,8 @@ public class studentDatabase {
     
     public void addFeedback(int answerId, int userId, String content) throws SQLException {
         String query = "INSERT INTO feedback (answerId, userId, content) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, answerId);
             pstmt.setInt(2, userId);
             pstmt.setString(3, content);
@@ -970,7 +1264,8 @@ public class studentDatabase {
                 + "WHERE f.answerId = ? AND (f.userId = ? OR EXISTS "
                 + "(SELECT 1 FROM reviewers r WHERE r.userId = ? AND r.reviewerId = f.userId))";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, answerId);
             pstmt.setInt(2, userId);
             pstmt.setInt(3, userId);
@@ -992,53 +1287,48 @@ public class studentDatabase {
     // Helper Methods
     
     public int getUserId(String userName) throws SQLException {
-        String query = "SELECT id FROM cse360users WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, userName);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-        }
-        return -1;
+        return userDirectory.getUserId(userName);
     }
     
     public String getUserName(int userId) throws SQLException {
-    	String query = "SELECT userName FROM cse360users WHERE id = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-    		pstmt.setInt(1, userId);
-    		ResultSet rs = pstmt.executeQuery();
-            return rs.next() ? rs.getString("userName") : null;
-    	}
+    	return userDirectory.getUserName(userId);
+    }
+    
+    /**
+     * Resolves many user IDs to user names, with at most one query for IDs the user
+     * directory has not seen
+     * @param userIds The IDs of the users
+     * @return Map from user ID to user name; unknown IDs are left out
+     * @throws SQLException
+     */
+    public Map<Integer, String> getUserNames(Collection<Integer> userIds) throws SQLException {
+        return userDirectory.getUserNames(userIds);
+    }
+
+    /**
+     * Resolves many reviewer IDs to reviewer user names, with at most one query for IDs
+     * the user directory has not seen
+     * @param reviewerIds The IDs of the reviewers
+     * @return Map from reviewer ID to user name; unknown IDs are left out
+     * @throws SQLException
+     */
+    public Map<Integer, String> getReviewerNames(Collection<Integer> reviewerIds) throws SQLException {
+        return userDirectory.getReviewerNames(reviewerIds);
     }
     
     public int getReviewerId(int userId) throws SQLException {
-    	String query = "SELECT id FROM reviewers WHERE userId = ?";
-    	try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-        }
-        return -1;
+    	return userDirectory.getReviewerId(userId);
     }
 
+    // The pool is shared, so closing only drops this helper's reference to it.
+    // Idle connections are closed by the pool itself.
     public void closeConnection() {
-        try {
-            if (statement != null) statement.close();
-        } catch (SQLException se2) {
-            se2.printStackTrace();
-        }
-        try {
-            if (connection != null) connection.close();
-        } catch (SQLException se) {
-            se.printStackTrace();
-        }
+        pool = null;
     }
     
     /**
-     * Sends a message from one user to another
+     * Sends a message from one user to another. The message joins the thread between the
+     * two users about the same question and answer, which is started if there is none yet.
      * @param senderId The ID of the sender
      * @param receiverId The ID of the receiver
      * @param relatedQuestionId The ID of the related question, or -1 if not related to a question
@@ -1048,21 +1338,295 @@ public class studentDatabase {
      * @throws SQLException
      */
     public int sendMessage(int senderId, int receiverId, int relatedQuestionId, int relatedAnswerId, String content) throws SQLException {
-        String query = "INSERT INTO messages (senderId, receiverId, relatedQuestionId, relatedAnswerId, content) VALUES (?, ?, ?, ?, ?)";
+        int messageId;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int threadId = findOrCreateThread(connection, senderId, receiverId, relatedQuestionId, relatedAnswerId);
+                messageId = insertMessage(connection, threadId, senderId, receiverId, relatedQuestionId, relatedAnswerId, content);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        changeFeed.publish(ChangeFeed.Change.message(ChangeFeed.Kind.INSERTED, messageId, senderId, receiverId));
+        return messageId;
+    }
+
+    /**
+     * Sends a reply into an existing thread, addressed to the other participant
+     * @param threadId The ID of the thread
+     * @param senderId The ID of the sender, who must take part in the thread
+     * @param content The message content
+     * @return The ID of the new message, or -1 if the thread does not exist or the
+     *         sender is not part of it
+     * @throws SQLException
+     */
+    public int replyToThread(int threadId, int senderId, String content) throws SQLException {
+        String findThread = "SELECT userLow, userHigh, relatedQuestionId, relatedAnswerId FROM message_threads WHERE id = ?";
+        int messageId = -1;
+        int receiverId = -1;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(findThread)) {
+                    pstmt.setInt(1, threadId);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next() && (rs.getInt(1) == senderId || rs.getInt(2) == senderId)) {
+                        receiverId = rs.getInt(1) == senderId ? rs.getInt(2) : rs.getInt(1);
+                        messageId = insertMessage(connection, threadId, senderId, receiverId,
+                                rs.getInt(3), rs.getInt(4), content);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        if (messageId != -1) {
+            changeFeed.publish(ChangeFeed.Change.message(ChangeFeed.Kind.INSERTED, messageId, senderId, receiverId));
+        }
+        return messageId;
+    }
+
+    // Returns the thread for the pair of users and related content, starting it if needed
+    private int findOrCreateThread(Connection connection, int senderId, int receiverId,
+            int relatedQuestionId, int relatedAnswerId) throws SQLException {
+        String findThread = "SELECT id FROM message_threads "
+                + "WHERE userLow = ? AND userHigh = ? AND relatedQuestionId = ? AND relatedAnswerId = ?";
+        String insertThread = "INSERT INTO message_threads (userLow, userHigh, relatedQuestionId, relatedAnswerId) "
+                + "VALUES (?, ?, ?, ?)";
+        int[] key = { Math.min(senderId, receiverId), Math.max(senderId, receiverId), relatedQuestionId, relatedAnswerId };
+
+        try (PreparedStatement find = connection.prepareStatement(findThread)) {
+            for (int i = 0; i < key.length; i++) {
+                find.setInt(i + 1, key[i]);
+            }
+            ResultSet rs = find.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement(insertThread, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < key.length; i++) {
+                    insert.setInt(i + 1, key[i]);
+                }
+                insert.executeUpdate();
+                ResultSet keys = insert.getGeneratedKeys();
+                keys.next();
+                return keys.getInt(1);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Another sender started the same thread first
+                rs = find.executeQuery();
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Inserts a message and updates its thread summary and the receiver's unread counter
+    private int insertMessage(Connection connection, int threadId, int senderId, int receiverId,
+            int relatedQuestionId, int relatedAnswerId, String content) throws SQLException {
+        String query = "INSERT INTO messages (senderId, receiverId, relatedQuestionId, relatedAnswerId, content, threadId) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+        String updateThread = "UPDATE message_threads SET lastMessageId = ?, lastSenderId = ?, lastSnippet = LEFT(?, 200), "
+                + "lastMessageDate = (SELECT createDate FROM messages WHERE id = ?), messageCount = messageCount + 1, "
+                + "unreadLow = unreadLow + CASE WHEN userLow = ? THEN 1 ELSE 0 END, "
+                + "unreadHigh = unreadHigh + CASE WHEN userLow = ? THEN 0 ELSE 1 END "
+                + "WHERE id = ?";
+        String incrementUnread = "MERGE INTO unread_counts t USING (VALUES (?)) s(userId) ON t.userId = s.userId "
+                + "WHEN MATCHED THEN UPDATE SET unreadCount = t.unreadCount + 1 "
+                + "WHEN NOT MATCHED THEN INSERT (userId, unreadCount) VALUES (s.userId, 1)";
+        int messageId = -1;
         try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setInt(1, senderId);
             pstmt.setInt(2, receiverId);
             pstmt.setInt(3, relatedQuestionId);
             pstmt.setInt(4, relatedAnswerId);
             pstmt.setString(5, content);
+            pstmt.setInt(6, threadId);
             pstmt.executeUpdate();
             
             ResultSet rs = pstmt.getGeneratedKeys();
             if (rs.next()) {
-                return rs.getInt(1);
+                messageId = rs.getInt(1);
             }
         }
-        return -1;
+        try (PreparedStatement pstmt = connection.prepareStatement(updateThread)) {
+            pstmt.setInt(1, messageId);
+            pstmt.setInt(2, senderId);
+            pstmt.setString(3, content);
+            pstmt.setInt(4, messageId);
+            pstmt.setInt(5, receiverId);
+            pstmt.setInt(6, receiverId);
+            pstmt.setInt(7, threadId);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(incrementUnread)) {
+            pstmt.setInt(1, receiverId);
+            pstmt.executeUpdate();
+        }
+        return messageId;
+    }
+
+    /**
+     * Gets one page of a user's threads, most recently active first, with the other
+     * participant's name and the user's unread count for each thread
+     * @param userId The ID of the user
+     * @param cursor The last thread of the previous page, or null for the first page
+     * @param pageSize The maximum number of threads to return
+     * @return The page of threads
+     * @throws SQLException
+     */
+    public List<MessageThreadData> getThreadsForUser(int userId, MessageThreadData cursor, int pageSize) throws SQLException {
+        // One branch per participant column so each side is read through its own index
+        String columns = "t.id, t.relatedQuestionId, t.relatedAnswerId, t.lastMessageId, t.lastSenderId, "
+                + "t.lastSnippet, t.lastMessageDate, t.messageCount, ";
+        String page = cursor != null ? "AND (t.lastMessageDate, t.id) < (?, ?) " : "";
+        String query = "SELECT * FROM ("
+                + "SELECT " + columns + "t.userHigh AS otherUserId, t.unreadLow AS unread "
+                + "FROM message_threads t WHERE t.userLow = ? " + page
+                + "UNION ALL "
+                + "SELECT " + columns + "t.userLow AS otherUserId, t.unreadHigh AS unread "
+                + "FROM message_threads t WHERE t.userHigh = ? AND t.userLow <> ? " + page
+                + ") x ORDER BY lastMessageDate DESC, id DESC LIMIT ?";
+
+        List<MessageThreadData> threads = new ArrayList<>();
+        List<Integer> otherUserIds = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int index = 1;
+            pstmt.setInt(index++, userId);
+            if (cursor != null) {
+                pstmt.setTimestamp(index++, cursor.lastMessageDate);
+                pstmt.setInt(index++, cursor.id);
+            }
+            pstmt.setInt(index++, userId);
+            pstmt.setInt(index++, userId);
+            if (cursor != null) {
+                pstmt.setTimestamp(index++, cursor.lastMessageDate);
+                pstmt.setInt(index++, cursor.id);
+            }
+            pstmt.setInt(index, pageSize);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                otherUserIds.add(rs.getInt("otherUserId"));
+                rows.add(new Object[] {
+                    rs.getInt("id"), rs.getInt("otherUserId"), rs.getInt("relatedQuestionId"),
+                    rs.getInt("relatedAnswerId"), rs.getInt("lastMessageId"), rs.getInt("lastSenderId"),
+                    rs.getString("lastSnippet"), rs.getTimestamp("lastMessageDate"),
+                    rs.getInt("messageCount"), rs.getInt("unread")
+                });
+            }
+        }
+
+        Map<Integer, String> names = userDirectory.getUserNames(otherUserIds);
+        for (Object[] row : rows) {
+            threads.add(new MessageThreadData((int) row[0], (int) row[1], names.get((int) row[1]),
+                    (int) row[2], (int) row[3], (int) row[4], (int) row[5], (String) row[6],
+                    (Timestamp) row[7], (int) row[8], (int) row[9]));
+        }
+        return threads;
+    }
+
+    /**
+     * Gets one page of a thread's messages, newest first
+     * @param threadId The ID of the thread
+     * @param before The oldest message of the previous page, or null for the newest page
+     * @param pageSize The maximum number of messages to return
+     * @return The page of messages
+     * @throws SQLException
+     */
+    public List<MessageData> getThreadMessages(int threadId, MessageData before, int pageSize) throws SQLException {
+        String query = "SELECT * FROM messages m WHERE m.threadId = ? "
+                + (before != null ? "AND (m.createDate, m.id) < (?, ?) " : "")
+                + "ORDER BY m.createDate DESC, m.id DESC LIMIT ?";
+        List<Object[]> rows = new ArrayList<>();
+        List<Integer> userIds = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int index = 1;
+            pstmt.setInt(index++, threadId);
+            if (before != null) {
+                pstmt.setTimestamp(index++, before.createDate);
+                pstmt.setInt(index++, before.id);
+            }
+            pstmt.setInt(index, pageSize);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                userIds.add(rs.getInt("senderId"));
+                userIds.add(rs.getInt("receiverId"));
+                rows.add(new Object[] {
+                    rs.getInt("id"), rs.getInt("senderId"), rs.getInt("receiverId"),
+                    rs.getInt("relatedQuestionId"), rs.getInt("relatedAnswerId"), rs.getString("content"),
+                    rs.getBoolean("isRead"), rs.getTimestamp("createDate")
+                });
+            }
+        }
+
+        // Thread participants are nearly always in the user directory already
+        Map<Integer, String> names = userDirectory.getUserNames(userIds);
+        List<MessageData> messages = new ArrayList<>();
+        for (Object[] row : rows) {
+            messages.add(new MessageData((int) row[0], (int) row[1], (int) row[2],
+                    names.get((int) row[1]), names.get((int) row[2]), (int) row[3], (int) row[4],
+                    (String) row[5], (boolean) row[6], (Timestamp) row[7], threadId));
+        }
+        return messages;
+    }
+
+    /**
+     * Marks every message the user received in a thread as read
+     * @param threadId The ID of the thread
+     * @param userId The ID of the reading user
+     * @return The number of messages that were unread
+     * @throws SQLException
+     */
+    public int markThreadAsRead(int threadId, int userId) throws SQLException {
+        String markRead = "UPDATE messages SET isRead = TRUE WHERE threadId = ? AND receiverId = ? AND isRead = FALSE";
+        String decrementUnread = "UPDATE unread_counts SET unreadCount = GREATEST(unreadCount - ?, 0) WHERE userId = ?";
+        String clearThread = "UPDATE message_threads SET "
+                + "unreadLow = CASE WHEN userLow = ? THEN 0 ELSE unreadLow END, "
+                + "unreadHigh = CASE WHEN userLow = ? THEN unreadHigh ELSE 0 END WHERE id = ?";
+        int marked;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(markRead)) {
+                    pstmt.setInt(1, threadId);
+                    pstmt.setInt(2, userId);
+                    marked = pstmt.executeUpdate();
+                }
+                if (marked > 0) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(decrementUnread)) {
+                        pstmt.setInt(1, marked);
+                        pstmt.setInt(2, userId);
+                        pstmt.executeUpdate();
+                    }
+                    try (PreparedStatement pstmt = connection.prepareStatement(clearThread)) {
+                        pstmt.setInt(1, userId);
+                        pstmt.setInt(2, userId);
+                        pstmt.setInt(3, threadId);
+                        pstmt.executeUpdate();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        if (marked > 0) {
+            changeFeed.publish(ChangeFeed.Change.message(ChangeFeed.Kind.UPDATED, -1, -1, userId));
+        }
+        return marked;
     }
     
     /**
@@ -1073,39 +1637,49 @@ public class studentDatabase {
      */
     public List<MessageData> getMessagesForUser(int userId) throws SQLException {
         List<MessageData> messages = new ArrayList<>();
-        String query = "SELECT m.*, " +
+        // Received and sent messages are read through their own indexes instead of one OR
+        String select = "SELECT m.*, " +
                        "sender.userName as senderName, " +
                        "receiver.userName as receiverName " +
                        "FROM messages m " +
                        "JOIN cse360users sender ON m.senderId = sender.id " +
-                       "JOIN cse360users receiver ON m.receiverId = receiver.id " +
-                       "WHERE m.receiverId = ? OR m.senderId = ? " +
-                       "ORDER BY m.createDate DESC";
+                       "JOIN cse360users receiver ON m.receiverId = receiver.id ";
+        String query = select + "WHERE m.receiverId = ? " +
+                       "UNION ALL " +
+                       select + "WHERE m.senderId = ? AND m.receiverId <> ? " +
+                       "ORDER BY createDate DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             pstmt.setInt(2, userId);
+            pstmt.setInt(3, userId);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                MessageData message = new MessageData(
-                    rs.getInt("id"),
-                    rs.getInt("senderId"),
-                    rs.getInt("receiverId"),
-                    rs.getString("senderName"),
-                    rs.getString("receiverName"),
-                    rs.getInt("relatedQuestionId"),
-                    rs.getInt("relatedAnswerId"),
-                    rs.getString("content"),
-                    rs.getBoolean("isRead"),
-                    rs.getTimestamp("createDate")
-                );
-                messages.add(message);
+                messages.add(readMessage(rs));
             }
         }
         return messages;
     }
 
+    // Reads a message row that was joined with the sender and receiver names
+    private static MessageData readMessage(ResultSet rs) throws SQLException {
+        return new MessageData(
+            rs.getInt("id"),
+            rs.getInt("senderId"),
+            rs.getInt("receiverId"),
+            rs.getString("senderName"),
+            rs.getString("receiverName"),
+            rs.getInt("relatedQuestionId"),
+            rs.getInt("relatedAnswerId"),
+            rs.getString("content"),
+            rs.getBoolean("isRead"),
+            rs.getTimestamp("createDate"),
+            rs.getInt("threadId")
+        );
+    }
+
     /**
      * Gets all unread messages for a user
      * @param userId The ID of the user
@@ -1123,24 +1697,13 @@ public class studentDatabase {
                        "WHERE m.receiverId = ? AND m.isRead = FALSE " +
                        "ORDER BY m.createDate DESC";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, userId);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                MessageData message = new MessageData(
-                    rs.getInt("id"),
-                    rs.getInt("senderId"),
-                    rs.getInt("receiverId"),
-                    rs.getString("senderName"),
-                    rs.getString("receiverName"),
-                    rs.getInt("relatedQuestionId"),
-                    rs.getInt("relatedAnswerId"),
-                    rs.getString("content"),
-                    rs.getBoolean("isRead"),
-                    rs.getTimestamp("createDate")
-                );
-                messages.add(message);
+                messages.add(readMessage(rs));
             }
         }
         return messages;
@@ -1154,11 +1717,67 @@ public class studentDatabase {
      * @throws SQLException
      */
     public boolean markMessageAsRead(int messageId, int userId) throws SQLException {
-        String query = "UPDATE messages SET isRead = TRUE WHERE id = ? AND receiverId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, messageId);
-            pstmt.setInt(2, userId);
-            return pstmt.executeUpdate() > 0;
+        String query = "UPDATE messages SET isRead = TRUE WHERE id = ? AND receiverId = ? AND isRead = FALSE";
+        String decrementUnread = "UPDATE unread_counts SET unreadCount = unreadCount - 1 WHERE userId = ? AND unreadCount > 0";
+        String decrementThread = "UPDATE message_threads SET "
+                + "unreadLow = CASE WHEN userLow = ? THEN GREATEST(unreadLow - 1, 0) ELSE unreadLow END, "
+                + "unreadHigh = CASE WHEN userLow = ? THEN unreadHigh ELSE GREATEST(unreadHigh - 1, 0) END "
+                + "WHERE id = (SELECT threadId FROM messages WHERE id = ?)";
+        String findMessage = "SELECT 1 FROM messages WHERE id = ? AND receiverId = ?";
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int rowsAffected;
+                try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setInt(1, messageId);
+                    pstmt.setInt(2, userId);
+                    rowsAffected = pstmt.executeUpdate();
+                }
+                if (rowsAffected > 0) {
+                    // Only a message that was unread until now lowers the counters
+                    try (PreparedStatement pstmt = connection.prepareStatement(decrementUnread)) {
+                        pstmt.setInt(1, userId);
+                        pstmt.executeUpdate();
+                    }
+                    try (PreparedStatement pstmt = connection.prepareStatement(decrementThread)) {
+                        pstmt.setInt(1, userId);
+                        pstmt.setInt(2, userId);
+                        pstmt.setInt(3, messageId);
+                        pstmt.executeUpdate();
+                    }
+                    connection.commit();
+                    changeFeed.publish(ChangeFeed.Change.message(ChangeFeed.Kind.UPDATED, messageId, -1, userId));
+                    return true;
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            // Already read, which still counts as success for the recipient
+            try (PreparedStatement pstmt = connection.prepareStatement(findMessage)) {
+                pstmt.setInt(1, messageId);
+                pstmt.setInt(2, userId);
+                return pstmt.executeQuery().next();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of unread messages for a user from the unread counter, without
+     * reading any messages
+     * @param userId The ID of the user
+     * @return The number of unread messages
+     * @throws SQLException
+     */
+    public int getUnreadMessageCount(int userId) throws SQLException {
+        String query = "SELECT unreadCount FROM unread_counts WHERE userId = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
         }
     }
 
@@ -1170,7 +1789,8 @@ public class studentDatabase {
      */
     public int getQuestionOwnerId(int questionId) throws SQLException {
         String query = "SELECT userId FROM questions WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, questionId);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -1188,7 +1808,8 @@ public class studentDatabase {
      */
     public int getAnswerOwnerId(int answerId) throws SQLException {
         String query = "SELECT userId FROM answers WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, answerId);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -1209,9 +1830,10 @@ class QuestionData {
     public final Timestamp createDate;
     public final boolean resolved;
     public final int answerCount;
+    public final int reviewCount;
 
     public QuestionData(int id, String title, String content, String userName, 
-                       Timestamp createDate, boolean resolved, int answerCount) {
+                       Timestamp createDate, boolean resolved, int answerCount, int reviewCount) {
         this.id = id;
         this.title = title;
         this.content = content;
@@ -1219,6 +1841,12 @@ class QuestionData {
         this.createDate = createDate;
         this.resolved = resolved;
         this.answerCount = answerCount;
+        this.reviewCount = reviewCount;
+    }
+
+    public QuestionData(int id, String title, String content, String userName, 
+                       Timestamp createDate, boolean resolved, int answerCount) {
+        this(id, title, content, userName, createDate, resolved, answerCount, 0);
     }
 }
 
@@ -1296,10 +1924,18 @@ class MessageData {
     public final String content;
     public final boolean isRead;
     public final Timestamp createDate;
+    public final int threadId;
 
     public MessageData(int id, int senderId, int receiverId, String senderName, String receiverName, 
                       int relatedQuestionId, int relatedAnswerId, String content, 
                       boolean isRead, Timestamp createDate) {
+        this(id, senderId, receiverId, senderName, receiverName, relatedQuestionId, relatedAnswerId,
+             content, isRead, createDate, -1);
+    }
+
+    public MessageData(int id, int senderId, int receiverId, String senderName, String receiverName, 
+                      int relatedQuestionId, int relatedAnswerId, String content, 
+                      boolean isRead, Timestamp createDate, int threadId) {
         this.id = id;
         this.senderId = senderId;
         this.receiverId = receiverId;
@@ -1310,5 +1946,39 @@ class MessageData {
         this.content = content;
         this.isRead = isRead;
         this.createDate = createDate;
+        this.threadId = threadId;
+    }
+}
+
+/**
+ * A conversation as seen by one of its two participants, summarized by its newest message
+ */
+class MessageThreadData {
+    public final int id;
+    public final int otherUserId;
+    public final String otherUserName;
+    public final int relatedQuestionId;
+    public final int relatedAnswerId;
+    public final int lastMessageId;
+    public final int lastSenderId;
+    public final String lastSnippet;
+    public final Timestamp lastMessageDate;
+    public final int messageCount;
+    public final int unreadCount;
+
+    public MessageThreadData(int id, int otherUserId, String otherUserName, int relatedQuestionId,
+                             int relatedAnswerId, int lastMessageId, int lastSenderId, String lastSnippet,
+                             Timestamp lastMessageDate, int messageCount, int unreadCount) {
+        this.id = id;
+        this.otherUserId = otherUserId;
+        this.otherUserName = otherUserName;
+        this.relatedQuestionId = relatedQuestionId;
+        this.relatedAnswerId = relatedAnswerId;
+        this.lastMessageId = lastMessageId;
+        this.lastSenderId = lastSenderId;
+        this.lastSnippet = lastSnippet;
+        this.lastMessageDate = lastMessageDate;
+        this.messageCount = messageCount;
+        this.unreadCount = unreadCount;
     }
 }
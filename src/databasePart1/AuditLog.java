@@ -0,0 +1,339 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The AuditLog class keeps an append-only record of account and moderation actions in
+ * the audit_log table.
+ *
+ * Recording an action only puts it on a bounded queue, so the write it describes never
+ * waits on the audit table. A single background thread drains the queue and inserts the
+ * entries in batches. When the queue is full new entries are dropped and counted rather
+ * than slowing the caller down, with at most one warning a minute. Entries keep the time they were recorded, not the time
+ * they were written.
+ *
+ * Queries flush the queue first, so an action recorded by the same process is always
+ * found. There is one log per connection pool. The queue capacity and batch size can be
+ * configured with the system properties {@code cse360.audit.queueCapacity} and
+ * {@code cse360.audit.batchSize}.
+ */
+public class AuditLog {
+    public static final int DEFAULT_QUEUE_CAPACITY =
+            Integer.getInteger("cse360.audit.queueCapacity", 10000);
+    public static final int DEFAULT_BATCH_SIZE =
+            Integer.getInteger("cse360.audit.batchSize", 200);
+    // How long a query waits for queued entries to be written
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_DETAILS_LENGTH = 1000;
+    // The least time between two warnings about dropped entries
+    private static final long DROP_WARNING_INTERVAL_MILLIS = 60_000;
+
+    private static final Map<ConnectionPool, AuditLog> LOGS = new IdentityHashMap<>();
+
+    /**
+     * Returns the log for the database behind the pool, creating it on first use
+     */
+    public static synchronized AuditLog forPool(ConnectionPool pool) {
+        return LOGS.computeIfAbsent(pool, p -> new AuditLog(p, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE));
+    }
+
+    public enum Action {
+        USER_REGISTERED,
+        USER_DELETED,
+        ROLES_CHANGED,
+        PASSWORD_CHANGED,
+        QUESTION_EDITED,
+        QUESTION_DELETED,
+        QUESTION_RESOLVED,
+        QUESTION_REOPENED,
+        ANSWER_EDITED,
+        ANSWER_DELETED,
+        ANSWER_CLARIFICATION_CHANGED,
+        REVIEW_EDITED,
+        REVIEW_DELETED
+    }
+
+    /**
+     * One recorded action. The ID is -1 until the entry has been written.
+     */
+    public static class Entry {
+        public final long id;
+        public final Timestamp createdAt;
+        /** The user who acted, or null if unknown */
+        public final String actor;
+        public final Action action;
+        /** The kind of row acted on, such as "user" or "question" */
+        public final String targetType;
+        /** The ID of the row acted on, or -1 */
+        public final int targetId;
+        public final String details;
+
+        public Entry(long id, Timestamp createdAt, String actor, Action action, String targetType,
+                     int targetId, String details) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.actor = actor;
+            this.action = action;
+            this.targetType = targetType;
+            this.targetId = targetId;
+            this.details = details;
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + " " + actor + " " + action + " " + targetType + " " + targetId
+                    + (details != null ? " " + details : "");
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private Thread writer = null;
+
+    // Counters for flush() and for monitoring. Guarded by this.
+    private long accepted = 0;
+    private long processed = 0;
+    private long written = 0;
+    private long dropped = 0;
+    private long failed = 0;
+    private long droppedAtLastWarning = 0;
+    private long lastDropWarningMillis = 0;
+
+    AuditLog(ConnectionPool pool, int queueCapacity, int batchSize) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Records an action without waiting for it to be written
+     * @param actor			The user who acted, or null if unknown
+     * @param action		What was done
+     * @param targetType	The kind of row acted on, such as "user" or "question"
+     * @param targetId		The ID of the row acted on, or -1
+     * @param details		A short description, cut to 1000 characters, or null
+     * @return false if the queue was full and the entry was dropped
+     */
+    public boolean record(String actor, Action action, String targetType, int targetId, String details) {
+        if (details != null && details.length() > MAX_DETAILS_LENGTH) {
+            details = details.substring(0, MAX_DETAILS_LENGTH);
+        }
+        Entry entry = new Entry(-1, new Timestamp(System.currentTimeMillis()), actor, action,
+                targetType, targetId, details);
+        long droppedSinceWarning = 0;
+        synchronized (this) {
+            startWriter();
+            if (queue.offer(entry)) {
+                accepted++;
+                return true;
+            }
+            dropped++;
+            long now = System.currentTimeMillis();
+            if (now - lastDropWarningMillis >= DROP_WARNING_INTERVAL_MILLIS) {
+                droppedSinceWarning = dropped - droppedAtLastWarning;
+                droppedAtLastWarning = dropped;
+                lastDropWarningMillis = now;
+            }
+        }
+        if (droppedSinceWarning > 0) {
+            System.err.println("Audit queue is full, dropped " + droppedSinceWarning
+                    + " entries since the last warning");
+        }
+        return false;
+    }
+
+    /**
+     * Waits until every entry recorded before the call has been written or has failed
+     * @return false if the entries were still not written after the timeout
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            long target = accepted;
+            while (processed < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean flush() {
+        return flush(FLUSH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Returns the newest entries, newest first
+     */
+    public List<Entry> getRecent(int limit) throws SQLException {
+        return query(null, null, null, -1, null, limit);
+    }
+
+    /**
+     * Returns the entries about one row, newest first
+     */
+    public List<Entry> getEntriesFor(String targetType, int targetId, int limit) throws SQLException {
+        return query(null, null, targetType, targetId, null, limit);
+    }
+
+    /**
+     * Returns matching entries, newest first. Null arguments and a target ID of -1 match anything.
+     * @param actor			Only entries by this user
+     * @param action		Only entries of this action
+     * @param targetType	Only entries about this kind of row
+     * @param targetId		Only entries about this row
+     * @param since			Only entries recorded at or after this time
+     * @param limit			The maximum number of entries to return
+     * @return The matching entries
+     * @throws SQLException
+     */
+    public List<Entry> query(String actor, Action action, String targetType, int targetId,
+            Timestamp since, int limit) throws SQLException {
+        flush();
+
+        StringBuilder query = new StringBuilder(
+                "SELECT id, createdAt, actor, action, targetType, targetId, details FROM audit_log WHERE TRUE");
+        List<Object> params = new ArrayList<>();
+        if (actor != null) {
+            query.append(" AND actor = ?");
+            params.add(actor);
+        }
+        if (action != null) {
+            query.append(" AND action = ?");
+            params.add(action.name());
+        }
+        if (targetType != null) {
+            query.append(" AND targetType = ?");
+            params.add(targetType);
+        }
+        if (targetId != -1) {
+            query.append(" AND targetId = ?");
+            params.add(targetId);
+        }
+        if (since != null) {
+            query.append(" AND createdAt >= ?");
+            params.add(since);
+        }
+        query.append(" ORDER BY createdAt DESC, id DESC LIMIT ?");
+        params.add(limit);
+
+        List<Entry> entries = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                entries.add(new Entry(
+                    rs.getLong("id"),
+                    rs.getTimestamp("createdAt"),
+                    rs.getString("actor"),
+                    Action.valueOf(rs.getString("action")),
+                    rs.getString("targetType"),
+                    rs.getInt("targetId"),
+                    rs.getString("details")));
+            }
+        }
+        return entries;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getFailedCount() {
+        return failed;
+    }
+
+    // Called with the lock held
+    private void startWriter() {
+        if (writer == null) {
+            writer = new Thread(this::drain, "cse360-audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    // Runs on the writer thread for the life of the process
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            boolean ok = false;
+            try {
+                writeBatch(batch);
+                ok = true;
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Could not write " + batch.size() + " audit entries: " + e.getMessage());
+            }
+            synchronized (this) {
+                processed += batch.size();
+                if (ok) {
+                    written += batch.size();
+                } else {
+                    failed += batch.size();
+                }
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Entry> batch) throws SQLException {
+        String insert = "INSERT INTO audit_log (createdAt, actor, action, targetType, targetId, details) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+                for (Entry entry : batch) {
+                    pstmt.setTimestamp(1, entry.createdAt);
+                    pstmt.setString(2, entry.actor);
+                    pstmt.setString(3, entry.action.name());
+                    pstmt.setString(4, entry.targetType);
+                    pstmt.setInt(5, entry.targetId);
+                    pstmt.setString(6, entry.details);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ConnectionPool class hands out JDBC connections to the database helpers so that
+ * concurrent callers each get their own connection instead of sharing a single one.
+ * The pool is bounded, validates connections when they are borrowed and closes
+ * connections that have been idle for too long.
+ *
+ * Connections are borrowed with {@link #getConnection()} and returned by calling
+ * {@code close()} on them, so they can be used in try-with-resources blocks.
+ *
+ * Each pooled connection keeps a {@link StatementCache}, so calling
+ * {@code prepareStatement} with the same SQL on a borrowed connection reuses the
+ * statement that was already parsed instead of preparing it again.
+ *
+ * Pool sizes can be configured with the system properties {@code cse360.pool.minSize},
+ * {@code cse360.pool.maxSize}, {@code cse360.pool.idleTimeoutMillis},
+ * {@code cse360.pool.borrowTimeoutMillis} and {@code cse360.pool.statementCacheSize}.
+ */
+public class ConnectionPool {
+    private static final Map<String, ConnectionPool> POOLS = new HashMap<>();
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    // Instrumentation counters
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong failedValidationCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong statementCacheEvictions = new AtomicLong();
+    private final AtomicLong statementsExecuted = new AtomicLong();
+
+    /**
+     * Returns the shared pool for a database URL, creating it on first use with the
+     * sizes configured through system properties.
+     */
+    public static synchronized ConnectionPool forUrl(String url, String user, String password) {
+        ConnectionPool pool = POOLS.get(url);
+        if (pool == null || pool.closed) {
+            pool = new ConnectionPool(url, user, password,
+                    Integer.getInteger("cse360.pool.minSize", 1),
+                    Integer.getInteger("cse360.pool.maxSize", 10),
+                    Long.getLong("cse360.pool.idleTimeoutMillis", 300_000L),
+                    Long.getLong("cse360.pool.borrowTimeoutMillis", 30_000L),
+                    Integer.getInteger("cse360.pool.statementCacheSize", 64));
+            pool.startEvictor();
+            POOLS.put(url, pool);
+        }
+        return pool;
+    }
+
+    private ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cse360-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Scheduled once the pool is fully constructed, so the evictor never sees a partial pool
+    private void startEvictor() {
+        long period = Math.max(1000L, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout when every
+     * connection is in use. Closing the returned connection gives it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (pooled.isValid()) {
+                    break;
+                }
+                failedValidationCount.incrementAndGet();
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            activeCount.incrementAndGet();
+            borrowCount.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized PooledConnection pollIdle() {
+        // Most recently used first, so rarely used connections age out
+        return idle.pollFirst();
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        totalCount.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(raw);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalCount.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        try {
+            boolean reusable = !closed && !pooled.raw.isClosed();
+            if (reusable && !pooled.raw.getAutoCommit()) {
+                // Never hand out a connection with a half-finished transaction
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (this) {
+                    idle.offerFirst(pooled);
+                }
+            } else {
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout, while keeping
+     * at least the minimum number of connections open.
+     */
+    void evictIdleConnections() {
+        if (closed) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalCount.get() - expired.size() > minSize) {
+                PooledConnection pooled = it.next();
+                if (pooled.lastUsed < cutoff) {
+                    it.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            destroy(pooled);
+        }
+
+        // Top the pool back up to its minimum size
+        while (!closed && totalCount.get() < minSize) {
+            try {
+                PooledConnection pooled = create();
+                synchronized (this) {
+                    idle.offerLast(pooled);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error refilling connection pool: " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the pool. Connections still in use are
+     * closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = pollIdle()) != null) {
+            destroy(pooled);
+        }
+        synchronized (ConnectionPool.class) {
+            POOLS.remove(url, this);
+        }
+    }
+
+    public int getMinSize() { return minSize; }
+    public int getMaxSize() { return maxSize; }
+    public int getTotalCount() { return totalCount.get(); }
+    public int getActiveCount() { return activeCount.get(); }
+    public synchronized int getIdleCount() { return idle.size(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+    public long getFailedValidationCount() { return failedValidationCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getStatementCacheHits() { return statementCacheHits.get(); }
+    public long getStatementCacheMisses() { return statementCacheMisses.get(); }
+    public long getStatementCacheEvictions() { return statementCacheEvictions.get(); }
+
+    // Number of statements executed on borrowed connections, used to catch N+1 query patterns
+    public long getStatementsExecuted() { return statementsExecuted.get(); }
+
+    public double getStatementCacheHitRate() {
+        long lookups = statementCacheHits.get() + statementCacheMisses.get();
+        return lookups == 0 ? 0.0 : (double) statementCacheHits.get() / lookups;
+    }
+
+    // Average time callers spent waiting for a free connection
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : waitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[%s total=%d active=%d idle=%d borrows=%d created=%d "
+                + "destroyed=%d invalid=%d timeouts=%d avgWait=%.3fms stmtHits=%d stmtMisses=%d]",
+                url, getTotalCount(), getActiveCount(), getIdleCount(), getBorrowCount(),
+                getCreatedCount(), getDestroyedCount(), getFailedValidationCount(),
+                getTimeoutCount(), getAverageWaitMillis(), getStatementCacheHits(),
+                getStatementCacheMisses());
+    }
+
+    /**
+     * A physical connection owned by the pool. Each borrow hands out a fresh proxy so a
+     * caller that closes its connection twice cannot return it to the pool twice.
+     */
+    private final class PooledConnection {
+        final Connection raw;
+        final StatementCache statements;
+        long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(raw, statementCacheSize, statementCacheHits,
+                            statementCacheMisses, statementCacheEvictions, statementsExecuted)
+                    : null;
+        }
+
+        boolean isValid() {
+            try {
+                return raw.isValid(1);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.raw + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (pooled.statements != null && method.getName().equals("prepareStatement")) {
+                if (args.length == 1) {
+                    return pooled.statements.prepare((String) args[0], -1);
+                }
+                if (args.length == 2 && args[1] instanceof Integer) {
+                    return pooled.statements.prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return countExecutions(result, method.getReturnType(), statementsExecuted);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Wraps a statement that is not served from a StatementCache so its executions are
+     * still counted.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T countExecutions(Object statement, Class<T> type, AtomicLong counter) {
+        return (T) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        counter.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -2,9 +2,14 @@ package databasePart1;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+import application.CascadeDeleter;
+import application.Role;
 import application.User;
 
 /**
@@ -20,105 +25,226 @@ public class DatabaseHelper {
     static final String USER = "sa"; 
     static final String PASS = ""; 
 
-    private Connection connection = null;
-    private Statement statement = null;
+    // Connections are borrowed from the pool shared with studentDatabase
+    private ConnectionPool pool = null;
+    // Name and ID lookups shared with studentDatabase
+    private UserDirectory userDirectory = null;
+    // Records account changes without slowing them down
+    private AuditLog auditLog = null;
+    // Hashes and checks passwords on a bounded pool of workers
+    private PasswordHasher passwordHasher = null;
+    // Hands out and redeems invitation codes
+    private InvitationCodePool invitationCodes = null;
 
     public void connectToDatabase() throws SQLException {
+        connectToDatabase(DB_URL);
+    }
+
+    /**
+     * Connects to another database than the application's, such as an in-memory one for
+     * benchmarks. The schema is migrated the same way.
+     */
+    public void connectToDatabase(String url) throws SQLException {
         try {
             Class.forName(JDBC_DRIVER);
             System.out.println("Connecting to database...");
-            connection = DriverManager.getConnection(DB_URL, USER, PASS);
-            statement = connection.createStatement();
-            // To reset database, uncomment next line:
-            //statement.execute("DROP ALL OBJECTS");
-            createTables();
+            pool = ConnectionPool.forUrl(url, USER, PASS);
+            userDirectory = UserDirectory.forPool(pool);
+            auditLog = AuditLog.forPool(pool);
+            invitationCodes = InvitationCodePool.forPool(pool);
+            try (Connection connection = pool.getConnection()) {
+                // To reset database, uncomment next line:
+                //connection.createStatement().execute("DROP ALL OBJECTS");
+                SchemaMigrator.migrate(connection);
+            }
+            // Reads its cost from the settings table, so it comes after the migration
+            passwordHasher = PasswordHasher.getDefault(pool);
         } catch (ClassNotFoundException e) {
             System.err.println("JDBC Driver not found: " + e.getMessage());
         }
     }
 
-    private void createTables() throws SQLException {
-        // Users table with increased role column size
-        String userTable = "CREATE TABLE IF NOT EXISTS cse360users ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "userName VARCHAR(255) UNIQUE, "
-                + "password VARCHAR(255), "
-                + "role VARCHAR(255))";  // Changed from VARCHAR(20) to VARCHAR(255)
-        statement.execute(userTable);
-        
-        // Invitation codes table
-        String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
-                + "code VARCHAR(10) PRIMARY KEY, "
-                + "isUsed BOOLEAN DEFAULT FALSE)";
-        statement.execute(invitationCodesTable);
-        
-        // One-time passwords table
-        String oneTimePasswordsTable = "CREATE TABLE IF NOT EXISTS OneTimePasswords ("
-                + "userName VARCHAR(255) UNIQUE, "
-                + "oneTimePassword VARCHAR(10) PRIMARY KEY, "
-                + "isUsed BOOLEAN DEFAULT FALSE)";
-        statement.execute(oneTimePasswordsTable);
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    public UserDirectory getUserDirectory() {
+        return userDirectory;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+
+    public InvitationCodePool getInvitationCodePool() {
+        return invitationCodes;
     }
 
     public boolean isDatabaseEmpty() throws SQLException {
         String query = "SELECT COUNT(*) AS count FROM cse360users";
-        ResultSet resultSet = statement.executeQuery(query);
-        if (resultSet.next()) {
-            return resultSet.getInt("count") == 0;
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            if (resultSet.next()) {
+                return resultSet.getInt("count") == 0;
+            }
         }
         return true;
     }
 
     public void register(User user) throws SQLException {
         String insertUser = "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
-            pstmt.setString(1, user.getUserName());
-            pstmt.setString(2, user.getPassword());
-            pstmt.setString(3, user.getRole());
-            pstmt.executeUpdate();
-            printAllUsers();
+        String passwordHash = hashPassword(user.getPassword());
+        int userId = -1;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(insertUser, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, user.getUserName());
+                    pstmt.setString(2, passwordHash);
+                    pstmt.setString(3, user.getRole());
+                    pstmt.executeUpdate();
+                    ResultSet rs = pstmt.getGeneratedKeys();
+                    if (rs.next()) {
+                        userId = rs.getInt(1);
+                    }
+                }
+                insertRoles(connection, userId, user.getRoles());
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        userDirectory.userAdded(userId, user.getUserName());
+        auditLog.record(user.getUserName(), AuditLog.Action.USER_REGISTERED, "user", userId,
+                "roles=" + user.getRole());
+    }
+
+    // Adds a user_roles row for each role
+    private static void insertRoles(Connection connection, int userId, Collection<Role> roles) throws SQLException {
+        String query = "MERGE INTO user_roles (userId, role) KEY (userId, role) VALUES (?, ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (Role role : roles) {
+                pstmt.setInt(1, userId);
+                pstmt.setString(2, role.getDbName());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
         }
     }
     
     // Delete a user from the database
-    public void deleteUser(String userName) {
-    	String query = "DELETE FROM cse360users WHERE userName = ?";
-    	try(PreparedStatement pstmt = connection.prepareStatement(query)) {
-    		pstmt.setString(1,  userName);;
-    		int rows = pstmt.executeUpdate();
-    		if(rows > 0) {
-    			System.out.println("User " + userName + "has been deleted.");
+    /**
+     * Deletes a user and everything that refers to them in one transaction
+     * @return The rows removed per table, or null if the delete failed
+     */
+    public CascadeDeleter.Report deleteUser(String userName) {
+    	return deleteUser(userName, null);
+    }
+
+    /**
+     * Deletes a user and everything that refers to them in one transaction
+     * @param userName		The user to delete
+     * @param actorName		The user doing the delete, for the audit log
+     * @return The rows removed per table, or null if the delete failed
+     */
+    public CascadeDeleter.Report deleteUser(String userName, String actorName) {
+    	try {
+    		int userId = userDirectory.getUserId(userName);
+    		CascadeDeleter.Report report = new CascadeDeleter(pool).deleteUser(userName);
+    		if(report.getCount("cse360users") > 0) {
+    			System.out.println("User " + userName + " has been deleted: " + report);
+    			auditLog.record(actorName, AuditLog.Action.USER_DELETED, "user", userId,
+    					userName + " " + report);
     		}
     		else {
     			System.out.println("No user found with username: " + userName);
     		}
+    		return report;
     	}
     	catch (SQLException e) {
     		System.err.println("Problem deleting the user " + userName + ": " + e.getMessage());
     		e.printStackTrace();
+    		return null;
     	}
     }
 
+    /**
+     * Checks the user's password against the stored hash. A password stored with an
+     * outdated cost, or as plaintext, is hashed again with the current cost on success.
+     * The user must hold every role of the given User, checked against user_roles.
+     * @throws SQLTransientException if too many logins are waiting for a password worker
+     */
     public boolean login(User user) throws SQLException {
-        String query = "SELECT * FROM cse360users WHERE userName = ? AND password = ? AND role = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        String query = "SELECT u.id, u.password FROM cse360users u WHERE u.userName = ? "
+                     + "AND (SELECT COUNT(*) FROM user_roles ur WHERE ur.userId = u.id AND ur.role = ANY(?)) = ?";
+        EnumSet<Role> roles = user.getRoles();
+        String[] roleNames = new String[roles.size()];
+        int i = 0;
+        for (Role role : roles) {
+            roleNames[i++] = role.getDbName();
+        }
+        int userId;
+        String stored;
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, user.getUserName());
-            pstmt.setString(2, user.getPassword());
-            pstmt.setString(3, user.getRole());
+            pstmt.setArray(2, connection.createArrayOf("VARCHAR", roleNames));
+            pstmt.setInt(3, roleNames.length);
             try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next();
+                if (!rs.next()) {
+                    return false;
+                }
+                userId = rs.getInt("id");
+                stored = rs.getString("password");
             }
         }
+
+        boolean matches;
+        try {
+            matches = passwordHasher.verify(user.getPassword(), stored);
+        } catch (RejectedExecutionException e) {
+            throw new SQLTransientException("Too many logins in progress, please try again", e);
+        }
+        if (matches && passwordHasher.needsRehash(stored)) {
+            rehashPassword(userId, stored, user.getPassword());
+        }
+        return matches;
+    }
+
+    // Replaces a verified hash with one of the current cost. The login has already
+    // succeeded, so a failure here is only reported.
+    private void rehashPassword(int userId, String stored, String password) {
+        // Matching the old value keeps a password changed in the meantime
+        String query = "UPDATE cse360users SET password = ? WHERE id = ? AND password = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, passwordHasher.hash(password));
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, stored);
+            pstmt.executeUpdate();
+        } catch (SQLException | RejectedExecutionException e) {
+            System.err.println("Could not rehash the password of user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    // Hashes a password for storage
+    private String hashPassword(String password) throws SQLException {
+        try {
+            return passwordHasher.hash(password);
+        } catch (RejectedExecutionException e) {
+            throw new SQLTransientException("Too many password changes in progress, please try again", e);
+        }
     }
 
     public boolean doesUserExist(String userName) {
-        String query = "SELECT COUNT(*) FROM cse360users WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, userName);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
+        try {
+            return userDirectory.getUserId(userName) != -1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -127,7 +253,8 @@ public class DatabaseHelper {
 
     public String getUserRole(String userName) {
         String query = "SELECT role FROM cse360users WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -139,49 +266,54 @@ public class DatabaseHelper {
         return null;
     }
 
+    /**
+     * Reserves one invitation code from the pool
+     * @return The code, or null if none could be reserved
+     */
     public String generateInvitationCode() {
-        String code = UUID.randomUUID().toString().substring(0, 4);
-        String query = "INSERT INTO InvitationCodes (code) VALUES (?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, code);
-            pstmt.executeUpdate();
+        return generateInvitationCode(null);
+    }
+
+    /**
+     * Reserves one invitation code from the pool for a user
+     * @param reservedBy	The user handing the code out
+     * @return The code, or null if none could be reserved
+     */
+    public String generateInvitationCode(String reservedBy) {
+        try {
+            return invitationCodes.reserve(reservedBy, 1).get(0);
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
-        return code;
     }
 
+    /**
+     * Redeems an invitation code, which succeeds only once per code
+     */
     public boolean validateInvitationCode(String code) {
-        String query = "SELECT * FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, code);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                markInvitationCodeAsUsed(code);
-                return true;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return validateInvitationCode(code, null);
     }
 
-    private void markInvitationCodeAsUsed(String code) {
-        String query = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, code);
-            pstmt.executeUpdate();
+    /**
+     * Redeems an invitation code for the user it is being used by
+     * @return true if the code existed and had not been used
+     */
+    public boolean validateInvitationCode(String code, String userName) {
+        try {
+            return invitationCodes.redeem(code, userName);
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     
     // Generate a one-time password for a certain username only if it does not already have one
     public String generateOTP(String userName) {
         String query = "SELECT oneTimePassword FROM OneTimePasswords WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -194,7 +326,8 @@ public class DatabaseHelper {
 
         String onetimePassword = UUID.randomUUID().toString().substring(0, 10);
         query = "INSERT INTO OneTimePasswords (userName, oneTimePassword) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
             pstmt.setString(2, onetimePassword);
             pstmt.executeUpdate();
@@ -208,7 +341,8 @@ public class DatabaseHelper {
     // Ensure a one-time password exists and is associated with the given username
     public boolean validateOTP(String userName, String oneTimePassword) {
         String query = "SELECT * FROM OneTimePasswords WHERE userName = ? AND oneTimePassword = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
             pstmt.setString(2, oneTimePassword);
             ResultSet rs = pstmt.executeQuery();
@@ -225,7 +359,8 @@ public class DatabaseHelper {
     // Remove a used one-time password
     private void markOTPAsUsed(String oneTimePassword) {
         String query = "DELETE FROM OneTimePasswords WHERE oneTimePassword = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, oneTimePassword);
             pstmt.executeUpdate();
         } catch (SQLException e) {
@@ -235,12 +370,18 @@ public class DatabaseHelper {
 
     // Determine if there is only one admin left or not 
     public boolean isLastAdmin(String userName) {
-        String query = "SELECT COUNT(*) FROM cse360users WHERE role LIKE '%admin%'";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        // Both counts come from the (role, userId) index
+        String query = "SELECT COUNT(*), COUNT(CASE WHEN ur.userId = "
+                     + "(SELECT id FROM cse360users WHERE userName = ?) THEN 1 END) "
+                     + "FROM user_roles ur WHERE ur.role = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, userName);
+            pstmt.setString(2, Role.ADMIN.getDbName());
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
                 int adminCount = rs.getInt(1);
-                return adminCount == 1 && getUserRole(userName).contains("admin");
+                return adminCount == 1 && rs.getInt(2) == 1;
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -248,6 +389,60 @@ public class DatabaseHelper {
         return false;
     }
 
+    /**
+     * Returns the roles held by a user, empty if the user does not exist
+     */
+    public EnumSet<Role> getUserRoles(String userName) {
+        String query = "SELECT ur.role FROM user_roles ur "
+                     + "JOIN cse360users u ON ur.userId = u.id WHERE u.userName = ?";
+        EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, userName);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Role role = Role.fromDbName(rs.getString(1));
+                if (role != null) {
+                    roles.add(role);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return roles;
+    }
+
+    /**
+     * Counts the users holding a role using the user_roles index
+     */
+    public int countUsersWithRole(Role role) throws SQLException {
+        String query = "SELECT COUNT(*) FROM user_roles WHERE role = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, role.getDbName());
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Lists the names of the users holding a role, in name order
+     */
+    public List<String> getUserNamesWithRole(Role role) throws SQLException {
+        String query = "SELECT u.userName FROM user_roles ur "
+                     + "JOIN cse360users u ON ur.userId = u.id WHERE ur.role = ? ORDER BY u.userName";
+        List<String> userNames = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, role.getDbName());
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                userNames.add(rs.getString(1));
+            }
+        }
+        return userNames;
+    }
+
     // Update the roles for a user
     public void updateUserRoles(String userName, List<String> roles, String currentUserName) {
         // Check if this user is the last admin
@@ -262,21 +457,51 @@ public class DatabaseHelper {
         // If user is trying to modify their own roles
         if (userName.equals(currentUserName)) {
             // If they're an admin and trying to remove their admin role
-            if (getUserRole(userName).contains("admin") && !roles.contains("admin")) {
+            if (getUserRoles(userName).contains(Role.ADMIN) && !roles.contains("admin")) {
                 System.out.println("Cannot remove your own admin role");
                 return;
             }
         }
 
-        String roleString = String.join(",", roles);
-        String query = "UPDATE cse360users SET role = ? WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, roleString);
-            pstmt.setString(2, userName);
-            int rowsAffected = pstmt.executeUpdate();
+        // The display column is the joined form of the role rows written below
+        EnumSet<Role> roleSet = Role.parse(String.join(",", roles));
+        String roleString = Role.join(roleSet);
+        String query = "UPDATE cse360users SET role = ? WHERE id = ?";
+        String deleteRoles = "DELETE FROM user_roles WHERE userId = ?";
+        try {
+            // Resolved before the transaction so no other connection is needed while it is open
+            int userId = userDirectory.getUserId(userName);
+            if (userId == -1) {
+                System.out.println("No user found with username: " + userName);
+                return;
+            }
+            int rowsAffected;
+            try (Connection connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+                        pstmt.setString(1, roleString);
+                        pstmt.setInt(2, userId);
+                        rowsAffected = pstmt.executeUpdate();
+                    }
+                    if (rowsAffected > 0) {
+                        // Replace the user's role rows with the new set
+                        try (PreparedStatement pstmt = connection.prepareStatement(deleteRoles)) {
+                            pstmt.setInt(1, userId);
+                            pstmt.executeUpdate();
+                        }
+                        insertRoles(connection, userId, roleSet);
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
             if (rowsAffected > 0) {
                 System.out.println("Roles updated successfully for user: " + userName);
-                printAllUsers();
+                auditLog.record(currentUserName, AuditLog.Action.ROLES_CHANGED, "user",
+                        userId, userName + " roles=" + roleString);
             } else {
                 System.out.println("No user found with username: " + userName);
             }
@@ -289,10 +514,18 @@ public class DatabaseHelper {
     // Update the password for a user
     public void updatePassword(String userName, String password) {
         String query = "UPDATE cse360users SET password = ? WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, password);
-            pstmt.setString(2, userName);
-            pstmt.executeUpdate();
+        try {
+            boolean updated;
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, hashPassword(password));
+                pstmt.setString(2, userName);
+                updated = pstmt.executeUpdate() > 0;
+            }
+            if (updated) {
+                auditLog.record(userName, AuditLog.Action.PASSWORD_CHANGED, "user",
+                        userDirectory.getUserId(userName), null);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -302,7 +535,8 @@ public class DatabaseHelper {
     public List<User> getUsers() {
         String query = "SELECT userName, password, role FROM cse360users";
         List<User> users = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
                 String userName = rs.getString("userName");
@@ -318,7 +552,8 @@ public class DatabaseHelper {
 
     public void printAllUsers() {
         String selectAllUsers = "SELECT * FROM cse360users";
-        try (PreparedStatement selectStmt = connection.prepareStatement(selectAllUsers)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement selectStmt = connection.prepareStatement(selectAllUsers)) {
             ResultSet rs = selectStmt.executeQuery();
             System.out.println("\n=== Current Database Contents ===");
             System.out.println("Username\t\tRole\t\tPassword");
@@ -337,16 +572,9 @@ public class DatabaseHelper {
     }
     
 
+    // The pool is shared, so closing only drops this helper's reference to it.
+    // Idle connections are closed by the pool itself.
     public void closeConnection() {
-        try {
-            if (statement != null) statement.close();
-        } catch(SQLException se2) {
-            se2.printStackTrace();
-        }
-        try {
-            if (connection != null) connection.close();
-        } catch(SQLException se) {
-            se.printStackTrace();
-        }
+        pool = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package databasePart1;
+
+import java.security.SecureRandom;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The InvitationCodePool class hands out invitation codes from a pool of codes generated
+ * ahead of time in the InvitationCodes table.
+ *
+ * Codes are 10 characters from a 32 character alphabet without the easily confused
+ * letters I, L, O and U, which gives 2^50 possible codes, so random codes practically
+ * never collide. They are generated in batches, and the rare code that already exists is
+ * skipped by the insert and replaced.
+ *
+ * A code is free until it is reserved for someone, and spent once it is redeemed.
+ * Reserving takes any number of free codes in one transaction, generating more when the
+ * pool runs low, and never gives the same code to two people. Only reserved codes can
+ * be redeemed, and redeeming is a single conditional update, so a code can only be
+ * redeemed once however many people try at the same time. There is one code pool per
+ * connection pool. The number of codes added when the pool runs low can be configured
+ * with the system property {@code cse360.invite.batchSize}.
+ */
+public class InvitationCodePool {
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("cse360.invite.batchSize", 500);
+    public static final int CODE_LENGTH = 10;
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    /** The number of different codes, 32^10 */
+    public static final double KEY_SPACE = Math.pow(ALPHABET.length(), CODE_LENGTH);
+    // Attempts before giving up on a reservation that keeps losing races
+    private static final int MAX_ATTEMPTS = 5;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // A code can be redeemed once it has been handed out, and only once
+    private static final String REDEEMABLE = "isUsed = FALSE AND reservedAt IS NOT NULL";
+
+    private static final Map<ConnectionPool, InvitationCodePool> POOLS = new IdentityHashMap<>();
+
+    /**
+     * Returns the code pool for the database behind the pool, creating it on first use
+     */
+    public static synchronized InvitationCodePool forPool(ConnectionPool pool) {
+        return POOLS.computeIfAbsent(pool, p -> new InvitationCodePool(p, DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * How the codes of the pool, or of one holder, are being used
+     */
+    public static class Stats {
+        public final int total;
+        public final int used;
+        /** Reserved but not yet redeemed */
+        public final int reserved;
+        /** Neither reserved nor redeemed */
+        public final int free;
+
+        public Stats(int total, int used, int reserved, int free) {
+            this.total = total;
+            this.used = used;
+            this.reserved = reserved;
+            this.free = free;
+        }
+
+        /**
+         * Returns the share of the codes that have been redeemed, from 0 to 1
+         */
+        public double getUsedFraction() {
+            return total == 0 ? 0 : (double) used / total;
+        }
+
+        /**
+         * Returns the share of all possible codes that exist, which is what makes a new
+         * random code collide
+         */
+        public double getKeySpaceFraction() {
+            return total / KEY_SPACE;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d codes: %d used (%.1f%%), %d reserved, %d free",
+                    total, used, getUsedFraction() * 100, reserved, free);
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+
+    InvitationCodePool(ConnectionPool pool, int batchSize) {
+        this.pool = pool;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Adds new free codes to the pool
+     * @param count		The number of codes to add
+     * @throws SQLException
+     */
+    public void generate(int count) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                generate(connection, count);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Reserves free codes for someone in one transaction, generating more if there are
+     * not enough
+     * @param reservedBy	The user the codes are for, or null if not recorded
+     * @param count			The number of codes
+     * @return The codes
+     * @throws SQLException if the database fails, or the codes kept being taken by
+     * 			concurrent reservations
+     */
+    public List<String> reserve(String reservedBy, int count) throws SQLException {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one code must be reserved");
+        }
+        String selectFree = "SELECT code FROM InvitationCodes "
+                + "WHERE isUsed = FALSE AND reservedAt IS NULL LIMIT ? FOR UPDATE";
+        String claim = "UPDATE InvitationCodes SET reservedBy = ?, reservedAt = CURRENT_TIMESTAMP "
+                + "WHERE code = ANY(?) AND isUsed = FALSE AND reservedAt IS NULL";
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                    List<String> codes = new ArrayList<>(count);
+                    try (PreparedStatement pstmt = connection.prepareStatement(selectFree)) {
+                        pstmt.setInt(1, count);
+                        ResultSet rs = pstmt.executeQuery();
+                        while (rs.next()) {
+                            codes.add(rs.getString("code"));
+                        }
+                    }
+                    if (codes.size() < count) {
+                        // Top the pool up by at least a batch so the next reservations find codes
+                        generate(connection, Math.max(count - codes.size(), batchSize));
+                        connection.commit();
+                        continue;
+                    }
+
+                    int claimed;
+                    try (PreparedStatement pstmt = connection.prepareStatement(claim)) {
+                        Array array = connection.createArrayOf("VARCHAR", codes.toArray(new String[0]));
+                        pstmt.setString(1, reservedBy);
+                        pstmt.setArray(2, array);
+                        claimed = pstmt.executeUpdate();
+                    }
+                    if (claimed == count) {
+                        connection.commit();
+                        return codes;
+                    }
+                    // A concurrent reservation took some of these codes first
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        throw new SQLException("Could not reserve " + count + " invitation codes after "
+                + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Redeems a code in a single statement, so it succeeds at most once
+     * @param code		The code as entered. Surrounding spaces and the case of new codes
+     * 					do not matter.
+     * @param usedBy	The user redeeming it, or null if not known yet
+     * @return true if the code had been handed out and not yet redeemed
+     * @throws SQLException
+     */
+    public boolean redeem(String code, String usedBy) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return redeem(connection, code, usedBy);
+        }
+    }
+
+    /**
+     * Redeems a code on the caller's connection, so it is part of the caller's transaction
+     * @see #redeem(String, String)
+     */
+    public boolean redeem(Connection connection, String code, String usedBy) throws SQLException {
+        if (code == null || code.isBlank()) {
+            return false;
+        }
+        String query = "UPDATE InvitationCodes SET isUsed = TRUE, usedBy = ?, usedAt = CURRENT_TIMESTAMP "
+                + "WHERE code IN (?, ?) AND " + REDEEMABLE;
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            String[] forms = forms(code);
+            pstmt.setString(1, usedBy);
+            pstmt.setString(2, forms[0]);
+            pstmt.setString(3, forms[1]);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Returns the codes that could be redeemed now, as they were given, checking them all
+     * in one query
+     */
+    public Set<String> findRedeemable(Connection connection, Collection<String> codes) throws SQLException {
+        Map<String, String> given = new HashMap<>();
+        for (String code : codes) {
+            if (code != null && !code.isBlank()) {
+                for (String form : forms(code)) {
+                    given.putIfAbsent(form, code);
+                }
+            }
+        }
+        Set<String> found = new HashSet<>();
+        if (given.isEmpty()) {
+            return found;
+        }
+        String query = "SELECT code FROM InvitationCodes WHERE code = ANY(?) AND " + REDEEMABLE;
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setArray(1, connection.createArrayOf("VARCHAR", given.keySet().toArray(new String[0])));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(given.get(rs.getString("code")));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns how the codes of the whole pool are being used
+     */
+    public Stats getStats() throws SQLException {
+        return getStats(null);
+    }
+
+    /**
+     * Returns how the codes reserved for one user are being used, or those of the whole
+     * pool if reservedBy is null
+     */
+    public Stats getStats(String reservedBy) throws SQLException {
+        String query = "SELECT COUNT(*) AS total, "
+                + "COUNT(CASE WHEN isUsed THEN 1 END) AS used, "
+                + "COUNT(CASE WHEN NOT isUsed AND reservedAt IS NOT NULL THEN 1 END) AS reserved "
+                + "FROM InvitationCodes" + (reservedBy != null ? " WHERE reservedBy = ?" : "");
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            if (reservedBy != null) {
+                pstmt.setString(1, reservedBy);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            int total = rs.getInt("total");
+            int used = rs.getInt("used");
+            int reserved = rs.getInt("reserved");
+            return new Stats(total, used, reserved, total - used - reserved);
+        }
+    }
+
+    // Inserts count new codes, replacing any that already exist
+    private void generate(Connection connection, int count) throws SQLException {
+        String insert = "INSERT INTO InvitationCodes (code) SELECT CAST(? AS VARCHAR(10)) "
+                + "WHERE NOT EXISTS (SELECT 1 FROM InvitationCodes WHERE code = ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+            int remaining = count;
+            for (int attempt = 0; remaining > 0; attempt++) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw new SQLException("Could not generate " + remaining + " unique invitation codes");
+                }
+                Set<String> codes = new LinkedHashSet<>();
+                while (codes.size() < remaining) {
+                    codes.add(newCode());
+                }
+                for (String code : codes) {
+                    pstmt.setString(1, code);
+                    pstmt.setString(2, code);
+                    pstmt.addBatch();
+                }
+                for (int inserted : pstmt.executeBatch()) {
+                    remaining -= inserted;
+                }
+            }
+        }
+    }
+
+    // Codes from before the pool are lower case, newer ones upper case
+    private static String[] forms(String code) {
+        String trimmed = code.trim();
+        return new String[] {trimmed, trimmed.toUpperCase()};
+    }
+
+    private static String newCode() {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = ALPHABET.charAt(RANDOM.nextInt(ALPHABET.length()));
+        }
+        return new String(code);
+    }
+}
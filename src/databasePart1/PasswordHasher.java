@@ -0,0 +1,279 @@
+package databasePart1;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The PasswordHasher class hashes passwords with PBKDF2-HMAC-SHA256 and a random salt per
+ * password. Hashes are stored as {@code pbkdf2-sha256$iterations$salt$hash}, so each one
+ * carries the cost it was made with.
+ *
+ * The cost is chosen so one hash takes about {@code cse360.hash.targetMillis} milliseconds
+ * (100 by default) on the machine it runs on, unless {@code cse360.hash.iterations} fixes
+ * it. The calibrated cost is kept in the settings table, so later starts reuse it instead
+ * of calibrating again. Starting with {@code cse360.hash.recalibrate=true} calibrates and
+ * stores a new cost. A stored hash whose cost is far from the current one, or a password
+ * stored before hashing was introduced, is reported by needsRehash so it can be replaced
+ * at the next successful login. Calibrated costs vary a little between runs, so they only
+ * count as changed when they differ by more than a quarter.
+ *
+ * Hashing is CPU bound, so all of it runs on a small pool of worker threads, one per core
+ * by default ({@code cse360.hash.maxConcurrent}). Callers wait for their turn in a bounded
+ * queue ({@code cse360.hash.queueCapacity}). When the queue is full the work is refused
+ * with a RejectedExecutionException instead of piling up behind the busy workers.
+ */
+public class PasswordHasher {
+    public static final long DEFAULT_TARGET_MILLIS = Long.getLong("cse360.hash.targetMillis", 100);
+    public static final int DEFAULT_MAX_CONCURRENT =
+            Integer.getInteger("cse360.hash.maxConcurrent", Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("cse360.hash.queueCapacity", 1000);
+    // The fewest iterations a calibration may settle on, however slow the machine
+    public static final int MIN_CALIBRATED_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    // How far a calibrated cost may drift before stored hashes are redone
+    private static final double CALIBRATED_TOLERANCE = 1.25;
+    // The settings row holding the calibrated cost
+    private static final String ITERATIONS_SETTING = "hash.iterations";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static PasswordHasher defaultHasher = null;
+
+    /**
+     * Returns the hasher shared by the whole process. On first use its cost is read from
+     * the settings of the database behind the pool, which must already be migrated.
+     */
+    public static synchronized PasswordHasher getDefault(ConnectionPool pool) throws SQLException {
+        if (defaultHasher == null) {
+            Integer iterations = Integer.getInteger("cse360.hash.iterations");
+            defaultHasher = iterations != null
+                    ? new PasswordHasher(iterations, DEFAULT_MAX_CONCURRENT, DEFAULT_QUEUE_CAPACITY)
+                    : new PasswordHasher(calibratedIterations(pool, Boolean.getBoolean("cse360.hash.recalibrate")),
+                            DEFAULT_MAX_CONCURRENT, DEFAULT_QUEUE_CAPACITY, CALIBRATED_TOLERANCE);
+        }
+        return defaultHasher;
+    }
+
+    /**
+     * Returns the cost stored in the settings table, calibrating and storing one when there
+     * is none yet or when asked to recalibrate
+     * @param pool			The database holding the settings
+     * @param recalibrate	Whether to replace a stored cost with a new calibration
+     */
+    public static int calibratedIterations(ConnectionPool pool, boolean recalibrate) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            if (!recalibrate) {
+                try (PreparedStatement pstmt = connection.prepareStatement("SELECT settingValue FROM settings WHERE name = ?")) {
+                    pstmt.setString(1, ITERATIONS_SETTING);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next()) {
+                        try {
+                            int iterations = Integer.parseInt(rs.getString(1));
+                            if (iterations >= 1 && iterations <= MAX_ITERATIONS) {
+                                return iterations;
+                            }
+                        } catch (NumberFormatException e) {
+                            // Calibrate again below and replace the bad value
+                        }
+                    }
+                }
+            }
+            int iterations = calibrate(DEFAULT_TARGET_MILLIS);
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "MERGE INTO settings (name, settingValue) KEY (name) VALUES (?, ?)")) {
+                pstmt.setString(1, ITERATIONS_SETTING);
+                pstmt.setString(2, Integer.toString(iterations));
+                pstmt.executeUpdate();
+            }
+            return iterations;
+        }
+    }
+
+    /**
+     * Finds the number of iterations that makes one hash take about the target time
+     * on this machine, rounded to a thousand
+     */
+    public static int calibrate(long targetMillis) {
+        int probe = MIN_CALIBRATED_ITERATIONS;
+        byte[] salt = new byte[SALT_BYTES];
+        // The first rounds run before the JIT has compiled the hash loop
+        for (int i = 0; i < 3; i++) {
+            derive("calibration", salt, probe);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long started = System.nanoTime();
+            derive("calibration", salt, probe);
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        long iterations = Math.round(probe * (targetMillis * 1e6 / Math.max(1, best)) / 1000) * 1000;
+        return (int) Math.max(MIN_CALIBRATED_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    private final int iterations;
+    private final double tolerance;
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a hasher with a fixed cost
+     * @param iterations		The PBKDF2 iteration count for new hashes
+     * @param maxConcurrent		The most hashes computed at once
+     * @param queueCapacity		The most hashes waiting for a worker
+     */
+    public PasswordHasher(int iterations, int maxConcurrent, int queueCapacity) {
+        this(iterations, maxConcurrent, queueCapacity, 1.0);
+    }
+
+    private PasswordHasher(int iterations, int maxConcurrent, int queueCapacity, double tolerance) {
+        if (iterations < 1 || iterations > MAX_ITERATIONS || maxConcurrent < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Iterations, concurrency and queue capacity must be positive");
+        }
+        this.iterations = iterations;
+        this.tolerance = tolerance;
+        this.workers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "cse360-password-hasher");
+                    t.setDaemon(true);
+                    return t;
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Hashes a password with a new salt, waiting for a free worker
+     * @throws RejectedExecutionException if too many hashes are already waiting
+     */
+    public String hash(String password) {
+        return await(hashAsync(password));
+    }
+
+    public CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> {
+            byte[] salt = new byte[SALT_BYTES];
+            RANDOM.nextBytes(salt);
+            Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+            return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                    + base64.encodeToString(derive(password, salt, iterations));
+        });
+    }
+
+    /**
+     * Checks a password against a stored value, waiting for a free worker. A stored value
+     * that is not a hash is compared as a plaintext password from before hashing.
+     * @throws RejectedExecutionException if too many hashes are already waiting
+     */
+    public boolean verify(String password, String stored) {
+        return await(verifyAsync(password, stored));
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        if (password == null || stored == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return CompletableFuture.completedFuture(MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8)));
+        }
+        String[] parts = stored.split("\\$");
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (storedIterations < 1 || storedIterations > MAX_ITERATIONS) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return submit(() -> MessageDigest.isEqual(expected, derive(password, salt, storedIterations)));
+    }
+
+    /**
+     * Returns true if the stored value should be replaced by a new hash of the same
+     * password: it is plaintext, or its cost is not the current one
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        try {
+            int storedIterations = Integer.parseInt(stored.split("\\$")[1]);
+            return storedIterations * tolerance < iterations || storedIterations > iterations * tolerance;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return workers.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, workers);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many password hashes are waiting", e);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
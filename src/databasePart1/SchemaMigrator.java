@@ -0,0 +1,351 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The SchemaMigrator class owns the database schema. Each change to the schema is a
+ * numbered migration, the highest applied number is recorded in the schema_version
+ * table, and connecting only runs the migrations that have not been applied yet.
+ *
+ * New schema changes are added to the end of {@link #MIGRATIONS} with the next version
+ * number. Applied migrations must never be edited, since existing databases will not
+ * run them again.
+ */
+public class SchemaMigrator {
+
+    /**
+     * A single step of work run against the database when a migration is applied
+     */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection, Statement statement) throws SQLException;
+    }
+
+    /**
+     * A numbered schema change
+     */
+    public static class Migration {
+        public final int version;
+        public final String description;
+        private final Step step;
+
+        public Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+
+        // Convenience for migrations that are only a list of SQL statements
+        public static Migration sql(int version, String description, String... statements) {
+            return new Migration(version, description, (connection, statement) -> {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            });
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    // Database URLs already migrated by this process
+    private static final Set<String> MIGRATED = new HashSet<>();
+
+    static {
+        MIGRATIONS.add(Migration.sql(1, "Baseline tables",
+            "CREATE TABLE IF NOT EXISTS cse360users ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "userName VARCHAR(255) UNIQUE, "
+                + "password VARCHAR(255), "
+                + "role VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS InvitationCodes ("
+                + "code VARCHAR(10) PRIMARY KEY, "
+                + "isUsed BOOLEAN DEFAULT FALSE)",
+            "CREATE TABLE IF NOT EXISTS OneTimePasswords ("
+                + "userName VARCHAR(255) UNIQUE, "
+                + "oneTimePassword VARCHAR(10) PRIMARY KEY, "
+                + "isUsed BOOLEAN DEFAULT FALSE)",
+            "CREATE TABLE IF NOT EXISTS questions ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "title VARCHAR(255), "
+                + "content TEXT, "
+                + "userId INT, "
+                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "resolved BOOLEAN DEFAULT FALSE, "
+                + "resolvedAnswerId INT, "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS answers ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "content TEXT, "
+                + "questionId INT, "
+                + "userId INT, "
+                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "needsClarification BOOLEAN DEFAULT FALSE, "
+                + "FOREIGN KEY (questionId) REFERENCES questions(id), "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS reviewers ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "userId INT, "
+                + "weight DOUBLE DEFAULT 1.0, "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS reviews ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "reviewerId INT, "
+                + "questionId INT, "
+                + "answerId INT, "
+                + "content TEXT, "
+                + "FOREIGN KEY (reviewerId) REFERENCES reviewers(id))",
+            "CREATE TABLE IF NOT EXISTS reviewer_requests ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "user_id INT, "
+                + "justification TEXT, "
+                + "status VARCHAR(20) DEFAULT 'PENDING', "
+                + "instructor_comments TEXT, "
+                + "request_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "FOREIGN KEY (user_id) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS feedback ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "answerId INT, "
+                + "userId INT, "
+                + "content TEXT, "
+                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "FOREIGN KEY (answerId) REFERENCES answers(id), "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS messages ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "senderId INT, "
+                + "receiverId INT, "
+                + "relatedQuestionId INT, "
+                + "relatedAnswerId INT, "
+                + "content TEXT, "
+                + "isRead BOOLEAN DEFAULT FALSE, "
+                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "FOREIGN KEY (senderId) REFERENCES cse360users(id), "
+                + "FOREIGN KEY (receiverId) REFERENCES cse360users(id))",
+            "CREATE TABLE IF NOT EXISTS trusted_reviewers ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "userId INT, "
+                + "reviewerId INT, "
+                + "createDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id), "
+                + "FOREIGN KEY (reviewerId) REFERENCES reviewers(id), "
+                + "UNIQUE (userId, reviewerId))"));
+
+        // Databases created before needsClarification existed
+        MIGRATIONS.add(Migration.sql(2, "Add answers.needsClarification",
+            "ALTER TABLE answers ADD COLUMN IF NOT EXISTS needsClarification BOOLEAN DEFAULT FALSE"));
+
+        // studentDatabase used to create the users table with VARCHAR(20) roles
+        MIGRATIONS.add(Migration.sql(3, "Widen cse360users.role to VARCHAR(255)",
+            "ALTER TABLE cse360users ALTER COLUMN role VARCHAR(255)"));
+
+        MIGRATIONS.add(Migration.sql(4, "Secondary indexes for hot lookups",
+            "CREATE INDEX IF NOT EXISTS idx_questions_user ON questions(userId)",
+            "CREATE INDEX IF NOT EXISTS idx_questions_created ON questions(createDate, id)",
+            "CREATE INDEX IF NOT EXISTS idx_answers_question ON answers(questionId, createDate)",
+            "CREATE INDEX IF NOT EXISTS idx_answers_user ON answers(userId)",
+            "CREATE INDEX IF NOT EXISTS idx_reviewers_user ON reviewers(userId)",
+            "CREATE INDEX IF NOT EXISTS idx_reviews_answer ON reviews(answerId)",
+            "CREATE INDEX IF NOT EXISTS idx_reviews_question ON reviews(questionId)",
+            "CREATE INDEX IF NOT EXISTS idx_reviews_reviewer ON reviews(reviewerId)",
+            "CREATE INDEX IF NOT EXISTS idx_messages_receiver ON messages(receiverId, isRead)",
+            "CREATE INDEX IF NOT EXISTS idx_messages_sender ON messages(senderId)",
+            "CREATE INDEX IF NOT EXISTS idx_feedback_answer ON feedback(answerId)",
+            "CREATE INDEX IF NOT EXISTS idx_trusted_reviewers_user ON trusted_reviewers(userId)",
+            "CREATE INDEX IF NOT EXISTS idx_reviewer_requests_status ON reviewer_requests(status)"));
+
+        // Maintained by studentDatabase so question lists never count answers per row
+        MIGRATIONS.add(Migration.sql(5, "Denormalized answer and review counters on questions",
+            "ALTER TABLE questions ADD COLUMN IF NOT EXISTS answerCount INT DEFAULT 0 NOT NULL",
+            "ALTER TABLE questions ADD COLUMN IF NOT EXISTS reviewCount INT DEFAULT 0 NOT NULL",
+            "UPDATE questions q SET "
+                + "answerCount = (SELECT COUNT(*) FROM answers a WHERE a.questionId = q.id), "
+                + "reviewCount = (SELECT COUNT(*) FROM reviews r WHERE r.questionId = q.id)"));
+
+        // One row per role, so role checks use an index instead of LIKE over role strings.
+        // cse360users.role stays as a comma-separated display copy.
+        MIGRATIONS.add(new Migration(6, "Normalized user_roles table", (connection, statement) -> {
+            statement.execute("CREATE TABLE IF NOT EXISTS user_roles ("
+                    + "userId INT, "
+                    + "role VARCHAR(20), "
+                    + "PRIMARY KEY (userId, role), "
+                    + "FOREIGN KEY (userId) REFERENCES cse360users(id) ON DELETE CASCADE)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_user_roles_role ON user_roles(role, userId)");
+
+            try (ResultSet rs = statement.executeQuery("SELECT id, role FROM cse360users WHERE role IS NOT NULL");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "MERGE INTO user_roles (userId, role) KEY (userId, role) VALUES (?, ?)")) {
+                while (rs.next()) {
+                    for (String role : rs.getString(2).split(",")) {
+                        String name = role.trim().toLowerCase();
+                        if (!name.isEmpty()) {
+                            insert.setInt(1, rs.getInt(1));
+                            insert.setString(2, name);
+                            insert.addBatch();
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+        }));
+
+        // Maintained by studentDatabase so unread badges never count or fetch messages
+        MIGRATIONS.add(Migration.sql(7, "Per-user unread message counters",
+            "CREATE TABLE IF NOT EXISTS unread_counts ("
+                + "userId INT PRIMARY KEY, "
+                + "unreadCount INT DEFAULT 0 NOT NULL, "
+                + "FOREIGN KEY (userId) REFERENCES cse360users(id) ON DELETE CASCADE)",
+            "MERGE INTO unread_counts (userId, unreadCount) KEY (userId) "
+                + "SELECT m.receiverId, COUNT(*) FROM messages m "
+                + "JOIN cse360users u ON m.receiverId = u.id "
+                + "WHERE m.isRead = FALSE GROUP BY m.receiverId"));
+
+        // Messages between the same two users about the same question or answer form a
+        // thread, and each thread keeps a summary of its newest message for the inbox list
+        MIGRATIONS.add(Migration.sql(8, "Message threads with last-message summaries",
+            "ALTER TABLE messages ADD COLUMN IF NOT EXISTS threadId INT",
+            "CREATE TABLE IF NOT EXISTS message_threads ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "userLow INT NOT NULL, "
+                + "userHigh INT NOT NULL, "
+                + "relatedQuestionId INT NOT NULL, "
+                + "relatedAnswerId INT NOT NULL, "
+                + "lastMessageId INT, "
+                + "lastSenderId INT, "
+                + "lastSnippet VARCHAR(200), "
+                + "lastMessageDate TIMESTAMP, "
+                + "messageCount INT DEFAULT 0 NOT NULL, "
+                + "unreadLow INT DEFAULT 0 NOT NULL, "
+                + "unreadHigh INT DEFAULT 0 NOT NULL, "
+                + "UNIQUE (userLow, userHigh, relatedQuestionId, relatedAnswerId))",
+            "CREATE INDEX IF NOT EXISTS idx_threads_low ON message_threads(userLow, lastMessageDate, id)",
+            "CREATE INDEX IF NOT EXISTS idx_threads_high ON message_threads(userHigh, lastMessageDate, id)",
+            "CREATE INDEX IF NOT EXISTS idx_messages_thread ON messages(threadId, createDate, id)",
+            "INSERT INTO message_threads (userLow, userHigh, relatedQuestionId, relatedAnswerId) "
+                + "SELECT DISTINCT LEAST(senderId, receiverId), GREATEST(senderId, receiverId), "
+                + "COALESCE(relatedQuestionId, -1), COALESCE(relatedAnswerId, -1) FROM messages",
+            "UPDATE messages m SET threadId = (SELECT t.id FROM message_threads t "
+                + "WHERE t.userLow = LEAST(m.senderId, m.receiverId) AND t.userHigh = GREATEST(m.senderId, m.receiverId) "
+                + "AND t.relatedQuestionId = COALESCE(m.relatedQuestionId, -1) "
+                + "AND t.relatedAnswerId = COALESCE(m.relatedAnswerId, -1))",
+            "UPDATE message_threads t SET lastMessageId = (SELECT m.id FROM messages m WHERE m.threadId = t.id "
+                + "ORDER BY m.createDate DESC, m.id DESC LIMIT 1)",
+            "UPDATE message_threads t SET "
+                + "lastSenderId = (SELECT m.senderId FROM messages m WHERE m.id = t.lastMessageId), "
+                + "lastSnippet = (SELECT LEFT(m.content, 200) FROM messages m WHERE m.id = t.lastMessageId), "
+                + "lastMessageDate = (SELECT m.createDate FROM messages m WHERE m.id = t.lastMessageId), "
+                + "messageCount = (SELECT COUNT(*) FROM messages m WHERE m.threadId = t.id), "
+                + "unreadLow = (SELECT COUNT(*) FROM messages m WHERE m.threadId = t.id "
+                + "AND m.isRead = FALSE AND m.receiverId = t.userLow), "
+                + "unreadHigh = (SELECT COUNT(*) FROM messages m WHERE m.threadId = t.id "
+                + "AND m.isRead = FALSE AND m.receiverId = t.userHigh AND t.userHigh <> t.userLow)"));
+
+        // Append-only trail of account and moderation actions, written by AuditLog
+        MIGRATIONS.add(Migration.sql(9, "Audit log",
+            "CREATE TABLE IF NOT EXISTS audit_log ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "createdAt TIMESTAMP NOT NULL, "
+                + "actor VARCHAR(255), "
+                + "action VARCHAR(40) NOT NULL, "
+                + "targetType VARCHAR(40), "
+                + "targetId INT DEFAULT -1 NOT NULL, "
+                + "details VARCHAR(1000))",
+            "CREATE INDEX IF NOT EXISTS idx_audit_created ON audit_log(createdAt, id)",
+            "CREATE INDEX IF NOT EXISTS idx_audit_actor ON audit_log(actor, createdAt)",
+            "CREATE INDEX IF NOT EXISTS idx_audit_target ON audit_log(targetType, targetId, createdAt)"));
+
+        // A code is free until reservedAt is set. Codes made before the pool were already
+        // handed out, so they count as reserved.
+        MIGRATIONS.add(Migration.sql(10, "Invitation code pool",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS reservedBy VARCHAR(255)",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS reservedAt TIMESTAMP",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS usedBy VARCHAR(255)",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS usedAt TIMESTAMP",
+            "UPDATE InvitationCodes SET reservedAt = CURRENT_TIMESTAMP WHERE reservedAt IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_invitation_free ON InvitationCodes(isUsed, reservedAt)",
+            "CREATE INDEX IF NOT EXISTS idx_invitation_reserved_by ON InvitationCodes(reservedBy)"));
+
+        // Values the application works out once per database, such as the password hashing cost
+        MIGRATIONS.add(Migration.sql(11, "Settings",
+            "CREATE TABLE IF NOT EXISTS settings ("
+                + "name VARCHAR(100) PRIMARY KEY, "
+                + "settingValue VARCHAR(1000) NOT NULL)"));
+    }
+
+    /**
+     * Returns every known migration in version order
+     */
+    public static List<Migration> getMigrations() {
+        return Collections.unmodifiableList(MIGRATIONS);
+    }
+
+    /**
+     * Returns the latest schema version this code knows about
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Brings the database behind the connection up to the latest schema version. Only the
+     * first call per database in this process touches the schema_version table.
+     */
+    public static synchronized void migrate(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL();
+        if (MIGRATED.contains(url)) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(255), "
+                    + "appliedOn TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+            int current = getCurrentVersion(statement);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version > current) {
+                    apply(connection, statement, migration);
+                }
+            }
+        }
+        MIGRATED.add(url);
+    }
+
+    private static int getCurrentVersion(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void apply(Connection connection, Statement statement, Migration migration) throws SQLException {
+        System.out.println("Applying schema migration " + migration.version + ": " + migration.description);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            migration.step.apply(connection, statement);
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                pstmt.setInt(1, migration.version);
+                pstmt.setString(2, migration.description);
+                pstmt.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Schema migration " + migration.version + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
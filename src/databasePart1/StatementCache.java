@@ -0,0 +1,210 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The StatementCache class keeps the prepared statements of one pooled connection so
+ * the same SQL is only parsed and planned once per connection. Entries are evicted in
+ * least-recently-used order once the cache is full.
+ *
+ * Statements handed out by the cache are wrappers: closing them makes them available
+ * again instead of closing the underlying statement. Before that, the cache closes the
+ * result sets the borrower left open and clears its parameters, pending batch and
+ * statement settings, so the next borrower starts from a freshly prepared statement.
+ */
+class StatementCache {
+    private final Connection raw;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final AtomicLong executions;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    StatementCache(Connection raw, int capacity, AtomicLong hits, AtomicLong misses,
+                   AtomicLong evictions, AtomicLong executions) {
+        this.raw = raw;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.executions = executions;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                StatementCache.this.evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing a cached one when it is free.
+     *
+     * @param sql					The SQL text
+     * @param autoGeneratedKeys	A Statement.RETURN_GENERATED_KEYS style flag, or -1 for none
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + ":" + sql;
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+            return entry.checkOut();
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys < 0
+                ? raw.prepareStatement(sql)
+                : raw.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            // The cached copy is busy (a nested use of the same SQL), so hand out a plain one
+            return ConnectionPool.countExecutions(statement, PreparedStatement.class, executions);
+        }
+        entry = new Entry(statement, statement.getMaxRows(), statement.getFetchSize(),
+                statement.getQueryTimeout());
+        entries.put(key, entry);
+        return entry.checkOut();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void checkIn(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            entry.reset();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not worth keeping
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    private final class Entry {
+        final PreparedStatement statement;
+        final int maxRows;
+        final int fetchSize;
+        final int queryTimeout;
+        // Result sets handed to the current borrower, closed when it checks the statement in
+        final List<ResultSet> results = new ArrayList<>();
+        boolean inUse = false;
+        boolean evicted = false;
+
+        Entry(PreparedStatement statement, int maxRows, int fetchSize, int queryTimeout) {
+            this.statement = statement;
+            this.maxRows = maxRows;
+            this.fetchSize = fetchSize;
+            this.queryTimeout = queryTimeout;
+        }
+
+        // Puts the statement back the way it was prepared
+        void reset() throws SQLException {
+            for (ResultSet rs : results) {
+                rs.close();
+            }
+            results.clear();
+            ResultSet current = statement.getResultSet();
+            if (current != null) {
+                current.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setMaxRows(maxRows);
+            statement.setFetchSize(fetchSize);
+            statement.setQueryTimeout(queryTimeout);
+        }
+
+        PreparedStatement checkOut() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    new CheckoutHandler(this));
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    private final class CheckoutHandler implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed = false;
+
+        CheckoutHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            if (method.getName().startsWith("execute")) {
+                executions.incrementAndGet();
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet rs) {
+                synchronized (StatementCache.this) {
+                    entry.results.add(rs);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The UserDirectory class maps user names to user IDs and back, and user IDs to reviewer
+ * IDs and back, without a query per lookup. The users and reviewers tables are read once
+ * on the first lookup, and DatabaseHelper and studentDatabase report the users and
+ * reviewers they add or delete so the directory stays current.
+ *
+ * A lookup that misses falls back to a single row query, so rows written by another
+ * process are still found. There is one directory per connection pool.
+ *
+ * The directory's monitor only guards its maps and is never held during a query, so a
+ * lookup that has to wait for a pooled connection does not hold up the lookups answered
+ * from memory. A query that raced with a change reported by a DAO returns what it read
+ * without caching it.
+ */
+public class UserDirectory {
+
+    private static final Map<ConnectionPool, UserDirectory> DIRECTORIES = new IdentityHashMap<>();
+
+    /**
+     * Returns the directory for the database behind the pool, creating it on first use
+     */
+    public static synchronized UserDirectory forPool(ConnectionPool pool) {
+        return DIRECTORIES.computeIfAbsent(pool, UserDirectory::new);
+    }
+
+    private final ConnectionPool pool;
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final Map<Integer, String> namesById = new HashMap<>();
+    // A user with several reviewer rows maps to the lowest reviewer ID
+    private final Map<Integer, Integer> reviewerIdsByUser = new HashMap<>();
+    private final Map<Integer, Integer> userIdsByReviewer = new HashMap<>();
+
+    // Held while the tables are read, so only one thread reads them
+    private final Object loadLock = new Object();
+    private volatile boolean loaded = false;
+    // Bumped by every change reported by the DAOs, so a query can tell one happened meanwhile
+    private long generation = 0;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+
+    private UserDirectory(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the ID of the user, or -1 if there is no such user
+     */
+    public int getUserId(String userName) throws SQLException {
+        ensureLoaded();
+        long seen;
+        synchronized (this) {
+            Integer id = idsByName.get(userName);
+            if (id != null) {
+                return id;
+            }
+            seen = generation;
+        }
+        int id = queryInt("SELECT id FROM cse360users WHERE userName = ?", userName);
+        if (id != -1) {
+            synchronized (this) {
+                if (generation == seen) {
+                    putUser(id, userName);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the name of the user, or null if there is no such user
+     */
+    public String getUserName(int userId) throws SQLException {
+        ensureLoaded();
+        long seen;
+        synchronized (this) {
+            String name = namesById.get(userId);
+            if (name != null) {
+                return name;
+            }
+            seen = generation;
+        }
+        String name = null;
+        queries.incrementAndGet();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT userName FROM cse360users WHERE id = ?")) {
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                name = rs.getString(1);
+            }
+        }
+        if (name != null) {
+            synchronized (this) {
+                if (generation == seen) {
+                    putUser(userId, name);
+                }
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Returns the reviewer ID of the user, or -1 if the user is not a reviewer
+     */
+    public int getReviewerId(int userId) throws SQLException {
+        ensureLoaded();
+        long seen;
+        synchronized (this) {
+            Integer reviewerId = reviewerIdsByUser.get(userId);
+            if (reviewerId != null) {
+                return reviewerId;
+            }
+            seen = generation;
+        }
+        int reviewerId = queryInt("SELECT MIN(id) FROM reviewers WHERE userId = ?", userId);
+        if (reviewerId != -1) {
+            synchronized (this) {
+                if (generation == seen) {
+                    putReviewer(reviewerId, userId);
+                }
+            }
+        }
+        return reviewerId;
+    }
+
+    /**
+     * Returns the user ID behind a reviewer ID, or -1 if there is no such reviewer
+     */
+    public int getReviewerUserId(int reviewerId) throws SQLException {
+        ensureLoaded();
+        long seen;
+        synchronized (this) {
+            Integer userId = userIdsByReviewer.get(reviewerId);
+            if (userId != null) {
+                return userId;
+            }
+            seen = generation;
+        }
+        int userId = queryInt("SELECT userId FROM reviewers WHERE id = ?", reviewerId);
+        if (userId != -1) {
+            synchronized (this) {
+                if (generation == seen) {
+                    putReviewer(reviewerId, userId);
+                }
+            }
+        }
+        return userId;
+    }
+
+    /**
+     * Returns the user name behind a reviewer ID, or null if there is no such reviewer
+     */
+    public String getReviewerName(int reviewerId) throws SQLException {
+        int userId = getReviewerUserId(reviewerId);
+        return userId == -1 ? null : getUserName(userId);
+    }
+
+    /**
+     * Returns the names of the users that exist among the IDs. IDs that are not known
+     * yet are looked up together with a single query.
+     */
+    public Map<Integer, String> getUserNames(Collection<Integer> userIds) throws SQLException {
+        ensureLoaded();
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long seen;
+        synchronized (this) {
+            for (int userId : userIds) {
+                String name = namesById.get(userId);
+                if (name != null) {
+                    names.put(userId, name);
+                } else {
+                    missing.add(userId);
+                }
+            }
+            seen = generation;
+        }
+        if (missing.isEmpty()) {
+            return names;
+        }
+
+        Map<Integer, String> found = new HashMap<>();
+        queryPairs("SELECT id, userName FROM cse360users WHERE id = ANY(?)", missing,
+                rs -> found.put(rs.getInt(1), rs.getString(2)));
+        synchronized (this) {
+            if (generation == seen) {
+                found.forEach(this::putUser);
+            }
+        }
+        names.putAll(found);
+        return names;
+    }
+
+    /**
+     * Returns the user names of the reviewers that exist among the IDs. IDs that are not
+     * known yet are looked up together with a single query.
+     */
+    public Map<Integer, String> getReviewerNames(Collection<Integer> reviewerIds) throws SQLException {
+        ensureLoaded();
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long seen;
+        synchronized (this) {
+            for (int reviewerId : reviewerIds) {
+                Integer userId = userIdsByReviewer.get(reviewerId);
+                String name = userId == null ? null : namesById.get(userId);
+                if (name != null) {
+                    names.put(reviewerId, name);
+                } else {
+                    missing.add(reviewerId);
+                }
+            }
+            seen = generation;
+        }
+        if (missing.isEmpty()) {
+            return names;
+        }
+
+        // reviewer ID, user ID, user name
+        List<Object[]> found = new ArrayList<>();
+        queryPairs("SELECT r.id, u.id, u.userName FROM reviewers r "
+                + "JOIN cse360users u ON r.userId = u.id WHERE r.id = ANY(?)", missing,
+                rs -> found.add(new Object[] { rs.getInt(1), rs.getInt(2), rs.getString(3) }));
+        synchronized (this) {
+            if (generation == seen) {
+                for (Object[] row : found) {
+                    putReviewer((int) row[0], (int) row[1]);
+                    putUser((int) row[1], (String) row[2]);
+                }
+            }
+        }
+        for (Object[] row : found) {
+            names.put((int) row[0], (String) row[2]);
+        }
+        return names;
+    }
+
+    // Updates reported by the DAOs after their writes succeed
+
+    public synchronized void userAdded(int userId, String userName) {
+        generation++;
+        putUser(userId, userName);
+    }
+
+    public synchronized void userRemoved(String userName) {
+        generation++;
+        Integer userId = idsByName.remove(userName);
+        if (userId != null) {
+            namesById.remove(userId);
+            reviewersRemoved(userId);
+        }
+    }
+
+    public synchronized void reviewerAdded(int reviewerId, int userId) {
+        generation++;
+        putReviewer(reviewerId, userId);
+    }
+
+    public synchronized void reviewersRemoved(int userId) {
+        generation++;
+        reviewerIdsByUser.remove(userId);
+        userIdsByReviewer.values().removeIf(id -> id == userId);
+    }
+
+    /**
+     * Forgets everything so the tables are read again on the next lookup
+     */
+    public synchronized void invalidate() {
+        generation++;
+        idsByName.clear();
+        namesById.clear();
+        reviewerIdsByUser.clear();
+        userIdsByReviewer.clear();
+        loaded = false;
+    }
+
+    public synchronized int size() {
+        return namesById.size();
+    }
+
+    /**
+     * Returns how many lookups needed a query, counting the initial load
+     */
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    private void putUser(int userId, String userName) {
+        String oldName = namesById.put(userId, userName);
+        if (oldName != null && !oldName.equals(userName)) {
+            idsByName.remove(oldName);
+        }
+        idsByName.put(userName, userId);
+    }
+
+    private void putReviewer(int reviewerId, int userId) {
+        userIdsByReviewer.put(reviewerId, userId);
+        reviewerIdsByUser.merge(userId, reviewerId, Math::min);
+    }
+
+    // Reads both tables the first time. If a DAO reports a change while they are read,
+    // what was read is dropped and the next lookup reads them again.
+    private void ensureLoaded() throws SQLException {
+        lookups.incrementAndGet();
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            long seen;
+            synchronized (this) {
+                if (loaded) {
+                    return;
+                }
+                seen = generation;
+            }
+            queries.incrementAndGet();
+            List<Object[]> users = new ArrayList<>();
+            List<int[]> reviewers = new ArrayList<>();
+            try (Connection connection = pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                try (ResultSet rs = statement.executeQuery("SELECT id, userName FROM cse360users")) {
+                    while (rs.next()) {
+                        users.add(new Object[] { rs.getInt(1), rs.getString(2) });
+                    }
+                }
+                try (ResultSet rs = statement.executeQuery("SELECT id, userId FROM reviewers")) {
+                    while (rs.next()) {
+                        reviewers.add(new int[] { rs.getInt(1), rs.getInt(2) });
+                    }
+                }
+            }
+            synchronized (this) {
+                if (generation == seen) {
+                    for (Object[] user : users) {
+                        putUser((int) user[0], (String) user[1]);
+                    }
+                    for (int[] reviewer : reviewers) {
+                        putReviewer(reviewer[0], reviewer[1]);
+                    }
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private void queryPairs(String query, List<Integer> ids, RowHandler handler) throws SQLException {
+        queries.incrementAndGet();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setArray(1, connection.createArrayOf("INTEGER", ids.toArray(new Integer[0])));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                handler.handle(rs);
+            }
+        }
+    }
+
+    private int queryInt(String query, Object parameter) throws SQLException {
+        queries.incrementAndGet();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setObject(1, parameter);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                int value = rs.getInt(1);
+                return rs.wasNull() ? -1 : value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,82 @@
+package passwordEvaluationTestbed;
+
+/*******
+ * <p> Title: PasswordEvaluation Class. </p>
+ *
+ * <p> Description: The immutable result of evaluating one password with a PasswordEvaluator.
+ * It holds the flag for each requirement, the index of the error and the error message, so
+ * it can be handed between threads and kept after other passwords have been evaluated.</p>
+ *
+ * @version 1.00	2026-10-18 Result object for the reentrant evaluator
+ *
+ */
+public final class PasswordEvaluation {
+
+	private final String errorMessage;			// Empty if the password is valid
+	private final int indexOfError;				// Where the error was located
+	private final boolean foundUpperCase;
+	private final boolean foundLowerCase;
+	private final boolean foundNumericDigit;
+	private final boolean foundSpecialChar;
+	private final boolean foundLongEnough;
+	private final boolean foundOtherChar;
+
+	PasswordEvaluation(String errorMessage, int indexOfError, boolean foundUpperCase,
+			boolean foundLowerCase, boolean foundNumericDigit, boolean foundSpecialChar,
+			boolean foundLongEnough, boolean foundOtherChar) {
+		this.errorMessage = errorMessage;
+		this.indexOfError = indexOfError;
+		this.foundUpperCase = foundUpperCase;
+		this.foundLowerCase = foundLowerCase;
+		this.foundNumericDigit = foundNumericDigit;
+		this.foundSpecialChar = foundSpecialChar;
+		this.foundLongEnough = foundLongEnough;
+		this.foundOtherChar = foundOtherChar;
+	}
+
+	/**********
+	 * @return	True if every requirement is satisfied
+	 */
+	public boolean isValid() {
+		return errorMessage.isEmpty();
+	}
+
+	/**********
+	 * @return	The same text the static evaluatePassword method returns, empty if valid
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**********
+	 * @return	The index where the error was located. As with the static API this is the
+	 * 			length of the input when a requirement is not satisfied, and 0 otherwise.
+	 */
+	public int getIndexOfError() {
+		return indexOfError;
+	}
+
+	public boolean foundUpperCase() {
+		return foundUpperCase;
+	}
+
+	public boolean foundLowerCase() {
+		return foundLowerCase;
+	}
+
+	public boolean foundNumericDigit() {
+		return foundNumericDigit;
+	}
+
+	public boolean foundSpecialChar() {
+		return foundSpecialChar;
+	}
+
+	public boolean foundLongEnough() {
+		return foundLongEnough;
+	}
+
+	public boolean foundOtherChar() {
+		return foundOtherChar;
+	}
+}
@@ -1,5 +1,6 @@
 package passwordEvaluationTestbed;
 
+import java.io.PrintStream;
 
 public class PasswordEvaluator {
 	/**
@@ -9,18 +10,32 @@ public class PasswordEvaluator {
 	 * diagram into an executable Java program using the Password Evaluator Directed Graph. 
 	 * The code detailed design is based on a while loop with a cascade of if statements</p>
 	 * 
+	 * <p> An evaluator instance keeps no state between calls, so one instance can be shared by
+	 * any number of threads. The execution trace is only written when the evaluator is created
+	 * with a trace stream. The static evaluatePassword method and result attributes remain for
+	 * the testbed and older callers.</p>
+	 * 
 	 * <p> Copyright: Lynn Robert Carter © 2022 </p>
 	 * 
 	 * @author Lynn Robert Carter
 	 * 
 	 * @version 0.00		2018-02-22	Initial baseline 
+	 * @version 1.00		2026-10-18	Reentrant instance API with an immutable result
 	 * 
 	 */
 
+	/**********************************************************************************************
+	 * 
+	 * A shared evaluator that writes no trace, for the application and for bulk validation.
+	 * 
+	 */
+	public static final PasswordEvaluator SILENT = new PasswordEvaluator();
+
 	/**********************************************************************************************
 	 * 
 	 * Result attributes to be used for GUI applications where a detailed error message and a 
-	 * pointer to the character of the error will enhance the user experience.
+	 * pointer to the character of the error will enhance the user experience.  They are set by
+	 * the static evaluatePassword method only.
 	 * 
 	 */
 
@@ -33,127 +48,152 @@ public class PasswordEvaluator {
 	public static boolean foundSpecialChar = false;
 	public static boolean foundLongEnough = false;
 	public static boolean foundOtherChar = false;
-	private static String inputLine = "";				// The input line
-	private static char currentChar;					// The current character in the line
-	private static int currentCharNdx;					// The index of the current character
-	private static boolean running;						// The flag that specifies if the FSM is 
-														// running
+
+	private static final String EMPTY_PASSWORD = "*** Error *** The password is empty!";
+	private static final String SPECIAL_CHARS = "~`!@#$%^&*()_-+{}[]|:,.?/";
+	
+	// The evaluator behind the static API, which has always written the trace to the console
+	private static final PasswordEvaluator CONSOLE = new PasswordEvaluator(System.out);
+
+	private final PrintStream trace;					// Where the trace goes, or null for none
 
 	/**********
-	 * This private method display the input line and then on a line under it displays an up arrow
-	 * at the point where an error should one be detected.  This method is designed to be used to 
-	 * display the error message on the console terminal.
+	 * Creates an evaluator that writes no trace
+	 */
+	public PasswordEvaluator() {
+		this(null);
+	}
+
+	/**********
+	 * Creates an evaluator that writes the execution trace of every evaluation
 	 * 
-	 * @param input				The input string
-	 * @param currentCharNdx	The location where an error was found
-	 * @return					Two lines, the entire input line followed by a line with an up arrow
+	 * @param trace		The stream for the trace, or null for no trace
 	 */
-	private static void displayInputState() {
-		// Display the entire input line
-		System.out.println(inputLine);
-		System.out.println(inputLine.substring(0,currentCharNdx) + "?");
-		System.out.println("The password size: " + inputLine.length() + "  |  The currentCharNdx: " + 
-				currentCharNdx + "  |  The currentChar: \"" + currentChar + "\"");
+	public PasswordEvaluator(PrintStream trace) {
+		this.trace = trace;
 	}
 
 	/**********
 	 * This method is a mechanical transformation of a Directed Graph diagram into a Java
-	 * method.
+	 * method.  All of its state is local, so concurrent calls do not interfere.
 	 * 
 	 * @param input		The input string for directed graph processing
-	 * @return			An output string that is empty if every things is okay or it will be
-	 * 						a string with a help description of the error follow by two lines
-	 * 						that shows the input line follow by a line with an up arrow at the
-	 *						point where the error was found.
+	 * @return			The evaluation, whose error message is empty if every thing is okay or
+	 * 						describes the requirements that were not satisfied
 	 */
-	public static String evaluatePassword(String input) {
-		// The following are the local variable used to perform the Directed Graph simulation
-		passwordErrorMessage = "";
-		passwordIndexofError = 0;			// Initialize the IndexofError
-		inputLine = input;					// Save the reference to the input line as a global
-		currentCharNdx = 0;					// The index of the current character
-		
-		if(input.length() <= 0) return "*** Error *** The password is empty!";
-		
-		// The input is not empty, so we can access the first character
-		currentChar = input.charAt(0);		// The current character from the above indexed position
-
-		// The Directed Graph simulation continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition to a next state
-
-		passwordInput = input;				// Save a copy of the input
-		foundUpperCase = false;				// Reset the Boolean flag
-		foundLowerCase = false;				// Reset the Boolean flag
-		foundNumericDigit = false;			// Reset the Boolean flag
-		foundSpecialChar = false;			// Reset the Boolean flag
-		foundNumericDigit = false;			// Reset the Boolean flag
-		foundLongEnough = false;			// Reset the Boolean flag
-		foundOtherChar = false;
-		running = true;						// Start the loop
-
-		// The Directed Graph simulation continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition
-		while (running) {
-			displayInputState();
+	public PasswordEvaluation evaluate(String input) {
+		if (input.length() <= 0)
+			return new PasswordEvaluation(EMPTY_PASSWORD, 0, false, false, false, false, false, false);
+
+		boolean upperCase = false;
+		boolean lowerCase = false;
+		boolean numericDigit = false;
+		boolean specialChar = false;
+		boolean longEnough = false;
+		boolean otherChar = false;
+
+		// The Directed Graph simulation continues until the end of the input is reached
+		for (int currentCharNdx = 0; currentCharNdx < input.length(); currentCharNdx++) {
+			char currentChar = input.charAt(currentCharNdx);
+			if (trace != null)
+				displayInputState(input, currentCharNdx, currentChar);
+
 			// The cascading if statement sequentially tries the current character against all of the
 			// valid transitions
+			String found;
 			if (currentChar >= 'A' && currentChar <= 'Z') {
-				System.out.println("Upper case letter found");
-				foundUpperCase = true;
+				found = "Upper case letter found";
+				upperCase = true;
 			} else if (currentChar >= 'a' && currentChar <= 'z') {
-				System.out.println("Lower case letter found");
-				foundLowerCase = true;
+				found = "Lower case letter found";
+				lowerCase = true;
 			} else if (currentChar >= '0' && currentChar <= '9') {
-				System.out.println("Digit found");
-				foundNumericDigit = true;
-			} else if ("~`!@#$%^&*()_-+{}[]|:,.?/".indexOf(currentChar) >= 0) {
-				System.out.println("Special character found");
-				foundSpecialChar = true;
+				found = "Digit found";
+				numericDigit = true;
+			} else if (SPECIAL_CHARS.indexOf(currentChar) >= 0) {
+				found = "Special character found";
+				specialChar = true;
 			} else {
-				passwordIndexofError = currentCharNdx;
-				//return "*** Error *** An invalid character has been found!";
-				foundOtherChar = true;
-				System.out.println("Other char was found");
+				found = "Other char was found";
+				otherChar = true;
 			}
-			if (currentCharNdx >= 7) {
-				System.out.println("At least 8 characters found");
-				foundLongEnough = true;
+			if (currentCharNdx >= 7)
+				longEnough = true;
+
+			if (trace != null) {
+				trace.println(found);
+				if (currentCharNdx >= 7)
+					trace.println("At least 8 characters found");
+				trace.println();
 			}
-			
-			// Go to the next character if there is one
-			currentCharNdx++;
-			if (currentCharNdx >= inputLine.length())
-				running = false;
-			else
-				currentChar = input.charAt(currentCharNdx);
-			
-			System.out.println();
 		}
+
+		// A valid password needs no message at all
+		if (upperCase && lowerCase && numericDigit && specialChar && longEnough && !otherChar)
+			return new PasswordEvaluation("", 0, true, true, true, true, true, false);
+
+		StringBuilder errMessage = new StringBuilder(96);
+		if (!upperCase)
+			errMessage.append("Upper case; ");
+		if (!lowerCase)
+			errMessage.append("Lower case; ");
+		if (!numericDigit)
+			errMessage.append("Numeric digits; ");
+		if (!specialChar)
+			errMessage.append("Special character; ");
+		if (otherChar)
+			errMessage.append("Other char found, remove it");
+		if (!longEnough)
+			errMessage.append("Long Enough; ");
+		errMessage.append("conditions were not satisfied");
+
+		return new PasswordEvaluation(errMessage.toString(), input.length(), upperCase, lowerCase,
+				numericDigit, specialChar, longEnough, otherChar);
+	}
+
+	/**********
+	 * This private method display the input line and then on a line under it displays an up arrow
+	 * at the point where an error should one be detected.  This method is designed to be used to 
+	 * display the error message on the console terminal.
+	 * 
+	 * @param input				The input string
+	 * @param currentCharNdx	The location where an error was found
+	 * @param currentChar		The character at that location
+	 */
+	private void displayInputState(String input, int currentCharNdx, char currentChar) {
+		// Display the entire input line
+		trace.println(input);
+		trace.println(input.substring(0,currentCharNdx) + "?");
+		trace.println("The password size: " + input.length() + "  |  The currentCharNdx: " + 
+				currentCharNdx + "  |  The currentChar: \"" + currentChar + "\"");
+	}
+
+	/**********
+	 * The original static entry point, kept as a shim over a tracing evaluator.  It writes the
+	 * trace to the console and sets the static result attributes the way the original did, so
+	 * calls are serialized.  New code should call evaluate on an instance such as SILENT.
+	 * 
+	 * @param input		The input string for directed graph processing
+	 * @return			An output string that is empty if every things is okay or it will be
+	 * 						a string with a help description of the error
+	 */
+	public static synchronized String evaluatePassword(String input) {
+		PasswordEvaluation evaluation = CONSOLE.evaluate(input);
+		// The original only ever cleared the message attribute, so callers never saw the error in it
+		passwordErrorMessage = "";
+		passwordIndexofError = evaluation.getIndexOfError();
 		
-		String errMessage = "";
-		if (!foundUpperCase)
-			errMessage += "Upper case; ";
-		
-		if (!foundLowerCase)
-			errMessage += "Lower case; ";
-		
-		if (!foundNumericDigit)
-			errMessage += "Numeric digits; ";
-			
-		if (!foundSpecialChar)
-			errMessage += "Special character; ";
-		
-		if (foundOtherChar)
-			errMessage += "Other char found, remove it";
-			
-		if (!foundLongEnough)
-			errMessage += "Long Enough; ";
-		
-		if (errMessage == "")
-			return "";
+		// As before, an empty input leaves the flags of the previous evaluation in place
+		if (input.length() <= 0)
+			return evaluation.getErrorMessage();
 		
-		passwordIndexofError = currentCharNdx;
-		return errMessage + "conditions were not satisfied";
-
+		passwordInput = input;
+		foundUpperCase = evaluation.foundUpperCase();
+		foundLowerCase = evaluation.foundLowerCase();
+		foundNumericDigit = evaluation.foundNumericDigit();
+		foundSpecialChar = evaluation.foundSpecialChar();
+		foundLongEnough = evaluation.foundLongEnough();
+		foundOtherChar = evaluation.foundOtherChar();
+		return evaluation.getErrorMessage();
 	}
 }
@@ -0,0 +1,88 @@
+package passwordEvaluationTestbed;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import testbedSupport.ConcurrentCheck;
+
+/**
+ * Tests that the instance evaluator gives the messages, error indexes and trace of the
+ * original evaluator, and can be shared between threads.
+ */
+public class PasswordEvaluatorTest {
+
+    // Input, error message and index of error, as the original evaluator reported them
+    private static final Object[][] BASELINE = {
+        { "Aa!15678", "", 0 },
+        { "pas", "Upper case; Numeric digits; Special character; Long Enough; conditions were not satisfied", 3 },
+        { "College_1", "", 0 },
+        { "password", "Upper case; Numeric digits; Special character; conditions were not satisfied", 8 },
+        { "", "*** Error *** The password is empty!", 0 },
+        { "12345", "Upper case; Lower case; Special character; Long Enough; conditions were not satisfied", 5 },
+        { "023colL!", "", 0 },
+        { "Password", "Numeric digits; Special character; conditions were not satisfied", 8 },
+        { "Password123", "Special character; conditions were not satisfied", 11 },
+        { "Pass!", "Numeric digits; Long Enough; conditions were not satisfied", 5 },
+        { "Aa1!aaaa\t", "Other char found, remove itconditions were not satisfied", 9 }
+    };
+
+    @Test
+    public void matchesTheBaseline() {
+        for (Object[] expected : BASELINE) {
+            String password = (String) expected[0];
+            PasswordEvaluation evaluation = PasswordEvaluator.SILENT.evaluate(password);
+            assertEquals(password, expected[1], evaluation.getErrorMessage());
+            assertEquals(password, expected[2], evaluation.getIndexOfError());
+
+            assertEquals(password, expected[1], PasswordEvaluator.evaluatePassword(password));
+            assertEquals(password, expected[2], PasswordEvaluator.passwordIndexofError);
+            assertEquals(password, "", PasswordEvaluator.passwordErrorMessage);
+        }
+    }
+
+    @Test
+    public void reportsEachRequirement() {
+        PasswordEvaluation evaluation = PasswordEvaluator.SILENT.evaluate("Password");
+        assertFalse(evaluation.isValid());
+        assertTrue(evaluation.foundUpperCase());
+        assertTrue(evaluation.foundLongEnough());
+        assertFalse(evaluation.foundNumericDigit());
+        assertEquals("Numeric digits; Special character; conditions were not satisfied", evaluation.getErrorMessage());
+        assertEquals(8, evaluation.getIndexOfError());
+
+        assertTrue(PasswordEvaluator.SILENT.evaluate("College_1").isValid());
+        assertEquals("*** Error *** The password is empty!", PasswordEvaluator.SILENT.evaluate("").getErrorMessage());
+    }
+
+    @Test
+    public void traceModeWritesTheOriginalTrace() {
+        assertEquals("pas\n?\nThe password size: 3  |  The currentCharNdx: 0  |  The currentChar: \"p\"\n"
+                + "Lower case letter found\n\n"
+                + "pas\np?\nThe password size: 3  |  The currentCharNdx: 1  |  The currentChar: \"a\"\n"
+                + "Lower case letter found\n\n"
+                + "pas\npa?\nThe password size: 3  |  The currentCharNdx: 2  |  The currentChar: \"s\"\n"
+                + "Lower case letter found\n\n", trace("pas"));
+        assertEquals("", trace(""));
+    }
+
+    @Test
+    public void sharedEvaluatorIsThreadSafe() throws Exception {
+        ConcurrentCheck.assertAlwaysTrue(8, 10000, i -> {
+            Object[] expected = BASELINE[i % BASELINE.length];
+            PasswordEvaluation evaluation = PasswordEvaluator.SILENT.evaluate((String) expected[0]);
+            return evaluation.getErrorMessage().equals(expected[1])
+                    && evaluation.getIndexOfError() == (int) expected[2];
+        });
+    }
+
+    // Returns what a tracing evaluator writes while evaluating the input
+    private static String trace(String password) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new PasswordEvaluator(new PrintStream(bytes, true, StandardCharsets.UTF_8)).evaluate(password);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
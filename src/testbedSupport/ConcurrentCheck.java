@@ -0,0 +1,52 @@
+package testbedSupport;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
+
+/**
+ * ConcurrentCheck runs a check from several threads at once, for the tests of the testbed
+ * classes whose shared instances must give every thread the same answers as one thread.
+ */
+public final class ConcurrentCheck {
+
+    private ConcurrentCheck() {
+    }
+
+    /**
+     * Calls the check with 0 to iterations - 1 on every thread and fails the test with the
+     * first iteration that returned false
+     * @param threads		How many threads call the check at the same time
+     * @param iterations	How many times each thread calls it
+     * @param check			Returns whether iteration i gave the expected result
+     */
+    public static void assertAlwaysTrue(int threads, int iterations, IntPredicate check) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        if (!check.test(i)) {
+                            return i;
+                        }
+                    }
+                    return -1;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                int failed = result.get();
+                if (failed != -1) {
+                    fail("Iteration " + failed + " gave a different result on a shared instance");
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package userNameRecognizerTestbed;
+
+/*******
+ * <p> Title: UserNameRecognition Class. </p>
+ *
+ * <p> Description: The immutable result of running one input through a UserNameRecognizer.
+ * It holds the error message and the index of the character where the error was found.</p>
+ *
+ * @version 1.00	2026-10-18 Result object for the table-driven recognizer
+ *
+ */
+public final class UserNameRecognition {
+
+	// Every valid UserName shares this result, so a valid input costs no allocation
+	static final UserNameRecognition VALID = new UserNameRecognition("", -1);
+
+	private final String errorMessage;			// Empty if the UserName is valid
+	private final int indexOfError;				// Where the error was located, -1 if valid
+
+	UserNameRecognition(String errorMessage, int indexOfError) {
+		this.errorMessage = errorMessage;
+		this.indexOfError = indexOfError;
+	}
+
+	/**********
+	 * @return	True if the input is a valid UserName
+	 */
+	public boolean isValid() {
+		return errorMessage.isEmpty();
+	}
+
+	/**********
+	 * @return	The same text the static checkForValidUserName method returns, empty if valid
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**********
+	 * @return	The index of the character where the error was found, or -1 if the UserName
+	 * 			is valid
+	 */
+	public int getIndexOfError() {
+		return indexOfError;
+	}
+}
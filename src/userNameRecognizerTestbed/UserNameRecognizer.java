@@ -1,267 +1,224 @@
 	package userNameRecognizerTestbed;
 
+import java.io.PrintStream;
+import java.util.Arrays;
 
 public class UserNameRecognizer {
 	/**
 	 * <p> Title: FSM-translated UserNameRecognizer. </p>
-	 * 
-	 * <p> Description: A demonstration of the mechanical translation of Finite State Machine 
-	 * diagram into an executable Java program using the UserName Recognizer. The code 
-	 * detailed design is based on a while loop with a select list</p>
-	 * 
+	 *
+	 * <p> Description: A demonstration of the mechanical translation of Finite State Machine
+	 * diagram into an executable Java program using the UserName Recognizer. The Finite State
+	 * Machine is compiled into a transition table over character classes, so recognizing an
+	 * input is one table lookup per character.</p>
+	 *
+	 * <p> The tables are built once and never change, and a recognizer instance keeps no state
+	 * between calls, so one instance can be shared by any number of threads. The execution
+	 * trace is only written when the recognizer is created with a trace stream. The static
+	 * checkForValidUserName method and result attributes remain for older callers.</p>
+	 *
 	 * <p> Copyright: Lynn Robert Carter © 2024 </p>
-	 * 
+	 *
 	 * @author Lynn Robert Carter
-	 * 
+	 *
 	 * @version 1.00		2024-09-13	Initial baseline derived from the Even Recognizer
 	 * @version 1.01		2024-09-17	Correction to address UNChar coding error, improper error
 	 * 									message, and improve internal documentation
-	 * 
+	 * @version 2.00		2026-10-18	Table-driven, reentrant recognizer with an immutable result
+	 *
 	 */
 
 	/**********************************************************************************************
-	 * 
-	 * Result attributes to be used for GUI applications where a detailed error message and a 
-	 * pointer to the character of the error will enhance the user experience.
-	 * 
+	 *
+	 * A shared recognizer that writes no trace, for the application and for bulk validation.
+	 *
+	 */
+	public static final UserNameRecognizer SILENT = new UserNameRecognizer();
+
+	/**********************************************************************************************
+	 *
+	 * Result attributes to be used for GUI applications where a detailed error message and a
+	 * pointer to the character of the error will enhance the user experience.  They are set by
+	 * the static checkForValidUserName method only.
+	 *
 	 */
 
 	public static String userNameRecognizerErrorMessage = "";	// The error message text
 	public static String userNameRecognizerInput = "";			// The input being processed
 	public static int userNameRecognizerIndexofError = -1;		// The index of error location
-	private static int state = 0;						// The current state value
-	private static int nextState = 0;					// The next state value
-	private static boolean finalState = false;			// Is this state a final state?
-	private static String inputLine = "";				// The input line
-	private static char currentChar;					// The current character in the line
-	private static int currentCharNdx;					// The index of the current character
-	private static boolean running;						// The flag that specifies if the FSM is 
-														// running
-	private static int userNameSize = 0;			// A numeric value may not exceed 16 characters
 
-	// Private method to display debugging data
-	private static void displayDebuggingInfo() {
-		// Display the current state of the FSM as part of an execution trace
-		if (currentCharNdx >= inputLine.length())
-			// display the line with the current state numbers aligned
-			System.out.println(((state > 99) ? " " : (state > 9) ? "  " : "   ") + state + 
-					((finalState) ? "       F   " : "           ") + "None");
-		else
-			System.out.println(((state > 99) ? " " : (state > 9) ? "  " : "   ") + state + 
-				((finalState) ? "       F   " : "           ") + "  " + currentChar + " " + 
-				((nextState > 99) ? "" : (nextState > 9) || (nextState == -1) ? "   " : "    ") + 
-				nextState + "     " + userNameSize);
-	}
-	
-	// Private method to move to the next character within the limits of the input line
-	private static void moveToNextCharacter() {
-		currentCharNdx++;
-		if (currentCharNdx < inputLine.length())
-			currentChar = inputLine.charAt(currentCharNdx);
-		else {
-			currentChar = ' ';
-			running = false;
-		}
+	// The longest valid UserName
+	public static final int MAX_LENGTH = 16;
+	// The shortest valid UserName
+	public static final int MIN_LENGTH = 4;
+
+	// The character classes, the columns of the transition table
+	private static final int LETTER = 0;					// A-Z, a-z
+	private static final int DIGIT = 1;						// 0-9
+	private static final int SEPARATOR = 2;					// . - _
+	private static final int OTHER = 3;						// Everything else
+
+	// The class of each ASCII character.  Every other character is OTHER.
+	private static final byte[] CHAR_CLASS = new byte[128];
+	static {
+		Arrays.fill(CHAR_CLASS, (byte) OTHER);
+		for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = LETTER;
+		for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = LETTER;
+		for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = DIGIT;
+		CHAR_CLASS['.'] = SEPARATOR;
+		CHAR_CLASS['-'] = SEPARATOR;
+		CHAR_CLASS['_'] = SEPARATOR;
 	}
 
+	// The next state for each state and character class, or -1 where the FSM halts.
+	//	State 0: the start, where only a letter is accepted
+	//	State 1: a final state after a letter or digit
+	//	State 2: after a separator, where a letter or digit must follow
+	private static final int[][] NEXT_STATE = {
+		//	LETTER	DIGIT	SEPARATOR	OTHER
+		{	1,		-1,		-1,			-1 },		// State 0
+		{	1,		1,		2,			-1 },		// State 1
+		{	1,		1,		-1,			-1 }		// State 2
+	};
+	private static final int FINAL_STATE = 1;
+
+	// The messages, exactly as the switch-based recognizer produced them
+	private static final String EMPTY_INPUT = "\n*** ERROR *** The input is empty";
+	private static final String BAD_START =
+			"\n*** ERROR *** A UserName must start with A-Z, a-z, or 0-9.\n";
+	private static final String TOO_SHORT =
+			"\n*** ERROR *** A UserName must have at least 4 characters.\n";
+	private static final String TOO_LONG =
+			"\n*** ERROR *** A UserName must have no more than 16 character.\n";
+	private static final String BAD_CHARACTER =
+			"\n*** ERROR *** A UserName character may only contain the characters A-Z, a-z, 0-9.\n";
+	private static final String BAD_AFTER_SEPARATOR =
+			"\n*** ERROR *** A UserName character after a period must be A-Z, a-z, 0-9.\n";
+
+	// The recognizer behind the static API, which has always written the trace to the console
+	private static final UserNameRecognizer CONSOLE = new UserNameRecognizer(System.out);
+
+	private final PrintStream trace;					// Where the trace goes, or null for none
+
 	/**********
-	 * This method is a mechanical transformation of a Finite State Machine diagram into a Java
-	 * method.
-	 * 
-	 * @param input		The input string for the Finite State Machine
-	 * @return			An output string that is empty if every things is okay or it is a String
-	 * 						with a helpful description of the error
+	 * Creates a recognizer that writes no trace
 	 */
-	public static String checkForValidUserName(String input) {
-		// Check to ensure that there is input to process
-		if(input.length() <= 0) {
-			userNameRecognizerIndexofError = 0;	// Error at first character;
-			return "\n*** ERROR *** The input is empty";
-		}
-		
-		// The local variables used to perform the Finite State Machine simulation
-		state = 0;							// This is the FSM state number
-		inputLine = input;					// Save the reference to the input line as a global
-		currentCharNdx = 0;					// The index of the current character
-		currentChar = input.charAt(0);		// The current character from above indexed position
+	public UserNameRecognizer() {
+		this(null);
+	}
 
-		// The Finite State Machines continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition to a next state
+	/**********
+	 * Creates a recognizer that writes the execution trace of every input
+	 *
+	 * @param trace		The stream for the trace, or null for no trace
+	 */
+	public UserNameRecognizer(PrintStream trace) {
+		this.trace = trace;
+	}
 
-		userNameRecognizerInput = input;	// Save a copy of the input
-		running = true;						// Start the loop
-		nextState = -1;						// There is no next state
-		System.out.println("\nCurrent Final Input  Next  Date\nState   State Char  State  Size");
-		
-		// This is the place where semantic actions for a transition to the initial state occur
-		
-		userNameSize = 0;					// Initialize the UserName size
+	/**********
+	 * Runs the input through the transition table.  All of the state is local, so concurrent
+	 * calls do not interfere, and a valid input allocates nothing.
+	 *
+	 * @param input		The input string for the Finite State Machine
+	 * @return			The recognition, whose error message is empty if every thing is okay or
+	 * 						is a helpful description of the error
+	 */
+	public UserNameRecognition recognize(String input) {
+		int length = input.length();
+		if (length <= 0)
+			return new UserNameRecognition(EMPTY_INPUT, 0);
+
+		if (trace != null)
+			trace.println("\nCurrent Final Input  Next  Date\nState   State Char  State  Size");
+
+		// The FSM continues until the end of the input is reached, the current character has
+		// no transition from the current state, or a character would make the UserName too long
+		int state = 0;
+		int currentCharNdx = 0;
+		int nextState = -1;
+		boolean tooLong = false;
+		for (; currentCharNdx < length; currentCharNdx++) {
+			char currentChar = input.charAt(currentCharNdx);
+			nextState = NEXT_STATE[state][currentChar < 128 ? CHAR_CLASS[currentChar] : OTHER];
+			if (nextState < 0)
+				break;
 
-		// The Finite State Machines continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition to a next state
-		while (running) {
-			// The switch statement takes the execution to the code for the current state, where
-			// that code sees whether or not the current character is valid to transition to a
-			// next state
-			switch (state) {
-			case 0: 
-				// State 0 has 1 valid transition that is addressed by an if statement.
-				
-				// The current character is checked against A-Z, a-z, 0-9. If any are matched
-				// the FSM goes to state 1
-				
-				// A-Z, a-z, 0-9 -> State 1
-				if ((currentChar >= 'A' && currentChar <= 'Z' ) ||		// Check for A-Z
-						(currentChar >= 'a' && currentChar <= 'z' ))  // fixed number inclusion
-						{
-					nextState = 1;
-					
-					// Count the character 
-					userNameSize++;
-					
-					// This only occurs once, so there is no need to check for the size getting
-					// too large.
-				}
-				// If it is none of those characters, the FSM halts
-				else 
-					running = false;
-				
-				// The execution of this state is finished
+			// The character would be counted, but the UserName is already as long as it may be
+			if (currentCharNdx >= MAX_LENGTH) {
+				tooLong = true;
 				break;
-			
-			case 1: 
-				// State 1 has two valid transitions, 
-				//	1: a A-Z, a-z, 0-9 that transitions back to state 1
-				//  2: a period that transitions to state 2 
+			}
+			if (trace != null)
+				displayDebuggingInfo(input, state, currentCharNdx, nextState, currentCharNdx + 1);
+			state = nextState;
+		}
 
-				
-				// A-Z, a-z, 0-9 -> State 1
-				if ((currentChar >= 'A' && currentChar <= 'Z' ) ||		// Check for A-Z
-						(currentChar >= 'a' && currentChar <= 'z' ) ||	// Check for a-z
-						(currentChar >= '0' && currentChar <= '9' )) {	// Check for 0-9
-					nextState = 1;
-					
-					// Count the character
-					userNameSize++;
-				}
-				// . -> State 2
-				else if (currentChar == '.' || currentChar == '-' || currentChar ==  '_') {							// Check for /
-					nextState = 2;
-					
-					// Count the .
-					userNameSize++;
-				}				
-				// If it is none of those characters, the FSM halts
-				else
-					running = false;
-				
-				// The execution of this state is finished
-				// If the size is larger than 16, the loop must stop
-				if (userNameSize > 16)
-					running = false;
-				break;			
-				
-			case 2: 
-				// State 2 deals with a character after a period in the name.
-				
-				// A-Z, a-z, 0-9 -> State 1
-				if ((currentChar >= 'A' && currentChar <= 'Z' ) ||		// Check for A-Z
-						(currentChar >= 'a' && currentChar <= 'z' ) ||	// Check for a-z
-						(currentChar >= '0' && currentChar <= '9' )) {	// Check for 0-9
-					nextState = 1;
-					
-					// Count the odd digit
-					userNameSize++;
-					
-				}
-				// If it is none of those characters, the FSM halts
-				else 
-					running = false;
+		// Every consumed character counts towards the size, as does the one that made it too long
+		int userNameSize = tooLong ? MAX_LENGTH + 1 : currentCharNdx;
+		if (trace != null) {
+			displayDebuggingInfo(input, state, currentCharNdx, nextState, userNameSize);
+			trace.println("The loop has ended.");
+		}
 
-				// The execution of this state is finished
-				// If the size is larger than 16, the loop must stop
-				if (userNameSize > 16)
-					running = false;
-				break;			
-			}
-			
-			if (running) {
-				displayDebuggingInfo();
-				// When the processing of a state has finished, the FSM proceeds to the next
-				// character in the input and if there is one, it fetches that character and
-				// updates the currentChar.  If there is no next character the currentChar is
-				// set to a blank.
-				moveToNextCharacter();
+		// When the FSM halts, the state and how much of the input was consumed determine which
+		// specific error message helps the user
+		if (state != FINAL_STATE)
+			return new UserNameRecognition(state == 0 ? BAD_START : BAD_AFTER_SEPARATOR,
+					currentCharNdx);
+		if (userNameSize < MIN_LENGTH)
+			return new UserNameRecognition(TOO_SHORT, currentCharNdx);
+		if (tooLong)
+			return new UserNameRecognition(TOO_LONG, currentCharNdx);
+		if (currentCharNdx < length)
+			return new UserNameRecognition(BAD_CHARACTER, currentCharNdx);
+		return UserNameRecognition.VALID;
+	}
 
-				// Move to the next state
-				state = nextState;
-				
-				// Is the new state a final state?  If so, signal this fact.
-				if (state == 1) finalState = true;
+	/**********
+	 * @param input		The input string
+	 * @return			True if the input is a valid UserName
+	 */
+	public boolean isValid(String input) {
+		return recognize(input).isValid();
+	}
 
-				// Ensure that one of the cases sets this to a valid value
-				nextState = -1;
-			}
-			// Should the FSM get here, the loop starts again
-	
-		}
-		displayDebuggingInfo();
-		
-		System.out.println("The loop has ended.");
-		
-		// When the FSM halts, we must determine if the situation is an error or not.  That depends
-		// of the current state of the FSM and whether or not the whole string has been consumed.
-		// This switch directs the execution to separate code for each of the FSM states and that
-		// makes it possible for this code to display a very specific error message to improve the
-		// user experience.
-		userNameRecognizerIndexofError = currentCharNdx;	// Set index of a possible error;
-		userNameRecognizerErrorMessage = "\n*** ERROR *** ";
-		
-		// The following code is a slight variation to support just console output.
-		switch (state) {
-		case 0:
-			// State 0 is not a final state, so we can return a very specific error message
-			userNameRecognizerErrorMessage += "A UserName must start with A-Z, a-z, or 0-9.\n";
-			return userNameRecognizerErrorMessage;
+	// Private method to display debugging data
+	private void displayDebuggingInfo(String input, int state, int currentCharNdx, int nextState,
+			int userNameSize) {
+		// Display the current state of the FSM as part of an execution trace.  Only the start
+		// state is not reached through the final state.
+		String finalState = (state != 0) ? "       F   " : "           ";
+		if (currentCharNdx >= input.length())
+			// display the line with the current state numbers aligned
+			trace.println(((state > 99) ? " " : (state > 9) ? "  " : "   ") + state +
+					finalState + "None");
+		else
+			trace.println(((state > 99) ? " " : (state > 9) ? "  " : "   ") + state +
+				finalState + "  " + input.charAt(currentCharNdx) + " " +
+				((nextState > 99) ? "" : (nextState > 9) || (nextState == -1) ? "   " : "    ") +
+				nextState + "     " + userNameSize);
+	}
 
-		case 1:
-			// State 1 is a final state.  Check to see if the UserName length is valid.  If so we
-			// we must ensure the whole string has been consumed.
+	/**********
+	 * The original static entry point, kept as a shim over a tracing recognizer.  It writes the
+	 * trace to the console and copies the recognition into the static result attributes, so
+	 * calls are serialized.  New code should call recognize on an instance such as SILENT.
+	 *
+	 * @param input		The input string for the Finite State Machine
+	 * @return			An output string that is empty if every things is okay or it is a String
+	 * 						with a helpful description of the error
+	 */
+	public static synchronized String checkForValidUserName(String input) {
+		UserNameRecognition recognition = CONSOLE.recognize(input);
+		userNameRecognizerIndexofError = recognition.getIndexOfError();
 
-			if (userNameSize < 4) {
-				// UserName is too small
-				userNameRecognizerErrorMessage += "A UserName must have at least 4 characters.\n";
-				return userNameRecognizerErrorMessage;
-			}
-			else if (userNameSize > 16) {
-				// UserName is too long
-				userNameRecognizerErrorMessage += 
-					"A UserName must have no more than 16 character.\n";
-				return userNameRecognizerErrorMessage;
-			}
-			else if (currentCharNdx < input.length()) {
-				// There are characters remaining in the input, so the input is not valid
-				userNameRecognizerErrorMessage += 
-					"A UserName character may only contain the characters A-Z, a-z, 0-9.\n";
-				return userNameRecognizerErrorMessage;
-			}
-			else {
-					// UserName is valid
-					userNameRecognizerIndexofError = -1;
-					userNameRecognizerErrorMessage = "";
-					return userNameRecognizerErrorMessage;
-			}
+		// As before, an empty input only sets the index of the error
+		if (input.length() <= 0)
+			return recognition.getErrorMessage();
 
-		case 2:
-			// State 2 is not a final state, so we can return a very specific error message
-			userNameRecognizerErrorMessage +=
-				"A UserName character after a period must be A-Z, a-z, 0-9.\n";
-			return userNameRecognizerErrorMessage;
-			
-		default:
-			// This is for the case where we have a state that is outside of the valid range.
-			// This should not happen
-			return "";
-		}
+		userNameRecognizerInput = input;
+		userNameRecognizerErrorMessage = recognition.getErrorMessage();
+		return recognition.getErrorMessage();
 	}
 }
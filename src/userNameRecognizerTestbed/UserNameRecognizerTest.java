@@ -0,0 +1,102 @@
+package userNameRecognizerTestbed;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import testbedSupport.ConcurrentCheck;
+
+/**
+ * Tests that the table-driven recognizer gives the messages, error indexes and trace of the
+ * original FSM recognizer, and can be shared between threads.
+ */
+public class UserNameRecognizerTest {
+
+    // Input, error message and index of error, as the original recognizer reported them
+    private static final Object[][] BASELINE = {
+        { "", "\n*** ERROR *** The input is empty", 0 },
+        { "a", "\n*** ERROR *** A UserName must have at least 4 characters.\n", 1 },
+        { "abc", "\n*** ERROR *** A UserName must have at least 4 characters.\n", 3 },
+        { "abcd", "", -1 },
+        { "Alice_01", "", -1 },
+        { "a.b-c_d", "", -1 },
+        { "abcdefghijklmnop", "", -1 },
+        { "abcdefghijklmnopq", "\n*** ERROR *** A UserName must have no more than 16 character.\n", 16 },
+        { "abcdefghijklmno.p", "\n*** ERROR *** A UserName character after a period must be A-Z, a-z, 0-9.\n", 16 },
+        { "ab!", "\n*** ERROR *** A UserName must have at least 4 characters.\n", 2 },
+        { "abcd!", "\n*** ERROR *** A UserName character may only contain the characters A-Z, a-z, 0-9.\n", 4 },
+        { "1abc", "\n*** ERROR *** A UserName must start with A-Z, a-z, or 0-9.\n", 0 },
+        { ".abc", "\n*** ERROR *** A UserName must start with A-Z, a-z, or 0-9.\n", 0 },
+        { "ab..cd", "\n*** ERROR *** A UserName character after a period must be A-Z, a-z, 0-9.\n", 3 },
+        { "ab.", "\n*** ERROR *** A UserName character after a period must be A-Z, a-z, 0-9.\n", 3 },
+        { "bob\u00e9", "\n*** ERROR *** A UserName must have at least 4 characters.\n", 3 }
+    };
+
+    @Test
+    public void matchesTheBaseline() {
+        for (Object[] expected : BASELINE) {
+            String userName = (String) expected[0];
+            UserNameRecognition recognition = UserNameRecognizer.SILENT.recognize(userName);
+            assertEquals(userName, expected[1], recognition.getErrorMessage());
+            assertEquals(userName, expected[2], recognition.getIndexOfError());
+
+            assertEquals(userName, expected[1], UserNameRecognizer.checkForValidUserName(userName));
+            assertEquals(userName, expected[2], UserNameRecognizer.userNameRecognizerIndexofError);
+        }
+    }
+
+    @Test
+    public void reportsTheErrorAndWhereItIs() {
+        assertTrue(UserNameRecognizer.SILENT.isValid("a.b-c_d"));
+        assertEquals(-1, UserNameRecognizer.SILENT.recognize("abcdefghijklmnop").getIndexOfError());
+
+        UserNameRecognition tooLong = UserNameRecognizer.SILENT.recognize("abcdefghijklmnopq");
+        assertEquals("\n*** ERROR *** A UserName must have no more than 16 character.\n", tooLong.getErrorMessage());
+        assertEquals(16, tooLong.getIndexOfError());
+
+        UserNameRecognition badChar = UserNameRecognizer.SILENT.recognize("abcd!");
+        assertEquals("\n*** ERROR *** A UserName character may only contain the characters A-Z, a-z, 0-9.\n",
+                badChar.getErrorMessage());
+        assertEquals(4, badChar.getIndexOfError());
+
+        assertEquals("\n*** ERROR *** A UserName must start with A-Z, a-z, or 0-9.\n",
+                UserNameRecognizer.SILENT.recognize("1abc").getErrorMessage());
+        assertEquals("\n*** ERROR *** A UserName character after a period must be A-Z, a-z, 0-9.\n",
+                UserNameRecognizer.SILENT.recognize("ab..cd").getErrorMessage());
+        assertEquals("\n*** ERROR *** The input is empty", UserNameRecognizer.SILENT.recognize("").getErrorMessage());
+    }
+
+    // The original kept its final state flag between calls, so these are the traces it
+    // wrote for each input as the first call in a fresh process
+    @Test
+    public void traceModeWritesTheOriginalTrace() {
+        assertEquals("\nCurrent Final Input  Next  Date\nState   State Char  State  Size\n"
+                + "   0             a     1     1\n   1       F   None\nThe loop has ended.\n", trace("a"));
+        assertEquals("\nCurrent Final Input  Next  Date\nState   State Char  State  Size\n"
+                + "   0             1    -1     0\nThe loop has ended.\n", trace("1abc"));
+        assertEquals("\nCurrent Final Input  Next  Date\nState   State Char  State  Size\n"
+                + "   0             a     1     1\n   1       F     b     1     2\n"
+                + "   1       F     .     2     3\n   2       F   None\nThe loop has ended.\n", trace("ab."));
+        assertEquals("", trace(""));
+    }
+
+    @Test
+    public void sharedRecognizerIsThreadSafe() throws Exception {
+        ConcurrentCheck.assertAlwaysTrue(8, 10000, i -> {
+            Object[] expected = BASELINE[i % BASELINE.length];
+            UserNameRecognition recognition = UserNameRecognizer.SILENT.recognize((String) expected[0]);
+            return recognition.getErrorMessage().equals(expected[1])
+                    && recognition.getIndexOfError() == (int) expected[2];
+        });
+    }
+
+    // Returns what a tracing recognizer writes while recognizing the input
+    private static String trace(String userName) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new UserNameRecognizer(new PrintStream(bytes, true, StandardCharsets.UTF_8)).recognize(userName);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}